@@ -0,0 +1,34 @@
+package com.gemini.compiler.bench;
+
+import com.gemini.compiler.synthetic.ProgramGenerator;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * 基准测试共用的输入程序与辅助方法
+ */
+final class BenchmarkPrograms {
+
+    private static final long SEED = 20240601L;
+
+    private BenchmarkPrograms() {}
+
+    /**
+     * 生成含有指定数量函数的 Gemini-C 程序（固定种子，每个函数约 40 行，覆盖全部语法结构）
+     */
+    static String generate(int functions) {
+        ProgramGenerator generator = new ProgramGenerator();
+        generator.setSeed(SEED);
+        generator.setFunctions(functions);
+        return generator.generate();
+    }
+
+    /**
+     * 屏蔽各阶段打印的进度信息，返回原来的标准输出以便恢复
+     */
+    static PrintStream silenceStdout() {
+        PrintStream original = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        return original;
+    }
+}
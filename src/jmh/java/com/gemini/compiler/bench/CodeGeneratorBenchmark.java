@@ -0,0 +1,79 @@
+package com.gemini.compiler.bench;
+
+import com.gemini.compiler.ast.ASTBuilder;
+import com.gemini.compiler.ast.ASTNode;
+import com.gemini.compiler.codegen.CodeGenerator;
+import com.gemini.compiler.ir.IRGenerator;
+import com.gemini.compiler.ir.IRProgram;
+import com.gemini.compiler.optimizer.IROptimizer;
+import com.gemini.compiler.optimizer.OptimizationLevel;
+import com.gemini.grammar.GeminiCLexer;
+import com.gemini.grammar.GeminiCParser;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * LLVM IR 生成基准测试（输出写入空 Writer，只计量生成本身）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodeGeneratorBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int functions;
+
+    /**
+     * 生成前使用的优化级别
+     */
+    @Param({"-O0", "-O2"})
+    public String level;
+
+    @Param({"1"})
+    public int workers;
+
+    private IRProgram program;
+    private PrintStream stdout;
+
+    @Setup
+    public void setUp() {
+        stdout = BenchmarkPrograms.silenceStdout();
+        String source = BenchmarkPrograms.generate(functions);
+        GeminiCParser parser = new GeminiCParser(new CommonTokenStream(new GeminiCLexer(CharStreams.fromString(source))));
+        ASTNode ast = new ASTBuilder().build(parser.program());
+        IROptimizer optimizer = new IROptimizer(true);
+        optimizer.setOptimizationLevel(OptimizationLevel.parse(level));
+        program = optimizer.optimize(new IRGenerator().generate(ast));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(stdout);
+    }
+
+    @Benchmark
+    public void generate() throws IOException {
+        CodeGenerator generator = new CodeGenerator();
+        generator.setWorkerCount(workers);
+        generator.generate(program, Writer.nullWriter());
+    }
+}
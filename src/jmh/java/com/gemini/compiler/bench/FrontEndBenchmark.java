@@ -0,0 +1,166 @@
+package com.gemini.compiler.bench;
+
+import com.gemini.compiler.GeminiCompiler;
+import com.gemini.compiler.ast.ASTBuilder;
+import com.gemini.compiler.ast.ASTNode;
+import com.gemini.compiler.ir.IRGenerator;
+import com.gemini.compiler.ir.IRProgram;
+import com.gemini.compiler.lexer.GeminiCFastLexer;
+import com.gemini.compiler.parser.DirectASTParser;
+import com.gemini.compiler.parser.IncrementalParser;
+import com.gemini.compiler.parser.ParallelDeclarationParser;
+import com.gemini.compiler.semantic.SemanticAnalyzer;
+import com.gemini.grammar.GeminiCLexer;
+import com.gemini.grammar.GeminiCParser;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ConsoleErrorListener;
+import org.antlr.v4.runtime.ListTokenSource;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 前端各阶段基准测试：词法分析、语法分析、AST 构建、语义分析、中间代码生成。
+ *
+ * 每个基准方法只计量一个阶段，输入是上一阶段在 Setup 中预先算好的结果。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrontEndBenchmark {
+
+    /**
+     * 生成程序中的函数个数
+     */
+    @Param({"100", "1000", "10000"})
+    public int functions;
+
+    private String source;
+    private List<? extends Token> tokens;
+    private ParseTree parseTree;
+    private ASTNode ast;
+    private PrintStream stdout;
+
+    // 在中间某个函数的 return 语句中加一项的源文本，与 source 交替交给增量解析
+    private String edited;
+    private IncrementalParser incremental;
+    private boolean flip;
+
+    @Setup
+    public void setUp() {
+        stdout = BenchmarkPrograms.silenceStdout();
+        source = BenchmarkPrograms.generate(functions);
+        tokens = new GeminiCLexer(CharStreams.fromString(source)).getAllTokens();
+        parseTree = newParser().program();
+        ast = new ASTBuilder().build(parseTree);
+        int middle = source.indexOf("return ", source.length() / 2) + "return ".length();
+        edited = source.substring(0, middle) + "1 + " + source.substring(middle);
+        incremental = new IncrementalParser(1, true);
+        incremental.update(source);
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(stdout);
+    }
+
+    private GeminiCParser newParser() {
+        return new GeminiCParser(new CommonTokenStream(new ListTokenSource(tokens)));
+    }
+
+    @Benchmark
+    public int lex() {
+        GeminiCLexer lexer = new GeminiCLexer(CharStreams.fromString(source));
+        int count = 0;
+        while (lexer.nextToken().getType() != Token.EOF) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * --fast-lexer 使用的手写词法分析器，与 lex 产生相同的词法单元
+     */
+    @Benchmark
+    public int lexFast() {
+        GeminiCFastLexer lexer = new GeminiCFastLexer(CharStreams.fromString(source));
+        int count = 0;
+        while (lexer.nextToken().getType() != Token.EOF) {
+            count++;
+        }
+        return count;
+    }
+
+    @Benchmark
+    public ParseTree parse() {
+        return newParser().program();
+    }
+
+    /**
+     * 编译器实际使用的两阶段解析（SLL，失败时再用 LL）
+     */
+    @Benchmark
+    public ParseTree parseTwoStage() {
+        return GeminiCompiler.parseProgram(newParser(), ConsoleErrorListener.INSTANCE);
+    }
+
+    /**
+     * --direct-ast：解析的同时构建 AST，对应 parseTwoStage 加 buildAst
+     */
+    @Benchmark
+    public ASTNode parseDirect() {
+        return new DirectASTParser(tokens).parseProgram();
+    }
+
+    /**
+     * --parser-workers=0：按顶层声明用全部处理器并行解析并构建 AST，对应 parseTwoStage 加 buildAst
+     */
+    @Benchmark
+    public ASTNode parseParallel() {
+        return new ParallelDeclarationParser(0, false).parse(tokens);
+    }
+
+    /**
+     * --watch：修改一个函数后增量解析，耗时应与 functions 基本无关（比较源文本和复制码点数组除外）
+     */
+    @Benchmark
+    public ASTNode reparseIncremental() {
+        flip = !flip;
+        return incremental.update(flip ? edited : source);
+    }
+
+    @Benchmark
+    public ASTNode buildAst() {
+        return new ASTBuilder().build(parseTree);
+    }
+
+    @Benchmark
+    public SemanticAnalyzer analyze() {
+        SemanticAnalyzer analyzer = new SemanticAnalyzer();
+        analyzer.analyze(ast);
+        return analyzer;
+    }
+
+    @Benchmark
+    public IRProgram generateIr() {
+        return new IRGenerator().generate(ast);
+    }
+}
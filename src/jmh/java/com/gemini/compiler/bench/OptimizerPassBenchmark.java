@@ -0,0 +1,115 @@
+package com.gemini.compiler.bench;
+
+import com.gemini.compiler.ast.ASTBuilder;
+import com.gemini.compiler.ast.ASTNode;
+import com.gemini.compiler.ir.FunctionIndex;
+import com.gemini.compiler.ir.IRGenerator;
+import com.gemini.compiler.ir.IRProgram;
+import com.gemini.compiler.ir.TACInstruction;
+import com.gemini.compiler.optimizer.ConditionalConstantPropagationPass;
+import com.gemini.compiler.optimizer.ConstantPropagationPass;
+import com.gemini.compiler.optimizer.DeadCodeEliminationPass;
+import com.gemini.compiler.optimizer.GlobalValueNumberingPass;
+import com.gemini.compiler.optimizer.LoopInvariantHoistPass;
+import com.gemini.compiler.optimizer.Mem2RegPass;
+import com.gemini.compiler.optimizer.OptimizerPass;
+import com.gemini.compiler.optimizer.SSADestructionPass;
+import com.gemini.grammar.GeminiCLexer;
+import com.gemini.grammar.GeminiCParser;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * 单个优化 Pass 的基准测试。
+ *
+ * 与 IROptimizer 一样按函数切分，每个函数使用新的 Pass 实例。
+ * Mem2Reg 的输入是生成的原始中间代码，其余 Pass 的输入是 Mem2Reg 之后的 SSA 形式，
+ * 与它们在 -O2 流水线中看到的输入一致。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OptimizerPassBenchmark {
+
+    @Param({"100", "1000"})
+    public int functions;
+
+    @Param({"Mem2Reg", "ConstantPropagation", "ConditionalConstantPropagation",
+            "LoopInvariantHoist", "DeadCodeElimination", "GlobalValueNumbering", "SSADestruction"})
+    public String pass;
+
+    private Set<String> globals;
+    private List<List<TACInstruction>> inputs;
+    private PrintStream stdout;
+
+    @Setup
+    public void setUp() {
+        stdout = BenchmarkPrograms.silenceStdout();
+        String source = BenchmarkPrograms.generate(functions);
+        GeminiCParser parser = new GeminiCParser(new CommonTokenStream(new GeminiCLexer(CharStreams.fromString(source))));
+        ASTNode ast = new ASTBuilder().build(parser.program());
+        IRProgram program = new IRGenerator().generate(ast);
+
+        List<TACInstruction> instructions = program.getInstructions();
+        FunctionIndex index = FunctionIndex.build(instructions);
+        globals = new HashSet<>();
+        for (TACInstruction instruction : instructions.subList(0, index.getPrologueEnd())) {
+            if (instruction.getResult() != null) {
+                globals.add(instruction.getResult());
+            }
+        }
+
+        inputs = new ArrayList<>(index.getFunctionCount());
+        for (FunctionIndex.FunctionRange function : index.getFunctions()) {
+            List<TACInstruction> body = new ArrayList<>(function.slice(instructions));
+            inputs.add("Mem2Reg".equals(pass) ? body : new Mem2RegPass(false, globals).run(body));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(stdout);
+    }
+
+    private OptimizerPass newPass() {
+        switch (pass) {
+            case "Mem2Reg": return new Mem2RegPass(false, globals);
+            case "ConstantPropagation": return new ConstantPropagationPass(false);
+            case "ConditionalConstantPropagation": return new ConditionalConstantPropagationPass(false);
+            case "LoopInvariantHoist": return new LoopInvariantHoistPass(false, globals);
+            case "DeadCodeElimination": return new DeadCodeEliminationPass(false, globals);
+            case "GlobalValueNumbering": return new GlobalValueNumberingPass(false, globals);
+            case "SSADestruction": return new SSADestructionPass(false);
+            default: throw new IllegalArgumentException("未知的 Pass: " + pass);
+        }
+    }
+
+    @Benchmark
+    public void run(Blackhole blackhole) {
+        for (List<TACInstruction> input : inputs) {
+            blackhole.consume(newPass().run(input));
+        }
+    }
+}
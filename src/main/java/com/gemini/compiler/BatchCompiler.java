@@ -0,0 +1,226 @@
+package com.gemini.compiler;
+
+import com.gemini.compiler.GeminiCompiler.CompilerConfig;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 批量编译（--batch）
+ *
+ * 在固定大小的线程池上并发编译多个源文件。每个文件使用独立的 GeminiCompiler 实例，
+ * 符号表、中间代码等状态互不共享；单个文件的失败只记录在它自己的结果里，不影响其他文件。
+ * 结果按输入顺序返回，并可汇总为文本或 JSON 报告。
+ */
+public class BatchCompiler {
+
+    /**
+     * 一个编译任务：输入文件和输出文件
+     */
+    public static final class Job {
+        private final String inputFile;
+        private final String outputFile;
+
+        public Job(String inputFile, String outputFile) {
+            this.inputFile = inputFile;
+            this.outputFile = outputFile;
+        }
+
+        public String getInputFile() { return inputFile; }
+        public String getOutputFile() { return outputFile; }
+    }
+
+    private final CompilerConfig config;
+    private final int jobs;
+
+    /**
+     * @param config 所有文件共用的编译选项（只读）
+     * @param jobs 同时编译的文件数，0 表示全部处理器
+     */
+    public BatchCompiler(CompilerConfig config, int jobs) {
+        this.config = config;
+        this.jobs = jobs > 0 ? jobs : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * 并发编译全部任务，返回与任务顺序一致的结果
+     * @throws IllegalArgumentException 多个任务写入同一个输出文件
+     */
+    public List<CompilationResult> compile(List<Job> batch) {
+        checkDistinctOutputs(batch);
+        if (batch.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(jobs, batch.size()), runnable -> {
+            Thread thread = new Thread(runnable, "gemini-batch-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Callable<CompilationResult>> tasks = new ArrayList<>(batch.size());
+            for (Job job : batch) {
+                tasks.add(() -> new GeminiCompiler(config).compileWithDiagnostics(job.getInputFile(), job.getOutputFile()));
+            }
+            List<CompilationResult> results = new ArrayList<>(batch.size());
+            List<Future<CompilationResult>> futures = executor.invokeAll(tasks);
+            for (int i = 0; i < futures.size(); i++) {
+                results.add(resultOf(batch.get(i), futures.get(i)));
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("批量编译被中断", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static CompilationResult resultOf(Job job, Future<CompilationResult> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            // compileWithDiagnostics 只会因 Error 失败，例如栈溢出
+            List<String> diagnostics = new ArrayList<>();
+            diagnostics.add("编译错误: " + e.getCause());
+            return new CompilationResult(job.getInputFile(), job.getOutputFile(), false, diagnostics, 0);
+        }
+    }
+
+    private static void checkDistinctOutputs(List<Job> batch) {
+        Map<Path, String> owners = new HashMap<>();
+        for (Job job : batch) {
+            Path output = Paths.get(job.getOutputFile()).toAbsolutePath().normalize();
+            String previous = owners.putIfAbsent(output, job.getInputFile());
+            if (previous != null) {
+                throw new IllegalArgumentException("输出文件冲突: " + previous + " 和 " + job.getInputFile()
+                    + " 都将写入 " + job.getOutputFile());
+            }
+        }
+    }
+
+    /**
+     * 为输入文件确定输出文件：扩展名替换为 .ll；outputDir 为 null 时与输入文件同目录
+     */
+    public static String defaultOutput(String inputFile, String outputDir) {
+        String name = Paths.get(inputFile).getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String outputName = (dot > 0 ? name.substring(0, dot) : name) + ".ll";
+        if (outputDir != null) {
+            return Paths.get(outputDir, outputName).toString();
+        }
+        Path parent = Paths.get(inputFile).getParent();
+        return parent == null ? outputName : parent.resolve(outputName).toString();
+    }
+
+    /**
+     * 读取清单文件：每行一个输入文件，可用制表符隔开再指定输出文件；
+     * 空行和以 # 开头的行被忽略。相对路径按清单文件所在目录解析。
+     */
+    public static List<Job> readManifest(Path manifest, String outputDir) throws IOException {
+        Path base = manifest.toAbsolutePath().getParent();
+        List<Job> batch = new ArrayList<>();
+        for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            String[] fields = trimmed.split("\t");
+            String input = base.resolve(fields[0].trim()).toString();
+            String output = fields.length > 1 && !fields[1].trim().isEmpty()
+                ? base.resolve(fields[1].trim()).toString()
+                : defaultOutput(input, outputDir);
+            batch.add(new Job(input, output));
+        }
+        return batch;
+    }
+
+    /**
+     * 汇总报告：成功与失败的文件数、总耗时，以及每个失败文件的诊断信息
+     */
+    public static String report(List<CompilationResult> results, long wallNanos) {
+        int failed = 0;
+        for (CompilationResult result : results) {
+            if (!result.isSuccess()) {
+                failed++;
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("=== 批量编译结果 ===\n");
+        sb.append(String.format("文件数: %d  成功: %d  失败: %d  总耗时: %.2f ms%n",
+            results.size(), results.size() - failed, failed, wallNanos / 1e6));
+        for (CompilationResult result : results) {
+            sb.append(String.format("  %-6s %8.2f ms  %s%n", result.isSuccess() ? "成功" : "失败",
+                result.getElapsedNanos() / 1e6, result.getInputFile()));
+            for (String diagnostic : result.getDiagnostics()) {
+                sb.append("           ").append(diagnostic).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 以 JSON 格式输出汇总报告
+     */
+    public static String toJson(List<CompilationResult> results, long wallNanos) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n  \"files\": [");
+        int failed = 0;
+        for (int i = 0; i < results.size(); i++) {
+            CompilationResult result = results.get(i);
+            if (!result.isSuccess()) {
+                failed++;
+            }
+            sb.append(i == 0 ? "\n    " : ",\n    ");
+            sb.append("{\"input\": ").append(quote(result.getInputFile()))
+                .append(", \"output\": ").append(quote(result.getOutputFile()))
+                .append(", \"success\": ").append(result.isSuccess())
+                .append(", \"nanos\": ").append(result.getElapsedNanos())
+                .append(", \"diagnostics\": [");
+            for (int j = 0; j < result.getDiagnostics().size(); j++) {
+                if (j > 0) {
+                    sb.append(", ");
+                }
+                sb.append(quote(result.getDiagnostics().get(j)));
+            }
+            sb.append("]}");
+        }
+        sb.append(results.isEmpty() ? "],\n" : "\n  ],\n");
+        sb.append("  \"succeeded\": ").append(results.size() - failed).append(",\n");
+        sb.append("  \"failed\": ").append(failed).append(",\n");
+        sb.append("  \"wallNanos\": ").append(wallNanos).append("\n}\n");
+        return sb.toString();
+    }
+
+    private static String quote(String value) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
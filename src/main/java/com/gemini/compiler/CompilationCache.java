@@ -0,0 +1,343 @@
+package com.gemini.compiler;
+
+import com.gemini.compiler.GeminiCompiler.CompilerConfig;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 按内容寻址的磁盘编译缓存（--cache-dir）
+ *
+ * 键是 SHA-256(编译器构建标识, 影响输出的编译选项, 源文件字节)，值是生成的 LLVM IR，
+ * 或者编译失败时的概要和诊断信息。每个条目是目录下的一个 &lt;键&gt;.entry 文件：
+ * <pre>
+ * gemini-cache 1
+ * status ok|error
+ * message 语义分析失败，发现 1 个错误      （仅失败时）
+ * diagnostic ...                           （零或多行）
+ *
+ * ...LLVM IR...                            （仅成功时）
+ * </pre>
+ * 条目先写入同目录的临时文件再原子重命名，并发的编译进程只会看到完整的条目。
+ * 命中时更新条目的修改时间，总大小超过上限时按修改时间从旧到新淘汰（近似 LRU）。
+ *
+ * 构建标识是编译器自身代码的 SHA-256：从 jar 运行时是 jar 文件，从 classes 目录运行时是其中所有文件，
+ * 每个进程只计算一次。重新构建出不同的编译器后旧条目自然失效，无需手工维护版本号。
+ *
+ * 总大小按目录在进程内累计：第一次使用某个目录时扫描一次，之后每写入一个条目只加上它的大小，
+ * 累计值超过上限时才重新扫描目录并淘汰。其他进程写入的条目在下一次重新扫描时才计入。
+ */
+public class CompilationCache {
+
+    public static final long DEFAULT_MAX_BYTES = 256L << 20;
+
+    private static final String MAGIC = "gemini-cache 1";
+    private static final String SUFFIX = ".entry";
+
+    /**
+     * 各缓存目录（绝对路径）的累计总大小；每个文件都新建 GeminiCompiler 的批量编译和编译服务共用同一个累计值
+     */
+    private static final ConcurrentMap<Path, AtomicLong> TOTALS = new ConcurrentHashMap<>();
+
+    private final Path directory;
+    private final long maxBytes;
+    private final AtomicLong total;
+
+    /**
+     * @param directory 缓存目录，不存在时创建
+     * @param maxBytes 缓存条目的总大小上限
+     */
+    public CompilationCache(Path directory, long maxBytes) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(directory);
+        AtomicLong known = TOTALS.get(directory.toAbsolutePath());
+        if (known == null) {
+            AtomicLong scanned = new AtomicLong(totalSize(listEntries()));
+            known = TOTALS.putIfAbsent(directory.toAbsolutePath(), scanned);
+            if (known == null) {
+                known = scanned;
+            }
+        }
+        this.total = known;
+    }
+
+    /**
+     * 计算缓存键
+     */
+    public static String key(byte[] source, CompilerConfig config) {
+        return key(ByteBuffer.wrap(source), config);
+    }
+
+    /**
+     * 按 source 从 position 到 limit 的字节计算缓存键，不改变 source 的 position；
+     * 编译时传入词法分析读取的同一份映射，不在堆上复制源文件
+     */
+    public static String key(ByteBuffer source, CompilerConfig config) {
+        MessageDigest digest = sha256();
+        digest.update(("gemini-c " + BuildIdentity.ID + '\n').getBytes(StandardCharsets.UTF_8));
+        digest.update((config.getCacheFingerprint() + '\n').getBytes(StandardCharsets.UTF_8));
+        digest.update(source.duplicate());
+        return hex(digest.digest());
+    }
+
+    /**
+     * 编译器的构建标识，参与缓存键
+     */
+    public static String buildIdentity() {
+        return BuildIdentity.ID;
+    }
+
+    /**
+     * 第一次使用时才计算构建标识（类初始化是线程安全的）
+     */
+    private static final class BuildIdentity {
+        static final String ID = compute();
+
+        private static String compute() {
+            try {
+                CodeSource codeSource = CompilationCache.class.getProtectionDomain().getCodeSource();
+                if (codeSource != null && codeSource.getLocation() != null) {
+                    Path location = Paths.get(codeSource.getLocation().toURI());
+                    MessageDigest digest = sha256();
+                    if (Files.isDirectory(location)) {
+                        // 按相对路径排序，使结果与目录遍历顺序无关
+                        List<Path> files;
+                        try (Stream<Path> walk = Files.walk(location)) {
+                            files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+                        }
+                        for (Path file : files) {
+                            digest.update((location.relativize(file).toString().replace('\\', '/') + '\n')
+                                .getBytes(StandardCharsets.UTF_8));
+                            digest.update(Files.readAllBytes(file));
+                        }
+                    } else {
+                        digest.update(Files.readAllBytes(location));
+                    }
+                    return hex(digest.digest());
+                }
+            } catch (IOException | URISyntaxException | IllegalArgumentException | FileSystemNotFoundException e) {
+                // 无法读取自身代码时退回随机标识
+            }
+            // 随机标识使缓存只在本进程内命中，宁可不复用也不能复用其他构建的结果
+            byte[] random = new byte[32];
+            new SecureRandom().nextBytes(random);
+            return "unknown-" + hex(random);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // 每个 Java 平台都必须提供 SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * 查找缓存：命中成功条目时把 LLVM IR 写入输出文件并返回 true，未命中返回 false
+     * @throws CompilationException 命中的是编译失败的条目
+     */
+    public boolean restore(String key, String outputFile) throws IOException {
+        Path entry = entryPath(key);
+        String message = null;
+        List<String> diagnostics = new ArrayList<>();
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(entry))) {
+            if (!MAGIC.equals(readLine(in))) {
+                // 格式不符的条目当作未命中，稍后会被覆盖
+                return false;
+            }
+            String status = readLine(in);
+            String line;
+            while ((line = readLine(in)) != null && !line.isEmpty()) {
+                if (line.startsWith("message ")) {
+                    message = line.substring("message ".length());
+                } else if (line.startsWith("diagnostic ")) {
+                    diagnostics.add(line.substring("diagnostic ".length()));
+                }
+            }
+            if ("status ok".equals(status)) {
+                Files.copy(in, Paths.get(outputFile), StandardCopyOption.REPLACE_EXISTING);
+            } else if (!"status error".equals(status) || message == null) {
+                return false;
+            }
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+
+        touch(entry);
+        if (message != null) {
+            throw new CompilationException(message, diagnostics);
+        }
+        return true;
+    }
+
+    /**
+     * 保存编译成功的结果（输出文件的内容）
+     */
+    public void storeSuccess(String key, String outputFile) throws IOException {
+        store(key, "status ok\n", Paths.get(outputFile));
+    }
+
+    /**
+     * 保存编译失败的概要和诊断信息
+     */
+    public void storeFailure(String key, CompilationException failure) throws IOException {
+        StringBuilder header = new StringBuilder("status error\n");
+        header.append("message ").append(singleLine(failure.getMessage())).append('\n');
+        for (String diagnostic : failure.getDiagnostics()) {
+            header.append("diagnostic ").append(singleLine(diagnostic)).append('\n');
+        }
+        store(key, header.toString(), null);
+    }
+
+    private void store(String key, String header, Path body) throws IOException {
+        Path temp = Files.createTempFile(directory, key, ".tmp");
+        long added;
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                out.write((MAGIC + '\n' + header + '\n').getBytes(StandardCharsets.UTF_8));
+                if (body != null) {
+                    Files.copy(body, out);
+                }
+            }
+            // 覆盖已有条目时只增加差值
+            added = Files.size(temp);
+            try {
+                added -= Files.size(entryPath(key));
+            } catch (NoSuchFileException e) {
+                // 新条目
+            }
+            try {
+                Files.move(temp, entryPath(key), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, entryPath(key), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        if (total.addAndGet(added) > maxBytes) {
+            evict();
+        }
+    }
+
+    /**
+     * 重新扫描目录；总大小超过上限时，从最久未使用的条目开始删除，并以扫描结果更新累计值
+     */
+    void evict() throws IOException {
+        synchronized (total) {
+            List<Entry> entries = listEntries();
+            long size = totalSize(entries);
+            if (size > maxBytes) {
+                entries.sort(Comparator.comparing((Entry entry) -> entry.lastUsed));
+                for (Entry entry : entries) {
+                    if (size <= maxBytes) {
+                        break;
+                    }
+                    Files.deleteIfExists(entry.path);
+                    size -= entry.size;
+                }
+            }
+            total.set(size);
+        }
+    }
+
+    /**
+     * 缓存条目的总大小（扫描目录）
+     */
+    public long size() throws IOException {
+        return totalSize(listEntries());
+    }
+
+    private static long totalSize(List<Entry> entries) {
+        long size = 0;
+        for (Entry entry : entries) {
+            size += entry.size;
+        }
+        return size;
+    }
+
+    private List<Entry> listEntries() throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(file -> file.getFileName().toString().endsWith(SUFFIX)).collect(Collectors.toList());
+        }
+        List<Entry> entries = new ArrayList<>(files.size());
+        for (Path file : files) {
+            try {
+                entries.add(new Entry(file, Files.getLastModifiedTime(file), Files.size(file)));
+            } catch (NoSuchFileException e) {
+                // 其他进程已经删除
+            }
+        }
+        return entries;
+    }
+
+    private static final class Entry {
+        final Path path;
+        final FileTime lastUsed;
+        final long size;
+
+        Entry(Path path, FileTime lastUsed, long size) {
+            this.path = path;
+            this.lastUsed = lastUsed;
+            this.size = size;
+        }
+    }
+
+    private Path entryPath(String key) {
+        return directory.resolve(key + SUFFIX);
+    }
+
+    private static void touch(Path entry) {
+        try {
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // 条目刚被淘汰，不影响本次命中
+        }
+    }
+
+    private static String singleLine(String text) {
+        return text.replace('\r', ' ').replace('\n', ' ');
+    }
+
+    /**
+     * 读取一行（UTF-8，不含换行符），流结束时返回 null
+     */
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1 && b != '\n') {
+            line.write(b);
+        }
+        if (b == -1 && line.size() == 0) {
+            return null;
+        }
+        return line.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,27 @@
+package com.gemini.compiler;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 编译失败异常
+ *
+ * 语法错误或语义错误时由 GeminiCompiler.compile 抛出，携带全部诊断信息，
+ * 由调用者（命令行、编译守护进程）决定如何报告，而不是直接退出进程。
+ */
+public class CompilationException extends RuntimeException {
+
+    private final List<String> diagnostics;
+
+    public CompilationException(String message, List<String> diagnostics) {
+        super(message);
+        this.diagnostics = Collections.unmodifiableList(diagnostics);
+    }
+
+    /**
+     * 获取诊断信息，每条一行
+     */
+    public List<String> getDiagnostics() {
+        return diagnostics;
+    }
+}
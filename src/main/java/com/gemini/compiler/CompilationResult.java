@@ -0,0 +1,37 @@
+package com.gemini.compiler;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 单个源文件的编译结果：是否成功、输出路径、诊断信息和耗时
+ *
+ * 由 GeminiCompiler.compileWithDiagnostics 生成，供编译服务和批量编译汇总报告使用。
+ */
+public final class CompilationResult {
+
+    private final String inputFile;
+    private final String outputFile;
+    private final boolean success;
+    private final List<String> diagnostics;
+    private final long elapsedNanos;
+
+    public CompilationResult(String inputFile, String outputFile, boolean success,
+                             List<String> diagnostics, long elapsedNanos) {
+        this.inputFile = inputFile;
+        this.outputFile = outputFile;
+        this.success = success;
+        this.diagnostics = Collections.unmodifiableList(diagnostics);
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public String getInputFile() { return inputFile; }
+    public String getOutputFile() { return outputFile; }
+    public boolean isSuccess() { return success; }
+    public List<String> getDiagnostics() { return diagnostics; }
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    public long getElapsedMillis() {
+        return elapsedNanos / 1_000_000;
+    }
+}
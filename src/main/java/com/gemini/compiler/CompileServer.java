@@ -0,0 +1,440 @@
+package com.gemini.compiler;
+
+import com.gemini.compiler.ast.ASTBuilder;
+import com.gemini.compiler.ast.ASTNode;
+import com.gemini.compiler.codegen.CodeGenerator;
+import com.gemini.compiler.ir.IRGenerator;
+import com.gemini.compiler.optimizer.IROptimizer;
+import com.gemini.compiler.optimizer.OptimizationLevel;
+import com.gemini.compiler.semantic.SemanticAnalyzer;
+import com.gemini.compiler.synthetic.ProgramGenerator;
+import com.gemini.grammar.GeminiCLexer;
+import com.gemini.grammar.GeminiCParser;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ConsoleErrorListener;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 常驻编译服务（--daemon）
+ *
+ * 在 127.0.0.1 上监听，进程常驻，因此 JVM 启动、ANTLR ATN 反序列化和 JIT 预热只发生一次：
+ * GeminiCLexer/GeminiCParser 的 DFA 缓存是类级共享的，启动时先编译一个合成程序把它们填热。
+ * 每个请求使用独立的 GeminiCompiler 实例，最多 workers 个请求并发执行。
+ *
+ * 本机的其他用户也能连接回环地址，而服务以启动者的权限读写文件，因此每个请求都要认证：
+ * 启动时生成随机令牌，写入只有启动者可读写（0600）的令牌文件（默认 ~/.gemini-c/daemon-&lt;端口&gt;.token），
+ * 请求的第一行必须是这个令牌，否则返回错误并关闭连接。compile 请求中的路径必须是绝对路径，
+ * 设置了根目录时还必须位于根目录之内（按解析符号链接之后的真实路径判断）；
+ * 请求中不能给出会写入其他文件的选项（--cache-dir、--time-report=、--time-passes=），这些只能在启动时指定。
+ *
+ * 协议为 UTF-8 文本行，一个连接上可以依次发送多个请求。请求每行一个参数，以空行结束：
+ * <pre>
+ * 3f9a...（令牌）
+ * compile
+ * /abs/path/input.gc
+ * /abs/path/output.ll
+ * -O2                      （可选，与命令行选项相同，覆盖服务启动时的默认选项）
+ *
+ * </pre>
+ * 响应同样以空行结束：
+ * <pre>
+ * status ok|error
+ * output /abs/path/output.ll      （仅成功时）
+ * time-ms 12
+ * diagnostic 语法错误 [3:4] ...   （零或多行）
+ *
+ * </pre>
+ * 另有 ping（只返回 status ok）和 shutdown（返回后停止服务）两个请求，同样以令牌开头。
+ */
+public class CompileServer {
+
+    public static final int DEFAULT_PORT = 7411;
+
+    private static final long WARM_UP_SEED = 1L;
+    private static final int WARM_UP_FUNCTIONS = 50;
+
+    /**
+     * 令牌的字节数（以十六进制写入令牌文件）
+     */
+    private static final int TOKEN_BYTES = 32;
+
+    /**
+     * 会让编译器写入输入、输出文件之外的文件的选项，只能在启动服务时指定
+     */
+    private static final String[] FILE_OPTIONS = {"--cache-dir=", "--time-report=", "--time-passes="};
+
+    private final int requestedPort;
+    private final int workers;
+    private final String[] defaultOptions;
+
+    // 令牌文件，null 表示使用默认位置；根目录，null 表示不限制；token 是令牌的十六进制文本
+    private Path tokenFile;
+    private Path root;
+    private byte[] token;
+
+    private ServerSocket serverSocket;
+    private ExecutorService executor;
+    private Thread acceptThread;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    /**
+     * @param port 监听端口，0 表示由系统分配
+     * @param workers 同时处理的请求数
+     * @param defaultOptions 每个请求默认使用的编译选项（与命令行选项相同）
+     */
+    public CompileServer(int port, int workers, String[] defaultOptions) {
+        this.requestedPort = port;
+        this.workers = Math.max(1, workers);
+        this.defaultOptions = defaultOptions.clone();
+        // 提前校验默认选项
+        GeminiCompiler.parseOptions(this.defaultOptions, 0);
+    }
+
+    /**
+     * 令牌文件的位置，在 start() 之前设置；默认是 ~/.gemini-c/daemon-&lt;端口&gt;.token
+     */
+    public void setTokenFile(Path tokenFile) {
+        this.tokenFile = tokenFile;
+    }
+
+    /**
+     * 只允许编译此目录（含子目录）中的文件、写入此目录中的输出文件，在 start() 之前设置
+     * @throws IOException 目录不存在
+     */
+    public void setRoot(Path root) throws IOException {
+        this.root = root.toRealPath();
+    }
+
+    /**
+     * 默认的令牌文件位置
+     */
+    public static Path defaultTokenFile(int port) {
+        return Paths.get(System.getProperty("user.home"), ".gemini-c", "daemon-" + port + ".token");
+    }
+
+    /**
+     * 预热后开始监听，并把新生成的令牌写入令牌文件
+     */
+    public synchronized void start() throws IOException {
+        if (serverSocket != null) {
+            throw new IllegalStateException("编译服务已经启动");
+        }
+        warmUp();
+        serverSocket = new ServerSocket(requestedPort, 50, InetAddress.getLoopbackAddress());
+        byte[] random = new byte[TOKEN_BYTES];
+        new SecureRandom().nextBytes(random);
+        StringBuilder hex = new StringBuilder();
+        for (byte b : random) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        token = hex.toString().getBytes(StandardCharsets.US_ASCII);
+        if (tokenFile == null) {
+            tokenFile = defaultTokenFile(serverSocket.getLocalPort());
+        }
+        try {
+            writeTokenFile(tokenFile, hex.toString());
+        } catch (IOException e) {
+            serverSocket.close();
+            throw e;
+        }
+        executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "gemini-compile-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        acceptThread = new Thread(this::acceptLoop, "gemini-compile-server");
+        acceptThread.start();
+    }
+
+    /**
+     * 实际监听的端口
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * 令牌文件的实际位置
+     */
+    public Path getTokenFile() {
+        return tokenFile;
+    }
+
+    /**
+     * 是否仍在监听
+     */
+    public synchronized boolean isRunning() {
+        return serverSocket != null && !serverSocket.isClosed();
+    }
+
+    /**
+     * 停止监听并删除令牌文件；正在执行的请求会继续完成
+     */
+    public synchronized void stop() {
+        if (serverSocket == null || serverSocket.isClosed()) {
+            return;
+        }
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // 关闭监听套接字失败不影响停止
+        }
+        try {
+            Files.deleteIfExists(tokenFile);
+        } catch (IOException e) {
+            // 旧令牌随服务停止失效，文件残留不影响安全
+        }
+        executor.shutdown();
+        stopped.countDown();
+    }
+
+    /**
+     * 先在同一目录中创建权限为 0600 的临时文件并写入令牌，再原子地替换令牌文件，
+     * 令牌文件在任何时刻都不会以更宽的权限存在。不支持 POSIX 权限的文件系统（Windows）上
+     * 依赖用户目录默认只允许本人访问的 ACL。
+     */
+    private static void writeTokenFile(Path file, String token) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        Path temp;
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.createDirectories(dir, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+            temp = Files.createTempFile(dir, ".daemon", ".token",
+                PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            Files.createDirectories(dir);
+            temp = Files.createTempFile(dir, ".daemon", ".token");
+        }
+        try {
+            Files.writeString(temp, token + "\n");
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * 阻塞直到服务停止
+     */
+    public void awaitShutdown() throws InterruptedException {
+        stopped.await();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                try {
+                    executor.execute(() -> serve(socket));
+                } catch (RejectedExecutionException e) {
+                    socket.close();
+                }
+            } catch (SocketException e) {
+                // stop() 关闭了监听套接字
+                break;
+            } catch (IOException e) {
+                System.err.println("编译服务接受连接失败: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 处理一个连接上的全部请求
+     */
+    private void serve(Socket socket) {
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8))) {
+            List<String> request;
+            while ((request = readRequest(in)) != null) {
+                if (request.isEmpty()) {
+                    continue;
+                }
+                // 令牌错误时不处理请求，也不再读取这个连接上的后续内容
+                if (!authenticate(request.get(0))) {
+                    out.write("status error\ndiagnostic 令牌错误\n\n");
+                    out.flush();
+                    return;
+                }
+                request = request.subList(1, request.size());
+                if (request.isEmpty()) {
+                    out.write("status error\ndiagnostic 缺少请求\n\n");
+                    out.flush();
+                    continue;
+                }
+                boolean shutdown = request.get(0).equals("shutdown");
+                out.write(handle(request));
+                out.flush();
+                if (shutdown) {
+                    stop();
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            // 客户端断开
+        }
+    }
+
+    private static List<String> readRequest(BufferedReader in) throws IOException {
+        List<String> lines = new ArrayList<>();
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.isEmpty()) {
+                return lines;
+            }
+            lines.add(line);
+        }
+        // 连接结束时未以空行结尾的请求同样处理
+        return lines.isEmpty() ? null : lines;
+    }
+
+    /**
+     * 比较令牌，耗时与第一个不同的字符位置无关
+     */
+    private boolean authenticate(String line) {
+        return MessageDigest.isEqual(token, line.trim().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 处理单个已认证的请求（不含令牌行），返回完整响应（含结尾空行）
+     */
+    String handle(List<String> request) {
+        switch (request.get(0)) {
+            case "ping":
+            case "shutdown":
+                return "status ok\n\n";
+            case "compile":
+                return compile(request.subList(1, request.size()));
+            default:
+                return "status error\ndiagnostic 未知请求: " + request.get(0) + "\n\n";
+        }
+    }
+
+    private String compile(List<String> arguments) {
+        StringBuilder response = new StringBuilder();
+        if (arguments.size() < 2) {
+            return response.append("status error\ndiagnostic compile 请求需要输入文件和输出文件\n\n").toString();
+        }
+        String inputFile = arguments.get(0);
+        String outputFile = arguments.get(1);
+        String rejected = checkPaths(inputFile, outputFile);
+        if (rejected != null) {
+            return response.append("status error\ndiagnostic ").append(rejected).append("\n\n").toString();
+        }
+
+        // 请求中的选项排在默认选项之后，优化级别等以请求为准
+        String[] options = new String[defaultOptions.length + arguments.size() - 2];
+        System.arraycopy(defaultOptions, 0, options, 0, defaultOptions.length);
+        for (int i = 2; i < arguments.size(); i++) {
+            String option = arguments.get(i);
+            for (String fileOption : FILE_OPTIONS) {
+                if (option.startsWith(fileOption)) {
+                    return response.append("status error\ndiagnostic 请求中不能使用选项 ").append(fileOption)
+                        .append("，请在启动编译服务时指定\n\n").toString();
+                }
+            }
+            options[defaultOptions.length + i - 2] = option;
+        }
+
+        CompilationResult result;
+        try {
+            result = new GeminiCompiler(GeminiCompiler.parseOptions(options, 0)).compileWithDiagnostics(inputFile, outputFile);
+        } catch (IllegalArgumentException e) {
+            // 选项取值非法
+            result = new CompilationResult(inputFile, outputFile, false, List.of(e.getMessage()), 0);
+        }
+
+        response.append("status ").append(result.isSuccess() ? "ok" : "error").append('\n');
+        if (result.isSuccess()) {
+            response.append("output ").append(outputFile).append('\n');
+        }
+        response.append("time-ms ").append(result.getElapsedMillis()).append('\n');
+        for (String diagnostic : result.getDiagnostics()) {
+            // 诊断信息中的换行会破坏协议的行结构
+            response.append("diagnostic ").append(diagnostic.replace('\n', ' ')).append('\n');
+        }
+        return response.append('\n').toString();
+    }
+
+    /**
+     * 检查 compile 请求的路径，合法时返回 null，否则返回诊断信息。
+     * 输入文件按真实路径判断；输出文件可能还不存在，按其所在目录的真实路径判断，且不能是符号链接。
+     */
+    private String checkPaths(String inputFile, String outputFile) {
+        Path input;
+        Path output;
+        try {
+            input = Paths.get(inputFile);
+            output = Paths.get(outputFile);
+        } catch (InvalidPathException e) {
+            return "非法路径: " + e.getMessage();
+        }
+        if (!input.isAbsolute() || !output.isAbsolute()) {
+            return "输入文件和输出文件必须是绝对路径";
+        }
+        if (root == null) {
+            return null;
+        }
+        try {
+            Path parent = output.getParent();
+            if (output.getFileName() == null || parent == null) {
+                return "输出文件不在根目录 " + root + " 之内: " + outputFile;
+            }
+            if (!input.toRealPath().startsWith(root)) {
+                return "输入文件不在根目录 " + root + " 之内: " + inputFile;
+            }
+            if (Files.isSymbolicLink(output) || !parent.toRealPath().resolve(output.getFileName()).startsWith(root)) {
+                return "输出文件不在根目录 " + root + " 之内: " + outputFile;
+            }
+        } catch (IOException e) {
+            return "文件操作错误: " + e.getMessage();
+        }
+        return null;
+    }
+
+    /**
+     * 在内存中完整编译一个合成程序，填充 ANTLR 的 DFA 缓存并触发 JIT 编译
+     */
+    private static void warmUp() {
+        ProgramGenerator generator = new ProgramGenerator();
+        generator.setSeed(WARM_UP_SEED);
+        generator.setFunctions(WARM_UP_FUNCTIONS);
+        String source = generator.generate();
+
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            GeminiCParser parser = new GeminiCParser(new CommonTokenStream(new GeminiCLexer(CharStreams.fromString(source))));
+            ASTNode ast = new ASTBuilder().build(GeminiCompiler.parseProgram(parser, ConsoleErrorListener.INSTANCE));
+            ast.accept(new SemanticAnalyzer());
+            IROptimizer optimizer = new IROptimizer(true);
+            optimizer.setOptimizationLevel(OptimizationLevel.O2);
+            new CodeGenerator().generate(optimizer.optimize(new IRGenerator().generate(ast)), Writer.nullWriter());
+        } catch (IOException e) {
+            // 写入空 Writer 不会失败
+        } finally {
+            System.setOut(stdout);
+        }
+    }
+}
@@ -4,12 +4,30 @@ import com.gemini.compiler.ast.*;
 import com.gemini.compiler.semantic.*;
 import com.gemini.compiler.ir.*;
 import com.gemini.compiler.codegen.*;
+import com.gemini.compiler.optimizer.*;
+import com.gemini.compiler.lexer.GeminiCFastLexer;
+import com.gemini.compiler.lexer.MappedCharStream;
+import com.gemini.compiler.parser.DirectASTParser;
+import com.gemini.compiler.parser.IncrementalParser;
+import com.gemini.compiler.parser.ParallelDeclarationParser;
 import com.gemini.grammar.*;
 import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.antlr.v4.runtime.tree.*;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
 
 /**
  * Gemini-C 编译器主类
@@ -23,13 +41,12 @@ import java.nio.file.*;
  */
 public class GeminiCompiler {
     
-    // 调试开关
-    public static boolean DEBUG_AST = false;
-    public static boolean DEBUG_SYMTABLE = false;
-    public static boolean DEBUG_IR = false;
-    public static boolean DEBUG_CODEGEN = false;
+    /**
+     * 监视模式检查源文件是否修改的间隔
+     */
+    private static final long WATCH_INTERVAL_MILLIS = 200;
     
-    // 编译器配置
+    // 编译器配置（含调试开关，按实例隔离，同一进程内可并存多个编译器）
     private CompilerConfig config;
     
     public GeminiCompiler() {
@@ -45,76 +62,426 @@ public class GeminiCompiler {
      * @param inputFile 输入文件路径
      * @param outputFile 输出文件路径
      * @throws IOException 文件操作异常
+     * @throws CompilationException 源程序有语法或语义错误
      */
     public void compile(String inputFile, String outputFile) throws IOException {
         System.out.println("=== Gemini-C 编译器启动 ===");
         System.out.println("输入文件: " + inputFile);
         System.out.println("输出文件: " + outputFile);
         
-        // 阶段一：词法分析和语法分析
-        ASTNode ast = parseFile(inputFile);
+        // 源文件只映射一次，缓存键和词法分析读取的是同一份映射
+        MappedByteBuffer source = MappedCharStream.map(Paths.get(inputFile));
         
+        // 先按源文件内容和选项查找编译缓存，命中时不再解析
+        CompilationCache cache = config.isCacheable()
+            ? new CompilationCache(Paths.get(config.getCacheDir()), config.getCacheMaxBytes()) : null;
+        String cacheKey = cache != null ? CompilationCache.key(source, config) : null;
+        if (cache != null && restoreFromCache(cache, cacheKey, outputFile)) {
+            System.out.println("命中编译缓存: " + cacheKey);
+            System.out.println("=== 编译完成 ===");
+            return;
+        }
+        
+        try {
+            runPipeline(source, inputFile, outputFile);
+        } catch (CompilationException e) {
+            if (cache != null) {
+                storeInCache(cacheKey, source, inputFile, () -> cache.storeFailure(cacheKey, e));
+            }
+            throw e;
+        }
+        if (cache != null) {
+            storeInCache(cacheKey, source, inputFile, () -> cache.storeSuccess(cacheKey, outputFile));
+        }
+    }
+    
+    /**
+     * 命中的是失败条目时，像重新编译一样先把诊断信息输出到标准错误
+     */
+    private static boolean restoreFromCache(CompilationCache cache, String key, String outputFile) throws IOException {
+        try {
+            return cache.restore(key, outputFile);
+        } catch (CompilationException e) {
+            System.out.println("命中编译缓存: " + key);
+            for (String diagnostic : e.getDiagnostics()) {
+                System.err.println(diagnostic);
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * 写缓存失败只影响之后的编译速度，不影响本次编译结果。
+     * 
+     * 源文件在编译期间被原地改写时映射随之改变，编译结果可能来自修改后的内容，不能写在编译前计算的键下；
+     * 因此写入前重新计算键，不一致时跳过。先比较文件长度，避免读取映射中已被截断的部分。
+     */
+    private void storeInCache(String key, ByteBuffer source, String inputFile, CacheWrite write) {
+        try {
+            if (Files.size(Paths.get(inputFile)) != source.limit() || !key.equals(CompilationCache.key(source, config))) {
+                System.err.println("警告: 编译期间源文件被修改，不写入编译缓存");
+                return;
+            }
+            write.run();
+        } catch (IOException e) {
+            System.err.println("警告: 写入编译缓存失败: " + e.getMessage());
+        }
+    }
+    
+    private interface CacheWrite {
+        void run() throws IOException;
+    }
+    
+    /**
+     * 完整执行各编译阶段
+     */
+    private void runPipeline(MappedByteBuffer source, String inputFile, String outputFile) throws IOException {
+        PhaseProfiler profiler = new PhaseProfiler(config.isTimeReport());
+        
+        // 阶段一：词法分析和语法分析
+        ASTNode ast = parseFile(source, inputFile, profiler);
+        compileAst(ast, outputFile, profiler);
+    }
+    
+    /**
+     * 从语义分析开始执行其余的编译阶段
+     */
+    private void compileAst(ASTNode ast, String outputFile, PhaseProfiler profiler) throws IOException {
         // 阶段二：语义分析
+        PhaseProfiler.Phase phase = profiler.begin("semantic");
         SemanticAnalyzer semanticAnalyzer = new SemanticAnalyzer();
+        semanticAnalyzer.setDebugMode(config.isDebugSymtable());
         semanticAnalyzer.analyze(ast);
+        profiler.end(phase, "symbols", semanticAnalyzer::getSymbolCount);
+        if (semanticAnalyzer.hasErrors()) {
+            List<String> diagnostics = new ArrayList<>();
+            for (SemanticError error : semanticAnalyzer.getErrors()) {
+                diagnostics.add(error.toString());
+            }
+            throw new CompilationException("语义分析失败，发现 " + diagnostics.size() + " 个错误", diagnostics);
+        }
         
         // 阶段三：中间代码生成
+        phase = profiler.begin("irgen");
         IRGenerator irGenerator = new IRGenerator();
+        irGenerator.setColumnarStorage(config.isColumnarIr());
         IRProgram irProgram = irGenerator.generate(ast);
+        IRProgram generated = irProgram;
+        profiler.end(phase, "tac", () -> generated.getInstructions().size());
+        
+        // 中间代码优化（按函数并行，-O0 时跳过）
+        if (config.isOptimize()) {
+            phase = profiler.begin("optimize");
+            IROptimizer optimizer = new IROptimizer(true);
+            optimizer.setDebugMode(config.isDebugIr());
+            optimizer.setParallelism(config.getOptimizerWorkers());
+            optimizer.setOptimizationLevel(config.getOptimizationLevel());
+            optimizer.setTimePasses(config.isTimePasses());
+            irProgram = optimizer.optimize(irProgram);
+            IRProgram optimized = irProgram;
+            profiler.end(phase, "tac", () -> optimized.getInstructions().size());
+            if (config.isTimePasses()) {
+                reportPassTimings(optimizer.getPassTimingReport(), config.getTimePassesOutput());
+            }
+        }
         
         // 阶段四：目标代码生成
         CodeGenerator codeGenerator = new CodeGenerator();
-        String targetCode = codeGenerator.generate(irProgram);
+        codeGenerator.setDebugMode(config.isDebugCodegen());
+        codeGenerator.setWorkerCount(config.getCodegenWorkers());
         
-        // 输出目标代码
-        writeToFile(targetCode, outputFile);
+        // 输出目标代码（逐函数流式写入）
+        phase = profiler.begin("codegen");
+        long llvmLines = writeTargetCode(codeGenerator, irProgram, outputFile);
+        profiler.end(phase, "llvm-lines", () -> llvmLines);
         
         System.out.println("=== 编译完成 ===");
+        
+        if (profiler.isEnabled()) {
+            System.out.print(profiler.toTable());
+            if (config.getTimeReportOutput() != null) {
+                Files.writeString(Paths.get(config.getTimeReportOutput()), profiler.toJson());
+            }
+        }
     }
     
     /**
-     * 解析文件，生成抽象语法树
+     * 监视模式（--watch）：先编译一次，之后源文件每次修改都重新编译，直到进程被终止。
+     *
+     * 词法和语法分析由 IncrementalParser 完成，只重新解析修改涉及的顶层声明，其余声明的 AST 直接复用；
+     * 有错误时改为整体解析以报告诊断信息，然后继续等待下一次修改。不使用编译缓存。
      */
-    private ASTNode parseFile(String inputFile) throws IOException {
+    public void watch(String inputFile, String outputFile) throws IOException, InterruptedException {
+        Path path = Paths.get(inputFile);
+        IncrementalParser incremental = new IncrementalParser(config.getParserWorkers(), config.isDirectAst());
+        FileTime lastModified = null;
+        long lastSize = -1;
+        System.out.println("监视源文件: " + inputFile + "，按 Ctrl+C 结束");
+        while (true) {
+            FileTime modified = Files.getLastModifiedTime(path);
+            long size = Files.size(path);
+            if (!modified.equals(lastModified) || size != lastSize) {
+                lastModified = modified;
+                lastSize = size;
+                try {
+                    recompile(incremental, inputFile, outputFile);
+                } catch (CompilationException e) {
+                    // 各条诊断已在对应阶段输出
+                    System.err.println(e.getMessage());
+                }
+            }
+            Thread.sleep(WATCH_INTERVAL_MILLIS);
+        }
+    }
+    
+    /**
+     * 监视模式下的一次编译
+     */
+    private void recompile(IncrementalParser incremental, String inputFile, String outputFile) throws IOException {
+        System.out.println("\n=== 重新编译: " + inputFile + " ===");
+        PhaseProfiler profiler = new PhaseProfiler(config.isTimeReport());
+        String source = Files.readString(Paths.get(inputFile));
+        
+        PhaseProfiler.Phase phase = profiler.begin("parse");
+        ASTNode ast;
+        try {
+            ProgramNode program = incremental.update(source);
+            profiler.end(phase, "ast-nodes", () -> countNodes(program));
+            System.out.println("增量解析: 重新解析 " + incremental.getReparsedDeclarations() + " / "
+                + program.getDeclarations().length + " 个顶层声明");
+            debugAst(program);
+            ast = program;
+        } catch (ParseCancellationException e) {
+            // 有错误时整体解析，报告的诊断信息与普通编译相同
+            ast = parseFile(MappedCharStream.map(Paths.get(inputFile)), inputFile, new PhaseProfiler(config.isTimeReport()));
+        }
+        compileAst(ast, outputFile, profiler);
+    }
+    
+    /**
+     * 编译源文件，不抛出异常：编译错误、文件错误和选项错误都记录为诊断信息
+     */
+    public CompilationResult compileWithDiagnostics(String inputFile, String outputFile) {
+        long start = System.nanoTime();
+        List<String> diagnostics = new ArrayList<>();
+        boolean success = false;
+        try {
+            compile(inputFile, outputFile);
+            success = true;
+        } catch (CompilationException e) {
+            diagnostics.add(e.getMessage());
+            diagnostics.addAll(e.getDiagnostics());
+        } catch (IOException e) {
+            diagnostics.add("文件操作错误: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            diagnostics.add(e.getMessage());
+        } catch (RuntimeException e) {
+            diagnostics.add("编译错误: " + e);
+        }
+        return new CompilationResult(inputFile, outputFile, success, diagnostics, System.nanoTime() - start);
+    }
+    
+    /**
+     * 解析已映射的源文件，生成抽象语法树
+     */
+    private ASTNode parseFile(MappedByteBuffer mapped, String inputFile, PhaseProfiler profiler) throws IOException {
         System.out.println("\n--- 阶段一：词法分析和语法分析 ---");
         
-        // 读取源文件
-        String sourceCode = Files.readString(Paths.get(inputFile));
+        // 词法分析时在映射上按需解码，不在堆上保存整个文件的副本
+        PhaseProfiler.Phase phase = profiler.begin("lex");
+        CharStream source = MappedCharStream.open(mapped, inputFile);
+        
+        // 创建词法分析器；错误监听器需在读取词法单元之前设置
+        CompilerErrorListener errorListener = new CompilerErrorListener();
+        CommonTokenStream tokens = new CommonTokenStream(createLexer(source, errorListener));
+        if (profiler.isEnabled()) {
+            // 计时时先完成词法分析，使其与语法分析分开计量
+            tokens.fill();
+        }
+        profiler.end(phase, "tokens", tokens::size);
         
-        // 创建词法分析器
-        GeminiCLexer lexer = new GeminiCLexer(CharStreams.fromString(sourceCode));
-        CommonTokenStream tokens = new CommonTokenStream(lexer);
+        // --parser-workers 按顶层声明并行解析，--direct-ast 解析的同时构建 AST；两者都不生成整个程序的解析树
+        if (config.getParserWorkers() != 1 || config.isDirectAst()) {
+            phase = profiler.begin("parse");
+            ASTNode direct = parseWithoutProgramTree(tokens, errorListener);
+            if (direct != null) {
+                profiler.end(phase, "ast-nodes", () -> countNodes(direct));
+                debugAst(direct);
+                return direct;
+            }
+            // 有错误时由 GeminiCParser 整体重新解析，报告的诊断信息与不加这些选项时相同
+        }
         
         // 创建语法分析器
+        phase = profiler.begin("parse");
         GeminiCParser parser = new GeminiCParser(tokens);
         
-        // 移除默认错误监听器，使用自定义错误处理
-        parser.removeErrorListeners();
-        parser.addErrorListener(new CompilerErrorListener());
+        // 解析程序（先 SLL，失败时再用 LL）
+        ParseTree parseTree = parseProgram(parser, errorListener);
+        profiler.end(phase);
         
-        // 解析程序
-        ParseTree parseTree = parser.program();
+        // 有语法错误时解析树不完整，不再构建 AST
+        if (!errorListener.diagnostics.isEmpty()) {
+            throw new CompilationException("语法分析失败，发现 " + errorListener.diagnostics.size() + " 个错误",
+                errorListener.diagnostics);
+        }
         
         // 构建抽象语法树
+        phase = profiler.begin("ast");
         ASTBuilder astBuilder = new ASTBuilder();
         ASTNode ast = astBuilder.build(parseTree);
+        profiler.end(phase, "ast-nodes", () -> countNodes(ast));
+        
+        debugAst(ast);
+        return ast;
+    }
+    
+    /**
+     * 按顶层声明并行解析，或用 DirectASTParser 直接构建 AST；有词法错误或语法错误时返回 null，此时词法单元流仍在开头
+     */
+    private ASTNode parseWithoutProgramTree(CommonTokenStream tokens, CompilerErrorListener errorListener) {
+        tokens.fill();
+        if (!errorListener.diagnostics.isEmpty()) {
+            return null;
+        }
+        try {
+            if (config.getParserWorkers() != 1) {
+                return new ParallelDeclarationParser(config.getParserWorkers(), config.isDirectAst())
+                    .parse(tokens.getTokens());
+            }
+            return new DirectASTParser(tokens.getTokens()).parseProgram();
+        } catch (ParseCancellationException e) {
+            return null;
+        }
+    }
+    
+    private void debugAst(ASTNode ast) {
         
         // 调试：显示 AST
-        if (DEBUG_AST) {
+        if (config.isDebugAst()) {
             System.out.println("\n--- 抽象语法树 (AST) ---");
             ASTPrinter printer = new ASTPrinter();
             printer.print(ast);
         }
-        
-        return ast;
     }
     
     /**
-     * 将内容写入文件
+     * 创建词法分析器：默认使用 ANTLR 生成的 GeminiCLexer，--fast-lexer 时使用手写的表驱动实现，两者产生相同的词法单元
+     */
+    private TokenSource createLexer(CharStream source, ANTLRErrorListener errorListener) {
+        // 并行解析时多个线程同时读取词法单元的文本，而 MappedCharStream 不能并发读取，需要在词法分析时复制文本
+        TokenFactory<?> factory = config.getParserWorkers() != 1 ? new CommonTokenFactory(true) : CommonTokenFactory.DEFAULT;
+        if (config.isFastLexer()) {
+            GeminiCFastLexer lexer = new GeminiCFastLexer(source);
+            lexer.setTokenFactory(factory);
+            lexer.removeErrorListeners();
+            lexer.addErrorListener(errorListener);
+            return lexer;
+        }
+        GeminiCLexer lexer = new GeminiCLexer(source);
+        lexer.setTokenFactory(factory);
+        lexer.removeErrorListeners();
+        lexer.addErrorListener(errorListener);
+        return lexer;
+    }
+    
+    /**
+     * 两阶段解析：先用 SLL 预测模式和 BailErrorStrategy 解析，遇到错误立即放弃，
+     * 再用完整的 LL 模式和默认错误恢复重新解析。
+     *
+     * SLL 不考虑完整的调用栈上下文，表达式语法中的长前瞻（赋值、条件表达式、强制类型转换）代价小得多；
+     * 对 SLL 能接受的输入，它与 LL 得到的解析树相同。SLL 失败可能是真正的语法错误，也可能是 SLL 无法消解的二义性，
+     * 因此只有第二阶段的错误才会报告给 errorListener，报告的诊断信息与直接使用 LL 时相同。
+     */
+    public static ParseTree parseProgram(GeminiCParser parser, ANTLRErrorListener errorListener) {
+        parser.removeErrorListeners();
+        parser.setErrorHandler(new BailErrorStrategy());
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        try {
+            return parser.program();
+        } catch (ParseCancellationException e) {
+            // reset() 同时把词法单元流倒回开头，已读取的词法单元不会重新进行词法分析
+            parser.reset();
+            parser.addErrorListener(errorListener);
+            parser.setErrorHandler(new DefaultErrorStrategy());
+            parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+            return parser.program();
+        }
+    }
+    
+    /**
+     * 统计 AST 节点数（显式栈，避免深层嵌套表达式导致栈溢出）
+     */
+    private static long countNodes(ASTNode root) {
+        long count = 0;
+        Deque<ASTNode> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            ASTNode node = stack.pop();
+            count++;
+            for (ASTNode child : node.getChildren()) {
+                if (child != null) {
+                    stack.push(child);
+                }
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * 输出 Pass 统计：表格打印到标准输出，指定了文件时另写一份 JSON
+     */
+    private void reportPassTimings(PassTimingReport report, String jsonFile) throws IOException {
+        System.out.print(report.toTable());
+        if (jsonFile != null) {
+            Files.writeString(Paths.get(jsonFile), report.toJson());
+        }
+    }
+    
+    /**
+     * 将目标代码以 UTF-8 流式写入文件，不在内存中拼接完整模块
+     * @return 写出的 LLVM IR 行数
      */
-    private void writeToFile(String content, String outputFile) throws IOException {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(outputFile))) {
-            writer.print(content);
+    private long writeTargetCode(CodeGenerator codeGenerator, IRProgram irProgram, String outputFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(outputFile),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            LineCountingChannel counting = new LineCountingChannel(channel);
+            codeGenerator.generate(irProgram, counting);
+            return counting.lines;
+        }
+    }
+    
+    /**
+     * 统计写出的换行数的通道包装（UTF-8 中 '\n' 不会出现在多字节字符内部）
+     */
+    private static final class LineCountingChannel implements WritableByteChannel {
+        private final WritableByteChannel delegate;
+        private long lines;
+        
+        LineCountingChannel(WritableByteChannel delegate) {
+            this.delegate = delegate;
+        }
+        
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            int start = src.position();
+            int written = delegate.write(src);
+            for (int i = start; i < start + written; i++) {
+                if (src.get(i) == '\n') {
+                    lines++;
+                }
+            }
+            return written;
+        }
+        
+        @Override
+        public boolean isOpen() {
+            return delegate.isOpen();
+        }
+        
+        @Override
+        public void close() throws IOException {
+            delegate.close();
         }
     }
     
@@ -122,85 +489,268 @@ public class GeminiCompiler {
      * 设置调试开关
      */
     public void setDebugFlags(boolean ast, boolean symtable, boolean ir, boolean codegen) {
-        DEBUG_AST = ast;
-        DEBUG_SYMTABLE = symtable;
-        DEBUG_IR = ir;
-        DEBUG_CODEGEN = codegen;
+        config.setDebugAst(ast);
+        config.setDebugSymtable(symtable);
+        config.setDebugIr(ir);
+        config.setDebugCodegen(codegen);
+    }
+    
+    public CompilerConfig getConfig() {
+        return config;
     }
     
     /**
      * 编译器配置类
      */
     public static class CompilerConfig {
-        private boolean optimize = false;
+        private OptimizationLevel optimizationLevel = OptimizationLevel.O0;
         private String targetArchitecture = "x86-64";
         private boolean verbose = false;
+        private int codegenWorkers = 1;
+        private int optimizerWorkers = 1;
+        private int parserWorkers = 1;
+        private boolean columnarIr = false;
+        private boolean timePasses = false;
+        private String timePassesOutput = null;
+        private boolean timeReport = false;
+        private String timeReportOutput = null;
+        private boolean debugAst = false;
+        private boolean debugSymtable = false;
+        private boolean debugIr = false;
+        private boolean debugCodegen = false;
+        private boolean fastLexer = false;
+        private boolean directAst = false;
+        private String cacheDir = null;
+        private long cacheMaxBytes = CompilationCache.DEFAULT_MAX_BYTES;
         
         // Getters and Setters
-        public boolean isOptimize() { return optimize; }
-        public void setOptimize(boolean optimize) { this.optimize = optimize; }
+        public OptimizationLevel getOptimizationLevel() { return optimizationLevel; }
+        public void setOptimizationLevel(OptimizationLevel optimizationLevel) { this.optimizationLevel = optimizationLevel; }
+        
+        // 兼容旧开关：启用优化等价于 -O2，关闭等价于 -O0
+        public boolean isOptimize() { return optimizationLevel.isEnabled(); }
+        public void setOptimize(boolean optimize) {
+            if (!optimize) {
+                optimizationLevel = OptimizationLevel.O0;
+            } else if (!optimizationLevel.isEnabled()) {
+                optimizationLevel = OptimizationLevel.O2;
+            }
+        }
         
         public String getTargetArchitecture() { return targetArchitecture; }
         public void setTargetArchitecture(String targetArchitecture) { this.targetArchitecture = targetArchitecture; }
         
         public boolean isVerbose() { return verbose; }
         public void setVerbose(boolean verbose) { this.verbose = verbose; }
+        
+        public int getCodegenWorkers() { return codegenWorkers; }
+        public void setCodegenWorkers(int codegenWorkers) { this.codegenWorkers = codegenWorkers; }
+        
+        public int getOptimizerWorkers() { return optimizerWorkers; }
+        public void setOptimizerWorkers(int optimizerWorkers) { this.optimizerWorkers = optimizerWorkers; }
+        
+        public int getParserWorkers() { return parserWorkers; }
+        public void setParserWorkers(int parserWorkers) { this.parserWorkers = parserWorkers; }
+        
+        public boolean isColumnarIr() { return columnarIr; }
+        public void setColumnarIr(boolean columnarIr) { this.columnarIr = columnarIr; }
+        
+        public boolean isTimePasses() { return timePasses; }
+        public void setTimePasses(boolean timePasses) { this.timePasses = timePasses; }
+        
+        // --time-passes=<文件> 时的 JSON 输出路径
+        public String getTimePassesOutput() { return timePassesOutput; }
+        public void setTimePassesOutput(String timePassesOutput) { this.timePassesOutput = timePassesOutput; }
+        
+        public boolean isTimeReport() { return timeReport; }
+        public void setTimeReport(boolean timeReport) { this.timeReport = timeReport; }
+        
+        // --time-report=<文件> 时的 JSON 输出路径
+        public String getTimeReportOutput() { return timeReportOutput; }
+        public void setTimeReportOutput(String timeReportOutput) { this.timeReportOutput = timeReportOutput; }
+        
+        public boolean isDebugAst() { return debugAst; }
+        public void setDebugAst(boolean debugAst) { this.debugAst = debugAst; }
+        
+        public boolean isDebugSymtable() { return debugSymtable; }
+        public void setDebugSymtable(boolean debugSymtable) { this.debugSymtable = debugSymtable; }
+        
+        public boolean isDebugIr() { return debugIr; }
+        public void setDebugIr(boolean debugIr) { this.debugIr = debugIr; }
+        
+        public boolean isDebugCodegen() { return debugCodegen; }
+        public void setDebugCodegen(boolean debugCodegen) { this.debugCodegen = debugCodegen; }
+        
+        public boolean isFastLexer() { return fastLexer; }
+        public void setFastLexer(boolean fastLexer) { this.fastLexer = fastLexer; }
+        
+        public boolean isDirectAst() { return directAst; }
+        public void setDirectAst(boolean directAst) { this.directAst = directAst; }
+        
+        // --cache-dir=<目录> 时的编译缓存目录
+        public String getCacheDir() { return cacheDir; }
+        public void setCacheDir(String cacheDir) { this.cacheDir = cacheDir; }
+        
+        public long getCacheMaxBytes() { return cacheMaxBytes; }
+        public void setCacheMaxBytes(long cacheMaxBytes) { this.cacheMaxBytes = cacheMaxBytes; }
+        
+        // 调试和计时输出是编译过程的副产品，开启时不使用缓存
+        public boolean isCacheable() {
+            return cacheDir != null && !debugAst && !debugSymtable && !debugIr && !debugCodegen
+                && !timePasses && !timeReport;
+        }
+        
+        // 影响生成代码的选项；线程数和列式存储只改变编译方式，输出相同
+        public String getCacheFingerprint() {
+            return optimizationLevel + " " + targetArchitecture;
+        }
+        
+        // 条件常量传播属于 -O3
+        public boolean isSccp() { return optimizationLevel.usesConditionalConstantPropagation(); }
+        public void setSccp(boolean sccp) {
+            if (sccp) {
+                optimizationLevel = OptimizationLevel.O3;
+            } else if (optimizationLevel == OptimizationLevel.O3) {
+                optimizationLevel = OptimizationLevel.O2;
+            }
+        }
     }
     
     /**
-     * 编译器错误监听器
+     * 编译器错误监听器（收集全部词法和语法错误，解析结束后统一报告）
      */
     private static class CompilerErrorListener extends BaseErrorListener {
+        private final List<String> diagnostics = new ArrayList<>();
+        
         @Override
         public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol,
                               int line, int charPositionInLine, String msg, RecognitionException e) {
-            System.err.println("语法错误 [" + line + ":" + charPositionInLine + "] " + msg);
-            System.exit(1);
+            String diagnostic = "语法错误 [" + line + ":" + charPositionInLine + "] " + msg;
+            System.err.println(diagnostic);
+            diagnostics.add(diagnostic);
         }
     }
     
+    /**
+     * 打印命令行用法
+     */
+    private static void printUsage() {
+        System.out.println("用法: java GeminiCompiler <输入文件> [输出文件] [选项]");
+        System.out.println("      java GeminiCompiler --daemon[=<端口>] [--daemon-workers=<n>] [--daemon-token-file=<文件>] [--daemon-root=<目录>] [选项]");
+        System.out.println("      java GeminiCompiler --batch [--jobs=<n>] [--output-dir=<目录>] [--manifest=<文件>] [--batch-report=<文件>] [输入文件...] [选项]");
+        System.out.println("选项:");
+        System.out.println("  --debug-ast      显示抽象语法树");
+        System.out.println("  --debug-symtable 显示符号表");
+        System.out.println("  --debug-ir       显示中间代码");
+        System.out.println("  --debug-codegen  显示目标代码生成过程");
+        System.out.println("  -O0|-O1|-O2|-O3  优化级别 (默认 -O0)");
+        System.out.println("  --optimize       启用优化，等价于 -O2");
+        System.out.println("  --sccp           使用条件常量传播 (跨基本块传播并删除恒定分支)，等价于 -O3");
+        System.out.println("  --codegen-workers=<n>  并行生成 LLVM IR 的线程数 (默认 1，0 表示全部处理器)");
+        System.out.println("  --optimizer-workers=<n> 按函数并行优化的线程数 (默认 1，0 表示全部处理器)");
+        System.out.println("  --parser-workers=<n> 按顶层声明并行解析的线程数 (默认 1，0 表示全部处理器)");
+        System.out.println("  --columnar-ir    使用列式存储中间代码 (降低大程序的内存占用)");
+        System.out.println("  --fast-lexer     使用手写的表驱动词法分析器 (与 ANTLR 生成的词法分析器结果相同)");
+        System.out.println("  --direct-ast     解析时直接构建抽象语法树，不生成 ANTLR 解析树");
+        System.out.println("  --watch          监视源文件，每次修改后只重新解析修改涉及的顶层声明并重新编译");
+        System.out.println("  --time-passes[=<文件>] 输出各优化 Pass 的耗时、分配字节数和指令数 (指定文件时另存 JSON)");
+        System.out.println("  --time-report[=<文件>] 输出各编译阶段的耗时、堆变化和产出对象数 (指定文件时另存 JSON)");
+        System.out.println("  --cache-dir=<目录> 使用磁盘编译缓存，源文件和选项不变时直接复用上次的结果");
+        System.out.println("  --cache-size=<MB> 编译缓存的大小上限 (默认 256)，超出时淘汰最久未使用的条目");
+        System.out.println("  --daemon[=<端口>] 作为常驻编译服务运行，监听 127.0.0.1 (默认端口 " + CompileServer.DEFAULT_PORT + ")");
+        System.out.println("  --daemon-workers=<n> 编译服务同时处理的请求数 (默认 4)");
+        System.out.println("  --daemon-token-file=<文件> 编译服务写入认证令牌的文件 (默认 ~/.gemini-c/daemon-<端口>.token)");
+        System.out.println("  --daemon-root=<目录> 编译服务只读写此目录中的文件");
+        System.out.println("  --batch          并发编译多个文件，输出文件为同名 .ll，最后输出汇总报告");
+        System.out.println("  --jobs=<n>       批量编译同时编译的文件数 (默认全部处理器)");
+        System.out.println("  --output-dir=<目录> 批量编译的输出目录 (默认与输入文件同目录)");
+        System.out.println("  --manifest=<文件> 从清单读取输入文件，每行一个，可用制表符隔开指定输出文件");
+        System.out.println("  --batch-report=<文件> 另存 JSON 格式的批量编译汇总报告");
+    }
+    
+    /**
+     * 解析从 start 开始的编译选项，未识别的选项被忽略；多个级别选项以最后一个为准
+     * @throws IllegalArgumentException 选项取值非法
+     */
+    public static CompilerConfig parseOptions(String[] args, int start) {
+        CompilerConfig config = new CompilerConfig();
+        for (int i = start; i < args.length; i++) {
+            switch (args[i]) {
+                case "--debug-ast": config.setDebugAst(true); break;
+                case "--debug-symtable": config.setDebugSymtable(true); break;
+                case "--debug-ir": config.setDebugIr(true); break;
+                case "--debug-codegen": config.setDebugCodegen(true); break;
+                case "--optimize": config.setOptimizationLevel(OptimizationLevel.O2); break;
+                case "--columnar-ir": config.setColumnarIr(true); break;
+                case "--fast-lexer": config.setFastLexer(true); break;
+                case "--direct-ast": config.setDirectAst(true); break;
+                case "--sccp": config.setOptimizationLevel(OptimizationLevel.O3); break;
+                case "--time-passes": config.setTimePasses(true); break;
+                case "--time-report": config.setTimeReport(true); break;
+                default:
+                    if (args[i].startsWith("-O")) {
+                        config.setOptimizationLevel(OptimizationLevel.parse(args[i]));
+                    } else if (args[i].startsWith("--time-passes=")) {
+                        config.setTimePasses(true);
+                        config.setTimePassesOutput(args[i].substring("--time-passes=".length()));
+                    } else if (args[i].startsWith("--time-report=")) {
+                        config.setTimeReport(true);
+                        config.setTimeReportOutput(args[i].substring("--time-report=".length()));
+                    } else if (args[i].startsWith("--codegen-workers=")) {
+                        config.setCodegenWorkers(Integer.parseInt(args[i].substring("--codegen-workers=".length())));
+                    } else if (args[i].startsWith("--optimizer-workers=")) {
+                        config.setOptimizerWorkers(Integer.parseInt(args[i].substring("--optimizer-workers=".length())));
+                    } else if (args[i].startsWith("--parser-workers=")) {
+                        config.setParserWorkers(Integer.parseInt(args[i].substring("--parser-workers=".length())));
+                    } else if (args[i].startsWith("--cache-dir=")) {
+                        config.setCacheDir(args[i].substring("--cache-dir=".length()));
+                    } else if (args[i].startsWith("--cache-size=")) {
+                        config.setCacheMaxBytes(Long.parseLong(args[i].substring("--cache-size=".length())) << 20);
+                    }
+                    break;
+            }
+        }
+        return config;
+    }
+    
     /**
      * 主程序入口
      */
     public static void main(String[] args) {
         if (args.length < 1) {
-            System.out.println("用法: java GeminiCompiler <输入文件> [输出文件] [选项]");
-            System.out.println("选项:");
-            System.out.println("  --debug-ast      显示抽象语法树");
-            System.out.println("  --debug-symtable 显示符号表");
-            System.out.println("  --debug-ir       显示中间代码");
-            System.out.println("  --debug-codegen  显示目标代码生成过程");
-            System.out.println("  --optimize       启用优化");
+            printUsage();
             System.exit(1);
         }
         
+        if (args[0].equals("--daemon") || args[0].startsWith("--daemon=")) {
+            runDaemon(args);
+            return;
+        }
+        if (args[0].equals("--batch")) {
+            runBatch(args);
+            return;
+        }
+        
         String inputFile = args[0];
         String outputFile = args.length > 1 ? args[1] : "output.ll";
         
-        // 解析命令行选项
-        boolean debugAst = false, debugSymtable = false, debugIr = false, debugCodegen = false;
-        boolean optimize = false;
-        
-        for (int i = 2; i < args.length; i++) {
-            switch (args[i]) {
-                case "--debug-ast": debugAst = true; break;
-                case "--debug-symtable": debugSymtable = true; break;
-                case "--debug-ir": debugIr = true; break;
-                case "--debug-codegen": debugCodegen = true; break;
-                case "--optimize": optimize = true; break;
-            }
-        }
-        
         try {
-            GeminiCompiler compiler = new GeminiCompiler();
-            compiler.setDebugFlags(debugAst, debugSymtable, debugIr, debugCodegen);
-            
-            CompilerConfig config = new CompilerConfig();
-            config.setOptimize(optimize);
-            compiler.config = config;
-            
-            compiler.compile(inputFile, outputFile);
+            GeminiCompiler compiler = new GeminiCompiler(parseOptions(args, 2));
+            if (Arrays.asList(args).contains("--watch")) {
+                compiler.watch(inputFile, outputFile);
+            } else {
+                compiler.compile(inputFile, outputFile);
+            }
             
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (CompilationException e) {
+            // 各条诊断已在对应阶段输出
+            System.err.println(e.getMessage());
+            System.exit(1);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
         } catch (IOException e) {
             System.err.println("文件操作错误: " + e.getMessage());
             System.exit(1);
@@ -210,4 +760,106 @@ public class GeminiCompiler {
             System.exit(1);
         }
     }
+    
+    /**
+     * 以常驻服务方式运行，直到收到 shutdown 请求
+     */
+    private static void runDaemon(String[] args) {
+        int port = CompileServer.DEFAULT_PORT;
+        int workers = 4;
+        String tokenFile = null;
+        String root = null;
+        try {
+            if (args[0].startsWith("--daemon=")) {
+                port = Integer.parseInt(args[0].substring("--daemon=".length()));
+            }
+            for (int i = 1; i < args.length; i++) {
+                if (args[i].startsWith("--daemon-workers=")) {
+                    workers = Integer.parseInt(args[i].substring("--daemon-workers=".length()));
+                } else if (args[i].startsWith("--daemon-token-file=")) {
+                    tokenFile = args[i].substring("--daemon-token-file=".length());
+                } else if (args[i].startsWith("--daemon-root=")) {
+                    root = args[i].substring("--daemon-root=".length());
+                }
+            }
+            CompileServer server = new CompileServer(port, workers, Arrays.copyOfRange(args, 1, args.length));
+            if (tokenFile != null) {
+                server.setTokenFile(Paths.get(tokenFile));
+            }
+            if (root != null) {
+                server.setRoot(Paths.get(root));
+            }
+            server.start();
+            System.out.println("编译服务已启动: 127.0.0.1:" + server.getPort());
+            System.out.println("认证令牌: " + server.getTokenFile());
+            server.awaitShutdown();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("编译服务启动失败: " + e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * 批量编译：不以 - 开头的参数是输入文件，其余为批量选项和编译选项；任一文件失败时退出码为 1
+     */
+    private static void runBatch(String[] args) {
+        int jobs = 0;
+        String outputDir = null;
+        String manifest = null;
+        String reportFile = null;
+        List<String> inputs = new ArrayList<>();
+        try {
+            for (int i = 1; i < args.length; i++) {
+                if (args[i].startsWith("--jobs=")) {
+                    jobs = Integer.parseInt(args[i].substring("--jobs=".length()));
+                } else if (args[i].startsWith("--output-dir=")) {
+                    outputDir = args[i].substring("--output-dir=".length());
+                } else if (args[i].startsWith("--manifest=")) {
+                    manifest = args[i].substring("--manifest=".length());
+                } else if (args[i].startsWith("--batch-report=")) {
+                    reportFile = args[i].substring("--batch-report=".length());
+                } else if (!args[i].startsWith("-")) {
+                    inputs.add(args[i]);
+                }
+            }
+            CompilerConfig config = parseOptions(args, 1);
+            
+            List<BatchCompiler.Job> batch = new ArrayList<>();
+            if (manifest != null) {
+                batch.addAll(BatchCompiler.readManifest(Paths.get(manifest), outputDir));
+            }
+            for (String input : inputs) {
+                batch.add(new BatchCompiler.Job(input, BatchCompiler.defaultOutput(input, outputDir)));
+            }
+            if (batch.isEmpty()) {
+                throw new IllegalArgumentException("批量编译没有输入文件");
+            }
+            if (outputDir != null) {
+                Files.createDirectories(Paths.get(outputDir));
+            }
+            
+            long start = System.nanoTime();
+            List<CompilationResult> results = new BatchCompiler(config, jobs).compile(batch);
+            long wallNanos = System.nanoTime() - start;
+            
+            System.out.print(BatchCompiler.report(results, wallNanos));
+            if (reportFile != null) {
+                Files.writeString(Paths.get(reportFile), BatchCompiler.toJson(results, wallNanos));
+            }
+            if (results.stream().anyMatch(result -> !result.isSuccess())) {
+                System.exit(1);
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("文件操作错误: " + e.getMessage());
+            System.exit(1);
+        }
+    }
 }
@@ -0,0 +1,163 @@
+package com.gemini.compiler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * 编译阶段计时器（--time-report，相当于 -ftime-report）。
+ *
+ * 记录每个阶段的纳秒耗时、堆占用变化，以及该阶段产出的对象数
+ * （词法单元、AST 节点、符号、TAC 指令、LLVM IR 行数），可输出为表格或 JSON。
+ * 未启用时 begin/end 只是空操作，计数也不会被计算。
+ */
+public final class PhaseProfiler {
+
+    private final boolean enabled;
+    private final List<Phase> phases = new ArrayList<>();
+
+    public PhaseProfiler(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 开始一个阶段
+     */
+    public Phase begin(String name) {
+        Phase phase = new Phase(name);
+        if (enabled) {
+            phase.heapBefore = usedHeap();
+            phase.start = System.nanoTime();
+        }
+        return phase;
+    }
+
+    /**
+     * 结束阶段，不记录计数
+     */
+    public void end(Phase phase) {
+        end(phase, null, null);
+    }
+
+    /**
+     * 结束阶段并记录一项计数（计数在阶段计时结束之后才求值，不计入阶段耗时）
+     */
+    public void end(Phase phase, String countName, LongSupplier count) {
+        if (!enabled) {
+            return;
+        }
+        phase.nanos = System.nanoTime() - phase.start;
+        phase.heapDelta = usedHeap() - phase.heapBefore;
+        if (countName != null) {
+            phase.counts.put(countName, count.getAsLong());
+        }
+        phases.add(phase);
+    }
+
+    public List<Phase> getPhases() {
+        return Collections.unmodifiableList(phases);
+    }
+
+    public long getTotalNanos() {
+        long total = 0;
+        for (Phase phase : phases) {
+            total += phase.nanos;
+        }
+        return total;
+    }
+
+    /**
+     * 文本表格形式
+     */
+    public String toTable() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("=== 编译阶段耗时 ===\n");
+        sb.append(String.format("%-12s %12s %7s %14s  %s%n", "phase", "time(ms)", "%", "heap-delta(KB)", "counts"));
+        long total = getTotalNanos();
+        for (Phase phase : phases) {
+            sb.append(String.format("%-12s %12.3f %6.1f%% %14d  %s%n",
+                phase.name,
+                phase.nanos / 1_000_000.0,
+                total > 0 ? phase.nanos * 100.0 / total : 0.0,
+                phase.heapDelta / 1024,
+                formatCounts(phase.counts)));
+        }
+        sb.append(String.format("%-12s %12.3f%n", "total", total / 1_000_000.0));
+        return sb.toString();
+    }
+
+    private static String formatCounts(Map<String, Long> counts) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Long> entry : counts.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * JSON 形式，便于跨构建追踪编译耗时回归
+     */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n  \"phases\": [");
+        for (int i = 0; i < phases.size(); i++) {
+            Phase phase = phases.get(i);
+            sb.append(i == 0 ? "\n    " : ",\n    ");
+            sb.append("{\"name\": \"").append(phase.name).append('"')
+                .append(", \"nanos\": ").append(phase.nanos)
+                .append(", \"heapDeltaBytes\": ").append(phase.heapDelta)
+                .append(", \"counts\": {");
+            boolean first = true;
+            for (Map.Entry<String, Long> entry : phase.counts.entrySet()) {
+                if (!first) {
+                    sb.append(", ");
+                }
+                sb.append('"').append(entry.getKey()).append("\": ").append(entry.getValue());
+                first = false;
+            }
+            sb.append("}}");
+        }
+        sb.append(phases.isEmpty() ? "],\n" : "\n  ],\n");
+        sb.append("  \"totalNanos\": ").append(getTotalNanos()).append("\n}\n");
+        return sb.toString();
+    }
+
+    /**
+     * 当前堆占用（GC 可能发生在阶段中间，因此差值可能为负）
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * 单个阶段的测量结果
+     */
+    public static final class Phase {
+        private final String name;
+        private final Map<String, Long> counts = new LinkedHashMap<>();
+        private long start;
+        private long heapBefore;
+        private long nanos;
+        private long heapDelta;
+
+        private Phase(String name) {
+            this.name = name;
+        }
+
+        public String getName() { return name; }
+        public long getNanos() { return nanos; }
+        public long getHeapDelta() { return heapDelta; }
+        public Map<String, Long> getCounts() { return Collections.unmodifiableMap(counts); }
+    }
+}
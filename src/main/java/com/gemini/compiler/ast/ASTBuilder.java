@@ -55,7 +55,7 @@ public class ASTBuilder extends GeminiCBaseVisitor<ASTNode> {
                 GeminiCParser.ParameterContext paramCtx = ctx.parameterList().parameter(i);
                 TypeNode paramType = (TypeNode) visit(paramCtx.type());
                 String paramName = paramCtx.ID().getText();
-                parameters[i] = new ParameterNode(paramType, paramName, 
+                parameters[i] = new ParameterNode(paramType, paramName, paramCtx.LBRACKET().size(),
                     paramCtx.start.getLine(), paramCtx.start.getCharPositionInLine());
             }
         }
@@ -83,22 +83,35 @@ public class ASTBuilder extends GeminiCBaseVisitor<ASTNode> {
     public ASTNode visitVariableDeclarator(GeminiCParser.VariableDeclaratorContext ctx) {
         String variableName = ctx.ID().getText();
         
-        // 处理数组维度
-        int[] arrayDimensions = new int[ctx.LBRACKET().size()];
-        for (int i = 0; i < ctx.LBRACKET().size(); i++) {
-            if (ctx.expression(i) != null) {
-                // 这里简化处理，假设数组维度是常量
-                arrayDimensions[i] = 0; // 占位符，实际应该计算表达式值
+        // 处理数组维度：前 LBRACKET 个表达式是维度，只支持常量维度，其余记为 0
+        int dimensionCount = ctx.LBRACKET().size();
+        int[] arrayDimensions = new int[dimensionCount];
+        for (int i = 0; i < dimensionCount; i++) {
+            ASTNode dimension = visit(ctx.expression(i));
+            if (dimension instanceof IntLiteralNode) {
+                arrayDimensions[i] = ((IntLiteralNode) dimension).getValue();
             }
         }
         
+        // 维度之后的表达式（如果有）才是初始化表达式
         ExpressionNode initializer = null;
-        if (ctx.expression(ctx.expression().size() - 1) != null) {
-            initializer = (ExpressionNode) visit(ctx.expression(ctx.expression().size() - 1));
+        if (ctx.expression().size() > dimensionCount) {
+            initializer = (ExpressionNode) visit(ctx.expression(dimensionCount));
         }
         
-        return new VariableDeclaratorNode(variableName, arrayDimensions, initializer,
+        VariableDeclaratorNode declarator = new VariableDeclaratorNode(variableName, arrayDimensions, initializer,
             ctx.start.getLine(), ctx.start.getCharPositionInLine());
+        
+        if (ctx.arrayInitializer() != null) {
+            GeminiCParser.ArrayInitializerContext initCtx = ctx.arrayInitializer();
+            ExpressionNode[] elements = new ExpressionNode[initCtx.expression().size()];
+            for (int i = 0; i < elements.length; i++) {
+                elements[i] = (ExpressionNode) visit(initCtx.expression(i));
+            }
+            declarator.setArrayInitializers(elements);
+        }
+        
+        return declarator;
     }
     
     @Override
@@ -144,7 +157,20 @@ public class ASTBuilder extends GeminiCBaseVisitor<ASTNode> {
     public ASTNode visitForStatement(GeminiCParser.ForStatementContext ctx) {
         StatementNode initialization = null;
         if (ctx.forInit() != null) {
-            initialization = (StatementNode) visit(ctx.forInit());
+            GeminiCParser.ForInitContext initCtx = ctx.forInit();
+            if (initCtx.type() != null) {
+                // int i = 0, j = 1：与普通变量声明相同，只是没有分号
+                TypeNode type = (TypeNode) visit(initCtx.type());
+                VariableDeclaratorNode[] declarators = new VariableDeclaratorNode[initCtx.variableDeclarator().size()];
+                for (int i = 0; i < declarators.length; i++) {
+                    declarators[i] = (VariableDeclaratorNode) visit(initCtx.variableDeclarator(i));
+                }
+                initialization = new VariableDeclarationNode(type, declarators,
+                    initCtx.start.getLine(), initCtx.start.getCharPositionInLine());
+            } else {
+                initialization = new ExpressionStatementNode((ExpressionNode) visit(initCtx.expression()),
+                    initCtx.start.getLine(), initCtx.start.getCharPositionInLine());
+            }
         }
         
         ExpressionNode condition = null;
@@ -154,7 +180,7 @@ public class ASTBuilder extends GeminiCBaseVisitor<ASTNode> {
         
         ExpressionNode update = null;
         if (ctx.forUpdate() != null) {
-            update = (ExpressionNode) visit(ctx.forUpdate());
+            update = (ExpressionNode) visit(ctx.forUpdate().expression());
         }
         
         StatementNode body = (StatementNode) visit(ctx.statement());
@@ -248,25 +274,9 @@ public class ASTBuilder extends GeminiCBaseVisitor<ASTNode> {
         if (ctx.QUESTION() != null) {
             ExpressionNode condition = (ExpressionNode) visit(ctx.logicalOrExpression());
             
-            // Access the true and false expressions in the conditional expression
-            // Since ctx.expression(int) doesn't exist, try to access them through child nodes
-            ExpressionNode trueExpression = null;
-            ExpressionNode falseExpression = null;
-            
-            // Look for the two expressions after the condition and question mark
-            int exprCount = 0;
-            for (int i = 0; i < ctx.getChildCount(); i++) {
-                if (ctx.getChild(i) instanceof GeminiCParser.ExpressionContext) {
-                    if (exprCount == 0) {
-                        // This should be the true expression (after condition ?)
-                        trueExpression = (ExpressionNode) visit(ctx.getChild(i));
-                    } else if (exprCount == 1) {
-                        // This should be the false expression (after : )
-                        falseExpression = (ExpressionNode) visit(ctx.getChild(i));
-                    }
-                    exprCount++;
-                }
-            }
+            // 文法：logicalOrExpression ? expression : conditionalExpression
+            ExpressionNode trueExpression = (ExpressionNode) visit(ctx.expression());
+            ExpressionNode falseExpression = (ExpressionNode) visit(ctx.conditionalExpression());
             
             return new ConditionalExpressionNode(condition, trueExpression, falseExpression,
                 ctx.start.getLine(), ctx.start.getCharPositionInLine());
@@ -362,6 +372,17 @@ public class ASTBuilder extends GeminiCBaseVisitor<ASTNode> {
         }
     }
     
+    @Override
+    public ASTNode visitCastExpression(GeminiCParser.CastExpressionContext ctx) {
+        if (ctx.type() != null) {
+            TypeNode targetType = (TypeNode) visit(ctx.type());
+            ExpressionNode expression = (ExpressionNode) visit(ctx.castExpression());
+            return new CastExpressionNode(targetType, expression, ctx.start.getLine(), ctx.start.getCharPositionInLine());
+        } else {
+            return visit(ctx.unaryExpression());
+        }
+    }
+    
     @Override
     public ASTNode visitUnaryExpression(GeminiCParser.UnaryExpressionContext ctx) {
         if (ctx.unaryOperator() != null) {
@@ -391,6 +412,24 @@ public class ASTBuilder extends GeminiCBaseVisitor<ASTNode> {
             
             PostfixOperator operator = ctx.INCREMENT() != null ? PostfixOperator.INCREMENT : PostfixOperator.DECREMENT;
             return new PostfixExpressionNode(operand, operator, ctx.start.getLine(), ctx.start.getCharPositionInLine());
+        } else if (ctx.LBRACKET() != null) {
+            ExpressionNode array = (ExpressionNode) visit(ctx.postfixExpression());
+            ExpressionNode index = (ExpressionNode) visit(ctx.expression());
+            return new ArrayAccessNode(array, new ExpressionNode[]{index}, ctx.start.getLine(), ctx.start.getCharPositionInLine());
+        } else if (ctx.DOT() != null) {
+            ExpressionNode object = (ExpressionNode) visit(ctx.postfixExpression());
+            return new MemberAccessNode(object, ctx.ID().getText(), ctx.start.getLine(), ctx.start.getCharPositionInLine());
+        } else if (ctx.LPAREN() != null) {
+            // 只支持直接按名字调用：f(a, b)
+            String functionName = ctx.postfixExpression().getText();
+            ExpressionNode[] arguments = new ExpressionNode[0];
+            if (ctx.argumentList() != null) {
+                arguments = new ExpressionNode[ctx.argumentList().expression().size()];
+                for (int i = 0; i < arguments.length; i++) {
+                    arguments[i] = (ExpressionNode) visit(ctx.argumentList().expression(i));
+                }
+            }
+            return new FunctionCallNode(functionName, arguments, ctx.start.getLine(), ctx.start.getCharPositionInLine());
         } else {
             return visit(ctx.primaryExpression());
         }
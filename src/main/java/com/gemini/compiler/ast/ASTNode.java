@@ -1,5 +1,8 @@
 package com.gemini.compiler.ast;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+
 /**
  * 抽象语法树 (AST) 节点基类
  * 
@@ -30,4 +33,22 @@ public abstract class ASTNode {
     
     // 抽象方法：获取子节点
     public abstract ASTNode[] getChildren();
+    
+    /**
+     * 把本节点及全部子节点的行号加上 delta：增量解析复用的声明在源文件中整体上移或下移时使用
+     * （显式栈，避免深层嵌套表达式导致栈溢出）
+     */
+    public void shiftLines(int delta) {
+        Deque<ASTNode> stack = new ArrayDeque<>();
+        stack.push(this);
+        while (!stack.isEmpty()) {
+            ASTNode node = stack.pop();
+            node.line += delta;
+            for (ASTNode child : node.getChildren()) {
+                if (child != null) {
+                    stack.push(child);
+                }
+            }
+        }
+    }
 }
@@ -30,6 +30,15 @@ public class VariableDeclaratorNode extends ASTNode {
     
     @Override
     public ASTNode[] getChildren() {
-        return initializer != null ? new ASTNode[]{initializer} : new ASTNode[0];
+        // 数组初始化列表中的元素也是子节点，按行号平移等遍历整棵树的操作需要访问到它们
+        int count = arrayInitializers != null ? arrayInitializers.length : 0;
+        ASTNode[] children = new ASTNode[(initializer != null ? 1 : 0) + count];
+        if (initializer != null) {
+            children[0] = initializer;
+        }
+        if (count > 0) {
+            System.arraycopy(arrayInitializers, 0, children, children.length - count, count);
+        }
+        return children;
     }
 }
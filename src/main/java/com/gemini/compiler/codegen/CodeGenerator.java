@@ -2,12 +2,21 @@ package com.gemini.compiler.codegen;
 
 import com.gemini.compiler.ir.*;
 import com.gemini.compiler.semantic.*;
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * LLVM IR 代码生成器
  * 
  * 将三地址代码 (TAC) 转换为 LLVM IR 代码
+ * 
+ * 支持流式输出：每生成完一个函数就把缓冲区交给输出目标并清空，
+ * 内存占用只与最大的函数相关，而不是整个模块。
  */
 public class CodeGenerator {
     
@@ -17,6 +26,17 @@ public class CodeGenerator {
     private Map<String, String> functionMap;
     private int registerCounter;
     private int labelCounter;
+    private int workerCount;
+    
+    // 并行生成时每个工作线程一次处理的片段数
+    private static final int SEGMENTS_PER_WORKER = 8;
+    
+    // 流式输出目标（为 null 时全部保留在 llvmCode 中）
+    private Appendable sink;
+    
+    // 并行工作者的上下文：发射计划及所负责的片段
+    private EmissionPlan plan;
+    private int segmentIndex;
     
     public CodeGenerator() {
         this.debugMode = false;
@@ -25,33 +45,90 @@ public class CodeGenerator {
         this.functionMap = new HashMap<>();
         this.registerCounter = 0;
         this.labelCounter = 0;
+        this.workerCount = 1;
+    }
+    
+    /**
+     * 并行工作者：拥有私有的寄存器计数器、变量映射和输出缓冲
+     */
+    private CodeGenerator(EmissionPlan plan, int segmentIndex) {
+        this();
+        this.plan = plan;
+        this.segmentIndex = segmentIndex;
+        this.registerCounter = plan.getSegments().get(segmentIndex).registerBase;
     }
     
     /**
      * 生成 LLVM IR 代码
      */
     public String generate(IRProgram irProgram) {
+        StringBuilder out = new StringBuilder();
+        try {
+            generate(irProgram, out);
+        } catch (IOException e) {
+            // StringBuilder 不会抛出 IOException
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+    
+    /**
+     * 以 UTF-8 编码把 LLVM IR 代码流式写入字节通道（不关闭通道）
+     */
+    public void generate(IRProgram irProgram, WritableByteChannel channel) throws IOException {
+        Writer writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1));
+        generate(irProgram, writer);
+        writer.flush();
+    }
+    
+    /**
+     * 生成 LLVM IR 代码并流式写入输出目标，每完成一个函数刷出一次
+     */
+    public void generate(IRProgram irProgram, Appendable out) throws IOException {
         System.out.println("\n--- 阶段四：目标代码生成 (LLVM IR) ---");
+        this.sink = out;
+        
+        if (debugMode) {
+            System.out.println("=== 生成的 LLVM IR 代码 ===");
+        }
         
         // 生成 LLVM IR 头部
-        generateHeader();
+        generateHeader(irProgram);
         
         // 生成全局变量声明
         generateGlobalDeclarations();
+        flushToSink();
         
-        // 生成函数代码
-        generateFunctions(irProgram);
-        
-        // 生成主函数
-        generateMainFunction(irProgram);
+        // 一次扫描建立函数索引，供后续各阶段共用
+        FunctionIndex functionIndex = irProgram.buildFunctionIndex();
         
-        if (debugMode) {
-            System.out.println("=== 生成的 LLVM IR 代码 ===");
-            System.out.println(llvmCode.toString());
+        if (workerCount > 1 && functionIndex.getFunctionCount() > 0) {
+            // 按函数并行生成，再按源顺序拼接
+            generateParallel(irProgram, functionIndex);
+        } else {
+            // 生成函数代码
+            generateFunctions(irProgram, functionIndex);
+            
+            // 生成主函数
+            generateMainFunction(irProgram, functionIndex);
         }
+        flushToSink();
         
         System.out.println("LLVM IR 代码生成完成");
-        return llvmCode.toString();
+    }
+    
+    /**
+     * 把已生成的代码交给输出目标并清空缓冲区
+     */
+    private void flushToSink() throws IOException {
+        if (sink == null || llvmCode.length() == 0) {
+            return;
+        }
+        if (debugMode) {
+            System.out.print(llvmCode);
+        }
+        sink.append(llvmCode);
+        llvmCode.setLength(0);
     }
     
     /**
@@ -62,12 +139,19 @@ public class CodeGenerator {
     }
     
     /**
-     * 生成 LLVM IR 头部
+     * 设置并行生成的工作线程数（1 表示串行，0 或负数表示使用全部处理器）
+     */
+    public void setWorkerCount(int workerCount) {
+        this.workerCount = workerCount > 0 ? workerCount : Runtime.getRuntime().availableProcessors();
+    }
+    
+    /**
+     * 生成 LLVM IR 头部（优化级别取自优化器实际运行的级别）
      */
-    private void generateHeader() {
+    private void generateHeader(IRProgram irProgram) {
         llvmCode.append("; Gemini-C 编译器生成的 LLVM IR 代码\n");
         llvmCode.append("; 目标架构: x86-64\n");
-        llvmCode.append("; 优化级别: -O2\n\n");
+        llvmCode.append("; 优化级别: ").append(irProgram.getOptimizationLevel()).append("\n\n");
         
         // 添加必要的声明
         llvmCode.append("declare i32 @printf(i8*, ...)\n");
@@ -89,83 +173,222 @@ public class CodeGenerator {
     /**
      * 生成函数代码
      */
-    private void generateFunctions(IRProgram irProgram) {
+    private void generateFunctions(IRProgram irProgram, FunctionIndex functionIndex) throws IOException {
         llvmCode.append("; 函数定义\n");
         
-        // 遍历中间代码，生成函数
-        for (TACInstruction instruction : irProgram.getInstructions()) {
-            if (instruction.getOpcode() == TACOpcode.LABEL && 
-                instruction.getResult().startsWith("func_")) {
-                generateFunction(instruction.getResult(), irProgram);
-            }
+        // 按函数索引逐个生成，每个函数只访问自己的指令区间
+        List<TACInstruction> instructions = irProgram.getInstructions();
+        for (FunctionIndex.FunctionRange function : functionIndex.getFunctions()) {
+            generateFunction(function, instructions);
+            flushToSink();
         }
     }
     
     /**
      * 生成单个函数
      */
-    private void generateFunction(String functionLabel, IRProgram irProgram) {
-        String functionName = functionLabel.substring(5); // 移除 "func_" 前缀
-        
+    private void generateFunction(FunctionIndex.FunctionRange function, List<TACInstruction> instructions) {
         // 生成函数声明
-        llvmCode.append("define i32 @").append(functionName).append("() {\n");
-        llvmCode.append("entry:\n");
+        appendFunctionStart(llvmCode, function.getFunctionName());
         
         // 生成函数体
-        generateFunctionBody(functionLabel, irProgram);
+        generateFunctionBody(function, instructions);
         
-        llvmCode.append("}\n\n");
+        appendFunctionEnd(llvmCode);
+    }
+    
+    private static void appendFunctionStart(StringBuilder out, String functionName) {
+        out.append("define i32 @").append(functionName).append("() {\n");
+        out.append("entry:\n");
+    }
+    
+    private static void appendFunctionEnd(StringBuilder out) {
+        out.append("}\n\n");
     }
     
     /**
      * 生成函数体
      */
-    private void generateFunctionBody(String functionLabel, IRProgram irProgram) {
-        boolean inFunction = false;
-        
-        for (TACInstruction instruction : irProgram.getInstructions()) {
-            if (instruction.getOpcode() == TACOpcode.LABEL && 
-                instruction.getResult().equals(functionLabel)) {
-                inFunction = true;
-                continue;
-            }
-            
-            if (inFunction) {
-                if (instruction.getOpcode() == TACOpcode.LABEL && 
-                    instruction.getResult().startsWith("func_")) {
-                    break; // 遇到下一个函数
-                }
-                
-                generateInstruction(instruction);
-            }
+    private void generateFunctionBody(FunctionIndex.FunctionRange function, List<TACInstruction> instructions) {
+        for (int i = function.getBodyStart(); i < function.getEnd(); i++) {
+            generateInstruction(instructions.get(i));
         }
     }
     
     /**
      * 生成主函数
      */
-    private void generateMainFunction(IRProgram irProgram) {
-        llvmCode.append("define i32 @main() {\n");
-        llvmCode.append("entry:\n");
+    private void generateMainFunction(IRProgram irProgram, FunctionIndex functionIndex) throws IOException {
+        appendMainStart(llvmCode);
         
         // 生成主函数体
-        generateMainFunctionBody(irProgram);
+        generateMainFunctionBody(irProgram, functionIndex);
         
-        llvmCode.append("  ret i32 0\n");
-        llvmCode.append("}\n");
+        appendMainEnd(llvmCode);
+    }
+    
+    private static void appendMainStart(StringBuilder out) {
+        out.append("define i32 @main() {\n");
+        out.append("entry:\n");
+    }
+    
+    private static void appendMainEnd(StringBuilder out) {
+        out.append("  ret i32 0\n");
+        out.append("}\n");
     }
     
     /**
      * 生成主函数体
      */
-    private void generateMainFunctionBody(IRProgram irProgram) {
-        for (TACInstruction instruction : irProgram.getInstructions()) {
-            if (instruction.getOpcode() == TACOpcode.LABEL && 
-                instruction.getResult().startsWith("func_")) {
-                continue; // 跳过函数定义
+    private void generateMainFunctionBody(IRProgram irProgram, FunctionIndex functionIndex) throws IOException {
+        List<TACInstruction> instructions = irProgram.getInstructions();
+        
+        // 全局代码
+        for (int i = 0; i < functionIndex.getPrologueEnd(); i++) {
+            generateInstruction(instructions.get(i));
+        }
+        flushToSink();
+        
+        // 各函数体（跳过函数标签）
+        for (FunctionIndex.FunctionRange function : functionIndex.getFunctions()) {
+            generateFunctionBody(function, instructions);
+            flushToSink();
+        }
+    }
+    
+    /**
+     * 并行生成函数和主函数
+     * 
+     * 每个片段由独立的 CodeGenerator 工作者生成，起始寄存器编号和可见的变量映射
+     * 来自 EmissionPlan 的预扫描，因此拼接结果与串行路径逐字节一致。
+     */
+    private void generateParallel(IRProgram irProgram, FunctionIndex functionIndex) throws IOException {
+        EmissionPlan emissionPlan = EmissionPlan.build(irProgram, functionIndex);
+        List<EmissionPlan.Segment> segments = emissionPlan.getSegments();
+        
+        // 按窗口分批生成并立即刷出，内存只保留一个窗口的片段输出
+        int window = workerCount * SEGMENTS_PER_WORKER;
+        String[] outputs = new String[segments.size()];
+        
+        llvmCode.append("; 函数定义\n");
+        boolean mainStarted = false;
+        ForkJoinPool pool = new ForkJoinPool(workerCount);
+        try {
+            for (int from = 0; from < segments.size(); from += window) {
+                int to = Math.min(from + window, segments.size());
+                pool.invoke(new SegmentTask(emissionPlan, outputs, from, to));
+                
+                for (int k = from; k < to; k++) {
+                    EmissionPlan.Segment segment = segments.get(k);
+                    if (segment.kind == EmissionPlan.SegmentKind.FUNCTION) {
+                        appendFunctionStart(llvmCode, segment.function.getFunctionName());
+                        llvmCode.append(outputs[k]);
+                        appendFunctionEnd(llvmCode);
+                    } else {
+                        if (!mainStarted) {
+                            appendMainStart(llvmCode);
+                            mainStarted = true;
+                        }
+                        llvmCode.append(outputs[k]);
+                    }
+                    outputs[k] = null;
+                    flushToSink();
+                }
             }
-            
-            generateInstruction(instruction);
+        } finally {
+            pool.shutdown();
+        }
+        appendMainEnd(llvmCode);
+    }
+    
+    /**
+     * 生成单个片段的指令
+     */
+    private void generateSegment() {
+        EmissionPlan.Segment segment = plan.getSegments().get(segmentIndex);
+        List<TACInstruction> instructions = plan.getInstructions();
+        for (int i = segment.start; i < segment.end; i++) {
+            generateInstruction(instructions.get(i));
+        }
+    }
+    
+    /**
+     * Fork/Join 任务：二分片段区间，叶子节点生成单个片段
+     */
+    private static final class SegmentTask extends RecursiveAction {
+        private final EmissionPlan plan;
+        private final String[] outputs;
+        private final int from;
+        private final int to;
+        
+        SegmentTask(EmissionPlan plan, String[] outputs, int from, int to) {
+            this.plan = plan;
+            this.outputs = outputs;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                CodeGenerator worker = new CodeGenerator(plan, from);
+                worker.generateSegment();
+                outputs[from] = worker.llvmCode.toString();
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new SegmentTask(plan, outputs, from, mid), new SegmentTask(plan, outputs, mid, to));
+        }
+    }
+    
+    /**
+     * 指令生成时占用的寄存器数量（与下方各 generateXxx 方法保持一致）
+     */
+    static int registersUsed(TACOpcode opcode) {
+        switch (opcode) {
+            case ARRAY_ASSIGN:
+            case MEMBER_ASSIGN:
+                return 1;
+            default:
+                return definesRegister(opcode) ? 1 : 0;
+        }
+    }
+    
+    /**
+     * 指令是否把结果变量映射到新寄存器
+     */
+    static boolean definesRegister(TACOpcode opcode) {
+        switch (opcode) {
+            case ADD:
+            case SUB:
+            case MUL:
+            case DIV:
+            case MOD:
+            case EQ:
+            case NE:
+            case LT:
+            case GT:
+            case LE:
+            case GE:
+            case AND:
+            case OR:
+            case NOT:
+            case ASSIGN:
+            case PLUS_ASSIGN:
+            case MINUS_ASSIGN:
+            case MUL_ASSIGN:
+            case DIV_ASSIGN:
+            case MOD_ASSIGN:
+            case INCREMENT:
+            case DECREMENT:
+            case CALL:
+            case ARRAY_ACCESS:
+            case MEMBER_ACCESS:
+            case ALLOC:
+            case LOAD:
+                return true;
+            default:
+                return false;
         }
     }
     
@@ -299,8 +522,8 @@ public class CodeGenerator {
      */
     private void generateAdd(TACInstruction instruction) {
         String result = getRegister();
-        String arg1 = getOperand(instruction.getArg1());
-        String arg2 = getOperand(instruction.getArg2());
+        String arg1 = getOperand(instruction.getArg1Operand());
+        String arg2 = getOperand(instruction.getArg2Operand());
         
         llvmCode.append("  ").append(result).append(" = add i32 ").append(arg1).append(", ").append(arg2).append("\n");
         
@@ -312,8 +535,8 @@ public class CodeGenerator {
      */
     private void generateSub(TACInstruction instruction) {
         String result = getRegister();
-        String arg1 = getOperand(instruction.getArg1());
-        String arg2 = getOperand(instruction.getArg2());
+        String arg1 = getOperand(instruction.getArg1Operand());
+        String arg2 = getOperand(instruction.getArg2Operand());
         
         llvmCode.append("  ").append(result).append(" = sub i32 ").append(arg1).append(", ").append(arg2).append("\n");
         
@@ -325,8 +548,8 @@ public class CodeGenerator {
      */
     private void generateMul(TACInstruction instruction) {
         String result = getRegister();
-        String arg1 = getOperand(instruction.getArg1());
-        String arg2 = getOperand(instruction.getArg2());
+        String arg1 = getOperand(instruction.getArg1Operand());
+        String arg2 = getOperand(instruction.getArg2Operand());
         
         llvmCode.append("  ").append(result).append(" = mul i32 ").append(arg1).append(", ").append(arg2).append("\n");
         
@@ -338,8 +561,8 @@ public class CodeGenerator {
      */
     private void generateDiv(TACInstruction instruction) {
         String result = getRegister();
-        String arg1 = getOperand(instruction.getArg1());
-        String arg2 = getOperand(instruction.getArg2());
+        String arg1 = getOperand(instruction.getArg1Operand());
+        String arg2 = getOperand(instruction.getArg2Operand());
         
         llvmCode.append("  ").append(result).append(" = sdiv i32 ").append(arg1).append(", ").append(arg2).append("\n");
         
@@ -351,8 +574,8 @@ public class CodeGenerator {
      */
     private void generateMod(TACInstruction instruction) {
         String result = getRegister();
-        String arg1 = getOperand(instruction.getArg1());
-        String arg2 = getOperand(instruction.getArg2());
+        String arg1 = getOperand(instruction.getArg1Operand());
+        String arg2 = getOperand(instruction.getArg2Operand());
         
         llvmCode.append("  ").append(result).append(" = srem i32 ").append(arg1).append(", ").append(arg2).append("\n");
         
@@ -364,8 +587,8 @@ public class CodeGenerator {
      */
     private void generateEq(TACInstruction instruction) {
         String result = getRegister();
-        String arg1 = getOperand(instruction.getArg1());
-        String arg2 = getOperand(instruction.getArg2());
+        String arg1 = getOperand(instruction.getArg1Operand());
+        String arg2 = getOperand(instruction.getArg2Operand());
         
         llvmCode.append("  ").append(result).append(" = icmp eq i32 ").append(arg1).append(", ").append(arg2).append("\n");
         
@@ -377,8 +600,8 @@ public class CodeGenerator {
      */
     private void generateNe(TACInstruction instruction) {
         String result = getRegister();
-        String arg1 = getOperand(instruction.getArg1());
-        String arg2 = getOperand(instruction.getArg2());
+        String arg1 = getOperand(instruction.getArg1Operand());
+        String arg2 = getOperand(instruction.getArg2Operand());
         
         llvmCode.append("  ").append(result).append(" = icmp ne i32 ").append(arg1).append(", ").append(arg2).append("\n");
         
@@ -390,8 +613,8 @@ public class CodeGenerator {
      */
     private void generateLt(TACInstruction instruction) {
         String result = getRegister();
-        String arg1 = getOperand(instruction.getArg1());
-        String arg2 = getOperand(instruction.getArg2());
+        String arg1 = getOperand(instruction.getArg1Operand());
+        String arg2 = getOperand(instruction.getArg2Operand());
         
         llvmCode.append("  ").append(result).append(" = icmp slt i32 ").append(arg1).append(", ").append(arg2).append("\n");
         
@@ -403,8 +626,8 @@ public class CodeGenerator {
      */
     private void generateGt(TACInstruction instruction) {
         String result = getRegister();
-        String arg1 = getOperand(instruction.getArg1());
-        String arg2 = getOperand(instruction.getArg2());
+        String arg1 = getOperand(instruction.getArg1Operand());
+        String arg2 = getOperand(instruction.getArg2Operand());
         
         llvmCode.append("  ").append(result).append(" = icmp sgt i32 ").append(arg1).append(", ").append(arg2).append("\n");
         
@@ -416,8 +639,8 @@ public class CodeGenerator {
      */
     private void generateLe(TACInstruction instruction) {
         String result = getRegister();
-        String arg1 = getOperand(instruction.getArg1());
-        String arg2 = getOperand(instruction.getArg2());
+        String arg1 = getOperand(instruction.getArg1Operand());
+        String arg2 = getOperand(instruction.getArg2Operand());
         
         llvmCode.append("  ").append(result).append(" = icmp sle i32 ").append(arg1).append(", ").append(arg2).append("\n");
         
@@ -429,8 +652,8 @@ public class CodeGenerator {
      */
     private void generateGe(TACInstruction instruction) {
         String result = getRegister();
-        String arg1 = getOperand(instruction.getArg1());
-        String arg2 = getOperand(instruction.getArg2());
+        String arg1 = getOperand(instruction.getArg1Operand());
+        String arg2 = getOperand(instruction.getArg2Operand());
         
         llvmCode.append("  ").append(result).append(" = icmp sge i32 ").append(arg1).append(", ").append(arg2).append("\n");
         
@@ -442,8 +665,8 @@ public class CodeGenerator {
      */
     private void generateAnd(TACInstruction instruction) {
         String result = getRegister();
-        String arg1 = getOperand(instruction.getArg1());
-        String arg2 = getOperand(instruction.getArg2());
+        String arg1 = getOperand(instruction.getArg1Operand());
+        String arg2 = getOperand(instruction.getArg2Operand());
         
         llvmCode.append("  ").append(result).append(" = and i32 ").append(arg1).append(", ").append(arg2).append("\n");
         
@@ -455,8 +678,8 @@ public class CodeGenerator {
      */
     private void generateOr(TACInstruction instruction) {
         String result = getRegister();
-        String arg1 = getOperand(instruction.getArg1());
-        String arg2 = getOperand(instruction.getArg2());
+        String arg1 = getOperand(instruction.getArg1Operand());
+        String arg2 = getOperand(instruction.getArg2Operand());
         
         llvmCode.append("  ").append(result).append(" = or i32 ").append(arg1).append(", ").append(arg2).append("\n");
         
@@ -468,7 +691,7 @@ public class CodeGenerator {
      */
     private void generateNot(TACInstruction instruction) {
         String result = getRegister();
-        String arg1 = getOperand(instruction.getArg1());
+        String arg1 = getOperand(instruction.getArg1Operand());
         
         llvmCode.append("  ").append(result).append(" = xor i32 ").append(arg1).append(", 1\n");
         
@@ -480,7 +703,7 @@ public class CodeGenerator {
      */
     private void generateAssign(TACInstruction instruction) {
         String result = getRegister();
-        String arg1 = getOperand(instruction.getArg1());
+        String arg1 = getOperand(instruction.getArg1Operand());
         
         llvmCode.append("  ").append(result).append(" = add i32 ").append(arg1).append(", 0\n");
         
@@ -492,8 +715,8 @@ public class CodeGenerator {
      */
     private void generatePlusAssign(TACInstruction instruction) {
         String result = getRegister();
-        String arg1 = getOperand(instruction.getArg1());
-        String arg2 = getOperand(instruction.getArg2());
+        String arg1 = getOperand(instruction.getArg1Operand());
+        String arg2 = getOperand(instruction.getArg2Operand());
         
         llvmCode.append("  ").append(result).append(" = add i32 ").append(arg1).append(", ").append(arg2).append("\n");
         
@@ -502,8 +725,8 @@ public class CodeGenerator {
     
     private void generateMinusAssign(TACInstruction instruction) {
         String result = getRegister();
-        String arg1 = getOperand(instruction.getArg1());
-        String arg2 = getOperand(instruction.getArg2());
+        String arg1 = getOperand(instruction.getArg1Operand());
+        String arg2 = getOperand(instruction.getArg2Operand());
         
         llvmCode.append("  ").append(result).append(" = sub i32 ").append(arg1).append(", ").append(arg2).append("\n");
         
@@ -512,8 +735,8 @@ public class CodeGenerator {
     
     private void generateMulAssign(TACInstruction instruction) {
         String result = getRegister();
-        String arg1 = getOperand(instruction.getArg1());
-        String arg2 = getOperand(instruction.getArg2());
+        String arg1 = getOperand(instruction.getArg1Operand());
+        String arg2 = getOperand(instruction.getArg2Operand());
         
         llvmCode.append("  ").append(result).append(" = mul i32 ").append(arg1).append(", ").append(arg2).append("\n");
         
@@ -522,8 +745,8 @@ public class CodeGenerator {
     
     private void generateDivAssign(TACInstruction instruction) {
         String result = getRegister();
-        String arg1 = getOperand(instruction.getArg1());
-        String arg2 = getOperand(instruction.getArg2());
+        String arg1 = getOperand(instruction.getArg1Operand());
+        String arg2 = getOperand(instruction.getArg2Operand());
         
         llvmCode.append("  ").append(result).append(" = sdiv i32 ").append(arg1).append(", ").append(arg2).append("\n");
         
@@ -532,8 +755,8 @@ public class CodeGenerator {
     
     private void generateModAssign(TACInstruction instruction) {
         String result = getRegister();
-        String arg1 = getOperand(instruction.getArg1());
-        String arg2 = getOperand(instruction.getArg2());
+        String arg1 = getOperand(instruction.getArg1Operand());
+        String arg2 = getOperand(instruction.getArg2Operand());
         
         llvmCode.append("  ").append(result).append(" = srem i32 ").append(arg1).append(", ").append(arg2).append("\n");
         
@@ -545,7 +768,7 @@ public class CodeGenerator {
      */
     private void generateIncrement(TACInstruction instruction) {
         String result = getRegister();
-        String arg1 = getOperand(instruction.getArg1());
+        String arg1 = getOperand(instruction.getArg1Operand());
         
         llvmCode.append("  ").append(result).append(" = add i32 ").append(arg1).append(", 1\n");
         
@@ -557,7 +780,7 @@ public class CodeGenerator {
      */
     private void generateDecrement(TACInstruction instruction) {
         String result = getRegister();
-        String arg1 = getOperand(instruction.getArg1());
+        String arg1 = getOperand(instruction.getArg1Operand());
         
         llvmCode.append("  ").append(result).append(" = sub i32 ").append(arg1).append(", 1\n");
         
@@ -575,22 +798,22 @@ public class CodeGenerator {
      * 生成条件跳转指令
      */
     private void generateIfTrue(TACInstruction instruction) {
-        String arg1 = getOperand(instruction.getArg1());
+        String arg1 = getOperand(instruction.getArg1Operand());
         llvmCode.append("  br i1 ").append(arg1).append(", label %").append(instruction.getResult()).append(", label %").append(instruction.getResult()).append("_else\n");
     }
     
     private void generateIfFalse(TACInstruction instruction) {
-        String arg1 = getOperand(instruction.getArg1());
+        String arg1 = getOperand(instruction.getArg1Operand());
         llvmCode.append("  br i1 ").append(arg1).append(", label %").append(instruction.getResult()).append("_else, label %").append(instruction.getResult()).append("\n");
     }
     
     private void generateIfZero(TACInstruction instruction) {
-        String arg1 = getOperand(instruction.getArg1());
+        String arg1 = getOperand(instruction.getArg1Operand());
         llvmCode.append("  br i1 ").append(arg1).append(", label %").append(instruction.getResult()).append("_else, label %").append(instruction.getResult()).append("\n");
     }
     
     private void generateIfNonzero(TACInstruction instruction) {
-        String arg1 = getOperand(instruction.getArg1());
+        String arg1 = getOperand(instruction.getArg1Operand());
         llvmCode.append("  br i1 ").append(arg1).append(", label %").append(instruction.getResult()).append(", label %").append(instruction.getResult()).append("_else\n");
     }
     
@@ -618,7 +841,7 @@ public class CodeGenerator {
      */
     private void generateReturn(TACInstruction instruction) {
         if (instruction.getArg1() != null) {
-            String arg1 = getOperand(instruction.getArg1());
+            String arg1 = getOperand(instruction.getArg1Operand());
             llvmCode.append("  ret i32 ").append(arg1).append("\n");
         } else {
             llvmCode.append("  ret i32 0\n");
@@ -630,8 +853,8 @@ public class CodeGenerator {
      */
     private void generateArrayAccess(TACInstruction instruction) {
         String result = getRegister();
-        String array = getOperand(instruction.getArg1());
-        String index = getOperand(instruction.getArg2());
+        String array = getOperand(instruction.getArg1Operand());
+        String index = getOperand(instruction.getArg2Operand());
         
         llvmCode.append("  ").append(result).append(" = getelementptr i32, i32* ").append(array).append(", i32 ").append(index).append("\n");
         llvmCode.append("  ").append(result).append(" = load i32, i32* ").append(result).append("\n");
@@ -643,9 +866,9 @@ public class CodeGenerator {
      * 生成数组赋值指令
      */
     private void generateArrayAssign(TACInstruction instruction) {
-        String array = getOperand(instruction.getArg1());
-        String index = getOperand(instruction.getArg2());
-        String value = getOperand(instruction.getResult());
+        String array = getOperand(instruction.getArg1Operand());
+        String index = getOperand(instruction.getArg2Operand());
+        String value = getOperand(instruction.getResultOperand());
         
         String ptr = getRegister();
         llvmCode.append("  ").append(ptr).append(" = getelementptr i32, i32* ").append(array).append(", i32 ").append(index).append("\n");
@@ -657,7 +880,7 @@ public class CodeGenerator {
      */
     private void generateMemberAccess(TACInstruction instruction) {
         String result = getRegister();
-        String object = getOperand(instruction.getArg1());
+        String object = getOperand(instruction.getArg1Operand());
         String memberName = instruction.getArg2();
         
         llvmCode.append("  ").append(result).append(" = getelementptr inbounds %struct.").append(object).append(", %struct.").append(object).append("* ").append(object).append(", i32 0, i32 0\n");
@@ -670,9 +893,9 @@ public class CodeGenerator {
      * 生成成员赋值指令
      */
     private void generateMemberAssign(TACInstruction instruction) {
-        String object = getOperand(instruction.getArg1());
+        String object = getOperand(instruction.getArg1Operand());
         String memberName = instruction.getArg2();
-        String value = getOperand(instruction.getResult());
+        String value = getOperand(instruction.getResultOperand());
         
         String ptr = getRegister();
         llvmCode.append("  ").append(ptr).append(" = getelementptr inbounds %struct.").append(object).append(", %struct.").append(object).append("* ").append(object).append(", i32 0, i32 0\n");
@@ -710,7 +933,7 @@ public class CodeGenerator {
      */
     private void generateLoad(TACInstruction instruction) {
         String result = getRegister();
-        String arg1 = getOperand(instruction.getArg1());
+        String arg1 = getOperand(instruction.getArg1Operand());
         
         llvmCode.append("  ").append(result).append(" = load i32, i32* ").append(arg1).append("\n");
         
@@ -721,8 +944,8 @@ public class CodeGenerator {
      * 生成存储指令
      */
     private void generateStore(TACInstruction instruction) {
-        String arg1 = getOperand(instruction.getArg1());
-        String result = getOperand(instruction.getResult());
+        String arg1 = getOperand(instruction.getArg1Operand());
+        String result = getOperand(instruction.getResultOperand());
         
         llvmCode.append("  store i32 ").append(arg1).append(", i32* ").append(result).append("\n");
     }
@@ -737,13 +960,14 @@ public class CodeGenerator {
     /**
      * 获取操作数
      */
-    private String getOperand(String operand) {
-        if (operand == null) {
+    private String getOperand(Operand value) {
+        if (value == null) {
             return "0";
         }
         
         // 如果是数字，直接返回
-        if (operand.matches("-?\\d+")) {
+        String operand = value.getText();
+        if (value.isNumeric()) {
             return operand;
         }
         
@@ -752,6 +976,14 @@ public class CodeGenerator {
             return variableMap.get(operand);
         }
         
+        // 并行工作者：查找之前片段留下的映射
+        if (plan != null) {
+            String inherited = plan.lookup(operand, segmentIndex);
+            if (inherited != null) {
+                return inherited;
+            }
+        }
+        
         // 如果是临时变量，返回寄存器名称
         if (operand.startsWith("t")) {
             return "%" + operand;
@@ -0,0 +1,147 @@
+package com.gemini.compiler.codegen;
+
+import com.gemini.compiler.ir.*;
+import java.util.*;
+
+/**
+ * 并行代码生成的发射计划
+ *
+ * 串行生成时，寄存器编号和变量到寄存器的映射在所有函数之间连续传递。
+ * 为了让每个片段在独立的工作线程上生成且输出与串行完全一致，
+ * 这里先做一次不生成文本的线性预扫描，为每个片段计算：
+ * 1. 起始寄存器编号（之前所有片段占用的寄存器数之和）
+ * 2. 片段开始时可见的变量映射（按片段记录的定义链，按需二分查找）
+ */
+final class EmissionPlan {
+
+    /**
+     * 片段类型
+     */
+    enum SegmentKind {
+        FUNCTION,       // 独立函数定义
+        MAIN_PROLOGUE,  // main 中的全局代码
+        MAIN_BODY       // main 中重复生成的函数体
+    }
+
+    /**
+     * 发射片段：指令区间 [start, end) 及其起始寄存器编号
+     */
+    static final class Segment {
+        final SegmentKind kind;
+        final FunctionIndex.FunctionRange function;
+        final int start;
+        final int end;
+        int registerBase;
+
+        Segment(SegmentKind kind, FunctionIndex.FunctionRange function, int start, int end) {
+            this.kind = kind;
+            this.function = function;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    /**
+     * 单个变量在各片段末尾的寄存器（片段下标递增）
+     */
+    private static final class DefinitionChain {
+        private int[] segments = new int[2];
+        private String[] registers = new String[2];
+        private int size;
+
+        void add(int segment, String register) {
+            if (size == segments.length) {
+                segments = Arrays.copyOf(segments, size * 2);
+                registers = Arrays.copyOf(registers, size * 2);
+            }
+            segments[size] = segment;
+            registers[size] = register;
+            size++;
+        }
+
+        /**
+         * 查找严格早于 segment 的最后一次定义
+         */
+        String lookupBefore(int segment) {
+            int lo = 0;
+            int hi = size - 1;
+            int found = -1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (segments[mid] < segment) {
+                    found = mid;
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return found >= 0 ? registers[found] : null;
+        }
+    }
+
+    private final List<TACInstruction> instructions;
+    private final List<Segment> segments;
+    private final Map<String, DefinitionChain> definitions;
+
+    private EmissionPlan(List<TACInstruction> instructions, List<Segment> segments) {
+        this.instructions = instructions;
+        this.segments = segments;
+        this.definitions = new HashMap<>();
+    }
+
+    /**
+     * 按串行生成的顺序划分片段并完成预扫描
+     */
+    static EmissionPlan build(IRProgram irProgram, FunctionIndex functionIndex) {
+        List<Segment> segments = new ArrayList<>(functionIndex.getFunctionCount() * 2 + 1);
+
+        for (FunctionIndex.FunctionRange function : functionIndex.getFunctions()) {
+            segments.add(new Segment(SegmentKind.FUNCTION, function, function.getBodyStart(), function.getEnd()));
+        }
+        segments.add(new Segment(SegmentKind.MAIN_PROLOGUE, null, 0, functionIndex.getPrologueEnd()));
+        for (FunctionIndex.FunctionRange function : functionIndex.getFunctions()) {
+            segments.add(new Segment(SegmentKind.MAIN_BODY, function, function.getBodyStart(), function.getEnd()));
+        }
+
+        EmissionPlan plan = new EmissionPlan(irProgram.getInstructions(), segments);
+        plan.scan();
+        return plan;
+    }
+
+    private void scan() {
+        int registerCounter = 0;
+        Map<String, String> segmentDefinitions = new HashMap<>();
+
+        for (int k = 0; k < segments.size(); k++) {
+            Segment segment = segments.get(k);
+            segment.registerBase = registerCounter;
+            segmentDefinitions.clear();
+
+            for (int i = segment.start; i < segment.end; i++) {
+                TACInstruction instruction = instructions.get(i);
+                TACOpcode opcode = instruction.getOpcode();
+                if (CodeGenerator.definesRegister(opcode) && instruction.getResult() != null) {
+                    segmentDefinitions.put(instruction.getResult(), "%" + (registerCounter + 1));
+                }
+                registerCounter += CodeGenerator.registersUsed(opcode);
+            }
+
+            for (Map.Entry<String, String> entry : segmentDefinitions.entrySet()) {
+                definitions.computeIfAbsent(entry.getKey(), key -> new DefinitionChain())
+                    .add(k, entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * 查找片段开始时变量对应的寄存器
+     */
+    String lookup(String variable, int segment) {
+        DefinitionChain chain = definitions.get(variable);
+        return chain != null ? chain.lookupBefore(segment) : null;
+    }
+
+    // Getters
+    List<Segment> getSegments() { return segments; }
+    List<TACInstruction> getInstructions() { return instructions; }
+}
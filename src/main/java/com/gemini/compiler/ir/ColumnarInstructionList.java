@@ -0,0 +1,222 @@
+package com.gemini.compiler.ir;
+
+import java.util.*;
+
+/**
+ * 列式存储的 TAC 指令序列
+ *
+ * 每条指令不再是一个独立对象，而是分散在几组基本类型数组中：
+ * 操作码为 byte，操作数为程序内 OperandTable 中的编号，行号、元数据和结果类型为 int。
+ * 元数据与结果类型的取值很少，按字符串池编号保存。
+ *
+ * 对外仍是 List&lt;TACInstruction&gt;，get() 时按需组装指令对象，
+ * 因此现有的 OptimizerPass 可以直接在其上运行；新的 Pass 可以通过
+ * opcodeAt()/arg1IdAt() 等按下标访问的方法遍历，不产生任何分配。
+ */
+public final class ColumnarInstructionList extends AbstractList<TACInstruction> implements RandomAccess {
+
+    private static final TACOpcode[] OPCODES = TACOpcode.values();
+    private static final int NONE = -1;
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private byte[] opcodes;
+    private int[] arg1;
+    private int[] arg2;
+    private int[] result;
+    private int[] lines;
+    private int[] metadata;
+    private int[] resultTypes;
+    private int size;
+
+    // 操作数表（可与同一程序的其他序列共用）与元数据、结果类型字符串池
+    private final OperandTable operands;
+    private final List<String> strings;
+    private final Map<String, Integer> stringIds;
+
+    public ColumnarInstructionList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ColumnarInstructionList(int initialCapacity) {
+        this(new OperandTable(), initialCapacity);
+    }
+
+    public ColumnarInstructionList(OperandTable operands, int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 1);
+        this.operands = operands;
+        this.opcodes = new byte[capacity];
+        this.arg1 = new int[capacity];
+        this.arg2 = new int[capacity];
+        this.result = new int[capacity];
+        this.lines = new int[capacity];
+        this.metadata = new int[capacity];
+        this.resultTypes = new int[capacity];
+        this.size = 0;
+        this.strings = new ArrayList<>();
+        this.stringIds = new HashMap<>();
+    }
+
+    /**
+     * 由已有指令序列构建列式副本
+     */
+    public static ColumnarInstructionList copyOf(List<TACInstruction> instructions) {
+        ColumnarInstructionList columns = new ColumnarInstructionList(instructions.size());
+        columns.addAll(instructions);
+        return columns;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public TACInstruction get(int index) {
+        checkIndex(index);
+        TACInstruction instruction = TACInstruction.of(
+            OPCODES[opcodes[index]],
+            operand(arg1[index]),
+            operand(arg2[index]),
+            operand(result[index]),
+            lines[index]
+        );
+        instruction.setMetadata(string(metadata[index]));
+        instruction.setResultType(string(resultTypes[index]));
+        return instruction;
+    }
+
+    @Override
+    public TACInstruction set(int index, TACInstruction instruction) {
+        TACInstruction previous = get(index);
+        store(index, instruction);
+        return previous;
+    }
+
+    @Override
+    public boolean add(TACInstruction instruction) {
+        ensureCapacity(size + 1);
+        store(size, instruction);
+        size++;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public void add(int index, TACInstruction instruction) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        ensureCapacity(size + 1);
+        shift(index, index + 1, size - index);
+        store(index, instruction);
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public TACInstruction remove(int index) {
+        TACInstruction previous = get(index);
+        shift(index + 1, index, size - index - 1);
+        size--;
+        modCount++;
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        modCount++;
+    }
+
+    // 按下标访问的无分配接口
+    public TACOpcode opcodeAt(int index) { checkIndex(index); return OPCODES[opcodes[index]]; }
+    public int arg1IdAt(int index) { checkIndex(index); return arg1[index]; }
+    public int arg2IdAt(int index) { checkIndex(index); return arg2[index]; }
+    public int resultIdAt(int index) { checkIndex(index); return result[index]; }
+    public int lineAt(int index) { checkIndex(index); return lines[index]; }
+    public Operand arg1At(int index) { return operand(arg1IdAt(index)); }
+    public Operand arg2At(int index) { return operand(arg2IdAt(index)); }
+    public Operand resultAt(int index) { return operand(resultIdAt(index)); }
+    public String metadataAt(int index) { checkIndex(index); return string(metadata[index]); }
+    public String resultTypeAt(int index) { checkIndex(index); return string(resultTypes[index]); }
+
+    /**
+     * 把数组容量收缩到当前大小
+     */
+    public void trimToSize() {
+        if (opcodes.length > size) {
+            resize(Math.max(size, 1));
+        }
+    }
+
+    private void store(int index, TACInstruction instruction) {
+        if (instruction.getOpcode() == TACOpcode.PHI) {
+            // φ 指令只存在于优化器内部的 SSA 形式中，操作数个数不定，无法放入定长的列
+            throw new IllegalArgumentException("列式存储不支持 PHI 指令: " + instruction);
+        }
+        opcodes[index] = (byte) instruction.getOpcode().ordinal();
+        arg1[index] = idOf(instruction.getArg1Operand());
+        arg2[index] = idOf(instruction.getArg2Operand());
+        result[index] = idOf(instruction.getResultOperand());
+        lines[index] = instruction.getLine();
+        metadata[index] = intern(instruction.getMetadata());
+        resultTypes[index] = intern(instruction.getResultType());
+    }
+
+    private void shift(int from, int to, int length) {
+        System.arraycopy(opcodes, from, opcodes, to, length);
+        System.arraycopy(arg1, from, arg1, to, length);
+        System.arraycopy(arg2, from, arg2, to, length);
+        System.arraycopy(result, from, result, to, length);
+        System.arraycopy(lines, from, lines, to, length);
+        System.arraycopy(metadata, from, metadata, to, length);
+        System.arraycopy(resultTypes, from, resultTypes, to, length);
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > opcodes.length) {
+            resize(Math.max(required, opcodes.length + (opcodes.length >> 1) + 1));
+        }
+    }
+
+    private void resize(int capacity) {
+        opcodes = Arrays.copyOf(opcodes, capacity);
+        arg1 = Arrays.copyOf(arg1, capacity);
+        arg2 = Arrays.copyOf(arg2, capacity);
+        result = Arrays.copyOf(result, capacity);
+        lines = Arrays.copyOf(lines, capacity);
+        metadata = Arrays.copyOf(metadata, capacity);
+        resultTypes = Arrays.copyOf(resultTypes, capacity);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    private int intern(String value) {
+        if (value == null) {
+            return NONE;
+        }
+        Integer id = stringIds.get(value);
+        if (id == null) {
+            id = strings.size();
+            strings.add(value);
+            stringIds.put(value, id);
+        }
+        return id;
+    }
+
+    private String string(int id) {
+        return id == NONE ? null : strings.get(id);
+    }
+
+    private int idOf(Operand operand) {
+        return operand != null ? operands.idOf(operand) : NONE;
+    }
+
+    private Operand operand(int id) {
+        return id == NONE ? null : operands.operand(id);
+    }
+}
@@ -0,0 +1,137 @@
+package com.gemini.compiler.ir;
+
+import java.util.*;
+
+/**
+ * 函数索引
+ *
+ * 一次线性扫描 TAC 指令序列，记录每个函数（以 func_ 标签开头）的起止下标，
+ * 供代码生成器和优化器按函数切分程序，避免对整条指令序列的重复扫描。
+ */
+public final class FunctionIndex {
+
+    public static final String FUNCTION_LABEL_PREFIX = "func_";
+
+    private final List<FunctionRange> functions;
+    private final int prologueEnd;
+    private final int size;
+
+    private FunctionIndex(List<FunctionRange> functions, int prologueEnd, int size) {
+        this.functions = Collections.unmodifiableList(functions);
+        this.prologueEnd = prologueEnd;
+        this.size = size;
+    }
+
+    /**
+     * 从指令序列构建函数索引
+     */
+    public static FunctionIndex build(List<TACInstruction> instructions) {
+        List<FunctionRange> functions = new ArrayList<>();
+        int n = instructions.size();
+        int prologueEnd = n;
+        int currentStart = -1;
+        String currentLabel = null;
+
+        // 列式存储直接读取操作码列，不组装指令对象
+        ColumnarInstructionList columns = instructions instanceof ColumnarInstructionList
+            ? (ColumnarInstructionList) instructions : null;
+
+        for (int i = 0; i < n; i++) {
+            String label;
+            if (columns != null) {
+                label = columns.opcodeAt(i) == TACOpcode.LABEL ? textOf(columns.resultAt(i)) : null;
+            } else {
+                TACInstruction instruction = instructions.get(i);
+                label = instruction.getOpcode() == TACOpcode.LABEL ? instruction.getResult() : null;
+            }
+            if (label == null || !label.startsWith(FUNCTION_LABEL_PREFIX)) {
+                continue;
+            }
+            if (currentLabel == null) {
+                prologueEnd = i;
+            } else {
+                functions.add(new FunctionRange(functions.size(), currentLabel, currentStart, i));
+            }
+            currentLabel = label;
+            currentStart = i;
+        }
+
+        if (currentLabel != null) {
+            functions.add(new FunctionRange(functions.size(), currentLabel, currentStart, n));
+        }
+
+        return new FunctionIndex(functions, prologueEnd, n);
+    }
+
+    private static String textOf(Operand operand) {
+        return operand != null ? operand.getText() : null;
+    }
+
+    /**
+     * 判断指令是否为函数入口标签
+     */
+    public static boolean isFunctionLabel(TACInstruction instruction) {
+        return instruction.getOpcode() == TACOpcode.LABEL
+            && instruction.getResult() != null
+            && instruction.getResult().startsWith(FUNCTION_LABEL_PREFIX);
+    }
+
+    // Getters
+    public List<FunctionRange> getFunctions() { return functions; }
+    public int getFunctionCount() { return functions.size(); }
+    public FunctionRange getFunction(int ordinal) { return functions.get(ordinal); }
+
+    /**
+     * 第一个函数标签之前的指令（全局代码）结束位置（不含）
+     */
+    public int getPrologueEnd() { return prologueEnd; }
+
+    /**
+     * 建立索引时的指令总数
+     */
+    public int size() { return size; }
+
+    /**
+     * 单个函数在指令序列中的区间 [start, end)，start 处为函数标签
+     */
+    public static final class FunctionRange {
+        private final int ordinal;
+        private final String label;
+        private final int start;
+        private final int end;
+
+        FunctionRange(int ordinal, String label, int start, int end) {
+            this.ordinal = ordinal;
+            this.label = label;
+            this.start = start;
+            this.end = end;
+        }
+
+        // Getters
+        public int getOrdinal() { return ordinal; }
+        public String getLabel() { return label; }
+        public int getStart() { return start; }
+        public int getEnd() { return end; }
+        public int getBodyStart() { return start + 1; }
+        public int length() { return end - start; }
+
+        /**
+         * 去掉 func_ 前缀后的函数名
+         */
+        public String getFunctionName() {
+            return label.substring(FUNCTION_LABEL_PREFIX.length());
+        }
+
+        /**
+         * 该函数的指令视图（包含函数标签）
+         */
+        public List<TACInstruction> slice(List<TACInstruction> instructions) {
+            return instructions.subList(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return label + "[" + start + ", " + end + ")";
+        }
+    }
+}
@@ -41,6 +41,13 @@ public class IRGenerator implements ASTVisitor<Void> {
         this.switchLabels = new HashMap<>();
     }
     
+    /**
+     * 选择中间代码的存储方式（需在 generate 之前调用）
+     */
+    public void setColumnarStorage(boolean columnar) {
+        this.irProgram = columnar ? IRProgram.columnar() : new IRProgram();
+    }
+    
     /**
      * 生成中间代码
      */
@@ -874,8 +881,11 @@ public class IRGenerator implements ASTVisitor<Void> {
         
         @Override
         public String visitCastExpression(CastExpressionNode node) {
-            // 类型转换表达式的处理
-            return null;
+            // 目标代码中所有标量都按 i32 处理，类型转换只复制值
+            String operand = node.getExpression().accept(this);
+            String result = irProgram.generateTempVar();
+            irProgram.addInstruction(new TACInstruction(TACOpcode.ASSIGN, operand, null, result));
+            return result;
         }
         
         @Override
@@ -13,13 +13,44 @@ public class IRProgram {
     private Map<String, String> labels;
     private int tempVarCounter;
     private int labelCounter;
+    private String optimizationLevel;  // 实际生效的优化级别，由优化器写入
+    private OperandTable operandTable;  // 列式存储的操作数表，列表存储时为 null
     
     public IRProgram() {
-        this.instructions = new ArrayList<>();
-        this.basicBlocks = new HashMap<>();
+        this(new ArrayList<>(), null);
+    }
+    
+    private IRProgram(List<TACInstruction> instructions, OperandTable operandTable) {
+        this.instructions = instructions;
+        this.operandTable = operandTable;
+        this.basicBlocks = new LinkedHashMap<>();
         this.labels = new HashMap<>();
         this.tempVarCounter = 0;
         this.labelCounter = 0;
+        this.optimizationLevel = "-O0";
+    }
+    
+    /**
+     * 创建使用列式存储的程序（适合指令数很大的编译单元）
+     */
+    public static IRProgram columnar() {
+        return columnar(new OperandTable());
+    }
+    
+    private static IRProgram columnar(OperandTable operandTable) {
+        return new IRProgram(new ColumnarInstructionList(operandTable, 64), operandTable);
+    }
+    
+    /**
+     * 创建与当前程序使用相同存储方式的空程序；列式存储时沿用同一个操作数表，
+     * 表随同一次编译的程序一起回收
+     */
+    public IRProgram createEmpty() {
+        return isColumnar() ? columnar(operandTable) : new IRProgram();
+    }
+    
+    public boolean isColumnar() {
+        return instructions instanceof ColumnarInstructionList;
     }
     
     public void addInstruction(TACInstruction instruction) {
@@ -42,10 +73,20 @@ public class IRProgram {
         return prefix + (++labelCounter);
     }
     
+    /**
+     * 构建函数索引（一次线性扫描）
+     */
+    public FunctionIndex buildFunctionIndex() {
+        return FunctionIndex.build(instructions);
+    }
+    
     // Getters
     public List<TACInstruction> getInstructions() { return instructions; }
     public Map<String, BasicBlock> getBasicBlocks() { return basicBlocks; }
     public Map<String, String> getLabels() { return labels; }
+    public String getOptimizationLevel() { return optimizationLevel; }
+    
+    public void setOptimizationLevel(String optimizationLevel) { this.optimizationLevel = optimizationLevel; }
 
     @Override
     public String toString() {
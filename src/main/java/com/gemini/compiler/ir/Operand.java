@@ -0,0 +1,224 @@
+package com.gemini.compiler.ir;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 三地址代码操作数
+ *
+ * 操作数在创建时完成分类并驻留（intern）：同一文本的变量名、标签或常量
+ * 在仍被引用期间只对应一个 Operand 对象，因此可以直接用 == 比较，
+ * 以整数 id 作为哈希值；整数立即数的值以 int 形式保存，不需要再解析字符串。
+ *
+ * 驻留表只弱引用操作数：编译结束、程序不再被引用后，其中的操作数可以被回收，
+ * 它们的 id 留给之后新建的操作数复用，因此编译服务和批量编译中驻留表与 id 的范围
+ * 只取决于同时存活的程序，不随编译过的文件数增长。id 只在存活的操作数之间唯一，
+ * 需要按 id 取回操作数的场合使用程序内的 OperandTable。
+ */
+public final class Operand {
+
+    /**
+     * 操作数种类
+     */
+    public enum Kind {
+        IMMEDIATE,  // 可以用 int 表示的整数立即数
+        LITERAL,    // 其他字面量（浮点数、字符串、超出 int 范围的整数）
+        NAME,       // 变量、临时变量、函数名
+        LABEL       // 跳转标签
+    }
+
+    private static final ConcurrentHashMap<String, Entry> CONSTANTS = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Entry> NAMES = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Entry> LABELS = new ConcurrentHashMap<>();
+
+    // 已被回收的操作数的驻留项；以下三个字段只在持有 Operand.class 锁时访问
+    private static final ReferenceQueue<Operand> COLLECTED = new ReferenceQueue<>();
+    private static int nextId;
+    private static int[] freeIds = new int[64];
+    private static int freeCount;
+
+    private final Kind kind;
+    private final String text;
+    private final int id;
+    private final int value;
+    private final boolean numeric;
+
+    private Operand(Kind kind, String text, int id, int value, boolean numeric) {
+        this.kind = kind;
+        this.text = text;
+        this.id = id;
+        this.value = value;
+        this.numeric = numeric;
+    }
+
+    /**
+     * 驻留表中的弱引用，记下所在的表、文本和 id，操作数被回收后据此删除表项并释放 id
+     */
+    private static final class Entry extends WeakReference<Operand> {
+        final ConcurrentHashMap<String, Entry> table;
+        final String text;
+        final int id;
+
+        Entry(Operand operand, ConcurrentHashMap<String, Entry> table) {
+            super(operand, COLLECTED);
+            this.table = table;
+            this.text = operand.text;
+            this.id = operand.id;
+        }
+    }
+
+    /**
+     * 查找驻留的操作数；不存在或已被回收时在锁内新建。已存在时不加锁
+     */
+    private static Operand intern(ConcurrentHashMap<String, Entry> table, String text) {
+        Entry entry = table.get(text);
+        Operand operand = entry != null ? entry.get() : null;
+        if (operand != null) {
+            return operand;
+        }
+        synchronized (Operand.class) {
+            expunge();
+            entry = table.get(text);
+            operand = entry != null ? entry.get() : null;
+            if (operand == null) {
+                int id = freeCount > 0 ? freeIds[--freeCount] : nextId++;
+                if (table == LABELS) {
+                    operand = new Operand(Kind.LABEL, text, id, 0, false);
+                } else if (table == CONSTANTS) {
+                    operand = classifyLiteral(text, id);
+                } else {
+                    operand = new Operand(Kind.NAME, text, id, 0, false);
+                }
+                table.put(text, new Entry(operand, table));
+            }
+            return operand;
+        }
+    }
+
+    /**
+     * 删除已被回收的操作数的表项并释放其 id（持有 Operand.class 锁时调用）
+     */
+    private static void expunge() {
+        Entry entry;
+        while ((entry = (Entry) COLLECTED.poll()) != null) {
+            // 同一文本可能已经驻留了新的操作数，只删除这个表项本身
+            entry.table.remove(entry.text, entry);
+            if (freeCount == freeIds.length) {
+                freeIds = Arrays.copyOf(freeIds, freeIds.length * 2);
+            }
+            freeIds[freeCount++] = entry.id;
+        }
+    }
+
+    /**
+     * 已分配的 id 范围，即同时存活过的操作数的最大个数（诊断和测试用）
+     */
+    public static synchronized int idRange() {
+        expunge();
+        return nextId;
+    }
+
+    /**
+     * 驻留表中尚未回收的操作数个数（诊断和测试用）
+     */
+    public static synchronized int internedCount() {
+        expunge();
+        return nextId - freeCount;
+    }
+
+    /**
+     * 按文本获取操作数：整数文本为立即数，以数字、引号或负号开头的为字面量，其余为名字
+     */
+    public static Operand of(String text) {
+        if (text == null) {
+            return null;
+        }
+        return intern(isLiteralText(text) ? CONSTANTS : NAMES, text);
+    }
+
+    /**
+     * 获取标签操作数（标签与变量名处于不同的命名空间）
+     */
+    public static Operand label(String text) {
+        if (text == null) {
+            return null;
+        }
+        return intern(LABELS, text);
+    }
+
+    /**
+     * 获取整数立即数
+     */
+    public static Operand immediate(int value) {
+        return of(Integer.toString(value));
+    }
+
+    private static boolean isLiteralText(String text) {
+        if (text.isEmpty()) {
+            return false;
+        }
+        char first = text.charAt(0);
+        return Character.isDigit(first) || first == '-' || first == '"' || first == '\'' || first == '.';
+    }
+
+    private static Operand classifyLiteral(String text, int id) {
+        boolean numeric = isDecimalInteger(text);
+        if (numeric) {
+            try {
+                return new Operand(Kind.IMMEDIATE, text, id, Integer.parseInt(text), true);
+            } catch (NumberFormatException ex) {
+                // 超出 int 范围，按普通字面量处理
+            }
+        }
+        return new Operand(Kind.LITERAL, text, id, 0, numeric);
+    }
+
+    private static boolean isDecimalInteger(String text) {
+        int start = (text.charAt(0) == '-') ? 1 : 0;
+        if (start == text.length()) {
+            return false;
+        }
+        for (int i = start; i < text.length(); i++) {
+            if (!Character.isDigit(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Getters
+    public Kind getKind() { return kind; }
+    public String getText() { return text; }
+    public int getId() { return id; }
+
+    public boolean isImmediate() { return kind == Kind.IMMEDIATE; }
+    public boolean isName() { return kind == Kind.NAME; }
+    public boolean isLabel() { return kind == Kind.LABEL; }
+
+    /**
+     * 是否为十进制整数文本（包括超出 int 范围的整数）
+     */
+    public boolean isNumeric() { return numeric; }
+
+    /**
+     * 立即数的值
+     */
+    public int getValue() {
+        if (kind != Kind.IMMEDIATE) {
+            throw new IllegalStateException("操作数不是整数立即数: " + text);
+        }
+        return value;
+    }
+
+    @Override
+    public int hashCode() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -0,0 +1,46 @@
+package com.gemini.compiler.ir;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 程序内的操作数表
+ *
+ * 为列式存储的指令序列把操作数编号为从 0 开始的连续 int，并按编号取回。
+ * 表属于一个 IRProgram，随程序一起回收；表中的引用使列中的操作数在程序存活期间保持驻留。
+ * 不是线程安全的，与所属的指令序列一样只能由一个线程修改。
+ */
+public final class OperandTable {
+
+    private final List<Operand> operands = new ArrayList<>();
+    private final Map<Operand, Integer> ids = new HashMap<>();
+
+    /**
+     * 操作数的编号，第一次出现时分配
+     */
+    public int idOf(Operand operand) {
+        Integer id = ids.get(operand);
+        if (id == null) {
+            id = operands.size();
+            operands.add(operand);
+            ids.put(operand, id);
+        }
+        return id;
+    }
+
+    /**
+     * 按编号取回操作数
+     */
+    public Operand operand(int id) {
+        return operands.get(id);
+    }
+
+    /**
+     * 表中的操作数个数
+     */
+    public int size() {
+        return operands.size();
+    }
+}
@@ -7,24 +7,24 @@ package com.gemini.compiler.ir;
  */
 public class TACInstruction {
     private TACOpcode opcode;
-    private String arg1;
-    private String arg2;
-    private String result;
+    private Operand arg1;
+    private Operand arg2;
+    private Operand result;
     private int line;
     private String metadata;  // Added for optimizers
     private String resultType; // Added for optimizers
+    private Operand[] phiLabels;  // PHI 指令的前驱块标签
+    private Operand[] phiValues;  // PHI 指令沿对应前驱流入的值
     
     public TACInstruction(TACOpcode opcode, String arg1, String arg2, String result) {
-        this.opcode = opcode;
-        this.arg1 = arg1;
-        this.arg2 = arg2;
-        this.result = result;
-        this.line = -1;
-        this.metadata = null;
-        this.resultType = null;
+        this(opcode, arg1, arg2, result, -1);
     }
     
     public TACInstruction(TACOpcode opcode, String arg1, String arg2, String result, int line) {
+        this(opcode, Operand.of(arg1), Operand.of(arg2), resultOperand(opcode, result), line);
+    }
+    
+    private TACInstruction(TACOpcode opcode, Operand arg1, Operand arg2, Operand result, int line) {
         this.opcode = opcode;
         this.arg1 = arg1;
         this.arg2 = arg2;
@@ -34,14 +34,67 @@ public class TACInstruction {
         this.resultType = null;
     }
     
+    /**
+     * 直接由已分类的操作数创建指令
+     */
+    public static TACInstruction of(TACOpcode opcode, Operand arg1, Operand arg2, Operand result) {
+        return new TACInstruction(opcode, arg1, arg2, result, -1);
+    }
+    
+    public static TACInstruction of(TACOpcode opcode, Operand arg1, Operand arg2, Operand result, int line) {
+        return new TACInstruction(opcode, arg1, arg2, result, line);
+    }
+    
+    /**
+     * 创建 φ 指令：result = phi [labels[0]: values[0]], [labels[1]: values[1]], ...
+     */
+    public static TACInstruction phi(Operand result, Operand[] labels, Operand[] values, int line) {
+        if (labels.length != values.length) {
+            throw new IllegalArgumentException("PHI 的前驱标签与取值个数不一致");
+        }
+        TACInstruction instruction = new TACInstruction(TACOpcode.PHI, null, null, result, line);
+        instruction.phiLabels = labels.clone();
+        instruction.phiValues = values.clone();
+        return instruction;
+    }
+    
+    /**
+     * 跳转类指令的结果是标签，其余指令的结果按普通操作数分类
+     */
+    private static Operand resultOperand(TACOpcode opcode, String result) {
+        switch (opcode) {
+            case LABEL:
+            case GOTO:
+            case IF_TRUE:
+            case IF_FALSE:
+            case IF_ZERO:
+            case IF_NONZERO:
+                return Operand.label(result);
+            default:
+                return Operand.of(result);
+        }
+    }
+    
+    private static String textOf(Operand operand) {
+        return operand != null ? operand.getText() : null;
+    }
+    
     // Getters
     public TACOpcode getOpcode() { return opcode; }
-    public String getArg1() { return arg1; }
-    public String getArg2() { return arg2; }
-    public String getResult() { return result; }
+    public String getArg1() { return textOf(arg1); }
+    public String getArg2() { return textOf(arg2); }
+    public String getResult() { return textOf(result); }
+    public Operand getArg1Operand() { return arg1; }
+    public Operand getArg2Operand() { return arg2; }
+    public Operand getResultOperand() { return result; }
     public int getLine() { return line; }
     public String getMetadata() { return metadata; }  // Added method
     public String getResultType() { return resultType; } // Added method
+    public int getPhiCount() { return phiValues != null ? phiValues.length : 0; }
+    public Operand getPhiLabel(int index) { return phiLabels[index]; }
+    public Operand getPhiValue(int index) { return phiValues[index]; }
+    public Operand[] getPhiLabels() { return phiLabels != null ? phiLabels.clone() : new Operand[0]; }
+    public Operand[] getPhiValues() { return phiValues != null ? phiValues.clone() : new Operand[0]; }
 
     public void setLine(int line) { this.line = line; }
     public void setMetadata(String metadata) { this.metadata = metadata; }  // Added method
@@ -173,6 +226,12 @@ public class TACInstruction {
             case STORE:
                 sb.append("store ").append(arg1).append(" -> ").append(result);
                 break;
+            case PHI:
+                sb.append(result).append(" = phi");
+                for (int i = 0; i < getPhiCount(); i++) {
+                    sb.append(i == 0 ? " [" : ", [").append(phiLabels[i]).append(": ").append(phiValues[i]).append("]");
+                }
+                break;
             default:
                 sb.append(opcode.toString());
         }
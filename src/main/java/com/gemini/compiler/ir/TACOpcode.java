@@ -47,5 +47,8 @@ public enum TACOpcode {
     STRUCT_COPY,
     
     // 其他
-    PARAM, ARG, ALLOC, LOAD, STORE
+    PARAM, ARG, ALLOC, LOAD, STORE,
+    
+    // SSA φ 函数（只在优化器内部出现，代码生成前被消去）
+    PHI
 }
\ No newline at end of file
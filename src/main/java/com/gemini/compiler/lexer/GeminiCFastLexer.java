@@ -0,0 +1,421 @@
+package com.gemini.compiler.lexer;
+
+import com.gemini.grammar.GeminiCLexer;
+import org.antlr.v4.runtime.ANTLRErrorListener;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonTokenFactory;
+import org.antlr.v4.runtime.ConsoleErrorListener;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenFactory;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.Pair;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 手写的表驱动词法分析器（--fast-lexer）
+ *
+ * 产生与 GeminiCLexer 完全相同的词法单元序列：类型、起止下标、行列号都一致，
+ * 因此可以直接交给 CommonTokenStream 和 GeminiCParser。GeminiCLexer 对每个字符都要在 ATN/DFA 上模拟一步，
+ * 而 Gemini-C 的词法几乎全是固定的关键字和运算符，这里按首字符查表分派，每个字符只看一次。
+ *
+ * 词法错误的处理也与 ANTLR 相同：从词法单元起点开始能延伸的最长前缀之后的那个字符处失败，
+ * 报告 "token recognition error at: '...'"（文本包含失败处的字符），然后跳过失败处的字符继续分析。
+ */
+public final class GeminiCFastLexer implements TokenSource {
+
+    // 首字符分类
+    private static final byte OTHER = 0;
+    private static final byte WHITESPACE = 1;
+    private static final byte IDENTIFIER = 2;
+    private static final byte DIGIT = 3;
+    private static final byte OPERATOR = 4;
+    private static final byte DOT = 5;
+    private static final byte SLASH = 6;
+    private static final byte CHAR_QUOTE = 7;
+    private static final byte STRING_QUOTE = 8;
+
+    private static final byte[] CHAR_CLASS = new byte[128];
+
+    // 运算符：单独出现、后跟 '='、重复两次时的词法单元类型，0 表示不构成词法单元
+    private static final int[] SINGLE = new int[128];
+    private static final int[] WITH_ASSIGN = new int[128];
+    private static final int[] DOUBLED = new int[128];
+
+    // 关键字按首字母分组
+    private static final char[][][] KEYWORDS = new char[128][][];
+    private static final int[][] KEYWORD_TYPES = new int[128][];
+
+    static {
+        CHAR_CLASS[' '] = WHITESPACE;
+        CHAR_CLASS['\t'] = WHITESPACE;
+        CHAR_CLASS['\r'] = WHITESPACE;
+        CHAR_CLASS['\n'] = WHITESPACE;
+        for (char c = 'a'; c <= 'z'; c++) {
+            CHAR_CLASS[c] = IDENTIFIER;
+            CHAR_CLASS[Character.toUpperCase(c)] = IDENTIFIER;
+        }
+        CHAR_CLASS['_'] = IDENTIFIER;
+        for (char c = '0'; c <= '9'; c++) {
+            CHAR_CLASS[c] = DIGIT;
+        }
+        CHAR_CLASS['.'] = DOT;
+        CHAR_CLASS['/'] = SLASH;
+        CHAR_CLASS['\''] = CHAR_QUOTE;
+        CHAR_CLASS['"'] = STRING_QUOTE;
+
+        operator('+', GeminiCLexer.PLUS, GeminiCLexer.PLUS_ASSIGN, GeminiCLexer.INCREMENT);
+        operator('-', GeminiCLexer.MINUS, GeminiCLexer.MINUS_ASSIGN, GeminiCLexer.DECREMENT);
+        operator('*', GeminiCLexer.MULTIPLY, GeminiCLexer.MULTIPLY_ASSIGN, 0);
+        operator('%', GeminiCLexer.MODULO, GeminiCLexer.MODULO_ASSIGN, 0);
+        operator('=', GeminiCLexer.ASSIGN, 0, GeminiCLexer.EQ);
+        operator('!', GeminiCLexer.NOT, GeminiCLexer.NE, 0);
+        operator('<', GeminiCLexer.LT, GeminiCLexer.LE, 0);
+        operator('>', GeminiCLexer.GT, GeminiCLexer.GE, 0);
+        operator('&', 0, 0, GeminiCLexer.AND);
+        operator('|', 0, 0, GeminiCLexer.OR);
+        operator(';', GeminiCLexer.SEMICOLON, 0, 0);
+        operator(',', GeminiCLexer.COMMA, 0, 0);
+        operator(':', GeminiCLexer.COLON, 0, 0);
+        operator('?', GeminiCLexer.QUESTION, 0, 0);
+        operator('(', GeminiCLexer.LPAREN, 0, 0);
+        operator(')', GeminiCLexer.RPAREN, 0, 0);
+        operator('{', GeminiCLexer.LBRACE, 0, 0);
+        operator('}', GeminiCLexer.RBRACE, 0, 0);
+        operator('[', GeminiCLexer.LBRACKET, 0, 0);
+        operator(']', GeminiCLexer.RBRACKET, 0, 0);
+
+        keyword("int", GeminiCLexer.INT);
+        keyword("float", GeminiCLexer.FLOAT);
+        keyword("char", GeminiCLexer.CHAR);
+        keyword("string", GeminiCLexer.STRING);
+        keyword("void", GeminiCLexer.VOID);
+        keyword("struct", GeminiCLexer.STRUCT);
+        keyword("if", GeminiCLexer.IF);
+        keyword("else", GeminiCLexer.ELSE);
+        keyword("while", GeminiCLexer.WHILE);
+        keyword("for", GeminiCLexer.FOR);
+        keyword("break", GeminiCLexer.BREAK);
+        keyword("continue", GeminiCLexer.CONTINUE);
+        keyword("return", GeminiCLexer.RETURN);
+        keyword("switch", GeminiCLexer.SWITCH);
+        keyword("case", GeminiCLexer.CASE);
+        keyword("default", GeminiCLexer.DEFAULT);
+    }
+
+    private static void operator(char c, int single, int withAssign, int doubled) {
+        CHAR_CLASS[c] = OPERATOR;
+        SINGLE[c] = single;
+        WITH_ASSIGN[c] = withAssign;
+        DOUBLED[c] = doubled;
+    }
+
+    private static void keyword(String text, int type) {
+        char first = text.charAt(0);
+        int n = KEYWORDS[first] == null ? 0 : KEYWORDS[first].length;
+        char[][] words = new char[n + 1][];
+        int[] types = new int[n + 1];
+        if (n > 0) {
+            System.arraycopy(KEYWORDS[first], 0, words, 0, n);
+            System.arraycopy(KEYWORD_TYPES[first], 0, types, 0, n);
+        }
+        words[n] = text.toCharArray();
+        types[n] = type;
+        KEYWORDS[first] = words;
+        KEYWORD_TYPES[first] = types;
+    }
+
+    private final CharStream input;
+    private final Pair<TokenSource, CharStream> source;
+    private TokenFactory<?> factory = CommonTokenFactory.DEFAULT;
+    private final List<ANTLRErrorListener> listeners = new ArrayList<>();
+
+    // 当前位置的行列号，与 LexerATNSimulator 相同：遇到 '\n' 换行，其余每个码点占一列
+    private int line = 1;
+    private int column = 0;
+
+    // 当前标识符的字符
+    private char[] identifier = new char[32];
+
+    public GeminiCFastLexer(CharStream input) {
+        this.input = input;
+        this.source = new Pair<>(this, input);
+        listeners.add(ConsoleErrorListener.INSTANCE);
+    }
+
+    public void addErrorListener(ANTLRErrorListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeErrorListeners() {
+        listeners.clear();
+    }
+
+    @Override
+    public Token nextToken() {
+        while (true) {
+            int c = input.LA(1);
+            if (c == IntStream.EOF) {
+                int index = input.index();
+                return factory.create(source, Token.EOF, null, Token.DEFAULT_CHANNEL, index, index - 1, line, column);
+            }
+            int start = input.index();
+            int startLine = line;
+            int startColumn = column;
+            int type = c < 128 ? scan(CHAR_CLASS[c], c) : unrecognized();
+            if (type > 0) {
+                return factory.create(source, type, null, Token.DEFAULT_CHANNEL, start, input.index() - 1, startLine, startColumn);
+            }
+            if (type < 0) {
+                reportError(start, startLine, startColumn);
+            }
+            // type == 0：空白和注释，直接跳过
+        }
+    }
+
+    /**
+     * 从当前字符开始识别一个词法单元，返回其类型；跳过的内容返回 0，词法错误返回 -1
+     */
+    private int scan(byte charClass, int c) {
+        switch (charClass) {
+            case WHITESPACE:
+                do {
+                    consume();
+                    c = input.LA(1);
+                } while (c < 128 && c >= 0 && CHAR_CLASS[c] == WHITESPACE);
+                return 0;
+            case IDENTIFIER:
+                return identifierOrKeyword();
+            case DIGIT:
+                consumeDigits();
+                if (input.LA(1) != '.') {
+                    return GeminiCLexer.INT_LITERAL;
+                }
+                consume();
+                consumeDigits();
+                return GeminiCLexer.FLOAT_LITERAL;
+            case DOT:
+                consume();
+                if (!isDigit(input.LA(1))) {
+                    return GeminiCLexer.DOT;
+                }
+                consumeDigits();
+                return GeminiCLexer.FLOAT_LITERAL;
+            case SLASH:
+                return slash();
+            case CHAR_QUOTE:
+                // '\'' . '\''：任意一个字符
+                consume();
+                if (input.LA(1) == IntStream.EOF) {
+                    return fail();
+                }
+                consume();
+                return accept('\'') ? GeminiCLexer.CHAR_LITERAL : fail();
+            case STRING_QUOTE:
+                return string();
+            case OPERATOR:
+                consume();
+                int next = input.LA(1);
+                if (next == c && DOUBLED[c] != 0) {
+                    consume();
+                    return DOUBLED[c];
+                }
+                if (next == '=' && WITH_ASSIGN[c] != 0) {
+                    consume();
+                    return WITH_ASSIGN[c];
+                }
+                // 单独的 '&' 或 '|' 是 '&&'、'||' 的前缀，在下一个字符处失败
+                return SINGLE[c] != 0 ? SINGLE[c] : fail();
+            default:
+                return unrecognized();
+        }
+    }
+
+    private int identifierOrKeyword() {
+        int length = 0;
+        int c = input.LA(1);
+        do {
+            if (length == identifier.length) {
+                identifier = Arrays.copyOf(identifier, length * 2);
+            }
+            identifier[length++] = (char) c;
+            consume();
+            c = input.LA(1);
+        } while (c < 128 && c >= 0 && (CHAR_CLASS[c] == IDENTIFIER || CHAR_CLASS[c] == DIGIT));
+
+        char[][] candidates = KEYWORDS[identifier[0]];
+        if (candidates != null) {
+            for (int i = 0; i < candidates.length; i++) {
+                if (matches(candidates[i], length)) {
+                    return KEYWORD_TYPES[identifier[0]][i];
+                }
+            }
+        }
+        return GeminiCLexer.ID;
+    }
+
+    private boolean matches(char[] keyword, int length) {
+        if (keyword.length != length) {
+            return false;
+        }
+        for (int i = 1; i < length; i++) {
+            if (keyword[i] != identifier[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int slash() {
+        int start = input.index();
+        int startLine = line;
+        int startColumn = column;
+        consume();
+        int c = input.LA(1);
+        if (c == '=') {
+            consume();
+            return GeminiCLexer.DIVIDE_ASSIGN;
+        }
+        if (c == '/') {
+            // '//' ~[\r\n]*
+            do {
+                consume();
+                c = input.LA(1);
+            } while (c != '\r' && c != '\n' && c != IntStream.EOF);
+            return 0;
+        }
+        if (c == '*') {
+            // '/*' .*? '*/'，在第一个 '*/' 处结束
+            consume();
+            while ((c = input.LA(1)) != IntStream.EOF) {
+                consume();
+                if (c == '*' && input.LA(1) == '/') {
+                    consume();
+                    return 0;
+                }
+            }
+            // 没有结束的块注释不构成词法单元，退回到 '/' 之后，按除号处理
+            input.seek(start + 1);
+            line = startLine;
+            column = startColumn + 1;
+        }
+        return GeminiCLexer.DIVIDE;
+    }
+
+    private int string() {
+        // '"' (~["\\\r\n] | '\\' .)* '"'
+        consume();
+        while (true) {
+            int c = input.LA(1);
+            if (c == '"') {
+                consume();
+                return GeminiCLexer.STRING_LITERAL;
+            }
+            if (c == IntStream.EOF || c == '\r' || c == '\n') {
+                return fail();
+            }
+            consume();
+            if (c == '\\') {
+                if (input.LA(1) == IntStream.EOF) {
+                    return fail();
+                }
+                consume();
+            }
+        }
+    }
+
+    private boolean accept(int c) {
+        if (input.LA(1) != c) {
+            return false;
+        }
+        consume();
+        return true;
+    }
+
+    /**
+     * 当前字符无法延续任何词法单元：失败处的字符计入错误文本，并被跳过
+     */
+    private int fail() {
+        if (input.LA(1) != IntStream.EOF) {
+            consume();
+        }
+        return -1;
+    }
+
+    private int unrecognized() {
+        consume();
+        return -1;
+    }
+
+    private void consume() {
+        if (input.LA(1) == '\n') {
+            line++;
+            column = 0;
+        } else {
+            column++;
+        }
+        input.consume();
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private void consumeDigits() {
+        while (isDigit(input.LA(1))) {
+            consume();
+        }
+    }
+
+    private void reportError(int start, int startLine, int startColumn) {
+        String text = input.getText(Interval.of(start, input.index() - 1));
+        StringBuilder display = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\n': display.append("\\n"); break;
+                case '\t': display.append("\\t"); break;
+                case '\r': display.append("\\r"); break;
+                default: display.append(c);
+            }
+        }
+        String message = "token recognition error at: '" + display + "'";
+        for (ANTLRErrorListener listener : listeners) {
+            listener.syntaxError(null, null, startLine, startColumn, message, null);
+        }
+    }
+
+    @Override
+    public int getLine() {
+        return line;
+    }
+
+    @Override
+    public int getCharPositionInLine() {
+        return column;
+    }
+
+    @Override
+    public CharStream getInputStream() {
+        return input;
+    }
+
+    @Override
+    public String getSourceName() {
+        return input.getSourceName();
+    }
+
+    @Override
+    public void setTokenFactory(TokenFactory<?> factory) {
+        this.factory = factory;
+    }
+
+    @Override
+    public TokenFactory<?> getTokenFactory() {
+        return factory;
+    }
+}
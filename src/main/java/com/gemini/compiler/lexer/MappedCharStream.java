@@ -0,0 +1,345 @@
+package com.gemini.compiler.lexer;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * 基于内存映射文件的字符流
+ *
+ * CharStreams.fromString 需要先把整个文件解码成 String，再复制一份码点数组；
+ * 这里直接在映射的字节上按需解码 UTF-8，堆上不保存源文件的解码副本。
+ *
+ * 与 CodePointCharStream 一样，下标是码点下标。打开时扫描一遍字节，校验 UTF-8 并记录每个多字节字符的位置：
+ * 码点下标 i 对应的字节偏移是 i 加上它之前所有多字节字符多出的字节数。纯 ASCII 文件不需要任何额外记录，
+ * 含中文注释的文件也只按非 ASCII 字符的个数占用内存。
+ *
+ * 逐字节调用 MappedByteBuffer.get 比数组访问慢得多，因此按块把字节批量复制到一个固定大小的窗口中读取；
+ * 词法分析器顺序前进、只做小范围回退，窗口很少需要重新填充。
+ */
+public final class MappedCharStream implements CharStream {
+
+    private static final int WINDOW_SIZE = 64 * 1024;
+
+    // 重新填充窗口时保留的当前位置之前的字节数，容纳词法分析器的回退
+    private static final int WINDOW_BACKTRACK = 4 * 1024;
+
+    // 不超过该距离的 seek 逐字符移动
+    private static final int LOCAL_SEEK = 16;
+
+    private final MappedByteBuffer bytes;
+    private final String sourceName;
+    private final int size;
+
+    // 多字节字符的码点下标（递增）和截至该字符（含）累计多出的字节数
+    private final int[] multiByteIndex;
+    private final int[] extraBytes;
+    private final int multiByteCount;
+
+    // 当前码点下标、字节偏移和当前码点（LA(1) 的值）
+    private int position;
+    private int positionOffset;
+    private int current;
+
+    // 字节窗口，覆盖 [windowStart, windowEnd)
+    private final byte[] window = new byte[WINDOW_SIZE];
+    private int windowStart;
+    private int windowEnd;
+
+    private MappedCharStream(MappedByteBuffer bytes, String sourceName, int size,
+                             int[] multiByteIndex, int[] extraBytes, int multiByteCount) {
+        this.bytes = bytes;
+        this.sourceName = sourceName;
+        this.size = size;
+        this.multiByteIndex = multiByteIndex;
+        this.extraBytes = extraBytes;
+        this.multiByteCount = multiByteCount;
+        this.current = size > 0 ? decode(0) : IntStream.EOF;
+    }
+
+    /**
+     * 映射并校验 UTF-8 源文件
+     * @throws IOException 文件无法读取、超过 2GB 或不是有效的 UTF-8
+     */
+    public static MappedCharStream open(Path path) throws IOException {
+        return open(map(path), path.toString());
+    }
+
+    /**
+     * 只读映射整个源文件。映射与文件共享页面：文件被原地改写时映射的内容随之改变，
+     * 被替换（重命名覆盖）时映射仍是原来的内容
+     * @throws IOException 文件无法读取或超过 2GB
+     */
+    public static MappedByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("源文件超过 2GB: " + path);
+            }
+            // 映射在通道关闭后仍然有效
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * 在已映射的源文件上校验 UTF-8 并创建字符流，例如先用同一份映射计算了编译缓存键
+     * @throws IOException 不是有效的 UTF-8
+     */
+    public static MappedCharStream open(MappedByteBuffer bytes, String sourceName) throws IOException {
+        int length = bytes.limit();
+        int[] multiByteIndex = new int[0];
+        int[] extraBytes = new int[0];
+        int count = 0;
+        int extra = 0;
+        int codePoints = 0;
+        byte[] chunk = new byte[WINDOW_SIZE];
+        int chunkStart = 0;
+        int chunkEnd = 0;
+        for (int offset = 0; offset < length; codePoints++) {
+            if (offset >= chunkEnd) {
+                chunkStart = offset;
+                chunkEnd = Math.min(length, offset + WINDOW_SIZE);
+                copy(bytes, chunkStart, chunk, chunkEnd - chunkStart);
+            }
+            if (chunk[offset - chunkStart] >= 0) {
+                offset++;
+                continue;
+            }
+            int width = sequenceLength(bytes, offset, length);
+            if (width < 0) {
+                throw new IOException("源文件不是有效的 UTF-8 编码（字节偏移 " + offset + "）: " + sourceName);
+            }
+            if (width > 1) {
+                if (count == multiByteIndex.length) {
+                    multiByteIndex = Arrays.copyOf(multiByteIndex, Math.max(16, count * 2));
+                    extraBytes = Arrays.copyOf(extraBytes, multiByteIndex.length);
+                }
+                extra += width - 1;
+                multiByteIndex[count] = codePoints;
+                extraBytes[count] = extra;
+                count++;
+            }
+            offset += width;
+        }
+        return new MappedCharStream(bytes, sourceName, codePoints, multiByteIndex, extraBytes, count);
+    }
+
+    /**
+     * offset 处 UTF-8 序列的字节数，非法序列（含超长编码和代理码点）返回 -1
+     */
+    private static int sequenceLength(MappedByteBuffer bytes, int offset, int length) {
+        int b = bytes.get(offset) & 0xFF;
+        if (b < 0x80) {
+            return 1;
+        }
+        int width;
+        int min;
+        if (b >= 0xC2 && b <= 0xDF) {
+            width = 2;
+            min = 0x80;
+        } else if (b >= 0xE0 && b <= 0xEF) {
+            width = 3;
+            min = 0x800;
+        } else if (b >= 0xF0 && b <= 0xF4) {
+            width = 4;
+            min = 0x10000;
+        } else {
+            return -1;
+        }
+        if (offset + width > length) {
+            return -1;
+        }
+        for (int i = 1; i < width; i++) {
+            if ((bytes.get(offset + i) & 0xC0) != 0x80) {
+                return -1;
+            }
+        }
+        int codePoint = decode(bytes, offset, width);
+        if (codePoint < min || codePoint > Character.MAX_CODE_POINT
+                || (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)) {
+            return -1;
+        }
+        return width;
+    }
+
+    private static void copy(MappedByteBuffer bytes, int offset, byte[] target, int length) {
+        ByteBuffer view = bytes.duplicate();
+        view.position(offset);
+        view.get(target, 0, length);
+    }
+
+    // 热路径保持短小以便内联，窗口填充和多字节解码放在单独的方法里
+    private int byteAt(int offset) {
+        if (offset < windowStart || offset >= windowEnd) {
+            refill(offset);
+        }
+        return window[offset - windowStart] & 0xFF;
+    }
+
+    private void refill(int offset) {
+        windowStart = Math.max(0, offset - WINDOW_BACKTRACK);
+        windowEnd = Math.min(bytes.limit(), windowStart + WINDOW_SIZE);
+        copy(bytes, windowStart, window, windowEnd - windowStart);
+    }
+
+    /**
+     * 解码 offset 处的码点（序列已在打开时校验）
+     */
+    private int decode(int offset) {
+        int b = byteAt(offset);
+        return b < 0x80 ? b : decodeMultiByte(offset, b);
+    }
+
+    private int decodeMultiByte(int offset, int b) {
+        int width = width(b);
+        int codePoint = b & (0xFF >> (width + 1));
+        for (int i = 1; i < width; i++) {
+            codePoint = (codePoint << 6) | (byteAt(offset + i) & 0x3F);
+        }
+        return codePoint;
+    }
+
+    private static int decode(MappedByteBuffer bytes, int offset, int width) {
+        int b = bytes.get(offset) & 0xFF;
+        if (width == 1) {
+            return b;
+        }
+        int codePoint = b & (0xFF >> (width + 1));
+        for (int i = 1; i < width; i++) {
+            codePoint = (codePoint << 6) | (bytes.get(offset + i) & 0x3F);
+        }
+        return codePoint;
+    }
+
+    private static int width(int leadByte) {
+        if (leadByte < 0x80) {
+            return 1;
+        }
+        return leadByte < 0xE0 ? 2 : leadByte < 0xF0 ? 3 : 4;
+    }
+
+    /**
+     * 码点下标对应的字节偏移
+     */
+    private int offsetOf(int index) {
+        if (multiByteCount == 0) {
+            return index;
+        }
+        // 找到下标小于 index 的最后一个多字节字符
+        int low = 0;
+        int high = multiByteCount - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (multiByteIndex[mid] < index) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return index + (found < 0 ? 0 : extraBytes[found]);
+    }
+
+    private int codePointAt(int index) {
+        return decode(offsetOf(index));
+    }
+
+    @Override
+    public void consume() {
+        if (position >= size) {
+            throw new IllegalStateException("cannot consume EOF");
+        }
+        positionOffset += current < 0x80 ? 1 : current < 0x800 ? 2 : current < 0x10000 ? 3 : 4;
+        position++;
+        current = position < size ? decode(positionOffset) : IntStream.EOF;
+    }
+
+    @Override
+    public int LA(int i) {
+        if (i == 1) {
+            // 词法分析器几乎只用 LA(1)
+            return current;
+        }
+        if (i == 0) {
+            return 0;
+        }
+        int index = i > 0 ? position + i - 1 : position + i;
+        if (index < 0 || index >= size) {
+            return IntStream.EOF;
+        }
+        return codePointAt(index);
+    }
+
+    @Override
+    public int mark() {
+        return -1;
+    }
+
+    @Override
+    public void release(int marker) {
+    }
+
+    @Override
+    public int index() {
+        return position;
+    }
+
+    @Override
+    public void seek(int index) {
+        index = Math.min(Math.max(index, 0), size);
+        if (Math.abs(index - position) <= LOCAL_SEEK) {
+            // 词法分析器在每个词法单元结束时回退几个字符，逐字符移动比二分查找快
+            while (position < index) {
+                positionOffset += width(byteAt(positionOffset));
+                position++;
+            }
+            while (position > index) {
+                do {
+                    positionOffset--;
+                } while ((byteAt(positionOffset) & 0xC0) == 0x80);
+                position--;
+            }
+        } else {
+            position = index;
+            positionOffset = offsetOf(position);
+        }
+        current = position < size ? decode(positionOffset) : IntStream.EOF;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String getSourceName() {
+        return sourceName;
+    }
+
+    @Override
+    public String getText(Interval interval) {
+        int start = Math.min(interval.a, size);
+        int stop = Math.min(interval.b + 1, size);
+        if (stop <= start) {
+            return "";
+        }
+        int startOffset = offsetOf(start);
+        byte[] text = new byte[offsetOf(stop) - startOffset];
+        copy(bytes, startOffset, text, text.length);
+        return new String(text, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return getText(Interval.of(0, size - 1));
+    }
+}
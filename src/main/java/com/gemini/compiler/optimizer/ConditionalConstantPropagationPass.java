@@ -0,0 +1,245 @@
+package com.gemini.compiler.optimizer;
+
+import com.gemini.compiler.ir.Operand;
+import com.gemini.compiler.ir.TACInstruction;
+import com.gemini.compiler.ir.TACOpcode;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 条件常量传播传递（SCCP 的块级形式）。
+ * <p>
+ * 在基本块级控制流图上同时求解常量格值与边的可执行性：
+ * 块只在至少一条入边可执行后才被分析，入口状态只汇合可执行前驱的出口状态；
+ * 块末条件跳转的条件为常量时只把实际走向的边标记为可执行。
+ * 分析结束后丢弃不可执行的块，并用各块的入口状态做与 {@link ConstantPropagationPass} 相同的块内折叠，
+ * 条件恒定的 IF_TRUE/IF_FALSE/IF_ZERO/IF_NONZERO 被改写为 GOTO 或删除。
+ * <p>
+ * 格值以 Map 表示：键存在表示该变量在此处为对应常量，不存在表示不是常量；
+ * 尚未到达的块没有状态（相当于格顶）。在 SSA 形式上，块首 φ 只汇合可执行入边上的取值。
+ */
+public final class ConditionalConstantPropagationPass implements OptimizerPass {
+
+    private final boolean debug;
+    private final ConstantPropagationPass folder;
+
+    public ConditionalConstantPropagationPass() {
+        this(false);
+    }
+
+    public ConditionalConstantPropagationPass(boolean debug) {
+        this.debug = debug;
+        this.folder = new ConstantPropagationPass(false);
+    }
+
+    @Override
+    public List<TACInstruction> run(List<TACInstruction> instructions) {
+        List<TACInstruction> optimized = new ArrayList<>(instructions.size());
+        if (instructions.isEmpty()) {
+            return optimized;
+        }
+
+        ControlFlowGraph cfg = ControlFlowGraph.build(instructions);
+        List<Map<Operand, Operand>> entryStates = analyze(cfg);
+
+        int removedBlocks = 0;
+        for (int b = 0; b < cfg.blockCount(); b++) {
+            Map<Operand, Operand> state = entryStates.get(b);
+            if (state == null) {
+                removedBlocks++;
+                if (debug) {
+                    for (int i = cfg.blockStart(b); i < cfg.blockEnd(b); i++) {
+                        System.out.println("移除不可执行指令: " + instructions.get(i));
+                    }
+                }
+                continue;
+            }
+            Map<Operand, Operand> constants = new HashMap<>(state);
+            for (int i = cfg.blockStart(b); i < cfg.blockEnd(b); i++) {
+                TACInstruction instruction = instructions.get(i);
+                if (instruction.getOpcode() == TACOpcode.PHI) {
+                    // φ 的结果已经在入口状态中
+                    optimized.add(instruction);
+                    continue;
+                }
+                folder.propagate(instruction, constants, optimized);
+            }
+        }
+
+        if (debug) {
+            System.out.println("条件常量传播完成，移除不可执行块 " + removedBlocks + " 个");
+        }
+
+        return optimized;
+    }
+
+    /**
+     * 工作表求解各块入口状态，不可执行的块为 null。
+     */
+    private List<Map<Operand, Operand>> analyze(ControlFlowGraph cfg) {
+        int count = cfg.blockCount();
+        List<Map<Operand, Operand>> entryStates = new ArrayList<>(count);
+        List<Map<Operand, Operand>> exitStates = new ArrayList<>(count);
+        boolean[][] executable = new boolean[count][];
+        for (int b = 0; b < count; b++) {
+            entryStates.add(null);
+            exitStates.add(null);
+            executable[b] = new boolean[cfg.successors(b).length];
+        }
+
+        Deque<Integer> worklist = new ArrayDeque<>();
+        boolean[] queued = new boolean[count];
+        worklist.add(0);
+        queued[0] = true;
+
+        while (!worklist.isEmpty()) {
+            int block = worklist.poll();
+            queued[block] = false;
+
+            // 入口：函数入口处所有变量都不是常量，其余块汇合可执行前驱
+            Map<Operand, Operand> entry = block == 0 ? new HashMap<>() : meetPredecessors(cfg, block, exitStates, executable);
+            if (entry == null) {
+                continue;
+            }
+            evaluatePhis(cfg, block, entry, exitStates, executable);
+            if (entry.equals(entryStates.get(block)) && exitStates.get(block) != null) {
+                continue;
+            }
+            entryStates.set(block, entry);
+
+            // 块内传递（不含末尾跳转），得到出口状态
+            List<TACInstruction> instructions = cfg.instructions();
+            int last = cfg.blockEnd(block) - 1;
+            TACInstruction terminator = instructions.get(last);
+            boolean conditional = isConditionalBranch(terminator.getOpcode());
+            boolean jump = conditional || terminator.getOpcode() == TACOpcode.GOTO;
+            int bodyEnd = jump ? last : last + 1;
+
+            Map<Operand, Operand> constants = new HashMap<>(entry);
+            List<TACInstruction> scratch = new ArrayList<>();
+            for (int i = cfg.blockStart(block); i < bodyEnd; i++) {
+                if (instructions.get(i).getOpcode() != TACOpcode.PHI) {
+                    folder.propagate(instructions.get(i), constants, scratch);
+                }
+            }
+            exitStates.set(block, constants);
+
+            // 标记可执行的出边
+            int[] successors = cfg.successors(block);
+            for (int k = 0; k < successors.length; k++) {
+                if (isTaken(cfg, block, successors[k], terminator, conditional, constants)) {
+                    executable[block][k] = true;
+                    if (!queued[successors[k]]) {
+                        queued[successors[k]] = true;
+                        worklist.add(successors[k]);
+                    }
+                }
+            }
+        }
+        return entryStates;
+    }
+
+    /**
+     * 汇合可执行前驱的出口状态：只保留在所有前驱中取值相同的常量。
+     */
+    private Map<Operand, Operand> meetPredecessors(ControlFlowGraph cfg, int block,
+                                                  List<Map<Operand, Operand>> exitStates,
+                                                  boolean[][] executable) {
+        Map<Operand, Operand> result = null;
+        for (int pred : cfg.predecessors(block)) {
+            Map<Operand, Operand> exit = exitStates.get(pred);
+            if (exit == null || !isEdgeExecutable(cfg, pred, block, executable)) {
+                continue;
+            }
+            if (result == null) {
+                result = new HashMap<>(exit);
+            } else {
+                result.entrySet().removeIf(entry -> exit.get(entry.getKey()) != entry.getValue());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 块首 φ 只汇合可执行入边上的取值：这些取值都是同一常量时结果为常量。
+     */
+    private void evaluatePhis(ControlFlowGraph cfg, int block, Map<Operand, Operand> entry,
+                              List<Map<Operand, Operand>> exitStates, boolean[][] executable) {
+        List<TACInstruction> instructions = cfg.instructions();
+        for (int i = cfg.blockStart(block); i < cfg.blockEnd(block); i++) {
+            TACInstruction phi = instructions.get(i);
+            if (phi.getOpcode() == TACOpcode.LABEL) {
+                continue;
+            }
+            if (phi.getOpcode() != TACOpcode.PHI) {
+                break;
+            }
+            Operand value = null;
+            boolean constant = true;
+            for (int k = 0; k < phi.getPhiCount() && constant; k++) {
+                int pred = cfg.blockOf(phi.getPhiLabel(k));
+                if (pred < 0 || exitStates.get(pred) == null || !isEdgeExecutable(cfg, pred, block, executable)) {
+                    continue;
+                }
+                Operand incoming = folder.substituteConstant(phi.getPhiValue(k), exitStates.get(pred));
+                if (incoming == null || !incoming.isImmediate() || (value != null && value != incoming)) {
+                    constant = false;
+                } else {
+                    value = incoming;
+                }
+            }
+            if (constant && value != null) {
+                entry.put(phi.getResultOperand(), value);
+            } else {
+                entry.remove(phi.getResultOperand());
+            }
+        }
+    }
+
+    private boolean isEdgeExecutable(ControlFlowGraph cfg, int from, int to, boolean[][] executable) {
+        int[] successors = cfg.successors(from);
+        for (int k = 0; k < successors.length; k++) {
+            if (successors[k] == to && executable[from][k]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 判断出边是否会被执行：条件为常量时只有实际走向的一条边可执行。
+     */
+    private boolean isTaken(ControlFlowGraph cfg, int block, int successor, TACInstruction terminator,
+                            boolean conditional, Map<Operand, Operand> constants) {
+        if (!conditional) {
+            return true;
+        }
+        Operand condition = folder.substituteConstant(terminator.getArg1Operand(), constants);
+        if (condition == null || !condition.isImmediate()) {
+            return true;
+        }
+        boolean branches = folder.evaluateBranch(terminator.getOpcode(), condition.getValue());
+        int target = cfg.branchTarget(block);
+        if (target == successor && block + 1 == successor) {
+            // 跳转目标恰好是下一块，两种走向都到达它
+            return true;
+        }
+        return branches ? successor == target : successor != target;
+    }
+
+    private static boolean isConditionalBranch(TACOpcode opcode) {
+        switch (opcode) {
+            case IF_TRUE:
+            case IF_FALSE:
+            case IF_ZERO:
+            case IF_NONZERO:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -1,14 +1,18 @@
 package com.gemini.compiler.optimizer;
 
+import com.gemini.compiler.ir.Operand;
 import com.gemini.compiler.ir.TACInstruction;
 import com.gemini.compiler.ir.TACOpcode;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * 常量传播（含常量折叠）传递。
+ *
+ * 常量表以驻留的 Operand 为键、立即数 Operand 为值，折叠时直接读取 int 值。
  */
 public final class ConstantPropagationPass implements OptimizerPass {
 
@@ -24,259 +28,289 @@ public final class ConstantPropagationPass implements OptimizerPass {
 
     @Override
     public List<TACInstruction> run(List<TACInstruction> instructions) {
-        Map<String, Integer> constants = new HashMap<>();
         List<TACInstruction> optimized = new ArrayList<>(instructions.size());
+        if (instructions.isEmpty()) {
+            return optimized;
+        }
 
-        for (TACInstruction instruction : instructions) {
-            TACOpcode opcode = instruction.getOpcode();
+        ControlFlowGraph cfg = ControlFlowGraph.build(instructions);
+        ReachingDefinitions reaching = new ReachingDefinitions(cfg);
 
-            if (opcode == TACOpcode.LABEL) {
-                constants.clear();
-                optimized.add(instruction);
-                continue;
+        for (int b = 0; b < cfg.blockCount(); b++) {
+            Map<Operand, Operand> constants = reaching.constantsAtEntry(b);
+            for (int i = cfg.blockStart(b); i < cfg.blockEnd(b); i++) {
+                propagate(instructions.get(i), constants, optimized);
             }
+        }
 
-            String substitutedArg1 = substituteConstant(instruction.getArg1(), constants);
-            String substitutedArg2 = substituteConstant(instruction.getArg2(), constants);
-            String result = instruction.getResult();
-            String substitutedMetadata = substituteConstant(instruction.getMetadata(), constants);
+        if (debug) {
+            System.out.println("常量传播完成");
+        }
 
-            switch (opcode) {
-                case ASSIGN: {
-                    TACInstruction rewritten = OptimizerUtils.cloneInstruction(
-                        instruction,
-                        TACOpcode.ASSIGN,
-                        substitutedArg1,
-                        null,
-                        result
-                    );
-                    optimized.add(rewritten);
-                    updateConstant(constants, result, substitutedArg1);
-                    break;
-                }
-                case SELECT: {
-                    Integer condValue = OptimizerUtils.tryParseInt(substitutedArg1);
-                    Integer trueValue = OptimizerUtils.tryParseInt(substitutedArg2);
-                    Integer falseValue = OptimizerUtils.tryParseInt(substitutedMetadata);
-
-                    if (condValue != null) {
-                        boolean conditionTrue = condValue != 0;
-                        String chosen = conditionTrue ? substitutedArg2 : substitutedMetadata;
-                        TACInstruction rewritten = OptimizerUtils.cloneInstruction(
-                                instruction,
-                                TACOpcode.ASSIGN,
-                                chosen,
-                                null,
-                                result
-                        );
-                        optimized.add(rewritten);
-                        updateConstant(constants, result, chosen);
-                        break;
-                    }
+        return optimized;
+    }
+
+    /**
+     * 在块内按顺序传播常量并折叠单条指令（条件常量传播也复用此方法）。
+     */
+    void propagate(TACInstruction instruction, Map<Operand, Operand> constants,
+                           List<TACInstruction> optimized) {
+        TACOpcode opcode = instruction.getOpcode();
+
+        if (opcode == TACOpcode.LABEL) {
+            optimized.add(instruction);
+            return;
+        }
 
+        Operand substitutedArg1 = substituteConstant(instruction.getArg1Operand(), constants);
+        Operand substitutedArg2 = substituteConstant(instruction.getArg2Operand(), constants);
+        Operand result = instruction.getResultOperand();
+        Operand substitutedMetadata = substituteConstant(Operand.of(instruction.getMetadata()), constants);
+
+        switch (opcode) {
+            case ASSIGN: {
+                TACInstruction rewritten = OptimizerUtils.cloneInstruction(
+                    instruction,
+                    TACOpcode.ASSIGN,
+                    substitutedArg1,
+                    null,
+                    result
+                );
+                optimized.add(rewritten);
+                updateConstant(constants, result, substitutedArg1);
+                break;
+            }
+            case SELECT: {
+                if (isImmediate(substitutedArg1)) {
+                    boolean conditionTrue = substitutedArg1.getValue() != 0;
+                    Operand chosen = conditionTrue ? substitutedArg2 : substitutedMetadata;
                     TACInstruction rewritten = OptimizerUtils.cloneInstruction(
                             instruction,
-                            opcode,
-                            substitutedArg1,
-                            substitutedArg2,
+                            TACOpcode.ASSIGN,
+                            chosen,
+                            null,
                             result
                     );
-                    rewritten.setMetadata(substitutedMetadata);
                     optimized.add(rewritten);
-                    constants.remove(result);
+                    updateConstant(constants, result, chosen);
                     break;
                 }
-                case CAST: {
-                    TACInstruction rewritten = OptimizerUtils.cloneInstruction(
+
+                TACInstruction rewritten = OptimizerUtils.cloneInstruction(
                         instruction,
                         opcode,
                         substitutedArg1,
+                        substitutedArg2,
+                        result
+                );
+                rewritten.setMetadata(textOf(substitutedMetadata));
+                optimized.add(rewritten);
+                constants.remove(result);
+                break;
+            }
+            case CAST: {
+                TACInstruction rewritten = OptimizerUtils.cloneInstruction(
+                    instruction,
+                    opcode,
+                    substitutedArg1,
+                    null,
+                    result
+                );
+                optimized.add(rewritten);
+                constants.remove(result);
+                break;
+            }
+            case ADD:
+            case SUB:
+            case MUL:
+            case DIV:
+            case MOD:
+            case EQ:
+            case NE:
+            case LT:
+            case GT:
+            case LE:
+            case GE:
+            case AND:
+            case OR: {
+                Operand simplified = simplifyBinaryWithIdentities(opcode, substitutedArg1, substitutedArg2);
+                if (simplified != null && result != null) {
+                    TACInstruction rewritten = OptimizerUtils.cloneInstruction(
+                        instruction,
+                        TACOpcode.ASSIGN,
+                        simplified,
                         null,
                         result
                     );
                     optimized.add(rewritten);
-                    constants.remove(result);
+                    updateConstant(constants, result, simplified);
                     break;
                 }
-                case ADD:
-                case SUB:
-                case MUL:
-                case DIV:
-                case MOD:
-                case EQ:
-                case NE:
-                case LT:
-                case GT:
-                case LE:
-                case GE:
-                case AND:
-                case OR: {
-                    String simplified = simplifyBinaryWithIdentities(opcode, substitutedArg1, substitutedArg2);
-                    if (simplified != null && result != null) {
+
+                if (isImmediate(substitutedArg1) && isImmediate(substitutedArg2)) {
+                    Integer folded = foldBinary(opcode, substitutedArg1.getValue(), substitutedArg2.getValue());
+                    if (folded != null) {
+                        Operand constant = Operand.immediate(folded);
                         TACInstruction rewritten = OptimizerUtils.cloneInstruction(
                             instruction,
                             TACOpcode.ASSIGN,
-                            simplified,
+                            constant,
                             null,
                             result
                         );
                         optimized.add(rewritten);
-                        updateConstant(constants, result, simplified);
+                        updateConstant(constants, result, constant);
                         break;
                     }
+                }
 
-                    Integer lhs = OptimizerUtils.tryParseInt(substitutedArg1);
-                    Integer rhs = OptimizerUtils.tryParseInt(substitutedArg2);
-                    if (lhs != null && rhs != null) {
-                        Integer folded = foldBinary(opcode, lhs, rhs);
-                        if (folded != null) {
-                            TACInstruction rewritten = OptimizerUtils.cloneInstruction(
-                                instruction,
-                                TACOpcode.ASSIGN,
-                                String.valueOf(folded),
-                                null,
-                                result
-                            );
-                            optimized.add(rewritten);
-                            updateConstant(constants, result, String.valueOf(folded));
-                            break;
-                        }
-                    }
-
+                TACInstruction rewritten = OptimizerUtils.cloneInstruction(
+                    instruction,
+                    opcode,
+                    substitutedArg1,
+                    substitutedArg2,
+                    result
+                );
+                optimized.add(rewritten);
+                constants.remove(result);
+                break;
+            }
+            case NOT: {
+                if (isImmediate(substitutedArg1)) {
+                    Operand folded = Operand.immediate(substitutedArg1.getValue() == 0 ? 1 : 0);
+                    TACInstruction rewritten = OptimizerUtils.cloneInstruction(
+                        instruction,
+                        TACOpcode.ASSIGN,
+                        folded,
+                        null,
+                        result
+                    );
+                    optimized.add(rewritten);
+                    updateConstant(constants, result, folded);
+                } else {
                     TACInstruction rewritten = OptimizerUtils.cloneInstruction(
                         instruction,
                         opcode,
                         substitutedArg1,
-                        substitutedArg2,
+                        null,
                         result
                     );
                     optimized.add(rewritten);
                     constants.remove(result);
-                    break;
                 }
-                case NOT: {
-                    Integer value = OptimizerUtils.tryParseInt(substitutedArg1);
-                    if (value != null) {
-                        int folded = value == 0 ? 1 : 0;
-                        TACInstruction rewritten = OptimizerUtils.cloneInstruction(
+                break;
+            }
+            case IF_TRUE:
+            case IF_FALSE:
+            case IF_ZERO:
+            case IF_NONZERO: {
+                if (isImmediate(substitutedArg1)) {
+                    boolean shouldBranch = evaluateBranch(opcode, substitutedArg1.getValue());
+                    if (shouldBranch) {
+                        optimized.add(OptimizerUtils.cloneInstruction(
                             instruction,
-                            TACOpcode.ASSIGN,
-                            String.valueOf(folded),
+                            TACOpcode.GOTO,
                             null,
-                            result
-                        );
-                        optimized.add(rewritten);
-                        updateConstant(constants, result, String.valueOf(folded));
-                    } else {
-                        TACInstruction rewritten = OptimizerUtils.cloneInstruction(
-                            instruction,
-                            opcode,
-                            substitutedArg1,
                             null,
                             result
-                        );
-                        optimized.add(rewritten);
-                        constants.remove(result);
-                    }
-                    break;
-                }
-                case IF_TRUE:
-                case IF_FALSE:
-                case IF_ZERO:
-                case IF_NONZERO: {
-                    Integer value = OptimizerUtils.tryParseInt(substitutedArg1);
-                    if (value != null) {
-                        boolean shouldBranch = evaluateBranch(opcode, value);
-                        if (shouldBranch) {
-                            optimized.add(OptimizerUtils.cloneInstruction(
-                                instruction,
-                                TACOpcode.GOTO,
-                                null,
-                                null,
-                                instruction.getResult()
-                            ));
-                        }
-                        // 条件恒为假时直接删除
-                    } else {
-                        optimized.add(OptimizerUtils.cloneInstruction(
-                            instruction,
-                            opcode,
-                            substitutedArg1,
-                            null,
-                            instruction.getResult()
                         ));
                     }
-                    constants.clear();
-                    break;
-                }
-                case GOTO: {
-                    optimized.add(instruction);
-                    constants.clear();
-                    break;
-                }
-                case RETURN: {
-                    TACInstruction rewritten = OptimizerUtils.cloneInstruction(
+                    // 条件恒为假时直接删除
+                } else {
+                    optimized.add(OptimizerUtils.cloneInstruction(
                         instruction,
                         opcode,
                         substitutedArg1,
                         null,
                         result
-                    );
-                    optimized.add(rewritten);
-                    constants.clear();
-                    break;
+                    ));
                 }
-                default: {
-                    TACInstruction rewritten = OptimizerUtils.cloneInstruction(
-                        instruction,
-                        opcode,
-                        substitutedArg1,
-                        substitutedArg2,
-                        result
-                    );
-                    rewritten.setMetadata(substitutedMetadata);
-                    optimized.add(rewritten);
-                    if (result != null) {
-                        constants.remove(result);
-                    }
-                    if (hasSideEffect(opcode)) {
-                        constants.clear();
-                    }
-                    break;
+                constants.clear();
+                break;
+            }
+            case GOTO: {
+                optimized.add(instruction);
+                constants.clear();
+                break;
+            }
+            case RETURN: {
+                TACInstruction rewritten = OptimizerUtils.cloneInstruction(
+                    instruction,
+                    opcode,
+                    substitutedArg1,
+                    null,
+                    result
+                );
+                optimized.add(rewritten);
+                constants.clear();
+                break;
+            }
+            case PHI: {
+                // 各个取值都是同一常量时结果为常量；取值本身不替换，退出 SSA 时它们变为复制
+                optimized.add(instruction);
+                updateConstant(constants, result, evaluatePhi(instruction, constants));
+                break;
+            }
+            default: {
+                TACInstruction rewritten = OptimizerUtils.cloneInstruction(
+                    instruction,
+                    opcode,
+                    substitutedArg1,
+                    substitutedArg2,
+                    result
+                );
+                rewritten.setMetadata(textOf(substitutedMetadata));
+                optimized.add(rewritten);
+                if (result != null) {
+                    constants.remove(result);
                 }
+                if (hasSideEffect(opcode)) {
+                    constants.clear();
+                }
+                break;
             }
         }
+    }
 
-        if (debug) {
-            System.out.println("常量传播完成");
+    private Operand evaluatePhi(TACInstruction phi, Map<Operand, Operand> constants) {
+        Operand value = null;
+        for (int k = 0; k < phi.getPhiCount(); k++) {
+            Operand incoming = substituteConstant(phi.getPhiValue(k), constants);
+            if (!isImmediate(incoming) || (value != null && value != incoming)) {
+                return null;
+            }
+            value = incoming;
         }
-
-        return optimized;
+        return value;
     }
 
-    private String substituteConstant(String operand, Map<String, Integer> constants) {
-        if (operand == null) {
-            return null;
-        }
-        if (OptimizerUtils.isNumericLiteral(operand)) {
+    Operand substituteConstant(Operand operand, Map<Operand, Operand> constants) {
+        if (operand == null || !operand.isName()) {
             return operand;
         }
-        Integer value = constants.get(operand);
-        return value != null ? String.valueOf(value) : operand;
+        Operand value = constants.get(operand);
+        return value != null ? value : operand;
     }
 
-    private void updateConstant(Map<String, Integer> constants, String variable, String value) {
+    private void updateConstant(Map<Operand, Operand> constants, Operand variable, Operand value) {
         if (variable == null) {
             return;
         }
-        Integer numeric = OptimizerUtils.tryParseInt(value);
-        if (numeric != null) {
-            constants.put(variable, numeric);
+        if (isImmediate(value)) {
+            constants.put(variable, value);
         } else {
             constants.remove(variable);
         }
     }
 
+    private static boolean isImmediate(Operand operand) {
+        return operand != null && operand.isImmediate();
+    }
+
+    private static String textOf(Operand operand) {
+        return operand != null ? operand.getText() : null;
+    }
+
     private Integer foldBinary(TACOpcode opcode, int lhs, int rhs) {
         switch (opcode) {
             case ADD: return lhs + rhs;
@@ -296,7 +330,7 @@ public final class ConstantPropagationPass implements OptimizerPass {
         }
     }
 
-    private String simplifyBinaryWithIdentities(TACOpcode opcode, String left, String right) {
+    private Operand simplifyBinaryWithIdentities(TACOpcode opcode, Operand left, Operand right) {
         switch (opcode) {
             case ADD:
                 if (isZero(left)) { return right; }
@@ -306,23 +340,23 @@ public final class ConstantPropagationPass implements OptimizerPass {
                 if (isZero(right)) { return left; }
                 break;
             case MUL:
-                if (isZero(left) || isZero(right)) { return "0"; }
+                if (isZero(left) || isZero(right)) { return Operand.immediate(0); }
                 if (isOne(left)) { return right; }
                 if (isOne(right)) { return left; }
                 break;
             case DIV:
-                if (isZero(left)) { return "0"; }
+                if (isZero(left)) { return Operand.immediate(0); }
                 if (isOne(right)) { return left; }
                 break;
             case AND:
-                if (isZero(left) || isZero(right)) { return "0"; }
+                if (isZero(left) || isZero(right)) { return Operand.immediate(0); }
                 if (isOne(left)) { return right; }
                 if (isOne(right)) { return left; }
                 break;
             case OR:
                 if (isZero(left)) { return right; }
                 if (isZero(right)) { return left; }
-                if (isOne(left) || isOne(right)) { return "1"; }
+                if (isOne(left) || isOne(right)) { return Operand.immediate(1); }
                 break;
             default:
                 break;
@@ -330,7 +364,7 @@ public final class ConstantPropagationPass implements OptimizerPass {
         return null;
     }
 
-    private boolean evaluateBranch(TACOpcode opcode, int value) {
+    boolean evaluateBranch(TACOpcode opcode, int value) {
         switch (opcode) {
             case IF_TRUE:
             case IF_NONZERO:
@@ -343,12 +377,12 @@ public final class ConstantPropagationPass implements OptimizerPass {
         }
     }
 
-    private boolean isZero(String value) {
-        return "0".equals(value);
+    private boolean isZero(Operand value) {
+        return isImmediate(value) && value.getValue() == 0;
     }
 
-    private boolean isOne(String value) {
-        return "1".equals(value);
+    private boolean isOne(Operand value) {
+        return isImmediate(value) && value.getValue() == 1;
     }
 
     private boolean hasSideEffect(TACOpcode opcode) {
@@ -365,5 +399,127 @@ public final class ConstantPropagationPass implements OptimizerPass {
                 return false;
         }
     }
-}
 
+    /**
+     * 到达定值分析（前向、并汇合）。
+     * <p>
+     * 位集前半部分每一位对应一个定值点，后半部分每个变量一位，表示"来自单元外部或被副作用改写的未知值"。
+     * 入口处所有未知位置位；有副作用的指令（调用、存储等）重新置位所有未知位。
+     * 若块入口处到达某变量的定值都是同一个整数立即数的赋值，则该变量在块入口为常量。
+     */
+    private final class ReachingDefinitions {
+        private final Map<Operand, Integer> variables = new HashMap<>();
+        private final List<Operand> variableList = new ArrayList<>();
+        private final List<BitSet> definitionsOf = new ArrayList<>();
+        private final int[] definitionVariable;
+        private final Operand[] definitionConstant;
+        private final DataflowSolver.Result result;
+
+        ReachingDefinitions(ControlFlowGraph cfg) {
+            List<TACInstruction> instructions = cfg.instructions();
+            int n = instructions.size();
+
+            // 编号定值点
+            int[] definitionAt = new int[n];
+            int definitionCount = 0;
+            for (int i = 0; i < n; i++) {
+                definitionAt[i] = definedVariable(instructions.get(i)) != null ? definitionCount++ : -1;
+            }
+            definitionVariable = new int[definitionCount];
+            definitionConstant = new Operand[definitionCount];
+            for (int i = 0; i < n; i++) {
+                int definition = definitionAt[i];
+                if (definition < 0) {
+                    continue;
+                }
+                TACInstruction instruction = instructions.get(i);
+                int variable = variableIndex(definedVariable(instruction));
+                definitionVariable[definition] = variable;
+                definitionsOf.get(variable).set(definition);
+                if (instruction.getOpcode() == TACOpcode.ASSIGN && isImmediate(instruction.getArg1Operand())) {
+                    definitionConstant[definition] = instruction.getArg1Operand();
+                }
+            }
+
+            int unknownBase = definitionCount;
+            int width = definitionCount + variableList.size();
+            BitSet allUnknown = new BitSet(width);
+            allUnknown.set(unknownBase, width);
+
+            int count = cfg.blockCount();
+            BitSet[] gen = new BitSet[count];
+            BitSet[] kill = new BitSet[count];
+            for (int b = 0; b < count; b++) {
+                gen[b] = new BitSet(width);
+                kill[b] = new BitSet(width);
+                for (int i = cfg.blockStart(b); i < cfg.blockEnd(b); i++) {
+                    int definition = definitionAt[i];
+                    if (definition >= 0) {
+                        int variable = definitionVariable[definition];
+                        kill[b].or(definitionsOf.get(variable));
+                        kill[b].set(unknownBase + variable);
+                        gen[b].andNot(definitionsOf.get(variable));
+                        gen[b].clear(unknownBase + variable);
+                        gen[b].set(definition);
+                    }
+                    if (hasSideEffect(instructions.get(i).getOpcode())) {
+                        gen[b].or(allUnknown);
+                    }
+                }
+            }
+
+            result = DataflowSolver.solve(cfg, DataflowSolver.Direction.FORWARD, DataflowSolver.Meet.UNION,
+                width, allUnknown, DataflowSolver.genKill(gen, kill));
+        }
+
+        private int variableIndex(Operand variable) {
+            Integer index = variables.get(variable);
+            if (index == null) {
+                index = variables.size();
+                variables.put(variable, index);
+                variableList.add(variable);
+                definitionsOf.add(new BitSet());
+            }
+            return index;
+        }
+
+        /**
+         * 块入口处已知为常量的变量。
+         */
+        Map<Operand, Operand> constantsAtEntry(int block) {
+            Map<Operand, Operand> constants = new HashMap<>();
+            Map<Integer, Operand> candidates = new HashMap<>();
+            BitSet conflicting = new BitSet();
+            BitSet reaching = result.in(block);
+            int unknownBase = definitionVariable.length;
+
+            for (int bit = reaching.nextSetBit(0); bit >= 0; bit = reaching.nextSetBit(bit + 1)) {
+                if (bit >= unknownBase) {
+                    conflicting.set(bit - unknownBase);
+                    continue;
+                }
+                int variable = definitionVariable[bit];
+                Operand constant = definitionConstant[bit];
+                Operand previous = candidates.putIfAbsent(variable, constant);
+                if (constant == null || (previous != null && previous != constant)) {
+                    conflicting.set(variable);
+                }
+            }
+
+            for (Map.Entry<Integer, Operand> entry : candidates.entrySet()) {
+                if (entry.getValue() != null && !conflicting.get(entry.getKey())) {
+                    constants.put(variableList.get(entry.getKey()), entry.getValue());
+                }
+            }
+            return constants;
+        }
+    }
+
+    /**
+     * 指令写入的变量（结果为名字的指令都视为定值）。
+     */
+    private static Operand definedVariable(TACInstruction instruction) {
+        Operand result = instruction.getResultOperand();
+        return result != null && result.isName() ? result : null;
+    }
+}
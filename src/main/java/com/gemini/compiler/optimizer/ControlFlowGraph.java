@@ -1,128 +1,287 @@
 package com.gemini.compiler.optimizer;
 
+import com.gemini.compiler.ir.BasicBlock;
+import com.gemini.compiler.ir.Operand;
 import com.gemini.compiler.ir.TACInstruction;
 import com.gemini.compiler.ir.TACOpcode;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Deque;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
- * 简单的指令级控制流图。
+ * 基本块级控制流图。
+ * <p>
+ * 对单个函数（或全局代码）的指令序列只扫描两遍：第一遍标记块首指令，
+ * 第二遍按每个块的末尾指令连边。块 b 覆盖指令区间 [blockStart(b), blockEnd(b))，
+ * 后继与前驱以 int 数组保存，块 0 为入口。
  */
 final class ControlFlowGraph {
 
-    private final List<List<Integer>> successors;
-    private final List<List<Integer>> predecessors;
+    private static final int[] NO_EDGES = new int[0];
 
-    private ControlFlowGraph(List<List<Integer>> successors, List<List<Integer>> predecessors) {
+    private final List<TACInstruction> instructions;
+    private final int[] blockStarts;
+    private final int[][] successors;
+    private final int[][] predecessors;
+    private final int[] branchTargets;
+    private final Map<Operand, Integer> labelToBlock;
+
+    private ControlFlowGraph(List<TACInstruction> instructions, int[] blockStarts,
+                             int[][] successors, int[][] predecessors, int[] branchTargets,
+                             Map<Operand, Integer> labelToBlock) {
+        this.instructions = instructions;
+        this.blockStarts = blockStarts;
         this.successors = successors;
         this.predecessors = predecessors;
+        this.branchTargets = branchTargets;
+        this.labelToBlock = labelToBlock;
     }
 
-    List<Integer> successors(int index) {
-        return successors.get(index);
-    }
-
-    List<Integer> predecessors(int index) {
-        return predecessors.get(index);
-    }
-
-    int size() {
-        return successors.size();
-    }
-
-    static ControlFlowGraph fromInstructions(List<TACInstruction> instructions) {
+    static ControlFlowGraph build(List<TACInstruction> instructions) {
         int n = instructions.size();
-        Map<String, Integer> labelToIndex = new HashMap<>();
+
+        // 第一遍：标记块首（入口、标签、跳转或返回之后的指令）
+        boolean[] leader = new boolean[n + 1];
+        int blockCount = 0;
         for (int i = 0; i < n; i++) {
-            TACInstruction instr = instructions.get(i);
-            if (instr.getOpcode() == TACOpcode.LABEL && instr.getResult() != null) {
-                labelToIndex.put(instr.getResult(), i);
+            TACOpcode opcode = instructions.get(i).getOpcode();
+            if (i == 0 || opcode == TACOpcode.LABEL) {
+                leader[i] = true;
+            }
+            if (endsBlock(opcode)) {
+                leader[i + 1] = true;
             }
         }
-
-        List<List<Integer>> successors = new ArrayList<>(n);
-        List<List<Integer>> predecessors = new ArrayList<>(n);
         for (int i = 0; i < n; i++) {
-            successors.add(new ArrayList<>());
-            predecessors.add(new ArrayList<>());
+            if (leader[i]) {
+                blockCount++;
+            }
         }
 
+        int[] blockStarts = new int[blockCount + 1];
+        Map<Operand, Integer> labelToBlock = new HashMap<>();
+        int block = 0;
         for (int i = 0; i < n; i++) {
-            TACInstruction instr = instructions.get(i);
-            TACOpcode opcode = instr.getOpcode();
-
-            switch (opcode) {
-                case GOTO: {
-                    Integer target = labelToIndex.get(instr.getResult());
-                    if (target != null) {
-                        addEdge(successors, predecessors, i, target);
-                    }
+            if (!leader[i]) {
+                continue;
+            }
+            blockStarts[block] = i;
+            TACInstruction first = instructions.get(i);
+            if (first.getOpcode() == TACOpcode.LABEL && first.getResultOperand() != null) {
+                labelToBlock.put(first.getResultOperand(), block);
+            }
+            block++;
+        }
+        blockStarts[blockCount] = n;
+
+        // 第二遍：按块末指令连边
+        int[][] successors = new int[blockCount][];
+        int[] branchTargets = new int[blockCount];
+        int[] predecessorCounts = new int[blockCount];
+        for (int b = 0; b < blockCount; b++) {
+            TACInstruction last = instructions.get(blockStarts[b + 1] - 1);
+            int fallthrough = b + 1 < blockCount ? b + 1 : -1;
+            int target = -1;
+
+            switch (last.getOpcode()) {
+                case GOTO:
+                    target = lookup(labelToBlock, last.getResultOperand());
+                    fallthrough = -1;
                     break;
-                }
                 case IF_TRUE:
                 case IF_FALSE:
                 case IF_ZERO:
-                case IF_NONZERO: {
-                    Integer target = labelToIndex.get(instr.getResult());
-                    if (target != null) {
-                        addEdge(successors, predecessors, i, target);
-                    }
-                    if (i + 1 < n) {
-                        addEdge(successors, predecessors, i, i + 1);
-                    }
+                case IF_NONZERO:
+                    target = lookup(labelToBlock, last.getResultOperand());
                     break;
-                }
                 case RETURN:
+                    fallthrough = -1;
                     break;
                 default:
-                    if (i + 1 < n) {
-                        addEdge(successors, predecessors, i, i + 1);
-                    }
                     break;
             }
+            branchTargets[b] = target;
+
+            if (target >= 0 && fallthrough >= 0 && target != fallthrough) {
+                successors[b] = new int[] {fallthrough, target};
+            } else if (target >= 0) {
+                successors[b] = new int[] {target};
+            } else if (fallthrough >= 0) {
+                successors[b] = new int[] {fallthrough};
+            } else {
+                successors[b] = NO_EDGES;
+            }
+            for (int succ : successors[b]) {
+                predecessorCounts[succ]++;
+            }
+        }
+
+        int[][] predecessors = new int[blockCount][];
+        for (int b = 0; b < blockCount; b++) {
+            predecessors[b] = predecessorCounts[b] == 0 ? NO_EDGES : new int[predecessorCounts[b]];
+            predecessorCounts[b] = 0;
         }
+        for (int b = 0; b < blockCount; b++) {
+            for (int succ : successors[b]) {
+                predecessors[succ][predecessorCounts[succ]++] = b;
+            }
+        }
+
+        return new ControlFlowGraph(instructions, blockStarts, successors, predecessors, branchTargets, labelToBlock);
+    }
+
+    private static boolean endsBlock(TACOpcode opcode) {
+        switch (opcode) {
+            case GOTO:
+            case IF_TRUE:
+            case IF_FALSE:
+            case IF_ZERO:
+            case IF_NONZERO:
+            case RETURN:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static int lookup(Map<Operand, Integer> labelToBlock, Operand label) {
+        Integer block = label != null ? labelToBlock.get(label) : null;
+        return block != null ? block : -1;
+    }
+
+    int blockCount() {
+        return blockStarts.length - 1;
+    }
+
+    int blockStart(int block) {
+        return blockStarts[block];
+    }
+
+    int blockEnd(int block) {
+        return blockStarts[block + 1];
+    }
+
+    int[] successors(int block) {
+        return successors[block];
+    }
+
+    int[] predecessors(int block) {
+        return predecessors[block];
+    }
+
+    /**
+     * 块末跳转指令的目标块，没有跳转或目标不在本单元内时为 -1。
+     */
+    int branchTarget(int block) {
+        return branchTargets[block];
+    }
+
+    /**
+     * 以该标签开头的块，标签不在本单元内时为 -1。
+     */
+    int blockOf(Operand label) {
+        return lookup(labelToBlock, label);
+    }
 
-        return new ControlFlowGraph(successors, predecessors);
+    /**
+     * 块首标签，块不以标签开头时为 null。
+     */
+    Operand label(int block) {
+        TACInstruction first = instructions.get(blockStarts[block]);
+        return first.getOpcode() == TACOpcode.LABEL ? first.getResultOperand() : null;
+    }
+
+    List<TACInstruction> instructions() {
+        return instructions;
     }
 
     boolean[] computeReachable() {
-        int n = size();
-        boolean[] reachable = new boolean[n];
-        if (n == 0) {
+        int count = blockCount();
+        boolean[] reachable = new boolean[count];
+        if (count == 0) {
             return reachable;
         }
 
-        Deque<Integer> stack = new ArrayDeque<>();
-        stack.push(0);
+        int[] stack = new int[count];
+        int top = 0;
+        stack[top++] = 0;
         reachable[0] = true;
 
-        while (!stack.isEmpty()) {
-            int index = stack.pop();
-            for (int succ : successors(index)) {
+        while (top > 0) {
+            int block = stack[--top];
+            for (int succ : successors[block]) {
                 if (!reachable[succ]) {
                     reachable[succ] = true;
-                    stack.push(succ);
+                    stack[top++] = succ;
                 }
             }
         }
         return reachable;
     }
 
-    private static void addEdge(
-        List<List<Integer>> successors,
-        List<List<Integer>> predecessors,
-        int from,
-        int to
-    ) {
-        List<Integer> succ = successors.get(from);
-        if (!succ.contains(to)) {
-            succ.add(to);
-            predecessors.get(to).add(from);
+    /**
+     * 从入口可达的块的逆后序。
+     */
+    int[] reversePostOrder() {
+        int count = blockCount();
+        if (count == 0) {
+            return NO_EDGES;
+        }
+
+        int[] order = new int[count];
+        int position = count;
+        boolean[] visited = new boolean[count];
+        int[] stack = new int[count];
+        int[] nextEdge = new int[count];
+        int top = 0;
+
+        stack[top++] = 0;
+        visited[0] = true;
+        while (top > 0) {
+            int block = stack[top - 1];
+            if (nextEdge[block] < successors[block].length) {
+                int succ = successors[block][nextEdge[block]++];
+                if (!visited[succ]) {
+                    visited[succ] = true;
+                    stack[top++] = succ;
+                }
+            } else {
+                order[--position] = block;
+                top--;
+            }
         }
+        return Arrays.copyOfRange(order, position, count);
     }
-}
 
+    /**
+     * 导出为 ir 包中的基本块。以标签开头的块沿用标签名，其余块命名为 prefix_bbN。
+     */
+    List<BasicBlock> toBasicBlocks(String prefix) {
+        int count = blockCount();
+        String[] names = new String[count];
+        for (int b = 0; b < count; b++) {
+            TACInstruction first = instructions.get(blockStarts[b]);
+            names[b] = first.getOpcode() == TACOpcode.LABEL && first.getResult() != null
+                ? first.getResult()
+                : prefix + "_bb" + b;
+        }
+
+        List<BasicBlock> blocks = new ArrayList<>(count);
+        for (int b = 0; b < count; b++) {
+            BasicBlock basicBlock = new BasicBlock(names[b]);
+            for (int i = blockStarts[b]; i < blockStarts[b + 1]; i++) {
+                basicBlock.addInstruction(instructions.get(i));
+            }
+            for (int succ : successors[b]) {
+                basicBlock.addSuccessor(names[succ]);
+            }
+            for (int pred : predecessors[b]) {
+                basicBlock.addPredecessor(names[pred]);
+            }
+            blocks.add(basicBlock);
+        }
+        return blocks;
+    }
+}
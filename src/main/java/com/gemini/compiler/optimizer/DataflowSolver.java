@@ -0,0 +1,156 @@
+package com.gemini.compiler.optimizer;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Deque;
+
+/**
+ * 基于位集的通用工作表数据流求解器。
+ * <p>
+ * 格元素为 {@link BitSet}，汇合操作为并（存在路径）或交（所有路径）。
+ * 前向问题中入口块额外汇合边界值，后向问题中没有后继的出口块汇合边界值。
+ * 初始按逆后序（后向问题为其逆序）把所有块放入工作表，只有输出改变时才把受影响的块重新入表。
+ */
+final class DataflowSolver {
+
+    enum Direction {
+        FORWARD,
+        BACKWARD
+    }
+
+    enum Meet {
+        UNION,
+        INTERSECTION
+    }
+
+    /**
+     * 块的传递函数：根据流入值计算流出值（写入 output，output 初始为空）。
+     */
+    interface TransferFunction {
+        void apply(int block, BitSet input, BitSet output);
+    }
+
+    /**
+     * 求解结果：每个块入口与出口处的值（按程序顺序，而非数据流方向）。
+     */
+    static final class Result {
+        private final BitSet[] in;
+        private final BitSet[] out;
+
+        private Result(BitSet[] in, BitSet[] out) {
+            this.in = in;
+            this.out = out;
+        }
+
+        BitSet in(int block) {
+            return in[block];
+        }
+
+        BitSet out(int block) {
+            return out[block];
+        }
+    }
+
+    private DataflowSolver() {}
+
+    static Result solve(ControlFlowGraph cfg,
+                        Direction direction,
+                        Meet meet,
+                        int width,
+                        BitSet boundary,
+                        TransferFunction transfer) {
+        int count = cfg.blockCount();
+        boolean forward = direction == Direction.FORWARD;
+        BitSet[] before = new BitSet[count];
+        BitSet[] after = new BitSet[count];
+        for (int b = 0; b < count; b++) {
+            before[b] = new BitSet(width);
+            after[b] = initialValue(meet, width);
+        }
+
+        Deque<Integer> worklist = new ArrayDeque<>(count);
+        boolean[] queued = new boolean[count];
+        for (int b : visitOrder(cfg, forward)) {
+            worklist.addLast(b);
+            queued[b] = true;
+        }
+
+        while (!worklist.isEmpty()) {
+            int block = worklist.pollFirst();
+            queued[block] = false;
+
+            int[] sources = forward ? cfg.predecessors(block) : cfg.successors(block);
+            boolean atBoundary = forward ? block == 0 : cfg.successors(block).length == 0;
+
+            BitSet input = null;
+            if (atBoundary) {
+                input = (BitSet) boundary.clone();
+            }
+            for (int source : sources) {
+                if (input == null) {
+                    input = (BitSet) after[source].clone();
+                } else if (meet == Meet.UNION) {
+                    input.or(after[source]);
+                } else {
+                    input.and(after[source]);
+                }
+            }
+            before[block] = input != null ? input : new BitSet(width);
+
+            BitSet output = new BitSet(width);
+            transfer.apply(block, before[block], output);
+            if (!output.equals(after[block])) {
+                after[block] = output;
+                for (int target : forward ? cfg.successors(block) : cfg.predecessors(block)) {
+                    if (!queued[target]) {
+                        queued[target] = true;
+                        worklist.addLast(target);
+                    }
+                }
+            }
+        }
+
+        return forward ? new Result(before, after) : new Result(after, before);
+    }
+
+    /**
+     * 经典的 gen/kill 传递函数：output = gen ∪ (input − kill)。
+     */
+    static TransferFunction genKill(BitSet[] gen, BitSet[] kill) {
+        return (block, input, output) -> {
+            output.or(input);
+            output.andNot(kill[block]);
+            output.or(gen[block]);
+        };
+    }
+
+    private static BitSet initialValue(Meet meet, int width) {
+        BitSet value = new BitSet(width);
+        if (meet == Meet.INTERSECTION) {
+            value.set(0, width);
+        }
+        return value;
+    }
+
+    /**
+     * 前向问题按逆后序、后向问题按后序访问，不可达块排在最后。
+     */
+    private static int[] visitOrder(ControlFlowGraph cfg, boolean forward) {
+        int count = cfg.blockCount();
+        int[] rpo = cfg.reversePostOrder();
+        int[] order = new int[count];
+        boolean[] listed = new boolean[count];
+        int position = 0;
+        for (int i = 0; i < rpo.length; i++) {
+            int block = forward ? rpo[i] : rpo[rpo.length - 1 - i];
+            order[position++] = block;
+            listed[block] = true;
+        }
+        for (int b = 0; b < count; b++) {
+            if (!listed[b]) {
+                order[position++] = b;
+            }
+        }
+        return order;
+    }
+}
@@ -1,26 +1,48 @@
 package com.gemini.compiler.optimizer;
 
+import com.gemini.compiler.ir.Operand;
 import com.gemini.compiler.ir.TACInstruction;
 import com.gemini.compiler.ir.TACOpcode;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
  * 死代码消除（含不可达代码移除 + 逆向活跃变量分析）。
+ * <p>
+ * 在基本块级控制流图上求解活跃变量，再在每个块内逆向删除无用赋值。
  */
 public final class DeadCodeEliminationPass implements OptimizerPass {
 
     private final boolean debug;
+    private final Set<Operand> liveOut;
+
+    // 活跃变量分析的变量编号
+    private Map<Operand, Integer> variables;
+    private List<Operand> variableList;
 
     public DeadCodeEliminationPass() {
         this(false);
     }
 
     public DeadCodeEliminationPass(boolean debug) {
+        this(debug, Collections.emptySet());
+    }
+
+    /**
+     * @param liveOut 在单元出口处仍然活跃的变量（例如函数内写入的全局变量）
+     */
+    public DeadCodeEliminationPass(boolean debug, Set<String> liveOut) {
         this.debug = debug;
+        this.liveOut = new HashSet<>();
+        for (String variable : liveOut) {
+            this.liveOut.add(Operand.of(variable));
+        }
     }
 
     @Override
@@ -29,50 +51,90 @@ public final class DeadCodeEliminationPass implements OptimizerPass {
             return instructions;
         }
 
-        List<TACInstruction> reachableFiltered = removeUnreachableInstructions(instructions);
-        if (reachableFiltered.isEmpty()) {
-            return reachableFiltered;
-        }
+        ControlFlowGraph cfg = ControlFlowGraph.build(instructions);
+        boolean[] reachable = cfg.computeReachable();
+        DataflowSolver.Result liveness = computeLiveness(cfg);
 
-        List<TACInstruction> withoutDeadAssignments = removeDeadAssignments(reachableFiltered);
+        List<TACInstruction> result = new ArrayList<>(instructions.size());
+        List<TACInstruction> blockResult = new ArrayList<>();
+        for (int b = 0; b < cfg.blockCount(); b++) {
+            if (!reachable[b]) {
+                if (debug) {
+                    for (int i = cfg.blockStart(b); i < cfg.blockEnd(b); i++) {
+                        System.out.println("移除不可达指令: " + instructions.get(i));
+                    }
+                }
+                continue;
+            }
+            blockResult.clear();
+            removeDeadAssignments(cfg, b, toOperands(liveness.out(b)), blockResult);
+            for (int i = blockResult.size() - 1; i >= 0; i--) {
+                result.add(blockResult.get(i));
+            }
+        }
 
         if (debug) {
             System.out.println("死代码消除完成");
         }
 
-        return withoutDeadAssignments;
+        return result;
     }
 
-    private List<TACInstruction> removeUnreachableInstructions(List<TACInstruction> instructions) {
-        ControlFlowGraph cfg = ControlFlowGraph.fromInstructions(instructions);
-        boolean[] reachable = cfg.computeReachable();
+    /**
+     * 以块为单位的逆向活跃变量分析（并汇合），出口处活跃集合为 liveOut。
+     */
+    private DataflowSolver.Result computeLiveness(ControlFlowGraph cfg) {
+        List<TACInstruction> instructions = cfg.instructions();
+        variables = new HashMap<>();
+        variableList = new ArrayList<>();
 
-        List<TACInstruction> result = new ArrayList<>();
-        for (int i = 0; i < instructions.size(); i++) {
-            if (reachable[i]) {
-                result.add(instructions.get(i));
-            } else if (debug) {
-                System.out.println("移除不可达指令: " + instructions.get(i));
+        int count = cfg.blockCount();
+        BitSet[] gen = new BitSet[count];
+        BitSet[] kill = new BitSet[count];
+        Set<Operand> uses = new HashSet<>();
+        for (int b = 0; b < count; b++) {
+            gen[b] = new BitSet();
+            kill[b] = new BitSet();
+            for (int i = cfg.blockEnd(b) - 1; i >= cfg.blockStart(b); i--) {
+                TACInstruction instr = instructions.get(i);
+                if (definesVariable(instr)) {
+                    int bit = indexOf(instr.getResultOperand());
+                    kill[b].set(bit);
+                    gen[b].clear(bit);
+                }
+                uses.clear();
+                addUsedOperandsToLive(instr, uses);
+                for (Operand use : uses) {
+                    gen[b].set(indexOf(use));
+                }
             }
         }
-        return result;
+
+        BitSet boundary = new BitSet();
+        for (Operand variable : liveOut) {
+            boundary.set(indexOf(variable));
+        }
+
+        return DataflowSolver.solve(cfg, DataflowSolver.Direction.BACKWARD, DataflowSolver.Meet.UNION,
+            variableList.size(), boundary, DataflowSolver.genKill(gen, kill));
     }
 
-    private List<TACInstruction> removeDeadAssignments(List<TACInstruction> instructions) {
-        Set<String> live = new HashSet<>();
-        List<TACInstruction> reversed = new ArrayList<>(instructions.size());
+    /**
+     * 在块内从出口活跃集合开始逆向删除无用赋值，结果按逆序写入 reversed。
+     */
+    private void removeDeadAssignments(ControlFlowGraph cfg, int block, Set<Operand> live,
+                                       List<TACInstruction> reversed) {
+        List<TACInstruction> instructions = cfg.instructions();
 
-        for (int i = instructions.size() - 1; i >= 0; i--) {
+        for (int i = cfg.blockEnd(block) - 1; i >= cfg.blockStart(block); i--) {
             TACInstruction instr = instructions.get(i);
             TACOpcode opcode = instr.getOpcode();
 
-            addUsedOperandsToLive(instr, live);
-
             boolean definesVariable = definesVariable(instr);
-            String result = instr.getResult();
+            Operand result = instr.getResultOperand();
 
-            if (definesVariable && result != null && !live.contains(result) && isRemovableInstruction(opcode)) {
-                if (opcode == TACOpcode.ASSIGN && OptimizerUtils.isNumericLiteral(instr.getArg1())) {
+            if (definesVariable && !live.contains(result) && isRemovableInstruction(opcode)) {
+                if (opcode == TACOpcode.ASSIGN && OptimizerUtils.isNumericLiteral(instr.getArg1Operand())) {
                     // 保留常量折叠结果，便于后续 pass 使用
                 } else {
                     if (debug) {
@@ -82,22 +144,39 @@ public final class DeadCodeEliminationPass implements OptimizerPass {
                 }
             }
 
-            if (definesVariable && result != null) {
+            // 先移除定值再加入使用（x++ 之类既读又写的指令之前 x 仍然活跃）
+            if (definesVariable) {
                 live.remove(result);
             }
+            addUsedOperandsToLive(instr, live);
 
             reversed.add(instr);
         }
+    }
 
-        Collections.reverse(reversed);
-        return reversed;
+    private int indexOf(Operand variable) {
+        Integer index = variables.get(variable);
+        if (index == null) {
+            index = variableList.size();
+            variables.put(variable, index);
+            variableList.add(variable);
+        }
+        return index;
     }
 
-    private void addUsedOperandsToLive(TACInstruction instruction, Set<String> live) {
+    private Set<Operand> toOperands(BitSet bits) {
+        Set<Operand> operands = new HashSet<>();
+        for (int bit = bits.nextSetBit(0); bit >= 0; bit = bits.nextSetBit(bit + 1)) {
+            operands.add(variableList.get(bit));
+        }
+        return operands;
+    }
+
+    private void addUsedOperandsToLive(TACInstruction instruction, Set<Operand> live) {
         TACOpcode opcode = instruction.getOpcode();
-        String arg1 = instruction.getArg1();
-        String arg2 = instruction.getArg2();
-        String result = instruction.getResult();
+        Operand arg1 = instruction.getArg1Operand();
+        Operand arg2 = instruction.getArg2Operand();
+        Operand result = instruction.getResultOperand();
 
         addIfVariable(live, arg1);
         addIfVariable(live, arg2);
@@ -118,21 +197,27 @@ public final class DeadCodeEliminationPass implements OptimizerPass {
                 addIfVariable(live, result);
                 break;
             case SELECT:
-                addIfVariable(live, instruction.getMetadata());
+                addIfVariable(live, Operand.of(instruction.getMetadata()));
+                break;
+            case PHI:
+                // 保守地视为在 φ 所在块开头使用
+                for (int k = 0; k < instruction.getPhiCount(); k++) {
+                    addIfVariable(live, instruction.getPhiValue(k));
+                }
                 break;
             default:
                 break;
         }
     }
 
-    private void addIfVariable(Set<String> live, String operand) {
-        if (operand != null && !OptimizerUtils.isNumericLiteral(operand)) {
+    private void addIfVariable(Set<Operand> live, Operand operand) {
+        if (operand != null && !operand.isNumeric()) {
             live.add(operand);
         }
     }
 
     private boolean definesVariable(TACInstruction instruction) {
-        if (instruction.getResult() == null) {
+        if (instruction.getResultOperand() == null || !instruction.getResultOperand().isName()) {
             return false;
         }
         switch (instruction.getOpcode()) {
@@ -164,6 +249,7 @@ public final class DeadCodeEliminationPass implements OptimizerPass {
             case ALLOC:
             case LOAD:
             case CALL:
+            case PHI:
                 return true;
             default:
                 return false;
@@ -197,6 +283,7 @@ public final class DeadCodeEliminationPass implements OptimizerPass {
             case INCREMENT:
             case DECREMENT:
             case SELECT:
+            case PHI:
                 return true;
             default:
                 return false;
@@ -0,0 +1,212 @@
+package com.gemini.compiler.optimizer;
+
+import java.util.Arrays;
+
+/**
+ * 支配树与支配边界。
+ * <p>
+ * 采用 Cooper-Harvey-Kennedy 的迭代算法：按逆后序反复用前驱的直接支配者求交，
+ * 直到不再变化。支配边界按 Cytron 等人的方法，从每个汇合块的前驱沿支配树向上走到其直接支配者为止。
+ * 不可达块不在支配树中，其直接支配者为 -1。
+ */
+final class DominatorTree {
+
+    private static final int[] NONE = new int[0];
+
+    private final int[] idom;
+    private final int[] rpoIndex;
+    private final int[] preorder;
+    private final int[][] children;
+    private final int[][] frontiers;
+
+    // 支配树先序区间，用于 O(1) 判断支配关系
+    private final int[] enter;
+    private final int[] exit;
+
+    private DominatorTree(int[] idom, int[] rpoIndex, int[] preorder, int[][] children, int[][] frontiers,
+                          int[] enter, int[] exit) {
+        this.idom = idom;
+        this.rpoIndex = rpoIndex;
+        this.preorder = preorder;
+        this.children = children;
+        this.frontiers = frontiers;
+        this.enter = enter;
+        this.exit = exit;
+    }
+
+    static DominatorTree build(ControlFlowGraph cfg) {
+        int count = cfg.blockCount();
+        int[] rpo = cfg.reversePostOrder();
+        int[] rpoIndex = new int[count];
+        Arrays.fill(rpoIndex, -1);
+        for (int i = 0; i < rpo.length; i++) {
+            rpoIndex[rpo[i]] = i;
+        }
+
+        int[] idom = new int[count];
+        Arrays.fill(idom, -1);
+        if (count > 0) {
+            idom[0] = 0;
+        }
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 1; i < rpo.length; i++) {
+                int block = rpo[i];
+                int newIdom = -1;
+                for (int pred : cfg.predecessors(block)) {
+                    if (idom[pred] < 0) {
+                        continue;
+                    }
+                    newIdom = newIdom < 0 ? pred : intersect(idom, rpoIndex, pred, newIdom);
+                }
+                if (newIdom != idom[block]) {
+                    idom[block] = newIdom;
+                    changed = true;
+                }
+            }
+        }
+
+        // 子节点表
+        int[] childCounts = new int[count];
+        for (int b = 1; b < count; b++) {
+            if (idom[b] >= 0 && idom[b] != b) {
+                childCounts[idom[b]]++;
+            }
+        }
+        int[][] children = new int[count][];
+        for (int b = 0; b < count; b++) {
+            children[b] = childCounts[b] == 0 ? NONE : new int[childCounts[b]];
+            childCounts[b] = 0;
+        }
+        for (int i = 1; i < rpo.length; i++) {
+            int block = rpo[i];
+            children[idom[block]][childCounts[idom[block]]++] = block;
+        }
+
+        // 先序编号
+        int[] enter = new int[count];
+        int[] exit = new int[count];
+        Arrays.fill(enter, -1);
+        int[] preorder = new int[rpo.length];
+        if (count > 0) {
+            int[] stack = new int[rpo.length];
+            int[] nextChild = new int[count];
+            int top = 0;
+            int clock = 0;
+            stack[top++] = 0;
+            preorder[clock] = 0;
+            enter[0] = clock++;
+            while (top > 0) {
+                int block = stack[top - 1];
+                if (nextChild[block] < children[block].length) {
+                    int child = children[block][nextChild[block]++];
+                    preorder[clock] = child;
+                    enter[child] = clock++;
+                    stack[top++] = child;
+                } else {
+                    exit[block] = clock;
+                    top--;
+                }
+            }
+        }
+
+        // 支配边界
+        int[][] frontiers = computeFrontiers(cfg, idom);
+
+        if (count > 0) {
+            idom[0] = -1;
+        }
+        return new DominatorTree(idom, rpoIndex, preorder, children, frontiers, enter, exit);
+    }
+
+    private static int intersect(int[] idom, int[] rpoIndex, int a, int b) {
+        while (a != b) {
+            while (rpoIndex[a] > rpoIndex[b]) {
+                a = idom[a];
+            }
+            while (rpoIndex[b] > rpoIndex[a]) {
+                b = idom[b];
+            }
+        }
+        return a;
+    }
+
+    private static int[][] computeFrontiers(ControlFlowGraph cfg, int[] idom) {
+        int count = cfg.blockCount();
+        int[][] frontiers = new int[count][];
+        int[] sizes = new int[count];
+        int[] lastAdded = new int[count];
+        Arrays.fill(lastAdded, -1);
+        for (int b = 0; b < count; b++) {
+            frontiers[b] = NONE;
+        }
+
+        for (int block = 0; block < count; block++) {
+            int[] preds = cfg.predecessors(block);
+            if (preds.length < 2 || idom[block] < 0) {
+                continue;
+            }
+            for (int pred : preds) {
+                int runner = pred;
+                while (idom[runner] >= 0 && runner != idom[block]) {
+                    if (lastAdded[runner] != block) {
+                        lastAdded[runner] = block;
+                        if (sizes[runner] == frontiers[runner].length) {
+                            frontiers[runner] = Arrays.copyOf(frontiers[runner], Math.max(2, sizes[runner] * 2));
+                        }
+                        frontiers[runner][sizes[runner]++] = block;
+                    }
+                    if (runner == 0) {
+                        break;
+                    }
+                    runner = idom[runner];
+                }
+            }
+        }
+
+        for (int b = 0; b < count; b++) {
+            if (sizes[b] != frontiers[b].length) {
+                frontiers[b] = Arrays.copyOf(frontiers[b], sizes[b]);
+            }
+        }
+        return frontiers;
+    }
+
+    /**
+     * 直接支配者，入口块与不可达块为 -1。
+     */
+    int idom(int block) {
+        return idom[block];
+    }
+
+    int[] children(int block) {
+        return children[block];
+    }
+
+    int[] frontier(int block) {
+        return frontiers[block];
+    }
+
+    boolean isReachable(int block) {
+        return rpoIndex[block] >= 0;
+    }
+
+    /**
+     * a 是否支配 b（每个可达块都支配自身）。
+     */
+    boolean dominates(int a, int b) {
+        if (enter[a] < 0 || enter[b] < 0) {
+            return false;
+        }
+        return enter[a] <= enter[b] && enter[b] < exit[a];
+    }
+
+    /**
+     * 支配树先序遍历（只含可达块），父节点总在子节点之前。
+     */
+    int[] preorder() {
+        return preorder;
+    }
+}
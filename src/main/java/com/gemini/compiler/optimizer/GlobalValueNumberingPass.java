@@ -0,0 +1,503 @@
+package com.gemini.compiler.optimizer;
+
+import com.gemini.compiler.ir.FunctionIndex;
+import com.gemini.compiler.ir.Operand;
+import com.gemini.compiler.ir.TACInstruction;
+import com.gemini.compiler.ir.TACOpcode;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 全局值编号（GVN）传递，代替原来的块内公共子表达式消除。
+ * <p>
+ * 沿支配树先序遍历每个函数（全局代码单独作为一个区域），给每个值分配编号：
+ * 常量按自身编号，复制 {@code x = y} 让 x 沿用 y 的编号，表达式按（操作码，操作数编号）查表，
+ * 在支配者中已经计算过的表达式改写为 {@code r = 先前结果} 的复制。
+ * 交换律运算的操作数按编号排序，{@code a > b} 与 {@code a >= b} 分别规范为 {@code b < a} 与 {@code b <= a}。
+ * <p>
+ * 只在函数内恰有一处定值、且该定值支配所有使用的变量（SSA 形式下的临时变量与版本名）才在支配树范围内共享编号；
+ * 其余变量（多次定值的变量、全局变量）的编号只在当前块内有效，以它们为结果的表达式也只在块内复用。
+ * <p>
+ * 数组读取与成员读取额外带有内存版本：块内的数组写入使数组读取失效，成员写入使成员读取失效，
+ * 结构体复制与函数调用使两者都失效。从直接支配者继承的读取只有在两块之间的所有路径上都没有相应写入时才有效。
+ */
+public final class GlobalValueNumberingPass implements OptimizerPass {
+
+    private final boolean debug;
+    private final Set<Operand> globals;
+
+    private int redundantExpressions;
+    private int redundantLoads;
+
+    public GlobalValueNumberingPass() {
+        this(false);
+    }
+
+    public GlobalValueNumberingPass(boolean debug) {
+        this(debug, Collections.emptySet());
+    }
+
+    /**
+     * @param globals 全局变量（函数调用可能改写，编号只在块内有效）
+     */
+    public GlobalValueNumberingPass(boolean debug, Set<String> globals) {
+        this.debug = debug;
+        this.globals = new HashSet<>();
+        for (String global : globals) {
+            this.globals.add(Operand.of(global));
+        }
+    }
+
+    @Override
+    public List<TACInstruction> run(List<TACInstruction> instructions) {
+        FunctionIndex functionIndex = FunctionIndex.build(instructions);
+        List<TACInstruction> optimized = new ArrayList<>(instructions.size());
+
+        optimized.addAll(new Numbering(instructions.subList(0, functionIndex.getPrologueEnd())).run());
+        for (FunctionIndex.FunctionRange function : functionIndex.getFunctions()) {
+            optimized.addAll(new Numbering(function.slice(instructions)).run());
+        }
+
+        if (debug) {
+            System.out.println("全局值编号完成：消除冗余表达式 " + redundantExpressions + " 个，冗余读取 " + redundantLoads + " 个");
+        }
+
+        return optimized;
+    }
+
+    private static boolean isNumbered(TACOpcode opcode) {
+        switch (opcode) {
+            case ADD:
+            case SUB:
+            case MUL:
+            case DIV:
+            case MOD:
+            case EQ:
+            case NE:
+            case LT:
+            case GT:
+            case LE:
+            case GE:
+            case AND:
+            case OR:
+            case NOT:
+            case SELECT:
+            case ARRAY_ACCESS:
+            case MEMBER_ACCESS:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isCommutative(TACOpcode opcode) {
+        switch (opcode) {
+            case ADD:
+            case MUL:
+            case EQ:
+            case NE:
+            case AND:
+            case OR:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 一个区域（函数或全局代码）的值编号。
+     */
+    private final class Numbering {
+        private final List<TACInstruction> body;
+        private final ControlFlowGraph cfg;
+        private final DominatorTree dominators;
+
+        // 编号只在块内有效的变量：全局变量、多次定值或定值不支配所有使用的变量
+        private final Set<Operand> unstable = new HashSet<>();
+        private final Map<Operand, Integer> numbers = new HashMap<>();
+        private final Map<Operand, Integer> localNumbers = new HashMap<>();
+        private int nextNumber;
+
+        // 结果变量编号稳定的表达式随支配树作用域进出，其余只在块内有效
+        private final Map<ExpressionKey, Value> scoped = new HashMap<>();
+        private final List<ExpressionKey> undoKeys = new ArrayList<>();
+        private final List<Value> undoValues = new ArrayList<>();
+        private final Map<ExpressionKey, Value> local = new HashMap<>();
+        private final Map<Operand, List<ExpressionKey>> localByLeader = new HashMap<>();
+
+        // 内存版本
+        private final BitSet writesArrays = new BitSet();
+        private final BitSet writesMembers = new BitSet();
+        private final int[] endArrayVersion;
+        private final int[] endMemberVersion;
+        private int arrayVersion;
+        private int memberVersion;
+
+        // 改写结果：null 表示保持原指令
+        private final TACInstruction[] replacements;
+        private final boolean[] removed;
+
+        Numbering(List<TACInstruction> body) {
+            this.body = body;
+            this.cfg = ControlFlowGraph.build(body);
+            this.dominators = DominatorTree.build(cfg);
+            this.endArrayVersion = new int[cfg.blockCount()];
+            this.endMemberVersion = new int[cfg.blockCount()];
+            this.replacements = new TACInstruction[body.size()];
+            this.removed = new boolean[body.size()];
+        }
+
+        List<TACInstruction> run() {
+            if (body.isEmpty()) {
+                return new ArrayList<>();
+            }
+            classifyVariables();
+
+            int count = cfg.blockCount();
+            int[] stack = new int[count];
+            int[] nextChild = new int[count];
+            int[] undoMark = new int[count];
+            int top = 0;
+            stack[top++] = 0;
+            undoMark[0] = 0;
+            numberBlock(0);
+            while (top > 0) {
+                int block = stack[top - 1];
+                int[] children = dominators.children(block);
+                if (nextChild[block] < children.length) {
+                    int child = children[nextChild[block]++];
+                    undoMark[child] = undoKeys.size();
+                    numberBlock(child);
+                    stack[top++] = child;
+                } else {
+                    restore(undoMark[block]);
+                    top--;
+                }
+            }
+
+            List<TACInstruction> result = new ArrayList<>(body.size());
+            for (int i = 0; i < body.size(); i++) {
+                if (!removed[i]) {
+                    result.add(replacements[i] != null ? replacements[i] : body.get(i));
+                }
+            }
+            return result;
+        }
+
+        /**
+         * 找出编号不能跨块共享的变量：全局变量、多次定值的变量、定值不支配所有使用的变量。
+         */
+        private void classifyVariables() {
+            Map<Operand, Integer> definitionBlock = new HashMap<>();
+            Map<Operand, Integer> definitionIndex = new HashMap<>();
+            unstable.addAll(globals);
+            for (int b = 0; b < cfg.blockCount(); b++) {
+                for (int i = cfg.blockStart(b); i < cfg.blockEnd(b); i++) {
+                    TACInstruction instruction = body.get(i);
+                    Operand defined = OptimizerUtils.definedVariable(instruction);
+                    if (defined != null && (definitionBlock.put(defined, b) != null || !dominators.isReachable(b))) {
+                        unstable.add(defined);
+                    }
+                    if (defined != null) {
+                        definitionIndex.put(defined, i);
+                    }
+                    switch (instruction.getOpcode()) {
+                        case ARRAY_ASSIGN:
+                            writesArrays.set(b);
+                            break;
+                        case MEMBER_ASSIGN:
+                            writesMembers.set(b);
+                            break;
+                        case STRUCT_COPY:
+                        case CALL:
+                            writesArrays.set(b);
+                            writesMembers.set(b);
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            }
+
+            for (int b : dominators.preorder()) {
+                for (int i = cfg.blockStart(b); i < cfg.blockEnd(b); i++) {
+                    for (Operand use : OptimizerUtils.usedVariables(body.get(i))) {
+                        Integer defBlock = definitionBlock.get(use);
+                        if (defBlock == null || unstable.contains(use)) {
+                            continue;
+                        }
+                        boolean dominated = defBlock == b
+                            ? definitionIndex.get(use) < i
+                            : dominators.dominates(defBlock, b);
+                        if (!dominated) {
+                            unstable.add(use);
+                        }
+                    }
+                }
+            }
+        }
+
+        private void numberBlock(int block) {
+            localNumbers.clear();
+            local.clear();
+            localByLeader.clear();
+
+            int idom = dominators.idom(block);
+            if (idom < 0) {
+                arrayVersion = ++nextNumber;
+                memberVersion = ++nextNumber;
+            } else {
+                boolean[] clobbered = clobberedBetween(idom, block);
+                arrayVersion = clobbered[0] ? ++nextNumber : endArrayVersion[idom];
+                memberVersion = clobbered[1] ? ++nextNumber : endMemberVersion[idom];
+            }
+
+            for (int i = cfg.blockStart(block); i < cfg.blockEnd(block); i++) {
+                numberInstruction(i);
+            }
+            endArrayVersion[block] = arrayVersion;
+            endMemberVersion[block] = memberVersion;
+        }
+
+        /**
+         * 从直接支配者 idom 出发到达 block 的路径上是否有数组写入、成员写入（不含 idom 本身）。
+         */
+        private boolean[] clobberedBetween(int idom, int block) {
+            boolean[] clobbered = new boolean[2];
+            int[] predecessors = cfg.predecessors(block);
+            if (predecessors.length == 1 && predecessors[0] == idom
+                || writesArrays.isEmpty() && writesMembers.isEmpty()) {
+                return clobbered;
+            }
+            BitSet visited = new BitSet();
+            List<Integer> worklist = new ArrayList<>();
+            for (int pred : predecessors) {
+                if (pred != idom && !visited.get(pred)) {
+                    visited.set(pred);
+                    worklist.add(pred);
+                }
+            }
+            while (!worklist.isEmpty() && !(clobbered[0] && clobbered[1])) {
+                int current = worklist.remove(worklist.size() - 1);
+                clobbered[0] |= writesArrays.get(current);
+                clobbered[1] |= writesMembers.get(current);
+                for (int pred : cfg.predecessors(current)) {
+                    if (pred != idom && !visited.get(pred)) {
+                        visited.set(pred);
+                        worklist.add(pred);
+                    }
+                }
+            }
+            return clobbered;
+        }
+
+        private void numberInstruction(int index) {
+            TACInstruction instruction = body.get(index);
+            TACOpcode opcode = instruction.getOpcode();
+            Operand result = instruction.getResultOperand();
+
+            if (opcode == TACOpcode.ASSIGN && result != null && result.isName()) {
+                Operand source = instruction.getArg1Operand();
+                define(result, source != null ? numberOf(source) : ++nextNumber);
+                return;
+            }
+
+            if (isNumbered(opcode) && result != null && result.isName()) {
+                ExpressionKey key = keyOf(instruction);
+                Value available = lookup(key);
+                if (available != null) {
+                    if (available.leader == result) {
+                        // 结果变量仍然保存着同一个值
+                        removed[index] = true;
+                    } else {
+                        replacements[index] = OptimizerUtils.cloneInstruction(instruction, TACOpcode.ASSIGN,
+                            available.leader, null, result);
+                        define(result, available.number);
+                    }
+                    if (opcode == TACOpcode.ARRAY_ACCESS || opcode == TACOpcode.MEMBER_ACCESS) {
+                        redundantLoads++;
+                    } else {
+                        redundantExpressions++;
+                    }
+                    if (debug) {
+                        System.out.println("消除冗余计算: " + instruction + " -> " + available.leader);
+                    }
+                    return;
+                }
+                int value = ++nextNumber;
+                define(result, value);
+                record(key, new Value(result, value));
+                return;
+            }
+
+            switch (opcode) {
+                case ARRAY_ASSIGN:
+                    arrayVersion = ++nextNumber;
+                    break;
+                case MEMBER_ASSIGN:
+                    memberVersion = ++nextNumber;
+                    break;
+                case STRUCT_COPY:
+                    arrayVersion = ++nextNumber;
+                    memberVersion = ++nextNumber;
+                    break;
+                case CALL:
+                    arrayVersion = ++nextNumber;
+                    memberVersion = ++nextNumber;
+                    // 被调函数可能改写全局变量
+                    for (Operand global : globals) {
+                        forget(global);
+                    }
+                    break;
+                default:
+                    break;
+            }
+            Operand defined = OptimizerUtils.definedVariable(instruction);
+            if (defined != null) {
+                define(defined, ++nextNumber);
+            }
+        }
+
+        private ExpressionKey keyOf(TACInstruction instruction) {
+            TACOpcode opcode = instruction.getOpcode();
+            switch (opcode) {
+                case ARRAY_ACCESS:
+                    return new ExpressionKey(opcode, numberOf(instruction.getArg1Operand()),
+                        numberOf(instruction.getArg2Operand()), arrayVersion);
+                case MEMBER_ACCESS:
+                    // 成员名不是变量，按操作数本身区分
+                    return new ExpressionKey(opcode, numberOf(instruction.getArg1Operand()),
+                        instruction.getArg2Operand() != null ? instruction.getArg2Operand().getId() : -1, memberVersion);
+                case SELECT:
+                    return new ExpressionKey(opcode, numberOf(instruction.getArg1Operand()),
+                        numberOf(instruction.getArg2Operand()), numberOf(Operand.of(instruction.getMetadata())));
+                case GT:
+                    return new ExpressionKey(TACOpcode.LT, numberOf(instruction.getArg2Operand()),
+                        numberOf(instruction.getArg1Operand()), -1);
+                case GE:
+                    return new ExpressionKey(TACOpcode.LE, numberOf(instruction.getArg2Operand()),
+                        numberOf(instruction.getArg1Operand()), -1);
+                default:
+                    int left = numberOf(instruction.getArg1Operand());
+                    int right = numberOf(instruction.getArg2Operand());
+                    if (isCommutative(opcode) && left > right) {
+                        return new ExpressionKey(opcode, right, left, -1);
+                    }
+                    return new ExpressionKey(opcode, left, right, -1);
+            }
+        }
+
+        private int numberOf(Operand operand) {
+            if (operand == null) {
+                return -1;
+            }
+            if (operand.isName() && unstable.contains(operand)) {
+                return localNumbers.computeIfAbsent(operand, name -> ++nextNumber);
+            }
+            return numbers.computeIfAbsent(operand, name -> ++nextNumber);
+        }
+
+        private void define(Operand variable, int value) {
+            if (unstable.contains(variable)) {
+                forget(variable);
+                localNumbers.put(variable, value);
+            } else {
+                numbers.put(variable, value);
+            }
+        }
+
+        /**
+         * 变量被改写：块内以它为结果的表达式不再可用。
+         */
+        private void forget(Operand variable) {
+            localNumbers.remove(variable);
+            List<ExpressionKey> keys = localByLeader.remove(variable);
+            if (keys != null) {
+                for (ExpressionKey key : keys) {
+                    local.remove(key);
+                }
+            }
+        }
+
+        private Value lookup(ExpressionKey key) {
+            Value value = local.get(key);
+            return value != null ? value : scoped.get(key);
+        }
+
+        private void record(ExpressionKey key, Value value) {
+            if (unstable.contains(value.leader)) {
+                local.put(key, value);
+                localByLeader.computeIfAbsent(value.leader, leader -> new ArrayList<>()).add(key);
+            } else {
+                undoKeys.add(key);
+                undoValues.add(scoped.put(key, value));
+            }
+        }
+
+        private void restore(int mark) {
+            for (int i = undoKeys.size() - 1; i >= mark; i--) {
+                ExpressionKey key = undoKeys.remove(i);
+                Value previous = undoValues.remove(i);
+                if (previous != null) {
+                    scoped.put(key, previous);
+                } else {
+                    scoped.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * 可用的值：保存它的变量与它的编号。
+     */
+    private static final class Value {
+        final Operand leader;
+        final int number;
+
+        Value(Operand leader, int number) {
+            this.leader = leader;
+            this.number = number;
+        }
+    }
+
+    private static final class ExpressionKey {
+        private final TACOpcode opcode;
+        private final int left;
+        private final int right;
+        private final int extra;
+
+        ExpressionKey(TACOpcode opcode, int left, int right, int extra) {
+            this.opcode = opcode;
+            this.left = left;
+            this.right = right;
+            this.extra = extra;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof ExpressionKey)) {
+                return false;
+            }
+            ExpressionKey other = (ExpressionKey) obj;
+            return opcode == other.opcode && left == other.left && right == other.right && extra == other.extra;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = opcode.ordinal();
+            hash = 31 * hash + left;
+            hash = 31 * hash + right;
+            hash = 31 * hash + extra;
+            return hash;
+        }
+    }
+}
@@ -1,17 +1,35 @@
 package com.gemini.compiler.optimizer;
 
+import com.gemini.compiler.ir.BasicBlock;
+import com.gemini.compiler.ir.FunctionIndex;
 import com.gemini.compiler.ir.IRProgram;
 import com.gemini.compiler.ir.TACInstruction;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
- * 顶层优化调度器。负责按顺序执行各个优化传递。
+ * 顶层优化调度器（Pass 管理器）。
+ * <p>
+ * 先用 {@link FunctionIndex} 把程序切分为全局代码和各个函数，
+ * 再在工作窃取线程池上对每个函数独立运行优化流水线，
+ * 最后按源顺序把结果合并回新的 {@link IRProgram}。
+ * <p>
+ * 运行哪些 Pass 由 {@link OptimizationLevel} 决定。流水线分三段：
+ * 进入 SSA 的 Pass 和退出 SSA 的 Pass 各运行一次，中间的标量优化 Pass
+ * 反复运行，直到某一轮没有 Pass 报告修改（不动点）或达到级别的轮数上限。
  */
 public class IROptimizer {
 
     private boolean debugMode;
     private boolean enabled;
+    private int parallelism;
+    private OptimizationLevel level;
+    private PassTimingReport timingReport;
 
     public IROptimizer() {
         this(true);
@@ -20,26 +38,60 @@ public class IROptimizer {
     public IROptimizer(boolean enabled) {
         this.enabled = enabled;
         this.debugMode = false;
+        this.parallelism = 1;
+        this.level = OptimizationLevel.O2;
     }
 
     public IRProgram optimize(IRProgram irProgram) {
-        if (!enabled) {
+        if (!enabled || !level.isEnabled()) {
             return irProgram;
         }
 
-        System.out.println("\n--- 阶段五：中间代码优化 ---");
+        System.out.println("\n--- 阶段五：中间代码优化 (" + level + ") ---");
+        if (timingReport != null) {
+            timingReport = new PassTimingReport();
+        }
+
+        List<TACInstruction> instructions = irProgram.getInstructions();
+        List<OptimizationUnit> units = splitIntoUnits(instructions);
 
-        List<TACInstruction> instructions = new ArrayList<>(irProgram.getInstructions());
-        for (OptimizerPass pass : buildPassPipeline()) {
-            instructions = pass.run(instructions);
+        if (parallelism > 1 && units.size() > 1) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                pool.invoke(new UnitTask(units, 0, units.size()));
+            } finally {
+                pool.shutdown();
+            }
+        } else {
+            for (OptimizationUnit unit : units) {
+                runPipeline(unit);
+            }
         }
 
-        IRProgram optimizedProgram = new IRProgram();
-        instructions.forEach(optimizedProgram::addInstruction);
+        IRProgram optimizedProgram = irProgram.createEmpty();
+        optimizedProgram.setOptimizationLevel(level.getFlag());
+        for (OptimizationUnit unit : units) {
+            unit.optimized.forEach(optimizedProgram::addInstruction);
+            for (BasicBlock block : unit.blocks) {
+                optimizedProgram.addBasicBlock(block);
+            }
+        }
 
         if (debugMode) {
+            System.out.println("优化单元数: " + units.size());
             System.out.println("优化前指令数: " + irProgram.getInstructions().size());
             System.out.println("优化后指令数: " + optimizedProgram.getInstructions().size());
+            System.out.println("基本块数: " + optimizedProgram.getBasicBlocks().size());
+            int maxRounds = 0;
+            int capped = 0;
+            for (OptimizationUnit unit : units) {
+                maxRounds = Math.max(maxRounds, unit.rounds);
+                if (!unit.converged) {
+                    capped++;
+                }
+            }
+            System.out.println("不动点迭代: 最多 " + maxRounds + " 轮，" + capped + " 个单元达到上限 "
+                + level.getMaxIterations());
         }
 
         System.out.println("中间代码优化完成");
@@ -54,13 +106,184 @@ public class IROptimizer {
         this.enabled = enabled;
     }
 
-    private List<OptimizerPass> buildPassPipeline() {
-        List<OptimizerPass> passes = new ArrayList<>();
-        passes.add(new ConstantPropagationPass(debugMode));
-        passes.add(new LoopInvariantHoistPass(debugMode));
-        passes.add(new DeadCodeEliminationPass(debugMode));
-        passes.add(new Mem2RegPass());
-        passes.add(new CommonSubexpressionEliminationPass(debugMode));
-        return passes;
+    /**
+     * 设置优化级别（默认 -O2）。
+     */
+    public void setOptimizationLevel(OptimizationLevel level) {
+        this.level = level;
+    }
+
+    public OptimizationLevel getOptimizationLevel() {
+        return level;
+    }
+
+    /**
+     * 记录每个 Pass 的耗时、分配字节数和指令数（--time-passes），
+     * 每次 {@link #optimize} 开始时重新计数。
+     */
+    public void setTimePasses(boolean timePasses) {
+        this.timingReport = timePasses ? new PassTimingReport() : null;
+    }
+
+    /**
+     * 最近一次优化的 Pass 统计，未启用 --time-passes 时为 null。
+     */
+    public PassTimingReport getPassTimingReport() {
+        return timingReport;
+    }
+
+    /**
+     * 设置并行优化的工作线程数（1 表示串行，0 或负数表示使用全部处理器）。
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * 按函数切分：第一个单元为全局代码，其余每个函数一个单元。
+     */
+    private List<OptimizationUnit> splitIntoUnits(List<TACInstruction> instructions) {
+        FunctionIndex functionIndex = FunctionIndex.build(instructions);
+        List<TACInstruction> prologue = instructions.subList(0, functionIndex.getPrologueEnd());
+
+        // 全局代码中定义的变量对所有函数可见，函数内对它们的写入不能视为死代码
+        Set<String> globals = new HashSet<>();
+        for (TACInstruction instruction : prologue) {
+            if (instruction.getResult() != null) {
+                globals.add(instruction.getResult());
+            }
+        }
+        Set<String> liveOut = Collections.unmodifiableSet(globals);
+
+        List<OptimizationUnit> units = new ArrayList<>(functionIndex.getFunctionCount() + 1);
+        if (!prologue.isEmpty()) {
+            units.add(new OptimizationUnit(prologue, true, liveOut));
+        }
+        for (FunctionIndex.FunctionRange function : functionIndex.getFunctions()) {
+            units.add(new OptimizationUnit(function.slice(instructions), false, liveOut));
+        }
+        return units;
+    }
+
+    private void runPipeline(OptimizationUnit unit) {
+        List<TACInstruction> instructions = new ArrayList<>(unit.source);
+        PassPipeline pipeline = buildPassPipeline(unit);
+        for (OptimizerPass pass : pipeline.prologue) {
+            instructions = runPass(pass, instructions);
+        }
+
+        // 中间段迭代到不动点：一轮内没有 Pass 报告修改即收敛
+        boolean changed = true;
+        while (changed && unit.rounds < level.getMaxIterations()) {
+            changed = false;
+            for (OptimizerPass pass : pipeline.iterated) {
+                List<TACInstruction> output = runPass(pass, instructions);
+                if (pass.changed(instructions, output)) {
+                    changed = true;
+                }
+                instructions = output;
+            }
+            unit.rounds++;
+        }
+        unit.converged = !changed;
+
+        for (OptimizerPass pass : pipeline.epilogue) {
+            instructions = runPass(pass, instructions);
+        }
+        unit.optimized = instructions;
+
+        // 为优化结果建立基本块（全局代码以 entry 为前缀，函数以函数标签为前缀）
+        String prefix = unit.global || instructions.isEmpty() ? "entry" : instructions.get(0).getResult();
+        unit.blocks = ControlFlowGraph.build(instructions).toBasicBlocks(prefix);
+    }
+
+    private List<TACInstruction> runPass(OptimizerPass pass, List<TACInstruction> instructions) {
+        PassTimingReport report = timingReport;
+        return report != null ? report.run(pass, instructions) : pass.run(instructions);
+    }
+
+    /**
+     * 按优化级别组装流水线。每个单元使用独立的 Pass 实例，避免并行执行时共享状态。
+     */
+    private PassPipeline buildPassPipeline(OptimizationUnit unit) {
+        PassPipeline pipeline = new PassPipeline();
+        boolean ssa = level.usesSsa();
+        if (ssa && !unit.global) {
+            // 先把标量局部变量提升为 SSA 形式，后续各 Pass 都能看到 φ
+            pipeline.prologue.add(new Mem2RegPass(debugMode, unit.liveOut));
+        }
+        if (level.usesConditionalConstantPropagation()) {
+            pipeline.iterated.add(new ConditionalConstantPropagationPass(debugMode));
+        } else {
+            pipeline.iterated.add(new ConstantPropagationPass(debugMode));
+        }
+        if (ssa) {
+            pipeline.iterated.add(new LoopInvariantHoistPass(debugMode, unit.liveOut));
+        }
+        if (!unit.global) {
+            // 全局代码的结果在所有函数中可见，不做死代码消除
+            pipeline.iterated.add(new DeadCodeEliminationPass(debugMode, unit.liveOut));
+        }
+        if (ssa) {
+            pipeline.iterated.add(new GlobalValueNumberingPass(debugMode, unit.liveOut));
+        }
+        if (ssa && !unit.global) {
+            // 代码生成不认识 φ，在流水线末尾退出 SSA
+            pipeline.epilogue.add(new SSADestructionPass(debugMode));
+        }
+        return pipeline;
+    }
+
+    /**
+     * 流水线的三段：只运行一次的首尾两段和迭代到不动点的中间段。
+     */
+    private static final class PassPipeline {
+        final List<OptimizerPass> prologue = new ArrayList<>();
+        final List<OptimizerPass> iterated = new ArrayList<>();
+        final List<OptimizerPass> epilogue = new ArrayList<>();
+    }
+
+    /**
+     * 优化单元：全局代码或单个函数（含函数标签）。
+     */
+    private static final class OptimizationUnit {
+        final List<TACInstruction> source;
+        final boolean global;
+        final Set<String> liveOut;
+        List<TACInstruction> optimized;
+        List<BasicBlock> blocks;
+        int rounds;
+        boolean converged;
+
+        OptimizationUnit(List<TACInstruction> source, boolean global, Set<String> liveOut) {
+            this.source = source;
+            this.global = global;
+            this.liveOut = liveOut;
+        }
+    }
+
+    /**
+     * Fork/Join 任务：二分单元区间，叶子节点运行单个单元的流水线。
+     */
+    private final class UnitTask extends RecursiveAction {
+        private final List<OptimizationUnit> units;
+        private final int from;
+        private final int to;
+
+        UnitTask(List<OptimizationUnit> units, int from, int to) {
+            this.units = units;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                runPipeline(units.get(from));
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new UnitTask(units, from, mid), new UnitTask(units, mid, to));
+        }
     }
 }
@@ -1,140 +1,405 @@
 package com.gemini.compiler.optimizer;
 
+import com.gemini.compiler.ir.FunctionIndex;
+import com.gemini.compiler.ir.Operand;
 import com.gemini.compiler.ir.TACInstruction;
 import com.gemini.compiler.ir.TACOpcode;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
- * 简单的循环不变式提升（LICM）传递：
+ * 循环不变式外提（LICM）传递。
  * <p>
- * 针对由 IR 生成器产生的 for/while 结构，在循环体标签直后的常量 alloca/assign
- * 组合进行外提，使常量初始化只执行一次。该实现不处理通用 SSA，仅覆盖
- * 实验用例所涉及的模式。
+ * 在每个函数的控制流图上找回边（目标支配源的边），按回边求自然循环，同一循环头的回边合并为一个循环。
+ * 循环中没有副作用、且所有操作数都是循环不变量的指令被移到循环的前置块（preheader）：
+ * 循环头只有一个循环外前驱、且该前驱无条件进入循环头时直接用它作前置块，否则在循环头之前新建一个，
+ * 循环外进入循环头的跳转改为进入前置块，循环头 φ 中来自循环外的取值也随之合并到前置块。
+ * <p>
+ * 指令可外提需要同时满足：结果在函数内只有这一处定值、在循环头入口不活跃（因此外提不会改变任何使用看到的值）；
+ * 操作数是常量、在循环内没有定值，或者由循环内已判定为不变的指令定值；
+ * 全局变量在含有函数调用的循环中不视为不变量。可能出错的指令（除数不是非零常量的除法、数组读取）
+ * 只在其所在块于每次进入循环时都必然执行时外提；数组与成员读取还要求循环内没有内存写入和函数调用。
+ * 嵌套循环中的指令直接外提到它在其中保持不变的最外层循环。
  */
 public final class LoopInvariantHoistPass implements OptimizerPass {
 
-    private static final String FOR_BODY_PREFIX = "for_body";
-    private static final String WHILE_BODY_PREFIX = "while_body";
-
     private final boolean debug;
+    private final Set<Operand> globals;
+
+    // 每个循环（以循环头标签标识）外提的指令数
+    private final Map<String, Integer> hoistedCounts = new LinkedHashMap<>();
+    private int preheaders;
 
     public LoopInvariantHoistPass() {
         this(false);
     }
 
     public LoopInvariantHoistPass(boolean debug) {
+        this(debug, Collections.emptySet());
+    }
+
+    /**
+     * @param globals 全局变量（函数调用可能改写）
+     */
+    public LoopInvariantHoistPass(boolean debug, Set<String> globals) {
         this.debug = debug;
+        this.globals = new HashSet<>();
+        for (String global : globals) {
+            this.globals.add(Operand.of(global));
+        }
     }
 
     @Override
     public List<TACInstruction> run(List<TACInstruction> instructions) {
-        if (instructions.isEmpty()) {
-            return instructions;
+        FunctionIndex functionIndex = FunctionIndex.build(instructions);
+        List<TACInstruction> optimized = new ArrayList<>(instructions.size());
+
+        optimized.addAll(instructions.subList(0, functionIndex.getPrologueEnd()));
+        for (FunctionIndex.FunctionRange function : functionIndex.getFunctions()) {
+            optimized.addAll(hoistInFunction(function.slice(instructions)));
         }
 
-        List<TACInstruction> result = new ArrayList<>(instructions.size());
-        Set<Integer> skipped = new HashSet<>();
+        if (debug && !hoistedCounts.isEmpty()) {
+            int total = 0;
+            for (Map.Entry<String, Integer> entry : hoistedCounts.entrySet()) {
+                System.out.println("LoopInvariantHoistPass: 循环 " + entry.getKey() + " 外提 " + entry.getValue() + " 条指令");
+                total += entry.getValue();
+            }
+            System.out.println("LoopInvariantHoistPass: 共外提 " + total + " 条指令，新建前置块 " + preheaders + " 个");
+        }
 
-        for (int i = 0; i < instructions.size(); i++) {
-            if (skipped.contains(i)) {
-                continue;
+        return optimized;
+    }
+
+    /**
+     * 各循环外提的指令数，键为循环头标签。
+     */
+    public Map<String, Integer> getHoistedCounts() {
+        return Collections.unmodifiableMap(hoistedCounts);
+    }
+
+    private List<TACInstruction> hoistInFunction(List<TACInstruction> body) {
+        ControlFlowGraph cfg = ControlFlowGraph.build(body);
+        DominatorTree dominators = DominatorTree.build(cfg);
+        List<Loop> loops = findLoops(cfg, dominators);
+        if (loops.isEmpty()) {
+            return new ArrayList<>(body);
+        }
+
+        FunctionFacts facts = new FunctionFacts(cfg, dominators);
+        int[] target = new int[body.size()];
+        Arrays.fill(target, -1);
+
+        // 外层循环先判定，指令因此落到它保持不变的最外层循环
+        boolean any = false;
+        for (int l = 0; l < loops.size(); l++) {
+            if (loops.get(l).outsidePredecessors.length > 0) {
+                any |= markInvariants(loops.get(l), l, facts, target);
             }
+        }
+        if (!any) {
+            return new ArrayList<>(body);
+        }
 
-            TACInstruction instruction = instructions.get(i);
-            if (isLoopBodyLabel(instruction)) {
-                List<TACInstruction> hoisted = collectLoopInvariants(instructions, i, skipped);
-                if (!hoisted.isEmpty()) {
-                    result.addAll(hoisted);
+        return rewrite(cfg, loops, facts, target);
+    }
+
+    /**
+     * 找出所有自然循环，按包含的块数从多到少排序（外层循环在前）。
+     */
+    private List<Loop> findLoops(ControlFlowGraph cfg, DominatorTree dominators) {
+        int count = cfg.blockCount();
+        Map<Integer, Loop> byHeader = new LinkedHashMap<>();
+        for (int block : dominators.preorder()) {
+            for (int successor : cfg.successors(block)) {
+                if (dominators.dominates(successor, block)) {
+                    byHeader.computeIfAbsent(successor, header -> new Loop(header, count)).addLatch(cfg, block);
                 }
-                result.add(instruction);
-            } else {
-                result.add(instruction);
             }
         }
 
-        if (debug && !skipped.isEmpty()) {
-            System.out.println("LoopInvariantHoistPass: 提升了 " + skipped.size() + " 条指令");
+        List<Loop> loops = new ArrayList<>(byHeader.values());
+        for (Loop loop : loops) {
+            loop.summarize(cfg, dominators);
         }
-
-        return result;
+        loops.sort((a, b) -> Integer.compare(b.blocks.cardinality(), a.blocks.cardinality()));
+        return loops;
     }
 
-    private List<TACInstruction> collectLoopInvariants(List<TACInstruction> instructions,
-                                                       int labelIndex,
-                                                       Set<Integer> skipped) {
-        List<TACInstruction> hoisted = new ArrayList<>();
-        int nextLabel = findNextLabel(instructions, labelIndex + 1);
-
-        int cursor = labelIndex + 1;
-        while (cursor + 1 < instructions.size() && cursor + 1 < nextLabel) {
-            TACInstruction alloc = instructions.get(cursor);
-            TACInstruction assign = instructions.get(cursor + 1);
+    /**
+     * 在循环 loop 中反复标记不变指令直到不再变化，新标记的指令外提到该循环。
+     */
+    private boolean markInvariants(Loop loop, int loopIndex, FunctionFacts facts, int[] target) {
+        List<TACInstruction> instructions = facts.cfg.instructions();
+        Set<Operand> invariantResults = new HashSet<>();
+        boolean marked = false;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i : facts.order) {
+                if (!loop.blocks.get(facts.blockOf[i])) {
+                    continue;
+                }
+                TACInstruction instruction = instructions.get(i);
+                Operand result = instruction.getResultOperand();
+                if (target[i] >= 0) {
+                    // 已经外提到更外层的循环，在本循环中同样不变
+                    invariantResults.add(result);
+                    continue;
+                }
+                if (isHoistable(instruction, facts.blockOf[i], loop, invariantResults, facts)) {
+                    invariantResults.add(result);
+                    target[i] = loopIndex;
+                    marked = true;
+                    changed = true;
+                }
+            }
+        }
+        return marked;
+    }
 
-            if (!isHoistablePair(alloc, assign, instructions, cursor + 2, nextLabel)) {
-                break;
+    private boolean isHoistable(TACInstruction instruction, int block, Loop loop,
+                                Set<Operand> invariantResults, FunctionFacts facts) {
+        TACOpcode opcode = instruction.getOpcode();
+        if (!isSideEffectFree(opcode)) {
+            return false;
+        }
+        Operand result = instruction.getResultOperand();
+        if (result == null || !result.isName() || globals.contains(result)
+            || invariantResults.contains(result)
+            || facts.definitions.getOrDefault(result, 0) != 1
+            || facts.isLiveIn(loop.header, result)) {
+            return false;
+        }
+        for (Operand operand : operandsOf(instruction)) {
+            if (!isInvariant(operand, loop, invariantResults)) {
+                return false;
             }
+        }
 
-            hoisted.add(OptimizerUtils.cloneInstruction(alloc, alloc.getOpcode(), alloc.getArg1(), alloc.getArg2(), alloc.getResult()));
-            hoisted.add(OptimizerUtils.cloneInstruction(assign, assign.getOpcode(), assign.getArg1(), assign.getArg2(), assign.getResult()));
+        switch (opcode) {
+            case DIV:
+            case MOD:
+                return isSafeDivisor(instruction.getArg2Operand()) || loop.alwaysExecutes(block, facts.dominators);
+            case ARRAY_ACCESS:
+                return !loop.hasCall && !loop.writesMemory && loop.alwaysExecutes(block, facts.dominators);
+            case MEMBER_ACCESS:
+                // 成员偏移固定，读取已存在的结构体对象不会越界，可以提前执行
+                return !loop.hasCall && !loop.writesMemory;
+            default:
+                return true;
+        }
+    }
 
-            skipped.add(cursor);
-            skipped.add(cursor + 1);
-            cursor += 2;
+    private boolean isInvariant(Operand operand, Loop loop, Set<Operand> invariantResults) {
+        if (operand == null || !operand.isName()) {
+            return true;
+        }
+        if (globals.contains(operand) && loop.hasCall) {
+            return false;
         }
+        return !loop.defined.contains(operand) || invariantResults.contains(operand);
+    }
 
-        return hoisted;
+    private static boolean isSafeDivisor(Operand divisor) {
+        return divisor != null && divisor.isImmediate() && divisor.getValue() != 0 && divisor.getValue() != -1;
     }
 
-    private int findNextLabel(List<TACInstruction> instructions, int startIndex) {
-        for (int i = startIndex; i < instructions.size(); i++) {
-            TACInstruction instruction = instructions.get(i);
-            if (instruction.getOpcode() == TACOpcode.LABEL) {
-                return i;
+    /**
+     * 按外提结果重排指令：前置块紧贴循环头之前，或者就是循环头唯一的循环外前驱。
+     */
+    private List<TACInstruction> rewrite(ControlFlowGraph cfg, List<Loop> loops, FunctionFacts facts, int[] target) {
+        List<TACInstruction> instructions = cfg.instructions();
+        int count = cfg.blockCount();
+        Operand functionLabel = cfg.label(0);
+
+        // 每个循环外提的指令，按支配树先序排列，保证定值在使用之前
+        List<List<TACInstruction>> hoisted = new ArrayList<>(loops.size());
+        for (int l = 0; l < loops.size(); l++) {
+            hoisted.add(new ArrayList<>());
+        }
+        for (int i : facts.order) {
+            if (target[i] >= 0) {
+                hoisted.get(target[i]).add(instructions.get(i));
+            }
+        }
+
+        Loop[] newPreheaderAt = new Loop[count];
+        Loop[] reusedPreheaderAt = new Loop[count];
+        for (int l = 0; l < loops.size(); l++) {
+            Loop loop = loops.get(l);
+            loop.hoisted = hoisted.get(l);
+            if (loop.hoisted.isEmpty()) {
+                continue;
+            }
+            hoistedCounts.merge(loop.name(cfg), loop.hoisted.size(), Integer::sum);
+            int single = loop.singleEntry(cfg, facts.dominators);
+            if (single >= 0) {
+                reusedPreheaderAt[single] = loop;
+            } else {
+                loop.preheaderLabel = Operand.label("ssa." + functionLabel + ".pre" + (++preheaders));
+                newPreheaderAt[loop.header] = loop;
+            }
+        }
+
+        List<TACInstruction> result = new ArrayList<>(instructions.size() + 2 * preheaders);
+        for (int b = 0; b < count; b++) {
+            Loop entered = newPreheaderAt[b];
+            if (entered != null) {
+                if (b > 0 && entered.blocks.get(b - 1) && fallsThrough(cfg, b - 1)) {
+                    jumpOverPreheader(cfg, b, entered, result);
+                }
+                emitPreheader(cfg, entered, facts, result);
+            }
+
+            Map<Operand, Operand> retarget = retargetsFor(cfg, b, newPreheaderAt);
+            Loop reused = reusedPreheaderAt[b];
+            int last = cfg.blockEnd(b) - 1;
+            for (int i = cfg.blockStart(b); i <= last; i++) {
+                TACInstruction instruction = instructions.get(i);
+                if (reused != null && i == last && instruction.getOpcode() == TACOpcode.GOTO) {
+                    result.addAll(reused.hoisted);
+                    reused = null;
+                }
+                if (target[i] >= 0) {
+                    continue;
+                }
+                if (entered != null && instruction.getOpcode() == TACOpcode.PHI) {
+                    instruction = entered.rewriteHeaderPhi(instruction);
+                } else if (!retarget.isEmpty() && isBranch(instruction.getOpcode())
+                    && retarget.containsKey(instruction.getResultOperand())) {
+                    instruction = OptimizerUtils.cloneInstruction(instruction, instruction.getOpcode(),
+                        instruction.getArg1Operand(), instruction.getArg2Operand(),
+                        retarget.get(instruction.getResultOperand()));
+                }
+                result.add(instruction);
+            }
+            if (reused != null) {
+                result.addAll(reused.hoisted);
             }
         }
-        return instructions.size();
+        return result;
     }
 
-    private boolean isHoistablePair(TACInstruction alloc,
-                                    TACInstruction assign,
-                                    List<TACInstruction> instructions,
-                                    int bodyStart,
-                                    int bodyEnd) {
-        if (alloc.getOpcode() != TACOpcode.ALLOC || assign.getOpcode() != TACOpcode.ASSIGN) {
-            return false;
+    /**
+     * 循环内直落到循环头的块（前一块）改为显式跳转，跳过新插入的前置块。
+     */
+    private void jumpOverPreheader(ControlFlowGraph cfg, int header, Loop loop, List<TACInstruction> result) {
+        Operand headerLabel = cfg.label(header);
+        int last = result.size() - 1;
+        TACInstruction terminator = result.get(last);
+        if (!isBranch(terminator.getOpcode())) {
+            result.add(TACInstruction.of(TACOpcode.GOTO, null, null, headerLabel));
+        } else if (cfg.branchTarget(header - 1) == header) {
+            // 两个方向都进入循环头，条件跳转等价于无条件跳转
+            result.set(last, OptimizerUtils.cloneInstruction(terminator, TACOpcode.GOTO, null, null, headerLabel));
+        } else {
+            // 直落方向变成一个新块，循环头 φ 中来自前一块的取值改为来自它
+            Operand latchLabel = Operand.label(loop.preheaderLabel.getText() + ".latch");
+            result.add(TACInstruction.of(TACOpcode.LABEL, null, null, latchLabel));
+            result.add(TACInstruction.of(TACOpcode.GOTO, null, null, headerLabel));
+            loop.renamedLatch = cfg.label(header - 1);
+            loop.latchLabel = latchLabel;
         }
+    }
 
-        if (alloc.getMetadata() != null) {
-            return false;
+    /**
+     * 新建的前置块：标签、合并循环外取值的 φ、外提的指令，随后直落进入循环头。
+     */
+    private void emitPreheader(ControlFlowGraph cfg, Loop loop, FunctionFacts facts, List<TACInstruction> result) {
+        List<TACInstruction> instructions = cfg.instructions();
+        result.add(TACInstruction.of(TACOpcode.LABEL, null, null, loop.preheaderLabel));
+
+        loop.mergedPhis = new HashMap<>();
+        for (int i = cfg.blockStart(loop.header); i < cfg.blockEnd(loop.header); i++) {
+            TACInstruction phi = instructions.get(i);
+            if (phi.getOpcode() != TACOpcode.PHI) {
+                continue;
+            }
+            List<Operand> labels = new ArrayList<>();
+            List<Operand> values = new ArrayList<>();
+            for (int k = 0; k < phi.getPhiCount(); k++) {
+                int pred = cfg.blockOf(phi.getPhiLabel(k));
+                if (pred < 0 || !loop.blocks.get(pred)) {
+                    labels.add(phi.getPhiLabel(k));
+                    values.add(phi.getPhiValue(k));
+                }
+            }
+            if (values.isEmpty()) {
+                continue;
+            }
+            Operand merged = values.get(0);
+            for (Operand value : values) {
+                if (value != merged) {
+                    merged = null;
+                    break;
+                }
+            }
+            if (merged == null) {
+                merged = facts.freshName(phi.getResultOperand());
+                result.add(TACInstruction.phi(merged, labels.toArray(new Operand[0]),
+                    values.toArray(new Operand[0]), phi.getLine()));
+            }
+            loop.mergedPhis.put(phi.getResultOperand(), merged);
         }
+        result.addAll(loop.hoisted);
+    }
 
-        String variable = alloc.getResult();
-        if (variable == null || !variable.equals(assign.getResult())) {
-            return false;
+    /**
+     * 块 b 作为循环外前驱跳向新建前置块的循环头时，跳转目标改为前置块。
+     */
+    private Map<Operand, Operand> retargetsFor(ControlFlowGraph cfg, int block, Loop[] newPreheaderAt) {
+        Map<Operand, Operand> retarget = Collections.emptyMap();
+        int branchTarget = cfg.branchTarget(block);
+        if (branchTarget < 0 || newPreheaderAt[branchTarget] == null) {
+            return retarget;
         }
+        Loop loop = newPreheaderAt[branchTarget];
+        if (!loop.blocks.get(block)) {
+            retarget = Collections.singletonMap(cfg.label(branchTarget), loop.preheaderLabel);
+        }
+        return retarget;
+    }
 
-        if (!OptimizerUtils.isNumericLiteral(assign.getArg1())) {
+    private static boolean fallsThrough(ControlFlowGraph cfg, int block) {
+        TACOpcode opcode = cfg.instructions().get(cfg.blockEnd(block) - 1).getOpcode();
+        if (opcode == TACOpcode.GOTO || opcode == TACOpcode.RETURN) {
             return false;
         }
-
-        // 确保循环体内没有对该变量的再次赋值，否则外提会改变语义。
-        for (int i = bodyStart; i < bodyEnd; i++) {
-            TACInstruction instr = instructions.get(i);
-            if (variable.equals(instr.getResult()) && definesValue(instr.getOpcode())) {
-                return false;
+        for (int successor : cfg.successors(block)) {
+            if (successor == block + 1) {
+                return true;
             }
         }
+        return false;
+    }
 
-        return true;
+    private static boolean isBranch(TACOpcode opcode) {
+        switch (opcode) {
+            case GOTO:
+            case IF_TRUE:
+            case IF_FALSE:
+            case IF_ZERO:
+            case IF_NONZERO:
+                return true;
+            default:
+                return false;
+        }
     }
 
-    private boolean definesValue(TACOpcode opcode) {
+    /**
+     * 没有副作用、结果只取决于操作数（读取类指令另需检查内存）的指令。
+     */
+    private static boolean isSideEffectFree(TACOpcode opcode) {
         switch (opcode) {
-            case ASSIGN:
-            case CAST:
             case ADD:
             case SUB:
             case MUL:
@@ -149,30 +414,323 @@ public final class LoopInvariantHoistPass implements OptimizerPass {
             case AND:
             case OR:
             case NOT:
-            case PLUS_ASSIGN:
-            case MINUS_ASSIGN:
-            case MUL_ASSIGN:
-            case DIV_ASSIGN:
-            case MOD_ASSIGN:
-            case INCREMENT:
-            case DECREMENT:
+            case ASSIGN:
+            case CAST:
+            case SELECT:
             case ARRAY_ACCESS:
             case MEMBER_ACCESS:
-            case STRUCT_COPY:
-            case SELECT:
                 return true;
             default:
                 return false;
         }
     }
 
-    private boolean isLoopBodyLabel(TACInstruction instruction) {
-        if (instruction.getOpcode() != TACOpcode.LABEL || instruction.getResult() == null) {
-            return false;
+    /**
+     * 外提候选指令读取的变量（成员访问的第二个操作数是成员名）。
+     */
+    private static List<Operand> operandsOf(TACInstruction instruction) {
+        List<Operand> operands = new ArrayList<>(3);
+        operands.add(instruction.getArg1Operand());
+        if (instruction.getOpcode() != TACOpcode.MEMBER_ACCESS) {
+            operands.add(instruction.getArg2Operand());
+        }
+        if (instruction.getOpcode() == TACOpcode.SELECT) {
+            operands.add(Operand.of(instruction.getMetadata()));
         }
-        String label = instruction.getResult();
-        return label.contains(FOR_BODY_PREFIX) || label.contains(WHILE_BODY_PREFIX);
+        return operands;
     }
-}
 
+    /**
+     * 一个函数的定值次数、指令所在块、支配树先序的指令顺序与循环头入口活跃变量。
+     */
+    private static final class FunctionFacts {
+        final ControlFlowGraph cfg;
+        final DominatorTree dominators;
+        final Map<Operand, Integer> definitions = new HashMap<>();
+        final int[] blockOf;
+        final int[] order;
+        private final Set<Operand> usedNames = new HashSet<>();
+        private final Map<Operand, Integer> variableIndex = new HashMap<>();
+        private final DataflowSolver.Result liveness;
+
+        FunctionFacts(ControlFlowGraph cfg, DominatorTree dominators) {
+            this.cfg = cfg;
+            this.dominators = dominators;
+            List<TACInstruction> instructions = cfg.instructions();
+
+            blockOf = new int[instructions.size()];
+            for (int b = 0; b < cfg.blockCount(); b++) {
+                Arrays.fill(blockOf, cfg.blockStart(b), cfg.blockEnd(b), b);
+            }
+            int reachableSize = 0;
+            for (int b : dominators.preorder()) {
+                reachableSize += cfg.blockEnd(b) - cfg.blockStart(b);
+            }
+            order = new int[reachableSize];
+            int position = 0;
+            for (int b : dominators.preorder()) {
+                for (int i = cfg.blockStart(b); i < cfg.blockEnd(b); i++) {
+                    order[position++] = i;
+                }
+            }
+
+            for (TACInstruction instruction : instructions) {
+                Operand defined = OptimizerUtils.definedVariable(instruction);
+                if (defined != null) {
+                    definitions.merge(defined, 1, Integer::sum);
+                }
+                addName(instruction.getArg1Operand());
+                addName(instruction.getArg2Operand());
+                addName(instruction.getResultOperand());
+                for (int k = 0; k < instruction.getPhiCount(); k++) {
+                    addName(instruction.getPhiValue(k));
+                }
+            }
+            liveness = computeLiveness();
+        }
+
+        private void addName(Operand operand) {
+            if (operand != null && operand.isName()) {
+                usedNames.add(operand);
+            }
+        }
+
+        private int indexOf(Operand variable) {
+            Integer index = variableIndex.get(variable);
+            if (index == null) {
+                index = variableIndex.size();
+                variableIndex.put(variable, index);
+            }
+            return index;
+        }
 
+        /**
+         * 逆向活跃变量分析。φ 的取值记为对应前驱块末尾的使用，循环回边上的取值因此不会在循环头活跃。
+         */
+        private DataflowSolver.Result computeLiveness() {
+            List<TACInstruction> instructions = cfg.instructions();
+            int count = cfg.blockCount();
+            BitSet[] gen = new BitSet[count];
+            BitSet[] kill = new BitSet[count];
+            for (int b = 0; b < count; b++) {
+                gen[b] = new BitSet();
+                kill[b] = new BitSet();
+                Operand label = cfg.label(b);
+                for (int successor : cfg.successors(b)) {
+                    for (int i = cfg.blockStart(successor); i < cfg.blockEnd(successor); i++) {
+                        TACInstruction phi = instructions.get(i);
+                        for (int k = 0; k < phi.getPhiCount(); k++) {
+                            Operand value = phi.getPhiValue(k);
+                            if (label != null && phi.getPhiLabel(k) == label && value != null && value.isName()) {
+                                gen[b].set(indexOf(value));
+                            }
+                        }
+                    }
+                }
+                for (int i = cfg.blockEnd(b) - 1; i >= cfg.blockStart(b); i--) {
+                    TACInstruction instruction = instructions.get(i);
+                    Operand defined = OptimizerUtils.definedVariable(instruction);
+                    if (defined != null) {
+                        int bit = indexOf(defined);
+                        kill[b].set(bit);
+                        gen[b].clear(bit);
+                    }
+                    for (Operand use : OptimizerUtils.usedVariables(instruction)) {
+                        gen[b].set(indexOf(use));
+                    }
+                }
+            }
+            return DataflowSolver.solve(cfg, DataflowSolver.Direction.BACKWARD, DataflowSolver.Meet.UNION,
+                variableIndex.size(), new BitSet(), DataflowSolver.genKill(gen, kill));
+        }
+
+        boolean isLiveIn(int block, Operand variable) {
+            Integer index = variableIndex.get(variable);
+            return index != null && liveness.in(block).get(index);
+        }
+
+        /**
+         * 前置块 φ 的结果：取原 φ 结果的下一个未被占用的版本名。
+         */
+        Operand freshName(Operand phiResult) {
+            Operand base = OptimizerUtils.ssaBase(phiResult);
+            if (base == null) {
+                base = phiResult;
+            }
+            Operand name;
+            int version = 0;
+            do {
+                name = OptimizerUtils.ssaVersion(base, ++version);
+            } while (usedNames.contains(name));
+            usedNames.add(name);
+            return name;
+        }
+    }
+
+    /**
+     * 以同一循环头的所有回边求出的自然循环。
+     */
+    private static final class Loop {
+        final int header;
+        final BitSet blocks;
+        private final List<Integer> latches = new ArrayList<>();
+        private final BitSet exiting = new BitSet();
+        private final Set<Operand> insideLabels = new HashSet<>();
+        final Set<Operand> defined = new HashSet<>();
+        boolean hasCall;
+        boolean writesMemory;
+        int[] outsidePredecessors;
+
+        List<TACInstruction> hoisted;
+        Operand preheaderLabel;
+        Map<Operand, Operand> mergedPhis;
+
+        // 直落到循环头的循环内块被拆出的跳转块
+        Operand renamedLatch;
+        Operand latchLabel;
+
+        Loop(int header, int blockCount) {
+            this.header = header;
+            this.blocks = new BitSet(blockCount);
+            blocks.set(header);
+        }
+
+        /**
+         * 加入一条回边，从回边源逆向找出不经过循环头即可到达它的块。
+         */
+        void addLatch(ControlFlowGraph cfg, int latch) {
+            latches.add(latch);
+            if (blocks.get(latch)) {
+                return;
+            }
+            List<Integer> worklist = new ArrayList<>();
+            blocks.set(latch);
+            worklist.add(latch);
+            while (!worklist.isEmpty()) {
+                int block = worklist.remove(worklist.size() - 1);
+                for (int pred : cfg.predecessors(block)) {
+                    if (!blocks.get(pred)) {
+                        blocks.set(pred);
+                        worklist.add(pred);
+                    }
+                }
+            }
+        }
+
+        void summarize(ControlFlowGraph cfg, DominatorTree dominators) {
+            List<TACInstruction> instructions = cfg.instructions();
+            for (int b = blocks.nextSetBit(0); b >= 0; b = blocks.nextSetBit(b + 1)) {
+                if (cfg.label(b) != null) {
+                    insideLabels.add(cfg.label(b));
+                }
+                int[] successors = cfg.successors(b);
+                if (successors.length == 0) {
+                    exiting.set(b);
+                }
+                for (int successor : successors) {
+                    if (!blocks.get(successor)) {
+                        exiting.set(b);
+                    }
+                }
+                for (int i = cfg.blockStart(b); i < cfg.blockEnd(b); i++) {
+                    TACInstruction instruction = instructions.get(i);
+                    Operand variable = OptimizerUtils.definedVariable(instruction);
+                    if (variable != null) {
+                        defined.add(variable);
+                    }
+                    switch (instruction.getOpcode()) {
+                        case CALL:
+                            hasCall = true;
+                            break;
+                        case ARRAY_ASSIGN:
+                        case MEMBER_ASSIGN:
+                        case STRUCT_COPY:
+                        case STORE:
+                            writesMemory = true;
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            }
+
+            List<Integer> outside = new ArrayList<>();
+            if (header != 0) {
+                for (int pred : cfg.predecessors(header)) {
+                    if (!blocks.get(pred) && dominators.isReachable(pred)) {
+                        outside.add(pred);
+                    }
+                }
+            }
+            outsidePredecessors = outside.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        /**
+         * 块在每次进入循环后都必然执行：它支配所有回边源和所有离开循环的块。
+         */
+        boolean alwaysExecutes(int block, DominatorTree dominators) {
+            for (int latch : latches) {
+                if (!dominators.dominates(block, latch)) {
+                    return false;
+                }
+            }
+            for (int exit = exiting.nextSetBit(0); exit >= 0; exit = exiting.nextSetBit(exit + 1)) {
+                if (!dominators.dominates(block, exit)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * 可以直接作为前置块的唯一循环外前驱（无条件进入循环头），没有时为 -1。
+         */
+        int singleEntry(ControlFlowGraph cfg, DominatorTree dominators) {
+            if (outsidePredecessors.length != 1) {
+                return -1;
+            }
+            for (int pred : cfg.predecessors(header)) {
+                if (!blocks.get(pred) && !dominators.isReachable(pred)) {
+                    // 不可达的前驱也跳向循环头，仍然新建前置块以免它们绕过外提的指令
+                    return -1;
+                }
+            }
+            int pred = outsidePredecessors[0];
+            TACOpcode last = cfg.instructions().get(cfg.blockEnd(pred) - 1).getOpcode();
+            if (cfg.successors(pred).length != 1 || (isBranch(last) && last != TACOpcode.GOTO)) {
+                return -1;
+            }
+            return pred;
+        }
+
+        /**
+         * 循环头 φ 中来自循环外的取值合并为来自前置块的一项。
+         */
+        TACInstruction rewriteHeaderPhi(TACInstruction phi) {
+            Operand merged = mergedPhis.get(phi.getResultOperand());
+            if (merged == null && latchLabel == null) {
+                return phi;
+            }
+            List<Operand> labels = new ArrayList<>();
+            List<Operand> values = new ArrayList<>();
+            if (merged != null) {
+                labels.add(preheaderLabel);
+                values.add(merged);
+            }
+            for (int k = 0; k < phi.getPhiCount(); k++) {
+                Operand label = phi.getPhiLabel(k);
+                if (merged == null || insideLabels.contains(label)) {
+                    labels.add(label == renamedLatch && latchLabel != null ? latchLabel : label);
+                    values.add(phi.getPhiValue(k));
+                }
+            }
+            return TACInstruction.phi(phi.getResultOperand(), labels.toArray(new Operand[0]),
+                values.toArray(new Operand[0]), phi.getLine());
+        }
+
+        String name(ControlFlowGraph cfg) {
+            Operand label = cfg.label(header);
+            return label != null ? label.getText() : "bb" + header;
+        }
+    }
+}
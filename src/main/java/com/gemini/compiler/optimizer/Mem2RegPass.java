@@ -1,8 +1,13 @@
 package com.gemini.compiler.optimizer;
 
+import com.gemini.compiler.ir.FunctionIndex;
+import com.gemini.compiler.ir.Operand;
 import com.gemini.compiler.ir.TACInstruction;
 import com.gemini.compiler.ir.TACOpcode;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -10,183 +15,611 @@ import java.util.Map;
 import java.util.Set;
 
 /**
- * 简化版的 Mem2Reg 传递：
+ * Mem2Reg 传递：把函数内的标量局部变量提升为 SSA 形式。
  * <p>
- * 仅推广函数入口块内的标量 alloca（未出现额外 LABEL），
- * 将成对的 STORE/LOAD 替换为直接的寄存器赋值，去掉冗余的栈访问。
- * 该实现为后续完整 SSA 重写打基础。
+ * 对每个函数建立控制流图与支配树，在定值块的迭代支配边界上放置 φ 指令
+ * （只在变量于该块入口活跃时放置，即剪枝 SSA），再沿支配树先序重命名：
+ * 每次定值产生新版本 {@code 原名.版本号}，使用处替换为当前版本，
+ * 函数入口处尚未定值的变量沿用原名。标量的 ALLOC 被删除，LOAD/STORE 改写为 ASSIGN，
+ * x++ 之类的就地修改改写为普通的加减法。
+ * <p>
+ * 作为数组、结构体基址使用的变量以及全局变量不做提升。不以标签开头、又是 φ 所在块前驱的块
+ * 会补上一个合成标签（元数据为 {@link #SYNTHETIC_LABEL}），供 φ 指令标识前驱；
+ * {@link SSADestructionPass} 在退出 SSA 时删除这些标签。
  */
 public final class Mem2RegPass implements OptimizerPass {
 
+    /**
+     * 合成块标签的元数据标记。
+     */
+    static final String SYNTHETIC_LABEL = "ssa.block";
+
+    private final boolean debug;
+    private final Set<Operand> globals;
+
+    private int promotedVariables;
+    private int insertedPhis;
+
+    public Mem2RegPass() {
+        this(false, Collections.emptySet());
+    }
+
+    /**
+     * @param globals 全局变量（函数调用可能改写，不能提升）
+     */
+    public Mem2RegPass(boolean debug, Set<String> globals) {
+        this.debug = debug;
+        this.globals = new HashSet<>();
+        for (String global : globals) {
+            this.globals.add(Operand.of(global));
+        }
+    }
+
     @Override
     public List<TACInstruction> run(List<TACInstruction> instructions) {
-        List<TACInstruction> optimized = new ArrayList<>();
-
-        int index = 0;
-        while (index < instructions.size()) {
-            TACInstruction instr = instructions.get(index);
-            if (isFunctionLabel(instr)) {
-                int start = index;
-                int end = findNextFunctionLabel(instructions, index + 1);
-                optimized.addAll(promoteInFunction(instructions.subList(start, end)));
-                index = end;
-            } else {
-                optimized.add(instr);
-                index++;
-            }
+        FunctionIndex functionIndex = FunctionIndex.build(instructions);
+        List<TACInstruction> optimized = new ArrayList<>(instructions.size());
+
+        optimized.addAll(instructions.subList(0, functionIndex.getPrologueEnd()));
+        for (FunctionIndex.FunctionRange function : functionIndex.getFunctions()) {
+            optimized.addAll(promoteInFunction(function.slice(instructions)));
         }
 
-        return optimized;
-    }
+        if (debug) {
+            System.out.println("Mem2Reg: 提升变量 " + promotedVariables + " 个，插入 φ 指令 " + insertedPhis + " 条");
+        }
 
-    private boolean isFunctionLabel(TACInstruction instruction) {
-        return instruction.getOpcode() == TACOpcode.LABEL
-            && instruction.getResult() != null
-            && instruction.getResult().startsWith("func_");
+        return optimized;
     }
 
-    private int findNextFunctionLabel(List<TACInstruction> instructions, int start) {
-        for (int i = start; i < instructions.size(); i++) {
-            TACInstruction instr = instructions.get(i);
-            if (isFunctionLabel(instr)) {
-                return i;
+    private List<TACInstruction> promoteInFunction(List<TACInstruction> functionBody) {
+        for (TACInstruction instruction : functionBody) {
+            if (instruction.getOpcode() == TACOpcode.PHI) {
+                // 已经是 SSA 形式
+                return new ArrayList<>(functionBody);
             }
         }
-        return instructions.size();
-    }
 
-    private List<TACInstruction> promoteInFunction(List<TACInstruction> functionBody) {
-        // 仅在单块（没有额外 LABEL）内尝试推广。
-        boolean hasAdditionalLabels = functionBody.stream()
-            .skip(1) // 跳过函数标签
-            .anyMatch(instr -> instr.getOpcode() == TACOpcode.LABEL);
-        if (hasAdditionalLabels) {
+        Map<Operand, Integer> variables = findPromotableVariables(functionBody);
+        if (variables.isEmpty()) {
             return new ArrayList<>(functionBody);
         }
 
-        Set<String> promotable = findPromotableAllocas(functionBody);
-        if (promotable.isEmpty()) {
+        Renamer renamer = new Renamer(functionBody, variables);
+        if (renamer.cfg.predecessors(0).length > 0) {
+            // 有跳回函数入口的边时入口块无法放置 φ，保持原样
             return new ArrayList<>(functionBody);
         }
+        promotedVariables += variables.size();
+        return renamer.rewrite();
+    }
 
-        Map<String, String> currentValue = new HashMap<>();
-        List<TACInstruction> rewritten = new ArrayList<>(functionBody.size());
+    /**
+     * 可提升的变量：在函数内以普通变量身份被定值或声明，且从不作为数组/结构体基址出现。
+     */
+    private Map<Operand, Integer> findPromotableVariables(List<TACInstruction> functionBody) {
+        Set<Operand> candidates = new HashSet<>();
+        Set<Operand> excluded = new HashSet<>(globals);
 
         for (TACInstruction instruction : functionBody) {
-            TACOpcode opcode = instruction.getOpcode();
-
-            switch (opcode) {
-                case ALLOC: {
-                    String var = instruction.getResult();
-                    if (promotable.contains(var)) {
-                        // 丢弃冗余 alloca
-                        break;
+            Operand arg1 = instruction.getArg1Operand();
+            Operand arg2 = instruction.getArg2Operand();
+            Operand result = instruction.getResultOperand();
+            switch (instruction.getOpcode()) {
+                case ALLOC:
+                    if (instruction.getMetadata() == null) {
+                        addName(candidates, result);
+                    } else {
+                        addName(excluded, result);
                     }
-                    rewritten.add(instruction);
                     break;
-                }
-                case STORE: {
-                    String target = instruction.getResult();
-                    if (promotable.contains(target)) {
-                        currentValue.put(target, instruction.getArg1());
-                        break;
-                    }
-                    rewritten.add(instruction);
+                case STORE:
+                    addName(candidates, result);
                     break;
-                }
-                case LOAD: {
-                    String source = instruction.getArg1();
-                    if (promotable.contains(source)) {
-                        String value = currentValue.get(source);
-                        if (value != null) {
-                            TACInstruction assign = OptimizerUtils.cloneInstruction(
-                                instruction,
-                                TACOpcode.ASSIGN,
-                                value,
-                                null,
-                                instruction.getResult()
-                            );
-                            rewritten.add(assign);
-                            break;
-                        }
-                        // 没有已知值，回退到原指令
+                case ARRAY_ACCESS:
+                case ARRAY_ASSIGN:
+                case MEMBER_ACCESS:
+                case MEMBER_ASSIGN:
+                    addName(excluded, arg1);
+                    if (definesResult(instruction.getOpcode())) {
+                        addName(candidates, result);
                     }
-                    rewritten.add(instruction);
                     break;
-                }
+                case PLUS_ASSIGN:
+                case MINUS_ASSIGN:
+                case MUL_ASSIGN:
+                case DIV_ASSIGN:
+                case MOD_ASSIGN:
+                case PARAM:
+                case SWITCH:
+                case STRUCT_COPY:
+                case PHI:
+                    // 语义不明确的指令中出现的名字一律不提升
+                    addName(excluded, arg1);
+                    addName(excluded, arg2);
+                    addName(excluded, result);
+                    break;
                 default:
-                    rewritten.add(instruction);
+                    if (definesResult(instruction.getOpcode())) {
+                        addName(candidates, result);
+                    }
                     break;
             }
         }
 
-        return rewritten;
+        candidates.removeAll(excluded);
+        Map<Operand, Integer> variables = new HashMap<>();
+        for (TACInstruction instruction : functionBody) {
+            // 按首次出现的顺序编号，使结果与哈希顺序无关
+            Operand result = instruction.getResultOperand();
+            if (result != null && candidates.contains(result) && !variables.containsKey(result)) {
+                variables.put(result, variables.size());
+            }
+        }
+        return variables;
+    }
+
+    private static void addName(Set<Operand> names, Operand operand) {
+        if (operand != null && operand.isName()) {
+            names.add(operand);
+        }
     }
 
-    private Set<String> findPromotableAllocas(List<TACInstruction> functionBody) {
-        Map<String, Candidate> candidates = new HashMap<>();
+    /**
+     * 结果操作数是否为该指令写入的变量。
+     */
+    private static boolean definesResult(TACOpcode opcode) {
+        switch (opcode) {
+            case ADD:
+            case SUB:
+            case MUL:
+            case DIV:
+            case MOD:
+            case EQ:
+            case NE:
+            case LT:
+            case GT:
+            case LE:
+            case GE:
+            case AND:
+            case OR:
+            case NOT:
+            case ASSIGN:
+            case CAST:
+            case INCREMENT:
+            case DECREMENT:
+            case CALL:
+            case ARRAY_ACCESS:
+            case MEMBER_ACCESS:
+            case SELECT:
+            case LOAD:
+                return true;
+            default:
+                return false;
+        }
+    }
 
-        for (TACInstruction instruction : functionBody) {
-            TACOpcode opcode = instruction.getOpcode();
-            switch (opcode) {
-                case ALLOC: {
-                    String var = instruction.getResult();
-                    if (var != null && instruction.getMetadata() == null) {
-                        candidates.put(var, new Candidate());
+    /**
+     * 单个函数的 SSA 构造。
+     */
+    private final class Renamer {
+        private final List<TACInstruction> body;
+        private final Map<Operand, Integer> variables;
+        private final Operand[] variableList;
+        private final ControlFlowGraph cfg;
+        private final DominatorTree dominators;
+        private final Set<Operand> usedNames = new HashSet<>();
+
+        // 每个块的 φ：phiVariables[b] 为变量编号，phiResults/phiValues 在重命名时填写
+        private final int[][] phiVariables;
+        private final Operand[][] phiResults;
+        private final Operand[][][] phiValues;
+        private final Operand[] blockLabels;
+        private final boolean[] syntheticLabel;
+
+        // 当前版本（null 表示沿用原名）与撤销日志
+        private final Operand[] current;
+        private final int[] nextVersion;
+        private final List<Integer> undoVariables = new ArrayList<>();
+        private final List<Operand> undoValues = new ArrayList<>();
+
+        private final List<List<TACInstruction>> renamedBlocks;
+
+        Renamer(List<TACInstruction> body, Map<Operand, Integer> variables) {
+            this.body = body;
+            this.variables = variables;
+            this.variableList = new Operand[variables.size()];
+            for (Map.Entry<Operand, Integer> entry : variables.entrySet()) {
+                variableList[entry.getValue()] = entry.getKey();
+            }
+            this.cfg = ControlFlowGraph.build(body);
+            this.dominators = DominatorTree.build(cfg);
+
+            int count = cfg.blockCount();
+            this.phiVariables = new int[count][];
+            this.phiResults = new Operand[count][];
+            this.phiValues = new Operand[count][][];
+            this.blockLabels = new Operand[count];
+            this.syntheticLabel = new boolean[count];
+            this.current = new Operand[variableList.length];
+            this.nextVersion = new int[variableList.length];
+            this.renamedBlocks = new ArrayList<>(count);
+            for (int b = 0; b < count; b++) {
+                renamedBlocks.add(null);
+            }
+
+            for (TACInstruction instruction : body) {
+                addName(usedNames, instruction.getArg1Operand());
+                addName(usedNames, instruction.getArg2Operand());
+                addName(usedNames, instruction.getResultOperand());
+            }
+        }
+
+        List<TACInstruction> rewrite() {
+            placePhis();
+            assignLabels();
+            renameInDominatorOrder();
+
+            List<TACInstruction> rewritten = new ArrayList<>(body.size());
+            for (int b = 0; b < cfg.blockCount(); b++) {
+                if (!dominators.isReachable(b)) {
+                    // 不可达块没有参与重命名，直接丢弃
+                    continue;
+                }
+                List<TACInstruction> block = renamedBlocks.get(b);
+                int start = 0;
+                if (syntheticLabel[b]) {
+                    TACInstruction label = TACInstruction.of(TACOpcode.LABEL, null, null, blockLabels[b]);
+                    label.setMetadata(SYNTHETIC_LABEL);
+                    rewritten.add(label);
+                } else if (!block.isEmpty() && block.get(0).getOpcode() == TACOpcode.LABEL) {
+                    rewritten.add(block.get(0));
+                    start = 1;
+                }
+                for (int k = 0; k < phiVariables[b].length; k++) {
+                    int line = cfg.instructions().get(cfg.blockStart(b)).getLine();
+                    rewritten.add(TACInstruction.phi(phiResults[b][k], reachablePredecessorLabels(b), phiValues[b][k], line));
+                }
+                rewritten.addAll(block.subList(start, block.size()));
+            }
+            return rewritten;
+        }
+
+        /**
+         * 剪枝 SSA：在定值块的迭代支配边界上、且变量在块入口活跃时放置 φ。
+         */
+        private void placePhis() {
+            int count = cfg.blockCount();
+            BitSet[] defBlocks = new BitSet[variableList.length];
+            for (int v = 0; v < variableList.length; v++) {
+                defBlocks[v] = new BitSet(count);
+            }
+            BitSet[] gen = new BitSet[count];
+            BitSet[] kill = new BitSet[count];
+            for (int b = 0; b < count; b++) {
+                gen[b] = new BitSet();
+                kill[b] = new BitSet();
+                for (int i = cfg.blockEnd(b) - 1; i >= cfg.blockStart(b); i--) {
+                    TACInstruction instruction = body.get(i);
+                    int defined = definedVariable(instruction);
+                    if (defined >= 0) {
+                        defBlocks[defined].set(b);
+                        kill[b].set(defined);
+                        gen[b].clear(defined);
                     }
-                    break;
+                    for (Operand use : usedOperands(instruction)) {
+                        Integer v = variables.get(use);
+                        if (v != null) {
+                            gen[b].set(v);
+                        }
+                    }
+                }
+            }
+            DataflowSolver.Result liveness = DataflowSolver.solve(cfg, DataflowSolver.Direction.BACKWARD,
+                DataflowSolver.Meet.UNION, variableList.length, new BitSet(), DataflowSolver.genKill(gen, kill));
+
+            List<List<Integer>> phisAt = new ArrayList<>(count);
+            for (int b = 0; b < count; b++) {
+                phisAt.add(new ArrayList<>());
+            }
+            int[] worklist = new int[count];
+            int[] placedFor = new int[count];
+            int[] queuedFor = new int[count];
+            Arrays.fill(placedFor, -1);
+            Arrays.fill(queuedFor, -1);
+            for (int v = 0; v < variableList.length; v++) {
+                int top = 0;
+                for (int b = defBlocks[v].nextSetBit(0); b >= 0; b = defBlocks[v].nextSetBit(b + 1)) {
+                    worklist[top++] = b;
+                    queuedFor[b] = v;
                 }
-                case STORE: {
-                    String target = instruction.getResult();
-                    Candidate candidate = candidates.get(target);
-                    if (candidate != null) {
-                        candidate.seenStore = true;
+                while (top > 0) {
+                    int block = worklist[--top];
+                    if (!dominators.isReachable(block)) {
+                        continue;
+                    }
+                    for (int frontier : dominators.frontier(block)) {
+                        if (placedFor[frontier] == v || !liveness.in(frontier).get(v)) {
+                            continue;
+                        }
+                        placedFor[frontier] = v;
+                        phisAt.get(frontier).add(v);
+                        if (queuedFor[frontier] != v) {
+                            queuedFor[frontier] = v;
+                            worklist[top++] = frontier;
+                        }
                     }
-                    break;
                 }
-                case LOAD: {
-                    String source = instruction.getArg1();
-                    Candidate candidate = candidates.get(source);
-                    if (candidate != null && !candidate.seenStore) {
-                        candidate.promotable = false;
+            }
+
+            for (int b = 0; b < count; b++) {
+                List<Integer> phis = phisAt.get(b);
+                phiVariables[b] = new int[phis.size()];
+                phiResults[b] = new Operand[phis.size()];
+                phiValues[b] = new Operand[phis.size()][];
+                int predecessorCount = reachablePredecessorCount(b);
+                for (int k = 0; k < phis.size(); k++) {
+                    phiVariables[b][k] = phis.get(k);
+                    phiValues[b][k] = new Operand[predecessorCount];
+                }
+                insertedPhis += phis.size();
+            }
+        }
+
+        /**
+         * φ 所在块的可达前驱都需要标签。
+         */
+        private void assignLabels() {
+            Operand functionLabel = cfg.label(0);
+            for (int b = 0; b < cfg.blockCount(); b++) {
+                blockLabels[b] = cfg.label(b);
+            }
+            for (int b = 0; b < cfg.blockCount(); b++) {
+                if (phiVariables[b].length == 0) {
+                    continue;
+                }
+                for (int pred : cfg.predecessors(b)) {
+                    if (blockLabels[pred] == null && dominators.isReachable(pred)) {
+                        blockLabels[pred] = Operand.label("ssa." + functionLabel + ".bb" + pred);
+                        syntheticLabel[pred] = true;
                     }
-                    break;
                 }
-                default: {
-                    for (Map.Entry<String, Candidate> entry : candidates.entrySet()) {
-                        String var = entry.getKey();
-                        if (usesVariable(instruction, var) && !isAllowedUse(opcode)) {
-                            entry.getValue().promotable = false;
-                        }
+            }
+        }
+
+        private int reachablePredecessorCount(int block) {
+            int count = 0;
+            for (int pred : cfg.predecessors(block)) {
+                if (dominators.isReachable(pred)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        private Operand[] reachablePredecessorLabels(int block) {
+            Operand[] labels = new Operand[reachablePredecessorCount(block)];
+            int k = 0;
+            for (int pred : cfg.predecessors(block)) {
+                if (dominators.isReachable(pred)) {
+                    labels[k++] = blockLabels[pred];
+                }
+            }
+            return labels;
+        }
+
+        /**
+         * 沿支配树先序重命名，离开子树时按撤销日志恢复版本栈。
+         */
+        private void renameInDominatorOrder() {
+            if (cfg.blockCount() == 0) {
+                return;
+            }
+            int count = cfg.blockCount();
+            int[] stack = new int[count];
+            int[] nextChild = new int[count];
+            int[] undoMark = new int[count];
+            int top = 0;
+
+            stack[top++] = 0;
+            undoMark[0] = undoVariables.size();
+            renameBlock(0);
+            while (top > 0) {
+                int block = stack[top - 1];
+                int[] children = dominators.children(block);
+                if (nextChild[block] < children.length) {
+                    int child = children[nextChild[block]++];
+                    undoMark[child] = undoVariables.size();
+                    renameBlock(child);
+                    stack[top++] = child;
+                } else {
+                    restore(undoMark[block]);
+                    top--;
+                }
+            }
+        }
+
+        private void renameBlock(int block) {
+            for (int k = 0; k < phiVariables[block].length; k++) {
+                phiResults[block][k] = define(phiVariables[block][k]);
+            }
+
+            List<TACInstruction> renamed = new ArrayList<>(cfg.blockEnd(block) - cfg.blockStart(block));
+            for (int i = cfg.blockStart(block); i < cfg.blockEnd(block); i++) {
+                TACInstruction instruction = renameInstruction(body.get(i));
+                if (instruction != null) {
+                    renamed.add(instruction);
+                }
+            }
+            renamedBlocks.set(block, renamed);
+
+            // 填写后继块 φ 中来自本块的取值
+            for (int successor : cfg.successors(block)) {
+                int position = 0;
+                for (int pred : cfg.predecessors(successor)) {
+                    if (pred == block) {
+                        break;
+                    }
+                    if (dominators.isReachable(pred)) {
+                        position++;
                     }
-                    break;
+                }
+                for (int k = 0; k < phiVariables[successor].length; k++) {
+                    phiValues[successor][k][position] = currentValue(phiVariables[successor][k]);
                 }
             }
         }
 
-        Set<String> promotable = new HashSet<>();
-        for (Map.Entry<String, Candidate> entry : candidates.entrySet()) {
-            Candidate candidate = entry.getValue();
-            if (candidate.promotable && candidate.seenStore) {
-                promotable.add(entry.getKey());
+        private TACInstruction renameInstruction(TACInstruction instruction) {
+            TACOpcode opcode = instruction.getOpcode();
+            Operand arg1 = instruction.getArg1Operand();
+            Operand arg2 = instruction.getArg2Operand();
+            Operand result = instruction.getResultOperand();
+
+            switch (opcode) {
+                case ALLOC:
+                    return variables.containsKey(result) ? null : instruction;
+                case STORE:
+                    if (variables.containsKey(result)) {
+                        Operand value = use(arg1);
+                        return OptimizerUtils.cloneInstruction(instruction, TACOpcode.ASSIGN, value, null,
+                            define(variables.get(result)));
+                    }
+                    return OptimizerUtils.cloneInstruction(instruction, opcode, use(arg1), arg2, result);
+                case LOAD:
+                    if (variables.containsKey(arg1)) {
+                        Operand value = use(arg1);
+                        return OptimizerUtils.cloneInstruction(instruction, TACOpcode.ASSIGN, value, null, def(result));
+                    }
+                    return OptimizerUtils.cloneInstruction(instruction, opcode, arg1, arg2, def(result));
+                case INCREMENT:
+                case DECREMENT:
+                    if (variables.containsKey(result)) {
+                        Operand value = use(result);
+                        return OptimizerUtils.cloneInstruction(instruction,
+                            opcode == TACOpcode.INCREMENT ? TACOpcode.ADD : TACOpcode.SUB,
+                            value, Operand.immediate(1), def(result));
+                    }
+                    return instruction;
+                case ARRAY_ACCESS:
+                    return OptimizerUtils.cloneInstruction(instruction, opcode, arg1, use(arg2), def(result));
+                case ARRAY_ASSIGN:
+                    return OptimizerUtils.cloneInstruction(instruction, opcode, arg1, use(arg2), use(result));
+                case MEMBER_ACCESS:
+                    return OptimizerUtils.cloneInstruction(instruction, opcode, arg1, arg2, def(result));
+                case MEMBER_ASSIGN:
+                    return OptimizerUtils.cloneInstruction(instruction, opcode, arg1, arg2, use(result));
+                case CALL:
+                    return OptimizerUtils.cloneInstruction(instruction, opcode, arg1, use(arg2), def(result));
+                case SELECT: {
+                    Operand otherwise = use(Operand.of(instruction.getMetadata()));
+                    TACInstruction renamed = OptimizerUtils.cloneInstruction(instruction, opcode, use(arg1), use(arg2), def(result));
+                    renamed.setMetadata(otherwise != null ? otherwise.getText() : null);
+                    return renamed;
+                }
+                case LABEL:
+                case GOTO:
+                    return instruction;
+                case IF_TRUE:
+                case IF_FALSE:
+                case IF_ZERO:
+                case IF_NONZERO:
+                case ARG:
+                case RETURN:
+                    return OptimizerUtils.cloneInstruction(instruction, opcode, use(arg1), arg2, result);
+                default:
+                    if (definesResult(opcode)) {
+                        Operand left = use(arg1);
+                        Operand right = use(arg2);
+                        return OptimizerUtils.cloneInstruction(instruction, opcode, left, right, def(result));
+                    }
+                    return instruction;
             }
         }
-        return promotable;
-    }
 
-    private boolean usesVariable(TACInstruction instruction, String variable) {
-        return variable.equals(instruction.getArg1())
-            || variable.equals(instruction.getArg2())
-            || variable.equals(instruction.getResult());
-    }
+        private Operand use(Operand operand) {
+            Integer v = operand != null ? variables.get(operand) : null;
+            return v != null ? currentValue(v) : operand;
+        }
 
-    private boolean isAllowedUse(TACOpcode opcode) {
-        return opcode == TACOpcode.STORE || opcode == TACOpcode.LOAD || opcode == TACOpcode.ALLOC;
-    }
+        private Operand def(Operand operand) {
+            Integer v = operand != null ? variables.get(operand) : null;
+            return v != null ? define(v) : operand;
+        }
+
+        private Operand currentValue(int v) {
+            return current[v] != null ? current[v] : variableList[v];
+        }
+
+        private Operand define(int v) {
+            Operand version;
+            do {
+                version = OptimizerUtils.ssaVersion(variableList[v], ++nextVersion[v]);
+            } while (usedNames.contains(version));
+            undoVariables.add(v);
+            undoValues.add(current[v]);
+            current[v] = version;
+            return version;
+        }
+
+        private void restore(int mark) {
+            for (int i = undoVariables.size() - 1; i >= mark; i--) {
+                current[undoVariables.get(i)] = undoValues.get(i);
+                undoVariables.remove(i);
+                undoValues.remove(i);
+            }
+        }
 
-    private static final class Candidate {
-        boolean promotable = true;
-        boolean seenStore = false;
+        private int definedVariable(TACInstruction instruction) {
+            TACOpcode opcode = instruction.getOpcode();
+            Operand target;
+            if (opcode == TACOpcode.STORE) {
+                target = instruction.getResultOperand();
+            } else if (definesResult(opcode)) {
+                target = instruction.getResultOperand();
+            } else {
+                return -1;
+            }
+            Integer v = target != null ? variables.get(target) : null;
+            return v != null ? v : -1;
+        }
+
+        private List<Operand> usedOperands(TACInstruction instruction) {
+            List<Operand> uses = new ArrayList<>(3);
+            switch (instruction.getOpcode()) {
+                case ALLOC:
+                case LABEL:
+                case GOTO:
+                case MEMBER_ACCESS:
+                    break;
+                case INCREMENT:
+                case DECREMENT:
+                case MEMBER_ASSIGN:
+                    uses.add(instruction.getResultOperand());
+                    break;
+                case ARRAY_ACCESS:
+                    uses.add(instruction.getArg2Operand());
+                    break;
+                case ARRAY_ASSIGN:
+                    uses.add(instruction.getArg2Operand());
+                    uses.add(instruction.getResultOperand());
+                    break;
+                case STORE:
+                case LOAD:
+                    uses.add(instruction.getArg1Operand());
+                    break;
+                case SELECT:
+                    uses.add(instruction.getArg1Operand());
+                    uses.add(instruction.getArg2Operand());
+                    uses.add(Operand.of(instruction.getMetadata()));
+                    break;
+                default:
+                    uses.add(instruction.getArg1Operand());
+                    uses.add(instruction.getArg2Operand());
+                    break;
+            }
+            uses.removeIf(operand -> operand == null);
+            return uses;
+        }
     }
 }
-
@@ -0,0 +1,82 @@
+package com.gemini.compiler.optimizer;
+
+/**
+ * 优化级别。
+ * <p>
+ * 级别决定 {@link IROptimizer} 运行哪些 Pass，以及中间的标量优化 Pass
+ * 最多迭代多少轮去逼近不动点：
+ * <ul>
+ *   <li>-O0：不优化</li>
+ *   <li>-O1：常量传播 + 死代码消除，各运行一次，不进入 SSA</li>
+ *   <li>-O2：SSA 上的常量传播、循环不变量外提、死代码消除、全局值编号，迭代至多 4 轮</li>
+ *   <li>-O3：同 -O2，但用条件常量传播代替普通常量传播，迭代至多 8 轮</li>
+ * </ul>
+ */
+public enum OptimizationLevel {
+    O0("-O0", 0),
+    O1("-O1", 1),
+    O2("-O2", 4),
+    O3("-O3", 8);
+
+    private final String flag;
+    private final int maxIterations;
+
+    OptimizationLevel(String flag, int maxIterations) {
+        this.flag = flag;
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * 命令行形式，如 "-O2"。
+     */
+    public String getFlag() {
+        return flag;
+    }
+
+    /**
+     * 迭代部分的轮数上限（某一轮所有 Pass 都报告未修改时提前结束）。
+     */
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    public boolean isEnabled() {
+        return this != O0;
+    }
+
+    /**
+     * 是否在 SSA 形式上运行完整流水线（-O1 只做廉价的块级优化）。
+     */
+    public boolean usesSsa() {
+        return compareTo(O2) >= 0;
+    }
+
+    public boolean usesConditionalConstantPropagation() {
+        return this == O3;
+    }
+
+    /**
+     * 解析 "-O2"、"O2" 或 "2" 形式的级别。
+     *
+     * @throws IllegalArgumentException 无法识别的级别
+     */
+    public static OptimizationLevel parse(String text) {
+        String normalized = text.startsWith("-") ? text.substring(1) : text;
+        if (normalized.startsWith("O")) {
+            normalized = normalized.substring(1);
+        }
+        switch (normalized) {
+            case "0": return O0;
+            case "1": return O1;
+            case "2": return O2;
+            case "3": return O3;
+            default:
+                throw new IllegalArgumentException("未知的优化级别: " + text);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return flag;
+    }
+}
@@ -6,7 +6,8 @@ import java.util.List;
 /**
  * 单个优化传递的统一接口。
  * <p>
- * 每个 Pass 接受一组 TAC 指令并返回优化后的指令列表。
+ * 每个 Pass 接受一组 TAC 指令并返回优化后的指令列表，
+ * 并通过 {@link #changed} 报告本次运行是否修改了指令，供 {@link IROptimizer} 判断不动点。
  */
 public interface OptimizerPass {
 
@@ -17,5 +18,18 @@ public interface OptimizerPass {
      * @return 优化后的指令列表
      */
     List<TACInstruction> run(List<TACInstruction> instructions);
+
+    /**
+     * 本次运行是否修改了指令。
+     * <p>
+     * 默认逐条比较输入与输出（操作数已驻留，比较是按引用进行的）；
+     * Pass 重写指令时总是生成新对象，不会原地修改输入。
+     *
+     * @param before 传给 {@link #run} 的指令
+     * @param after  {@link #run} 返回的指令
+     */
+    default boolean changed(List<TACInstruction> before, List<TACInstruction> after) {
+        return !OptimizerUtils.sameInstructions(before, after);
+    }
 }
 
@@ -1,7 +1,12 @@
 package com.gemini.compiler.optimizer;
 
+import com.gemini.compiler.ir.Operand;
 import com.gemini.compiler.ir.TACInstruction;
 import com.gemini.compiler.ir.TACOpcode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
 
 /**
  * 为多个优化 Pass 提供的通用辅助方法。
@@ -24,31 +29,160 @@ final class OptimizerUtils {
         return clone;
     }
 
-    static boolean isNumericLiteral(String value) {
-        if (value == null || value.isEmpty()) {
-            return false;
-        }
-        int start = (value.charAt(0) == '-') ? 1 : 0;
-        if (start == value.length()) {
+    static TACInstruction cloneInstruction(
+        TACInstruction original,
+        TACOpcode opcode,
+        Operand arg1,
+        Operand arg2,
+        Operand result
+    ) {
+        TACInstruction clone = opcode == TACOpcode.PHI && original.getOpcode() == TACOpcode.PHI
+            ? TACInstruction.phi(result, original.getPhiLabels(), original.getPhiValues(), original.getLine())
+            : TACInstruction.of(opcode, arg1, arg2, result, original.getLine());
+        clone.setResultType(original.getResultType());
+        clone.setMetadata(original.getMetadata());
+        return clone;
+    }
+
+    /**
+     * 两个指令序列是否逐条相同（用于判断 Pass 是否修改了指令）。
+     */
+    static boolean sameInstructions(List<TACInstruction> a, List<TACInstruction> b) {
+        if (a.size() != b.size()) {
             return false;
         }
-        for (int i = start; i < value.length(); i++) {
-            if (!Character.isDigit(value.charAt(i))) {
+        for (int i = 0; i < a.size(); i++) {
+            if (!sameInstruction(a.get(i), b.get(i))) {
                 return false;
             }
         }
         return true;
     }
 
-    static Integer tryParseInt(String value) {
-        if (!isNumericLiteral(value)) {
+    static boolean sameInstruction(TACInstruction a, TACInstruction b) {
+        if (a == b) {
+            return true;
+        }
+        return a.getOpcode() == b.getOpcode()
+            && a.getArg1Operand() == b.getArg1Operand()
+            && a.getArg2Operand() == b.getArg2Operand()
+            && a.getResultOperand() == b.getResultOperand()
+            && Objects.equals(a.getMetadata(), b.getMetadata())
+            && Objects.equals(a.getResultType(), b.getResultType())
+            && Arrays.equals(a.getPhiLabels(), b.getPhiLabels())
+            && Arrays.equals(a.getPhiValues(), b.getPhiValues());
+    }
+
+    static boolean isNumericLiteral(Operand value) {
+        return value != null && value.isNumeric();
+    }
+
+    /**
+     * SSA 版本名：原名.版本号（源语言标识符不含 '.'，不会与用户变量重名）。
+     */
+    static Operand ssaVersion(Operand variable, int version) {
+        return Operand.of(variable.getText() + '.' + version);
+    }
+
+    /**
+     * SSA 版本名对应的原变量，不是版本名时返回 null。
+     */
+    static Operand ssaBase(Operand name) {
+        if (name == null || !name.isName()) {
             return null;
         }
-        try {
-            return Integer.parseInt(value);
-        } catch (NumberFormatException ex) {
+        String text = name.getText();
+        int dot = text.lastIndexOf('.');
+        if (dot <= 0 || dot == text.length() - 1) {
             return null;
         }
+        for (int i = dot + 1; i < text.length(); i++) {
+            if (!Character.isDigit(text.charAt(i))) {
+                return null;
+            }
+        }
+        return Operand.of(text.substring(0, dot));
+    }
+
+    /**
+     * 指令写入的变量，不写变量时为 null。
+     */
+    static Operand definedVariable(TACInstruction instruction) {
+        Operand result = instruction.getResultOperand();
+        if (result == null || !result.isName()) {
+            return null;
+        }
+        switch (instruction.getOpcode()) {
+            case ADD:
+            case SUB:
+            case MUL:
+            case DIV:
+            case MOD:
+            case EQ:
+            case NE:
+            case LT:
+            case GT:
+            case LE:
+            case GE:
+            case AND:
+            case OR:
+            case NOT:
+            case ASSIGN:
+            case PLUS_ASSIGN:
+            case MINUS_ASSIGN:
+            case MUL_ASSIGN:
+            case DIV_ASSIGN:
+            case MOD_ASSIGN:
+            case INCREMENT:
+            case DECREMENT:
+            case CAST:
+            case CALL:
+            case ARRAY_ACCESS:
+            case MEMBER_ACCESS:
+            case SELECT:
+            case STRUCT_COPY:
+            case ALLOC:
+            case LOAD:
+            case STORE:
+            case PHI:
+                return result;
+            default:
+                return null;
+        }
     }
-}
 
+    /**
+     * 指令读取的变量（φ 的取值在对应前驱末尾使用，不在这里列出）。
+     */
+    static List<Operand> usedVariables(TACInstruction instruction) {
+        List<Operand> uses = new ArrayList<>(3);
+        switch (instruction.getOpcode()) {
+            case LABEL:
+            case GOTO:
+            case PHI:
+            case ALLOC:
+                return uses;
+            case PLUS_ASSIGN:
+            case MINUS_ASSIGN:
+            case MUL_ASSIGN:
+            case DIV_ASSIGN:
+            case MOD_ASSIGN:
+            case INCREMENT:
+            case DECREMENT:
+            case ARRAY_ASSIGN:
+            case MEMBER_ASSIGN:
+            case STRUCT_COPY:
+                uses.add(instruction.getResultOperand());
+                break;
+            case SELECT:
+                uses.add(Operand.of(instruction.getMetadata()));
+                break;
+            default:
+                break;
+        }
+        uses.add(instruction.getArg1Operand());
+        uses.add(instruction.getArg2Operand());
+        uses.removeIf(operand -> operand == null || !operand.isName());
+        return uses;
+    }
+}
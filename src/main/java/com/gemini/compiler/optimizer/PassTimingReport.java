@@ -0,0 +1,176 @@
+package com.gemini.compiler.optimizer;
+
+import com.gemini.compiler.ir.TACInstruction;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 各优化 Pass 的耗时与 IR 规模统计（--time-passes）。
+ * <p>
+ * 同名 Pass 在所有优化单元、所有迭代轮次上的运行合并为一行。
+ * 分配字节数取自运行 Pass 的线程（{@code com.sun.management.ThreadMXBean}），
+ * 并行优化时各线程的分配互不干扰；耗时是各线程耗时之和，可能大于实际经过的时间。
+ */
+public final class PassTimingReport {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    /**
+     * 运行一个 Pass 并记录统计。
+     */
+    List<TACInstruction> run(OptimizerPass pass, List<TACInstruction> instructions) {
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        List<TACInstruction> output = pass.run(instructions);
+        long elapsed = System.nanoTime() - start;
+        long allocatedAfter = allocatedBytes();
+        long allocated = allocatedBefore >= 0 && allocatedAfter >= 0 ? allocatedAfter - allocatedBefore : -1;
+        record(pass.getClass().getSimpleName(), elapsed, allocated, instructions.size(), output.size());
+        return output;
+    }
+
+    synchronized void record(String pass, long wallNanos, long allocatedBytes, int instructionsIn, int instructionsOut) {
+        Entry entry = entries.computeIfAbsent(pass, Entry::new);
+        entry.runs++;
+        entry.wallNanos += wallNanos;
+        if (allocatedBytes < 0 || entry.allocatedBytes < 0) {
+            entry.allocatedBytes = -1;
+        } else {
+            entry.allocatedBytes += allocatedBytes;
+        }
+        entry.instructionsIn += instructionsIn;
+        entry.instructionsOut += instructionsOut;
+    }
+
+    /**
+     * 按 Pass 首次运行的顺序返回统计快照。
+     */
+    public synchronized List<Entry> getEntries() {
+        List<Entry> snapshot = new ArrayList<>(entries.size());
+        for (Entry entry : entries.values()) {
+            snapshot.add(entry.copy());
+        }
+        return snapshot;
+    }
+
+    /**
+     * 所有 Pass 的合计。
+     */
+    public synchronized Entry getTotal() {
+        Entry total = new Entry("total");
+        for (Entry entry : entries.values()) {
+            total.runs += entry.runs;
+            total.wallNanos += entry.wallNanos;
+            total.allocatedBytes = entry.allocatedBytes < 0 || total.allocatedBytes < 0
+                ? -1 : total.allocatedBytes + entry.allocatedBytes;
+            total.instructionsIn += entry.instructionsIn;
+            total.instructionsOut += entry.instructionsOut;
+        }
+        return total;
+    }
+
+    /**
+     * 文本表格形式。
+     */
+    public String toTable() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("=== 优化 Pass 耗时 ===\n");
+        sb.append(String.format("%-36s %6s %12s %12s %12s %12s%n",
+            "Pass", "runs", "wall(ms)", "alloc(KB)", "instr-in", "instr-out"));
+        for (Entry entry : getEntries()) {
+            appendRow(sb, entry);
+        }
+        appendRow(sb, getTotal());
+        return sb.toString();
+    }
+
+    private static void appendRow(StringBuilder sb, Entry entry) {
+        sb.append(String.format("%-36s %6d %12.3f %12s %12d %12d%n",
+            entry.name,
+            entry.runs,
+            entry.wallNanos / 1_000_000.0,
+            entry.allocatedBytes < 0 ? "n/a" : Long.toString(entry.allocatedBytes / 1024),
+            entry.instructionsIn,
+            entry.instructionsOut));
+    }
+
+    /**
+     * JSON 形式（不可用的分配字节数记为 -1）。
+     */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n  \"passes\": [");
+        List<Entry> snapshot = getEntries();
+        for (int i = 0; i < snapshot.size(); i++) {
+            sb.append(i == 0 ? "\n    " : ",\n    ");
+            appendJson(sb, snapshot.get(i));
+        }
+        sb.append(snapshot.isEmpty() ? "],\n" : "\n  ],\n");
+        sb.append("  \"total\": ");
+        appendJson(sb, getTotal());
+        sb.append("\n}\n");
+        return sb.toString();
+    }
+
+    private static void appendJson(StringBuilder sb, Entry entry) {
+        sb.append("{\"name\": \"").append(entry.name).append('"')
+            .append(", \"runs\": ").append(entry.runs)
+            .append(", \"wallNanos\": ").append(entry.wallNanos)
+            .append(", \"allocatedBytes\": ").append(entry.allocatedBytes)
+            .append(", \"instructionsIn\": ").append(entry.instructionsIn)
+            .append(", \"instructionsOut\": ").append(entry.instructionsOut)
+            .append('}');
+    }
+
+    /**
+     * 当前线程累计分配的字节数，JVM 不支持时返回 -1。
+     */
+    private static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+            if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 单个 Pass 的累计统计。
+     */
+    public static final class Entry {
+        private final String name;
+        private int runs;
+        private long wallNanos;
+        private long allocatedBytes;
+        private long instructionsIn;
+        private long instructionsOut;
+
+        Entry(String name) {
+            this.name = name;
+        }
+
+        private Entry copy() {
+            Entry copy = new Entry(name);
+            copy.runs = runs;
+            copy.wallNanos = wallNanos;
+            copy.allocatedBytes = allocatedBytes;
+            copy.instructionsIn = instructionsIn;
+            copy.instructionsOut = instructionsOut;
+            return copy;
+        }
+
+        public String getName() { return name; }
+        public int getRuns() { return runs; }
+        public long getWallNanos() { return wallNanos; }
+        public long getAllocatedBytes() { return allocatedBytes; }
+        public long getInstructionsIn() { return instructionsIn; }
+        public long getInstructionsOut() { return instructionsOut; }
+    }
+}
@@ -0,0 +1,529 @@
+package com.gemini.compiler.optimizer;
+
+import com.gemini.compiler.ir.FunctionIndex;
+import com.gemini.compiler.ir.Operand;
+import com.gemini.compiler.ir.TACInstruction;
+import com.gemini.compiler.ir.TACOpcode;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 退出 SSA：在代码生成之前消去 φ 指令。
+ * <p>
+ * 每条 φ 在对应前驱的出边上变为一组并行复制。前驱只有一个后继时复制放在块末跳转之前；
+ * 前驱以条件跳转结束且有两个不同后继时（关键边）先拆分该边：
+ * 直落方向在条件跳转之后插入复制，跳转方向把目标改为函数末尾新建的拆分块。
+ * 并行复制按依赖顺序串行化，出现环（如交换）时借助临时变量打断。
+ * <p>
+ * 最后做一次简单的合并：在降级后的代码上求活跃变量，同一原变量的各个 SSA 版本
+ * 若互不干扰就改回原名，随之变成 {@code x = x} 的复制被删除。
+ * 没有被优化改变活跃范围的变量因此恢复为进入 SSA 之前的写法。
+ */
+public final class SSADestructionPass implements OptimizerPass {
+
+    private final boolean debug;
+
+    private int splitEdges;
+    private int insertedCopies;
+
+    // 当前函数中新建的拆分块与出口标签
+    private final Set<Operand> splitLabels = new HashSet<>();
+
+    public SSADestructionPass() {
+        this(false);
+    }
+
+    public SSADestructionPass(boolean debug) {
+        this.debug = debug;
+    }
+
+    @Override
+    public List<TACInstruction> run(List<TACInstruction> instructions) {
+        FunctionIndex functionIndex = FunctionIndex.build(instructions);
+        List<TACInstruction> lowered = new ArrayList<>(instructions.size());
+
+        lowered.addAll(instructions.subList(0, functionIndex.getPrologueEnd()));
+        for (FunctionIndex.FunctionRange function : functionIndex.getFunctions()) {
+            lowered.addAll(destructFunction(function.slice(instructions)));
+        }
+
+        if (debug) {
+            System.out.println("退出 SSA: 拆分关键边 " + splitEdges + " 条，插入复制 " + insertedCopies + " 条");
+        }
+
+        return lowered;
+    }
+
+    private List<TACInstruction> destructFunction(List<TACInstruction> body) {
+        boolean hasPhi = false;
+        boolean hasVersions = false;
+        for (TACInstruction instruction : body) {
+            hasPhi |= instruction.getOpcode() == TACOpcode.PHI;
+            hasVersions |= OptimizerUtils.ssaBase(instruction.getResultOperand()) != null;
+        }
+        if (!hasPhi && !hasVersions) {
+            return removeSyntheticLabels(new ArrayList<>(body));
+        }
+
+        splitLabels.clear();
+        List<TACInstruction> lowered = hasPhi ? lowerPhis(body) : new ArrayList<>(body);
+        lowered = removeSyntheticLabels(lowered);
+        lowered = coalesce(lowered);
+        return splitLabels.isEmpty() ? lowered : removeEmptySplitBlocks(lowered);
+    }
+
+    /**
+     * 把 φ 改写为前驱出边上的复制。
+     */
+    private List<TACInstruction> lowerPhis(List<TACInstruction> body) {
+        ControlFlowGraph cfg = ControlFlowGraph.build(body);
+        int count = cfg.blockCount();
+        Operand functionLabel = cfg.label(0);
+
+        // 每个块开头的 φ
+        List<List<TACInstruction>> phis = new ArrayList<>(count);
+        int[] bodyStart = new int[count];
+        for (int b = 0; b < count; b++) {
+            List<TACInstruction> blockPhis = new ArrayList<>();
+            int i = cfg.blockStart(b);
+            if (i < cfg.blockEnd(b) && body.get(i).getOpcode() == TACOpcode.LABEL) {
+                i++;
+            }
+            while (i < cfg.blockEnd(b) && body.get(i).getOpcode() == TACOpcode.PHI) {
+                blockPhis.add(body.get(i));
+                i++;
+            }
+            phis.add(blockPhis);
+            bodyStart[b] = i;
+        }
+
+        List<TACInstruction> lowered = new ArrayList<>(body.size());
+        List<TACInstruction> splitBlocks = new ArrayList<>();
+        for (int b = 0; b < count; b++) {
+            for (int i = cfg.blockStart(b); i < bodyStart[b]; i++) {
+                if (body.get(i).getOpcode() == TACOpcode.LABEL) {
+                    lowered.add(body.get(i));
+                }
+            }
+
+            int end = cfg.blockEnd(b);
+            TACInstruction last = end > bodyStart[b] ? body.get(end - 1) : null;
+            boolean conditional = last != null && isConditionalBranch(last.getOpcode());
+            boolean jump = conditional || (last != null && last.getOpcode() == TACOpcode.GOTO);
+            int[] successors = cfg.successors(b);
+
+            boolean needsCopies = false;
+            for (int successor : successors) {
+                needsCopies |= !phis.get(successor).isEmpty();
+            }
+            if (!needsCopies) {
+                lowered.addAll(body.subList(bodyStart[b], end));
+                continue;
+            }
+
+            Operand label = cfg.label(b);
+            lowered.addAll(body.subList(bodyStart[b], jump ? end - 1 : end));
+
+            int target = conditional ? cfg.branchTarget(b) : -1;
+            if (!conditional || (successors.length == 1 && successors[0] == target)) {
+                // 唯一后继：复制放在块末；条件跳转的两个方向相同时跳转本身可以省去
+                lowered.addAll(parallelCopy(phis.get(successors[0]), label, last));
+                if (jump && !conditional) {
+                    lowered.add(last);
+                }
+                continue;
+            }
+
+            TACInstruction branch = last;
+            if (target >= 0 && !phis.get(target).isEmpty()) {
+                Operand splitLabel = Operand.label("ssa." + functionLabel + ".split" + (++splitEdges));
+                splitLabels.add(splitLabel);
+                branch = OptimizerUtils.cloneInstruction(last, last.getOpcode(), last.getArg1Operand(),
+                    last.getArg2Operand(), splitLabel);
+                splitBlocks.add(TACInstruction.of(TACOpcode.LABEL, null, null, splitLabel));
+                splitBlocks.addAll(parallelCopy(phis.get(target), label, last));
+                splitBlocks.add(TACInstruction.of(TACOpcode.GOTO, null, null, cfg.label(target)));
+            }
+            lowered.add(branch);
+            int fallthrough = b + 1 < count && b + 1 != target ? b + 1 : -1;
+            if (fallthrough >= 0 && !phis.get(fallthrough).isEmpty()) {
+                splitEdges++;
+                lowered.addAll(parallelCopy(phis.get(fallthrough), label, last));
+            }
+        }
+
+        if (!splitBlocks.isEmpty()) {
+            TACInstruction tail = lowered.get(lowered.size() - 1);
+            if (tail.getOpcode() != TACOpcode.GOTO && tail.getOpcode() != TACOpcode.RETURN) {
+                // 函数末尾可以直落出函数，拆分块不能插在它后面被直落进入
+                Operand exitLabel = Operand.label("ssa." + functionLabel + ".exit");
+                splitLabels.add(exitLabel);
+                lowered.add(TACInstruction.of(TACOpcode.GOTO, null, null, exitLabel));
+                splitBlocks.add(TACInstruction.of(TACOpcode.LABEL, null, null, exitLabel));
+            }
+            lowered.addAll(splitBlocks);
+        }
+        return lowered;
+    }
+
+    /**
+     * 前驱 label 流向某块时该块 φ 对应的并行复制，按依赖顺序串行化。
+     */
+    private List<TACInstruction> parallelCopy(List<TACInstruction> phis, Operand predecessor, TACInstruction origin) {
+        Map<Operand, Operand> pending = new LinkedHashMap<>();
+        for (TACInstruction phi : phis) {
+            Operand value = null;
+            boolean found = false;
+            for (int k = 0; k < phi.getPhiCount(); k++) {
+                if (phi.getPhiLabel(k) == predecessor) {
+                    value = phi.getPhiValue(k);
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                throw new IllegalStateException("φ 指令缺少来自 " + predecessor + " 的取值: " + phi);
+            }
+            if (value != phi.getResultOperand()) {
+                pending.put(phi.getResultOperand(), value);
+            }
+        }
+
+        List<TACInstruction> copies = new ArrayList<>(pending.size() + 1);
+        while (!pending.isEmpty()) {
+            Set<Operand> sources = new HashSet<>(pending.values());
+            Operand ready = null;
+            for (Operand destination : pending.keySet()) {
+                if (!sources.contains(destination)) {
+                    ready = destination;
+                    break;
+                }
+            }
+            if (ready != null) {
+                copies.add(copy(origin, pending.remove(ready), ready));
+                continue;
+            }
+
+            // 只剩环：把一个目标的旧值存入临时变量，再让读取它的复制改读临时变量
+            Operand destination = pending.keySet().iterator().next();
+            Operand temporary = Operand.of(destination.getText() + ".swap");
+            copies.add(copy(origin, destination, temporary));
+            for (Map.Entry<Operand, Operand> entry : pending.entrySet()) {
+                if (entry.getValue() == destination) {
+                    entry.setValue(temporary);
+                }
+            }
+        }
+        insertedCopies += copies.size();
+        return copies;
+    }
+
+    private static TACInstruction copy(TACInstruction origin, Operand source, Operand destination) {
+        TACInstruction copy = TACInstruction.of(TACOpcode.ASSIGN, source, null, destination,
+            origin != null ? origin.getLine() : -1);
+        return copy;
+    }
+
+    /**
+     * 合并后复制全部消失的拆分块只剩一条跳转：让条件跳转直接指向原目标并删除该块。
+     */
+    private List<TACInstruction> removeEmptySplitBlocks(List<TACInstruction> instructions) {
+        Map<Operand, Operand> forward = new HashMap<>();
+        for (int i = 0; i + 1 < instructions.size(); i++) {
+            TACInstruction label = instructions.get(i);
+            TACInstruction next = instructions.get(i + 1);
+            if (label.getOpcode() == TACOpcode.LABEL && splitLabels.contains(label.getResultOperand())
+                && next.getOpcode() == TACOpcode.GOTO) {
+                forward.put(label.getResultOperand(), next.getResultOperand());
+            }
+        }
+
+        List<TACInstruction> result = new ArrayList<>(instructions.size());
+        for (int i = 0; i < instructions.size(); i++) {
+            TACInstruction instruction = instructions.get(i);
+            if (instruction.getOpcode() == TACOpcode.LABEL && forward.containsKey(instruction.getResultOperand())) {
+                i++;
+                continue;
+            }
+            Operand target = isConditionalBranch(instruction.getOpcode()) ? forward.get(instruction.getResultOperand()) : null;
+            result.add(target == null ? instruction : OptimizerUtils.cloneInstruction(instruction,
+                instruction.getOpcode(), instruction.getArg1Operand(), instruction.getArg2Operand(), target));
+        }
+
+        // 拆分块都删掉后，为它们设置的出口跳转也不再需要
+        int last = result.size() - 1;
+        if (last >= 1 && result.get(last).getOpcode() == TACOpcode.LABEL
+            && splitLabels.contains(result.get(last).getResultOperand())
+            && result.get(last - 1).getOpcode() == TACOpcode.GOTO
+            && result.get(last - 1).getResultOperand() == result.get(last).getResultOperand()) {
+            result.remove(last);
+            result.remove(last - 1);
+        }
+        return result;
+    }
+
+    private static List<TACInstruction> removeSyntheticLabels(List<TACInstruction> instructions) {
+        Set<Operand> targets = new HashSet<>();
+        for (TACInstruction instruction : instructions) {
+            TACOpcode opcode = instruction.getOpcode();
+            if (opcode == TACOpcode.GOTO || isConditionalBranch(opcode)) {
+                targets.add(instruction.getResultOperand());
+            }
+        }
+        instructions.removeIf(instruction -> instruction.getOpcode() == TACOpcode.LABEL
+            && Mem2RegPass.SYNTHETIC_LABEL.equals(instruction.getMetadata())
+            && !targets.contains(instruction.getResultOperand()));
+        return instructions;
+    }
+
+    /**
+     * 把互不干扰的 SSA 版本改回原变量名。
+     */
+    private List<TACInstruction> coalesce(List<TACInstruction> instructions) {
+        // 同一原变量的成员：原名本身（入口值）与所有版本
+        Map<Operand, Integer> members = new HashMap<>();
+        List<Operand> memberList = new ArrayList<>();
+        List<Operand> baseOf = new ArrayList<>();
+        for (TACInstruction instruction : instructions) {
+            for (Operand operand : operandsOf(instruction)) {
+                Operand base = rootOf(operand);
+                if (base != null && !members.containsKey(operand)) {
+                    if (!members.containsKey(base)) {
+                        members.put(base, memberList.size());
+                        memberList.add(base);
+                        baseOf.add(base);
+                    }
+                    members.put(operand, memberList.size());
+                    memberList.add(operand);
+                    baseOf.add(base);
+                }
+            }
+        }
+        if (memberList.isEmpty()) {
+            return instructions;
+        }
+
+        List<Set<Integer>> interference = computeInterference(instructions, members, baseOf);
+
+        // 按首次出现的顺序贪心地把成员并入原名
+        Map<Operand, List<Integer>> assigned = new HashMap<>();
+        Map<Operand, Operand> rename = new HashMap<>();
+        for (int m = 0; m < memberList.size(); m++) {
+            Operand member = memberList.get(m);
+            Operand base = baseOf.get(m);
+            List<Integer> group = assigned.computeIfAbsent(base, key -> new ArrayList<>());
+            boolean free = true;
+            for (int other : group) {
+                if (interference.get(m).contains(other)) {
+                    free = false;
+                    break;
+                }
+            }
+            if (free) {
+                group.add(m);
+                if (member != base) {
+                    rename.put(member, base);
+                }
+            }
+        }
+
+        List<TACInstruction> result = new ArrayList<>(instructions.size());
+        for (TACInstruction instruction : instructions) {
+            Operand arg1 = renamed(rename, instruction.getArg1Operand());
+            Operand arg2 = renamed(rename, instruction.getArg2Operand());
+            Operand target = renamed(rename, instruction.getResultOperand());
+            if (instruction.getOpcode() == TACOpcode.ASSIGN && arg1 == target) {
+                continue;
+            }
+            if (arg1 == instruction.getArg1Operand() && arg2 == instruction.getArg2Operand()
+                && target == instruction.getResultOperand() && !selectRenamed(rename, instruction)) {
+                result.add(instruction);
+                continue;
+            }
+            TACInstruction rewritten = OptimizerUtils.cloneInstruction(instruction, instruction.getOpcode(), arg1, arg2, target);
+            if (instruction.getOpcode() == TACOpcode.SELECT) {
+                Operand otherwise = renamed(rename, Operand.of(instruction.getMetadata()));
+                rewritten.setMetadata(otherwise != null ? otherwise.getText() : null);
+            }
+            result.add(rewritten);
+        }
+        return result;
+    }
+
+    /**
+     * 同一原变量的成员之间的干扰关系：在一个成员的定值点上仍然活跃的其他成员与其干扰，
+     * 复制 d = s 的源 s 除外（两者此时值相同）。
+     */
+    private List<Set<Integer>> computeInterference(List<TACInstruction> instructions,
+                                                   Map<Operand, Integer> members,
+                                                   List<Operand> baseOf) {
+        ControlFlowGraph cfg = ControlFlowGraph.build(instructions);
+        int count = cfg.blockCount();
+        int width = baseOf.size();
+
+        BitSet[] gen = new BitSet[count];
+        BitSet[] kill = new BitSet[count];
+        for (int b = 0; b < count; b++) {
+            gen[b] = new BitSet(width);
+            kill[b] = new BitSet(width);
+            for (int i = cfg.blockEnd(b) - 1; i >= cfg.blockStart(b); i--) {
+                TACInstruction instruction = instructions.get(i);
+                Integer defined = definedMember(instruction, members);
+                if (defined != null) {
+                    kill[b].set(defined);
+                    gen[b].clear(defined);
+                }
+                for (Operand use : usesOf(instruction)) {
+                    Integer member = members.get(use);
+                    if (member != null) {
+                        gen[b].set(member);
+                    }
+                }
+            }
+        }
+        DataflowSolver.Result liveness = DataflowSolver.solve(cfg, DataflowSolver.Direction.BACKWARD,
+            DataflowSolver.Meet.UNION, width, new BitSet(), DataflowSolver.genKill(gen, kill));
+
+        List<Set<Integer>> interference = new ArrayList<>(width);
+        for (int m = 0; m < width; m++) {
+            interference.add(new HashSet<>());
+        }
+        for (int b = 0; b < count; b++) {
+            BitSet live = (BitSet) liveness.out(b).clone();
+            for (int i = cfg.blockEnd(b) - 1; i >= cfg.blockStart(b); i--) {
+                TACInstruction instruction = instructions.get(i);
+                Integer defined = definedMember(instruction, members);
+                if (defined != null) {
+                    Integer copySource = instruction.getOpcode() == TACOpcode.ASSIGN
+                        ? members.get(instruction.getArg1Operand()) : null;
+                    Operand base = baseOf.get(defined);
+                    for (int other = live.nextSetBit(0); other >= 0; other = live.nextSetBit(other + 1)) {
+                        if (other != defined && !Integer.valueOf(other).equals(copySource) && baseOf.get(other) == base) {
+                            interference.get(defined).add(other);
+                            interference.get(other).add(defined);
+                        }
+                    }
+                    live.clear(defined);
+                }
+                for (Operand use : usesOf(instruction)) {
+                    Integer member = members.get(use);
+                    if (member != null) {
+                        live.set(member);
+                    }
+                }
+            }
+        }
+
+        // 原名代表函数入口处的值，与入口处活跃的其他成员干扰
+        BitSet entryLive = count > 0 ? liveness.in(0) : new BitSet();
+        for (int m = entryLive.nextSetBit(0); m >= 0; m = entryLive.nextSetBit(m + 1)) {
+            Operand base = baseOf.get(m);
+            Integer baseMember = members.get(base);
+            if (baseMember != null && baseMember != m) {
+                interference.get(m).add(baseMember);
+                interference.get(baseMember).add(m);
+            }
+        }
+        return interference;
+    }
+
+    private static Integer definedMember(TACInstruction instruction, Map<Operand, Integer> members) {
+        switch (instruction.getOpcode()) {
+            case LABEL:
+            case GOTO:
+            case IF_TRUE:
+            case IF_FALSE:
+            case IF_ZERO:
+            case IF_NONZERO:
+            case ARRAY_ASSIGN:
+            case MEMBER_ASSIGN:
+            case STORE:
+            case RETURN:
+            case ARG:
+            case PARAM:
+                return null;
+            default:
+                Operand result = instruction.getResultOperand();
+                return result != null ? members.get(result) : null;
+        }
+    }
+
+    private static List<Operand> usesOf(TACInstruction instruction) {
+        List<Operand> uses = new ArrayList<>(3);
+        uses.add(instruction.getArg1Operand());
+        uses.add(instruction.getArg2Operand());
+        switch (instruction.getOpcode()) {
+            case ARRAY_ASSIGN:
+            case MEMBER_ASSIGN:
+            case STORE:
+            case INCREMENT:
+            case DECREMENT:
+            case PLUS_ASSIGN:
+            case MINUS_ASSIGN:
+            case MUL_ASSIGN:
+            case DIV_ASSIGN:
+            case MOD_ASSIGN:
+            case STRUCT_COPY:
+                uses.add(instruction.getResultOperand());
+                break;
+            case SELECT:
+                uses.add(Operand.of(instruction.getMetadata()));
+                break;
+            default:
+                break;
+        }
+        return uses;
+    }
+
+    private static List<Operand> operandsOf(TACInstruction instruction) {
+        List<Operand> operands = usesOf(instruction);
+        operands.add(instruction.getResultOperand());
+        return operands;
+    }
+
+    /**
+     * 版本名的最初原名（多次进出 SSA 时版本名可能再带版本号），不是版本名时返回 null。
+     */
+    private static Operand rootOf(Operand operand) {
+        Operand base = OptimizerUtils.ssaBase(operand);
+        while (base != null) {
+            Operand outer = OptimizerUtils.ssaBase(base);
+            if (outer == null) {
+                return base;
+            }
+            base = outer;
+        }
+        return null;
+    }
+
+    private static Operand renamed(Map<Operand, Operand> rename, Operand operand) {
+        if (operand == null) {
+            return null;
+        }
+        Operand replacement = rename.get(operand);
+        return replacement != null ? replacement : operand;
+    }
+
+    private static boolean selectRenamed(Map<Operand, Operand> rename, TACInstruction instruction) {
+        return instruction.getOpcode() == TACOpcode.SELECT && instruction.getMetadata() != null
+            && rename.containsKey(Operand.of(instruction.getMetadata()));
+    }
+
+    private static boolean isConditionalBranch(TACOpcode opcode) {
+        switch (opcode) {
+            case IF_TRUE:
+            case IF_FALSE:
+            case IF_ZERO:
+            case IF_NONZERO:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,668 @@
+package com.gemini.compiler.parser;
+
+import com.gemini.compiler.ast.*;
+import com.gemini.grammar.GeminiCLexer;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 直接构建 AST 的递归下降解析器（--direct-ast）
+ *
+ * 按 GeminiC.g4 的语法规则手写，解析的同时创建 ASTNode，不生成 ANTLR 解析树，也不需要 ASTBuilder 再遍历一遍。
+ * 语句和声明按首个词法单元分派；二元运算用优先级爬升解析，一层循环代替文法中六层左递归的规则。
+ * 得到的 AST 与 GeminiCParser + ASTBuilder 完全相同，包括每个节点的行列号（取对应规则的第一个词法单元）。
+ *
+ * 只处理正确的程序：遇到语法错误时抛出 ParseCancellationException，不做错误恢复，
+ * 由调用方改用 GeminiCParser 重新解析以得到与原来相同的诊断信息。
+ */
+public final class DirectASTParser {
+
+    // 二元运算符的优先级，0 表示不是二元运算符；同一优先级左结合
+    private static final int[] PRECEDENCE = new int[GeminiCLexer.VOCABULARY.getMaxTokenType() + 1];
+
+    static {
+        PRECEDENCE[GeminiCLexer.OR] = 1;
+        PRECEDENCE[GeminiCLexer.AND] = 2;
+        PRECEDENCE[GeminiCLexer.EQ] = 3;
+        PRECEDENCE[GeminiCLexer.NE] = 3;
+        PRECEDENCE[GeminiCLexer.LT] = 4;
+        PRECEDENCE[GeminiCLexer.GT] = 4;
+        PRECEDENCE[GeminiCLexer.LE] = 4;
+        PRECEDENCE[GeminiCLexer.GE] = 4;
+        PRECEDENCE[GeminiCLexer.PLUS] = 5;
+        PRECEDENCE[GeminiCLexer.MINUS] = 5;
+        PRECEDENCE[GeminiCLexer.MULTIPLY] = 6;
+        PRECEDENCE[GeminiCLexer.DIVIDE] = 6;
+        PRECEDENCE[GeminiCLexer.MODULO] = 6;
+    }
+
+    private static final ExpressionNode[] NO_ARGUMENTS = new ExpressionNode[0];
+
+    // 词法单元（以 EOF 结尾）、当前位置和解析范围的结束位置（到达 end 后看到的是 EOF）
+    private final Token[] tokens;
+    private int p;
+    private int end;
+
+    // 最近解析的表达式是否只是 unaryExpression：只有这样的表达式才能作为赋值的左边
+    private boolean unary;
+
+    /**
+     * @param tokens 默认通道上的全部词法单元，最后一个必须是 EOF（如 CommonTokenStream.fill() 之后的 getTokens()）
+     */
+    public DirectASTParser(List<? extends Token> tokens) {
+        this(tokens.toArray(new Token[0]));
+    }
+
+    DirectASTParser(Token[] tokens) {
+        this.tokens = tokens;
+        this.end = tokens.length - 1;
+    }
+
+    /**
+     * program: declaration* EOF
+     */
+    public ProgramNode parseProgram() {
+        Token start = LT(1);
+        List<ASTNode> declarations = new ArrayList<>();
+        while (LA(1) != Token.EOF) {
+            declarations.add(declaration());
+        }
+        return new ProgramNode(declarations.toArray(new ASTNode[0]), start.getLine(), start.getCharPositionInLine());
+    }
+
+    /**
+     * 解析 tokens[from, to) 中恰好一个声明；同一个数组可以由多个解析器同时读取
+     */
+    ASTNode parseDeclaration(int from, int to) {
+        p = from;
+        end = to;
+        ASTNode declaration = declaration();
+        if (p != to) {
+            throw error();
+        }
+        return declaration;
+    }
+
+    // ========== 声明 ==========
+
+    private ASTNode declaration() {
+        if (LA(1) == GeminiCLexer.STRUCT && LA(2) == GeminiCLexer.ID && LA(3) == GeminiCLexer.LBRACE) {
+            return structDeclaration();
+        }
+        // type ID 之后是 '(' 的是函数声明
+        int nameOffset = LA(1) == GeminiCLexer.STRUCT ? 3 : 2;
+        if (LA(nameOffset) == GeminiCLexer.ID && LA(nameOffset + 1) == GeminiCLexer.LPAREN) {
+            return functionDeclaration();
+        }
+        return variableDeclaration();
+    }
+
+    private StructDeclarationNode structDeclaration() {
+        Token start = match(GeminiCLexer.STRUCT);
+        String structName = match(GeminiCLexer.ID).getText();
+        match(GeminiCLexer.LBRACE);
+        List<FieldDeclarationNode> fields = new ArrayList<>();
+        while (LA(1) != GeminiCLexer.RBRACE) {
+            Token fieldStart = LT(1);
+            TypeNode type = type();
+            String fieldName = match(GeminiCLexer.ID).getText();
+            match(GeminiCLexer.SEMICOLON);
+            fields.add(new FieldDeclarationNode(type, fieldName, fieldStart.getLine(), fieldStart.getCharPositionInLine()));
+        }
+        match(GeminiCLexer.RBRACE);
+        match(GeminiCLexer.SEMICOLON);
+        return new StructDeclarationNode(structName, fields.toArray(new FieldDeclarationNode[0]),
+            start.getLine(), start.getCharPositionInLine());
+    }
+
+    private FunctionDeclarationNode functionDeclaration() {
+        Token start = LT(1);
+        TypeNode returnType = type();
+        String functionName = match(GeminiCLexer.ID).getText();
+        match(GeminiCLexer.LPAREN);
+        List<ParameterNode> parameters = new ArrayList<>();
+        if (LA(1) != GeminiCLexer.RPAREN) {
+            parameters.add(parameter());
+            while (LA(1) == GeminiCLexer.COMMA) {
+                consume();
+                parameters.add(parameter());
+            }
+        }
+        match(GeminiCLexer.RPAREN);
+        BlockNode body = block();
+        return new FunctionDeclarationNode(returnType, functionName, parameters.toArray(new ParameterNode[0]), body,
+            start.getLine(), start.getCharPositionInLine());
+    }
+
+    private ParameterNode parameter() {
+        Token start = LT(1);
+        TypeNode type = type();
+        String parameterName = match(GeminiCLexer.ID).getText();
+        int dimensions = 0;
+        while (LA(1) == GeminiCLexer.LBRACKET) {
+            consume();
+            match(GeminiCLexer.RBRACKET);
+            dimensions++;
+        }
+        return new ParameterNode(type, parameterName, dimensions, start.getLine(), start.getCharPositionInLine());
+    }
+
+    private VariableDeclarationNode variableDeclaration() {
+        VariableDeclarationNode declaration = variableDeclarators();
+        match(GeminiCLexer.SEMICOLON);
+        return declaration;
+    }
+
+    /**
+     * type variableDeclarator (COMMA variableDeclarator)*，不含分号（for 的初始化部分也用它）
+     */
+    private VariableDeclarationNode variableDeclarators() {
+        Token start = LT(1);
+        TypeNode type = type();
+        List<VariableDeclaratorNode> declarators = new ArrayList<>();
+        declarators.add(variableDeclarator());
+        while (LA(1) == GeminiCLexer.COMMA) {
+            consume();
+            declarators.add(variableDeclarator());
+        }
+        return new VariableDeclarationNode(type, declarators.toArray(new VariableDeclaratorNode[0]),
+            start.getLine(), start.getCharPositionInLine());
+    }
+
+    private VariableDeclaratorNode variableDeclarator() {
+        Token name = match(GeminiCLexer.ID);
+
+        // 数组维度：只支持常量维度，其余记为 0
+        List<ExpressionNode> dimensions = new ArrayList<>();
+        while (LA(1) == GeminiCLexer.LBRACKET) {
+            consume();
+            dimensions.add(expression());
+            match(GeminiCLexer.RBRACKET);
+        }
+        int[] arrayDimensions = new int[dimensions.size()];
+        for (int i = 0; i < arrayDimensions.length; i++) {
+            if (dimensions.get(i) instanceof IntLiteralNode) {
+                arrayDimensions[i] = ((IntLiteralNode) dimensions.get(i)).getValue();
+            }
+        }
+
+        ExpressionNode initializer = null;
+        ExpressionNode[] elements = null;
+        if (LA(1) == GeminiCLexer.ASSIGN) {
+            consume();
+            if (LA(1) == GeminiCLexer.LBRACE) {
+                elements = arrayInitializer();
+            } else {
+                initializer = expression();
+            }
+        }
+
+        VariableDeclaratorNode declarator = new VariableDeclaratorNode(name.getText(), arrayDimensions, initializer,
+            name.getLine(), name.getCharPositionInLine());
+        if (elements != null) {
+            declarator.setArrayInitializers(elements);
+        }
+        return declarator;
+    }
+
+    private ExpressionNode[] arrayInitializer() {
+        match(GeminiCLexer.LBRACE);
+        List<ExpressionNode> elements = new ArrayList<>();
+        if (LA(1) != GeminiCLexer.RBRACE) {
+            elements.add(expression());
+            while (LA(1) == GeminiCLexer.COMMA) {
+                consume();
+                elements.add(expression());
+            }
+        }
+        match(GeminiCLexer.RBRACE);
+        return elements.toArray(new ExpressionNode[0]);
+    }
+
+    private TypeNode type() {
+        Token start = LT(1);
+        DataType dataType;
+        String structName = null;
+        switch (start.getType()) {
+            case GeminiCLexer.INT: dataType = DataType.INT; break;
+            case GeminiCLexer.FLOAT: dataType = DataType.FLOAT; break;
+            case GeminiCLexer.CHAR: dataType = DataType.CHAR; break;
+            case GeminiCLexer.STRING: dataType = DataType.STRING; break;
+            case GeminiCLexer.VOID: dataType = DataType.VOID; break;
+            case GeminiCLexer.STRUCT:
+                consume();
+                dataType = DataType.STRUCT;
+                structName = match(GeminiCLexer.ID).getText();
+                return new TypeNode(dataType, structName, null, start.getLine(), start.getCharPositionInLine());
+            default:
+                throw error();
+        }
+        consume();
+        return new TypeNode(dataType, structName, null, start.getLine(), start.getCharPositionInLine());
+    }
+
+    private static boolean isTypeStart(int type) {
+        switch (type) {
+            case GeminiCLexer.INT:
+            case GeminiCLexer.FLOAT:
+            case GeminiCLexer.CHAR:
+            case GeminiCLexer.STRING:
+            case GeminiCLexer.VOID:
+            case GeminiCLexer.STRUCT:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // ========== 语句 ==========
+
+    private StatementNode statement() {
+        int type = LA(1);
+        switch (type) {
+            case GeminiCLexer.LBRACE: return block();
+            case GeminiCLexer.IF: return ifStatement();
+            case GeminiCLexer.WHILE: return whileStatement();
+            case GeminiCLexer.FOR: return forStatement();
+            case GeminiCLexer.SWITCH: return switchStatement();
+            case GeminiCLexer.BREAK: {
+                Token start = consume();
+                match(GeminiCLexer.SEMICOLON);
+                return new BreakStatementNode(start.getLine(), start.getCharPositionInLine());
+            }
+            case GeminiCLexer.CONTINUE: {
+                Token start = consume();
+                match(GeminiCLexer.SEMICOLON);
+                return new ContinueStatementNode(start.getLine(), start.getCharPositionInLine());
+            }
+            case GeminiCLexer.RETURN: {
+                Token start = consume();
+                ExpressionNode expression = LA(1) != GeminiCLexer.SEMICOLON ? expression() : null;
+                match(GeminiCLexer.SEMICOLON);
+                return new ReturnStatementNode(expression, start.getLine(), start.getCharPositionInLine());
+            }
+            default:
+                if (isTypeStart(type)) {
+                    return variableDeclaration();
+                }
+                Token start = LT(1);
+                ExpressionNode expression = type != GeminiCLexer.SEMICOLON ? expression() : null;
+                match(GeminiCLexer.SEMICOLON);
+                return new ExpressionStatementNode(expression, start.getLine(), start.getCharPositionInLine());
+        }
+    }
+
+    private BlockNode block() {
+        Token start = match(GeminiCLexer.LBRACE);
+        List<StatementNode> statements = new ArrayList<>();
+        while (LA(1) != GeminiCLexer.RBRACE) {
+            statements.add(statement());
+        }
+        consume();
+        return new BlockNode(statements.toArray(new StatementNode[0]), start.getLine(), start.getCharPositionInLine());
+    }
+
+    private IfStatementNode ifStatement() {
+        Token start = consume();
+        match(GeminiCLexer.LPAREN);
+        ExpressionNode condition = expression();
+        match(GeminiCLexer.RPAREN);
+        StatementNode thenStatement = statement();
+        StatementNode elseStatement = null;
+        // else 与最近的 if 配对
+        if (LA(1) == GeminiCLexer.ELSE) {
+            consume();
+            elseStatement = statement();
+        }
+        return new IfStatementNode(condition, thenStatement, elseStatement,
+            start.getLine(), start.getCharPositionInLine());
+    }
+
+    private WhileStatementNode whileStatement() {
+        Token start = consume();
+        match(GeminiCLexer.LPAREN);
+        ExpressionNode condition = expression();
+        match(GeminiCLexer.RPAREN);
+        StatementNode body = statement();
+        return new WhileStatementNode(condition, body, start.getLine(), start.getCharPositionInLine());
+    }
+
+    private ForStatementNode forStatement() {
+        Token start = consume();
+        match(GeminiCLexer.LPAREN);
+
+        StatementNode initialization = null;
+        if (LA(1) != GeminiCLexer.SEMICOLON) {
+            if (isTypeStart(LA(1))) {
+                initialization = variableDeclarators();
+            } else {
+                Token initStart = LT(1);
+                initialization = new ExpressionStatementNode(expression(),
+                    initStart.getLine(), initStart.getCharPositionInLine());
+            }
+        }
+        match(GeminiCLexer.SEMICOLON);
+
+        ExpressionNode condition = LA(1) != GeminiCLexer.SEMICOLON ? expression() : null;
+        match(GeminiCLexer.SEMICOLON);
+
+        ExpressionNode update = LA(1) != GeminiCLexer.RPAREN ? expression() : null;
+        match(GeminiCLexer.RPAREN);
+
+        StatementNode body = statement();
+        return new ForStatementNode(initialization, condition, update, body,
+            start.getLine(), start.getCharPositionInLine());
+    }
+
+    private SwitchStatementNode switchStatement() {
+        Token start = consume();
+        match(GeminiCLexer.LPAREN);
+        ExpressionNode expression = expression();
+        match(GeminiCLexer.RPAREN);
+        match(GeminiCLexer.LBRACE);
+
+        List<CaseStatementNode> cases = new ArrayList<>();
+        while (LA(1) == GeminiCLexer.CASE) {
+            Token caseStart = consume();
+            ExpressionNode value = expression();
+            match(GeminiCLexer.COLON);
+            cases.add(new CaseStatementNode(value, caseStatements(),
+                caseStart.getLine(), caseStart.getCharPositionInLine()));
+        }
+
+        DefaultStatementNode defaultCase = null;
+        if (LA(1) == GeminiCLexer.DEFAULT) {
+            Token defaultStart = consume();
+            match(GeminiCLexer.COLON);
+            defaultCase = new DefaultStatementNode(caseStatements(),
+                defaultStart.getLine(), defaultStart.getCharPositionInLine());
+        }
+        match(GeminiCLexer.RBRACE);
+
+        return new SwitchStatementNode(expression, cases.toArray(new CaseStatementNode[0]), defaultCase,
+            start.getLine(), start.getCharPositionInLine());
+    }
+
+    /**
+     * case/default 之后的语句，直到下一个 case、default 或 '}'
+     */
+    private StatementNode[] caseStatements() {
+        List<StatementNode> statements = new ArrayList<>();
+        int type;
+        while ((type = LA(1)) != GeminiCLexer.CASE && type != GeminiCLexer.DEFAULT
+                && type != GeminiCLexer.RBRACE && type != Token.EOF) {
+            statements.add(statement());
+        }
+        return statements.toArray(new StatementNode[0]);
+    }
+
+    // ========== 表达式 ==========
+
+    private ExpressionNode expression() {
+        return assignmentExpression();
+    }
+
+    /**
+     * assignmentExpression: conditionalExpression | unaryExpression assignmentOperator assignmentExpression
+     *
+     * 先按条件表达式解析；后面是赋值运算符且解析到的只是 unaryExpression 时，它就是赋值的左边。
+     */
+    private ExpressionNode assignmentExpression() {
+        Token start = LT(1);
+        ExpressionNode left = conditionalExpression();
+        AssignmentOperator operator = assignmentOperator(LA(1));
+        if (operator == null) {
+            return left;
+        }
+        if (!unary) {
+            throw error();
+        }
+        consume();
+        ExpressionNode right = assignmentExpression();
+        unary = false;
+        return new AssignmentExpressionNode(left, operator, right, start.getLine(), start.getCharPositionInLine());
+    }
+
+    private static AssignmentOperator assignmentOperator(int type) {
+        switch (type) {
+            case GeminiCLexer.ASSIGN: return AssignmentOperator.ASSIGN;
+            case GeminiCLexer.PLUS_ASSIGN: return AssignmentOperator.PLUS_ASSIGN;
+            case GeminiCLexer.MINUS_ASSIGN: return AssignmentOperator.MINUS_ASSIGN;
+            case GeminiCLexer.MULTIPLY_ASSIGN: return AssignmentOperator.MULTIPLY_ASSIGN;
+            case GeminiCLexer.DIVIDE_ASSIGN: return AssignmentOperator.DIVIDE_ASSIGN;
+            case GeminiCLexer.MODULO_ASSIGN: return AssignmentOperator.MODULO_ASSIGN;
+            default: return null;
+        }
+    }
+
+    /**
+     * conditionalExpression: logicalOrExpression (QUESTION expression COLON conditionalExpression)?
+     */
+    private ExpressionNode conditionalExpression() {
+        Token start = LT(1);
+        ExpressionNode condition = binaryExpression(1);
+        if (LA(1) != GeminiCLexer.QUESTION) {
+            return condition;
+        }
+        consume();
+        ExpressionNode trueExpression = expression();
+        match(GeminiCLexer.COLON);
+        ExpressionNode falseExpression = conditionalExpression();
+        unary = false;
+        return new ConditionalExpressionNode(condition, trueExpression, falseExpression,
+            start.getLine(), start.getCharPositionInLine());
+    }
+
+    /**
+     * logicalOrExpression 到 multiplicativeExpression：优先级不低于 minPrecedence 的二元运算，左结合。
+     * 节点位置是左操作数的第一个词法单元，与左递归规则的 ctx.start 相同
+     */
+    private ExpressionNode binaryExpression(int minPrecedence) {
+        Token start = LT(1);
+        ExpressionNode left = castExpression();
+        while (true) {
+            int operator = LA(1);
+            int precedence = operator < PRECEDENCE.length && operator > 0 ? PRECEDENCE[operator] : 0;
+            if (precedence == 0 || precedence < minPrecedence) {
+                return left;
+            }
+            consume();
+            ExpressionNode right = binaryExpression(precedence + 1);
+            left = binaryNode(operator, left, right, start);
+            unary = false;
+        }
+    }
+
+    private static ExpressionNode binaryNode(int operator, ExpressionNode left, ExpressionNode right, Token start) {
+        int line = start.getLine();
+        int column = start.getCharPositionInLine();
+        switch (operator) {
+            case GeminiCLexer.OR: return new LogicalOrExpressionNode(left, right, line, column);
+            case GeminiCLexer.AND: return new LogicalAndExpressionNode(left, right, line, column);
+            case GeminiCLexer.EQ: return new EqualityExpressionNode(left, EqualityOperator.EQUAL, right, line, column);
+            case GeminiCLexer.NE: return new EqualityExpressionNode(left, EqualityOperator.NOT_EQUAL, right, line, column);
+            case GeminiCLexer.LT: return new RelationalExpressionNode(left, RelationalOperator.LESS_THAN, right, line, column);
+            case GeminiCLexer.GT: return new RelationalExpressionNode(left, RelationalOperator.GREATER_THAN, right, line, column);
+            case GeminiCLexer.LE: return new RelationalExpressionNode(left, RelationalOperator.LESS_EQUAL, right, line, column);
+            case GeminiCLexer.GE: return new RelationalExpressionNode(left, RelationalOperator.GREATER_EQUAL, right, line, column);
+            case GeminiCLexer.PLUS: return new AdditiveExpressionNode(left, AdditiveOperator.PLUS, right, line, column);
+            case GeminiCLexer.MINUS: return new AdditiveExpressionNode(left, AdditiveOperator.MINUS, right, line, column);
+            case GeminiCLexer.MULTIPLY: return new MultiplicativeExpressionNode(left, MultiplicativeOperator.MULTIPLY, right, line, column);
+            case GeminiCLexer.DIVIDE: return new MultiplicativeExpressionNode(left, MultiplicativeOperator.DIVIDE, right, line, column);
+            default: return new MultiplicativeExpressionNode(left, MultiplicativeOperator.MODULO, right, line, column);
+        }
+    }
+
+    /**
+     * castExpression: unaryExpression | LPAREN type RPAREN castExpression
+     *
+     * 表达式不能以类型关键字开头，'(' 后面是类型关键字的就是强制类型转换
+     */
+    private ExpressionNode castExpression() {
+        if (LA(1) == GeminiCLexer.LPAREN && isTypeStart(LA(2))) {
+            Token start = consume();
+            TypeNode targetType = type();
+            match(GeminiCLexer.RPAREN);
+            ExpressionNode expression = castExpression();
+            unary = false;
+            return new CastExpressionNode(targetType, expression, start.getLine(), start.getCharPositionInLine());
+        }
+        ExpressionNode expression = unaryExpression();
+        unary = true;
+        return expression;
+    }
+
+    private ExpressionNode unaryExpression() {
+        UnaryOperator operator;
+        switch (LA(1)) {
+            case GeminiCLexer.PLUS: operator = UnaryOperator.PLUS; break;
+            case GeminiCLexer.MINUS: operator = UnaryOperator.MINUS; break;
+            case GeminiCLexer.NOT: operator = UnaryOperator.NOT; break;
+            case GeminiCLexer.INCREMENT: operator = UnaryOperator.INCREMENT; break;
+            case GeminiCLexer.DECREMENT: operator = UnaryOperator.DECREMENT; break;
+            default: return postfixExpression();
+        }
+        Token start = consume();
+        ExpressionNode operand = unaryExpression();
+        return new UnaryExpressionNode(operator, operand, start.getLine(), start.getCharPositionInLine());
+    }
+
+    private ExpressionNode postfixExpression() {
+        Token start = LT(1);
+        int line = start.getLine();
+        int column = start.getCharPositionInLine();
+        int startIndex = p;
+        ExpressionNode expression = primaryExpression();
+        while (true) {
+            switch (LA(1)) {
+                case GeminiCLexer.LBRACKET: {
+                    consume();
+                    ExpressionNode index = expression();
+                    match(GeminiCLexer.RBRACKET);
+                    expression = new ArrayAccessNode(expression, new ExpressionNode[]{index}, line, column);
+                    break;
+                }
+                case GeminiCLexer.DOT:
+                    consume();
+                    expression = new MemberAccessNode(expression, match(GeminiCLexer.ID).getText(), line, column);
+                    break;
+                case GeminiCLexer.LPAREN: {
+                    // 只支持直接按名字调用：函数名取被调用部分的源文本，与 ASTBuilder 的 getText() 相同
+                    String functionName = text(startIndex, p);
+                    consume();
+                    ExpressionNode[] arguments = NO_ARGUMENTS;
+                    if (LA(1) != GeminiCLexer.RPAREN) {
+                        List<ExpressionNode> list = new ArrayList<>();
+                        list.add(expression());
+                        while (LA(1) == GeminiCLexer.COMMA) {
+                            consume();
+                            list.add(expression());
+                        }
+                        arguments = list.toArray(new ExpressionNode[0]);
+                    }
+                    match(GeminiCLexer.RPAREN);
+                    expression = new FunctionCallNode(functionName, arguments, line, column);
+                    break;
+                }
+                case GeminiCLexer.INCREMENT:
+                    consume();
+                    expression = new PostfixExpressionNode(expression, PostfixOperator.INCREMENT, line, column);
+                    break;
+                case GeminiCLexer.DECREMENT:
+                    consume();
+                    expression = new PostfixExpressionNode(expression, PostfixOperator.DECREMENT, line, column);
+                    break;
+                default:
+                    return expression;
+            }
+        }
+    }
+
+    private ExpressionNode primaryExpression() {
+        Token token = LT(1);
+        int line = token.getLine();
+        int column = token.getCharPositionInLine();
+        switch (token.getType()) {
+            case GeminiCLexer.ID:
+                consume();
+                return new IdentifierNode(token.getText(), line, column);
+            case GeminiCLexer.INT_LITERAL:
+                consume();
+                try {
+                    return new IntLiteralNode(Integer.parseInt(token.getText()), line, column);
+                } catch (NumberFormatException e) {
+                    // 超出 int 范围：交给原来的前端处理，使报告的错误与原来相同
+                    throw error();
+                }
+            case GeminiCLexer.FLOAT_LITERAL:
+                consume();
+                return new FloatLiteralNode(Float.parseFloat(token.getText()), line, column);
+            case GeminiCLexer.CHAR_LITERAL:
+                consume();
+                return new CharLiteralNode(token.getText().charAt(1), line, column);
+            case GeminiCLexer.STRING_LITERAL: {
+                consume();
+                String text = token.getText();
+                return new StringLiteralNode(text.substring(1, text.length() - 1), line, column);
+            }
+            case GeminiCLexer.LPAREN: {
+                // 括号不产生节点
+                consume();
+                ExpressionNode expression = expression();
+                match(GeminiCLexer.RPAREN);
+                return expression;
+            }
+            default:
+                throw error();
+        }
+    }
+
+    // ========== 词法单元 ==========
+
+    private Token LT(int k) {
+        int index = p + k - 1;
+        return tokens[index < end ? index : tokens.length - 1];
+    }
+
+    private int LA(int k) {
+        return LT(k).getType();
+    }
+
+    private Token consume() {
+        Token token = LT(1);
+        if (p < end) {
+            p++;
+        }
+        return token;
+    }
+
+    private Token match(int type) {
+        if (LA(1) != type) {
+            throw error();
+        }
+        return consume();
+    }
+
+    /**
+     * 词法单元 [from, to) 的文本拼接（跳过的空白和注释不在其中）
+     */
+    private String text(int from, int to) {
+        if (to - from == 1) {
+            return tokens[from].getText();
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            sb.append(tokens[i].getText());
+        }
+        return sb.toString();
+    }
+
+    private ParseCancellationException error() {
+        Token token = LT(1);
+        return new ParseCancellationException("unexpected token '" + token.getText() + "' at "
+            + token.getLine() + ":" + token.getCharPositionInLine());
+    }
+}
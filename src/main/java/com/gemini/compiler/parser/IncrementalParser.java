@@ -0,0 +1,255 @@
+package com.gemini.compiler.parser;
+
+import com.gemini.compiler.ast.ASTNode;
+import com.gemini.compiler.ast.ProgramNode;
+import com.gemini.grammar.GeminiCLexer;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.misc.Pair;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按顶层声明增量解析（编辑器和 --watch 使用）
+ *
+ * 保存上一次解析成功的源文本、每个顶层声明的 AST 以及它在源文本中的范围。源文本修改后，
+ * 先用公共前缀和公共后缀确定修改的范围，再从第一个受影响声明之前的声明边界开始重新词法分析，
+ * 直到某个词法单元恰好落在修改之后某个旧声明的起点（位置平移修改的长度、列号不变）为止。
+ * 这一段交给 ParallelDeclarationParser 重新解析；之前的声明原样复用，之后的声明复用并平移行号。
+ * GeminiCLexer 没有词法模式，从任意词法单元边界开始分析的结果与从头分析相同，因此拼出的 AST
+ * 与整体解析完全相同，而词法分析和语法分析的工作量只与修改涉及的声明成正比。
+ *
+ * 有词法错误或语法错误时抛出 ParseCancellationException，由调用方整体解析以报告诊断信息；
+ * 此时保存的仍是上一次解析成功的结果，下一次修改与它比较，输入过程中的错误不会使之后的解析退化为整体解析。
+ *
+ * 复用的声明节点会被就地修改行号，上一次返回的 ProgramNode 在下一次 update 之后不应再使用。不是线程安全的。
+ */
+public final class IncrementalParser {
+
+    private final ParallelDeclarationParser parser;
+
+    // 上一次解析成功的源文本、其码点数和各个顶层声明；source 为 null 表示还没有解析成功过
+    private String source;
+    private int sourceSize;
+    private Declaration[] declarations = new Declaration[0];
+    private ProgramNode program;
+
+    // 最近一次 update 重新解析的声明数
+    private int reparsedDeclarations;
+
+    /**
+     * @param parallelism 整体解析和重新解析时的工作线程数（0 或负数表示使用全部处理器）
+     * @param direct 是否用 DirectASTParser 解析，否则用 GeminiCParser + ASTBuilder
+     */
+    public IncrementalParser(int parallelism, boolean direct) {
+        this.parser = new ParallelDeclarationParser(parallelism, direct);
+    }
+
+    /**
+     * 解析修改后的完整源文本；第一次调用时整体解析
+     * @throws ParseCancellationException 源文本有词法错误或语法错误
+     */
+    public ProgramNode update(String newSource) {
+        if (source == null) {
+            return reparse(newSource, 0, 0, newSource.length());
+        }
+        if (newSource.equals(source)) {
+            reparsedDeclarations = 0;
+            return program;
+        }
+
+        // 修改范围：公共前缀之后、公共后缀之前，不拆开代理对
+        int limit = Math.min(source.length(), newSource.length());
+        int prefix = 0;
+        while (prefix < limit && source.charAt(prefix) == newSource.charAt(prefix)) {
+            prefix++;
+        }
+        if (prefix > 0 && Character.isHighSurrogate(source.charAt(prefix - 1))) {
+            prefix--;
+        }
+        int suffix = 0;
+        while (suffix < limit - prefix
+                && source.charAt(source.length() - 1 - suffix) == newSource.charAt(newSource.length() - 1 - suffix)) {
+            suffix++;
+        }
+        if (suffix > 0 && Character.isLowSurrogate(newSource.charAt(newSource.length() - suffix))) {
+            suffix--;
+        }
+        return reparse(newSource, prefix, source.length() - suffix, newSource.length() - suffix);
+    }
+
+    /**
+     * 最近一次 update 重新解析的顶层声明数
+     */
+    public int getReparsedDeclarations() {
+        return reparsedDeclarations;
+    }
+
+    /**
+     * 源文本中 [start, oldEnd) 被替换为 newSource 中的 [start, newEnd)（UTF-16 下标）
+     */
+    private ProgramNode reparse(String newSource, int start, int oldEnd, int newEnd) {
+        CharStream input = CharStreams.fromString(newSource);
+        // CharStream 的下标是码点下标，没有代理对时与 String 的下标相同
+        boolean bmp = input.size() == newSource.length();
+        int editStart = bmp ? start : newSource.codePointCount(0, start);
+        int editEnd = bmp ? newEnd : newSource.codePointCount(0, newEnd);
+        int delta = input.size() - sourceSize;
+        int lineDelta = source == null ? 0 : countLines(newSource, start, newEnd) - countLines(source, start, oldEnd);
+
+        // 第一个受影响的声明：结束位置在修改起点之后的第一个声明。声明以 ';' 或 '}' 结束，
+        // 紧接其后插入的内容不会与它合成一个词法单元
+        int first = 0;
+        int high = declarations.length;
+        while (first < high) {
+            int mid = (first + high) >>> 1;
+            if (declarations[mid].end > editStart) {
+                high = mid;
+            } else {
+                first = mid + 1;
+            }
+        }
+
+        // 从前一个声明的结束位置重新词法分析
+        GeminiCLexer lexer = new GeminiCLexer(input);
+        lexer.removeErrorListeners();
+        lexer.addErrorListener(new BaseErrorListener() {
+            @Override
+            public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+                                    int charPositionInLine, String msg, RecognitionException e) {
+                throw new ParseCancellationException(line + ":" + charPositionInLine + " " + msg);
+            }
+        });
+        if (first > 0) {
+            Declaration previous = declarations[first - 1];
+            input.seek(previous.end);
+            lexer.setLine(previous.endLine);
+            lexer.setCharPositionInLine(previous.endColumn);
+        }
+
+        // 词法单元落在修改之后某个旧声明的起点且列号相同时，其后的内容与原来完全相同，停止分析
+        List<Token> region = new ArrayList<>();
+        int resync = declarations.length;
+        int next = first;
+        Token token;
+        while ((token = lexer.nextToken()).getType() != Token.EOF) {
+            int position = token.getStartIndex();
+            if (position >= editEnd) {
+                while (next < declarations.length && declarations[next].start < position - delta) {
+                    next++;
+                }
+                if (next < declarations.length && declarations[next].start == position - delta
+                        && declarations[next].startColumn == token.getCharPositionInLine()) {
+                    resync = next;
+                    token = eof(lexer, input, token);
+                    break;
+                }
+            }
+            ((CommonToken) token).setTokenIndex(region.size());
+            region.add(token);
+        }
+        ((CommonToken) token).setTokenIndex(region.size());
+        region.add(token);
+
+        // 重新解析这一段；失败时保存的结果不变
+        ASTNode[] parsed = parser.parse(region).getDeclarations();
+        int[] bounds = ParallelDeclarationParser.splitDeclarations(region);
+
+        // 之前的声明原样复用，重新解析的声明记录新的范围，之后的声明平移位置和行号
+        int reused = declarations.length - resync;
+        Declaration[] updated = new Declaration[first + parsed.length + reused];
+        System.arraycopy(declarations, 0, updated, 0, first);
+        for (int i = 0; i < parsed.length; i++) {
+            updated[first + i] = new Declaration(parsed[i], region.get(bounds[i]), region.get(bounds[i + 1] - 1));
+        }
+        for (int i = 0; i < reused; i++) {
+            Declaration declaration = declarations[resync + i];
+            declaration.shift(delta, lineDelta);
+            updated[first + parsed.length + i] = declaration;
+        }
+
+        ASTNode[] nodes = new ASTNode[updated.length];
+        for (int i = 0; i < updated.length; i++) {
+            nodes[i] = updated[i].node;
+        }
+        // 程序节点的位置取第一个词法单元，没有声明时是 EOF
+        if (updated.length > 0) {
+            program = new ProgramNode(nodes, updated[0].startLine, updated[0].startColumn);
+        } else {
+            program = new ProgramNode(nodes, token.getLine(), token.getCharPositionInLine());
+        }
+
+        source = newSource;
+        sourceSize = input.size();
+        declarations = updated;
+        reparsedDeclarations = parsed.length;
+        return program;
+    }
+
+    /**
+     * 在 next 处结束重新分析的一段：解析器在这里看到 EOF
+     */
+    private static Token eof(TokenSource lexer, CharStream input, Token next) {
+        CommonToken eof = new CommonToken(new Pair<>(lexer, input), Token.EOF, Token.DEFAULT_CHANNEL,
+            next.getStartIndex(), next.getStartIndex() - 1);
+        eof.setLine(next.getLine());
+        eof.setCharPositionInLine(next.getCharPositionInLine());
+        return eof;
+    }
+
+    private static int countLines(String text, int from, int to) {
+        int lines = 0;
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * 一个顶层声明的 AST 及其在源文本中的范围：第一个词法单元的起点到最后一个词法单元之后（码点下标），
+     * 以及这两处的行列号
+     */
+    private static final class Declaration {
+        final ASTNode node;
+        int start;
+        int end;
+        int startLine;
+        final int startColumn;
+        int endLine;
+        final int endColumn;
+
+        Declaration(ASTNode node, Token first, Token last) {
+            this.node = node;
+            this.start = first.getStartIndex();
+            this.end = last.getStopIndex() + 1;
+            this.startLine = first.getLine();
+            this.startColumn = first.getCharPositionInLine();
+            // 声明的最后一个词法单元是 ';' 或 '}'，不跨行
+            this.endLine = last.getLine();
+            this.endColumn = last.getCharPositionInLine() + (end - last.getStartIndex());
+        }
+
+        /**
+         * 声明之前的文本变长 delta 个码点、多出 lineDelta 行；列号不变（否则不会复用）
+         */
+        void shift(int delta, int lineDelta) {
+            start += delta;
+            end += delta;
+            if (lineDelta != 0) {
+                startLine += lineDelta;
+                endLine += lineDelta;
+                node.shiftLines(lineDelta);
+            }
+        }
+    }
+}
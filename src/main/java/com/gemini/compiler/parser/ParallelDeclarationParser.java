@@ -0,0 +1,223 @@
+package com.gemini.compiler.parser;
+
+import com.gemini.compiler.ast.ASTBuilder;
+import com.gemini.compiler.ast.ASTNode;
+import com.gemini.compiler.ast.ProgramNode;
+import com.gemini.grammar.GeminiCLexer;
+import com.gemini.grammar.GeminiCParser;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 按顶层声明并行解析（--parser-workers=<n>）
+ *
+ * program: declaration* 中的结构体、函数和全局变量声明互不依赖。先顺序扫描一遍词法单元，
+ * 在顶层的分号和函数体的右花括号处切分出每个声明，再把声明分组交给 Fork/Join 任务，
+ * 每组用一个 GeminiCParser（或 --direct-ast 时的 DirectASTParser）逐个解析并转换为 AST，
+ * 最后按源顺序放入 ProgramNode。得到的 AST 与整体解析相同。
+ *
+ * 与 GeminiCompiler.parseProgram 一样，每组先用 SLL 解析，失败时再用 LL；两者都不做错误恢复。
+ * 任何一组有语法错误时抛出 ParseCancellationException，由调用方整体重新解析以报告诊断信息。
+ *
+ * 各线程会同时调用词法单元的 getText()，词法单元的文本需要在词法分析时复制（CommonTokenFactory(true)），
+ * 或者来自可以并发读取的 CharStream。
+ */
+public final class ParallelDeclarationParser {
+
+    /**
+     * 每个工作线程平均分到的任务组数，组数多一些可以平衡大小不一的函数
+     */
+    private static final int GROUPS_PER_WORKER = 8;
+
+    private final int parallelism;
+    private final boolean direct;
+
+    /**
+     * @param parallelism 工作线程数（0 或负数表示使用全部处理器）
+     * @param direct 是否用 DirectASTParser 解析，否则用 GeminiCParser + ASTBuilder
+     */
+    public ParallelDeclarationParser(int parallelism, boolean direct) {
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.direct = direct;
+    }
+
+    /**
+     * 切分顶层声明：返回 n + 1 个下标，第 i 个声明是 [bounds[i], bounds[i + 1])，最后一个下标是 EOF 的位置。
+     *
+     * 顶层（花括号深度为 0）的分号结束结构体和变量声明；紧跟在 ')' 之后的 '{' 是函数体，
+     * 与它配对的 '}' 结束函数声明。数组初始化列表的花括号不在 ')' 之后，其中的内容不会被切开。
+     * 不完整的程序可能切错，但切错的声明无法单独解析，最终仍会整体重新解析。
+     */
+    public static int[] splitDeclarations(List<? extends Token> tokens) {
+        int[] bounds = new int[16];
+        int count = 1;
+        int depth = 0;
+        boolean functionBody = false;
+        int last = tokens.size() - 1;
+        for (int i = 0; i < last; i++) {
+            int type = tokens.get(i).getType();
+            boolean endsDeclaration = false;
+            if (type == GeminiCLexer.LBRACE) {
+                if (depth++ == 0) {
+                    functionBody = i > 0 && tokens.get(i - 1).getType() == GeminiCLexer.RPAREN;
+                }
+            } else if (type == GeminiCLexer.RBRACE) {
+                if (depth > 0 && --depth == 0) {
+                    endsDeclaration = functionBody;
+                }
+            } else if (type == GeminiCLexer.SEMICOLON) {
+                endsDeclaration = depth == 0;
+            }
+            if (endsDeclaration) {
+                if (count == bounds.length) {
+                    bounds = Arrays.copyOf(bounds, count * 2);
+                }
+                bounds[count++] = i + 1;
+            }
+        }
+        // 最后一个声明之后还有内容（不完整的声明）时也单独成为一项
+        if (bounds[count - 1] != last) {
+            if (count == bounds.length) {
+                bounds = Arrays.copyOf(bounds, count + 1);
+            }
+            bounds[count++] = last;
+        }
+        return Arrays.copyOf(bounds, count);
+    }
+
+    /**
+     * 并行解析整个程序
+     * @param tokens 默认通道上的全部词法单元，最后一个必须是 EOF
+     * @throws ParseCancellationException 程序有语法错误
+     */
+    public ProgramNode parse(List<? extends Token> tokens) {
+        Token[] array = tokens.toArray(new Token[0]);
+        int[] bounds = splitDeclarations(tokens);
+        ASTNode[] declarations = new ASTNode[bounds.length - 1];
+        Token start = array[0];
+        if (declarations.length == 0) {
+            return new ProgramNode(declarations, start.getLine(), start.getCharPositionInLine());
+        }
+
+        // 按词法单元数把声明分成大小相近的组
+        int groups = Math.min(declarations.length, parallelism * GROUPS_PER_WORKER);
+        int[] groupStarts = new int[groups + 1];
+        int groupIndex = 1;
+        long total = array.length - 1;
+        for (int i = 1; i < declarations.length && groupIndex < groups; i++) {
+            if ((long) bounds[i] * groups >= total * groupIndex) {
+                groupStarts[groupIndex++] = i;
+            }
+        }
+        groups = groupIndex;
+        groupStarts[groups] = declarations.length;
+
+        TokenSource source = array[array.length - 1].getTokenSource();
+        if (groups > 1 && parallelism > 1) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                pool.invoke(new GroupTask(array, source, bounds, groupStarts, declarations, 0, groups));
+            } finally {
+                pool.shutdown();
+            }
+        } else {
+            parseGroup(array, source, bounds, 0, declarations.length, declarations);
+        }
+
+        return new ProgramNode(declarations, start.getLine(), start.getCharPositionInLine());
+    }
+
+    /**
+     * 解析第 first 到 last - 1 个声明
+     */
+    private void parseGroup(Token[] tokens, TokenSource source, int[] bounds, int first, int last,
+                            ASTNode[] declarations) {
+        if (direct) {
+            DirectASTParser parser = new DirectASTParser(tokens);
+            for (int i = first; i < last; i++) {
+                declarations[i] = parser.parseDeclaration(bounds[i], bounds[i + 1]);
+            }
+            return;
+        }
+
+        int from = bounds[first];
+        GeminiCParser parser = new GeminiCParser(new TokenRangeStream(tokens, from, bounds[last], source));
+        parser.removeErrorListeners();
+        parser.setErrorHandler(new BailErrorStrategy());
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        GeminiCParser.DeclarationContext[] contexts = new GeminiCParser.DeclarationContext[last - first];
+        try {
+            parseDeclarations(parser, bounds, first, last, contexts);
+        } catch (ParseCancellationException e) {
+            // SLL 无法消解时改用 LL；LL 也失败说明有语法错误，异常交给调用方
+            parser.reset();
+            parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+            parseDeclarations(parser, bounds, first, last, contexts);
+        }
+
+        ASTBuilder builder = new ASTBuilder();
+        try {
+            for (int i = first; i < last; i++) {
+                declarations[i] = builder.build(contexts[i - first]);
+            }
+        } catch (NumberFormatException e) {
+            // 超出 int 范围的字面量：整体重新解析，使报告的错误与顺序解析相同
+            throw new ParseCancellationException(e);
+        }
+    }
+
+    private static void parseDeclarations(GeminiCParser parser, int[] bounds, int first, int last,
+                                          GeminiCParser.DeclarationContext[] contexts) {
+        int from = bounds[first];
+        for (int i = first; i < last; i++) {
+            contexts[i - first] = parser.declaration();
+            // 每次恰好读完切分出的一个声明
+            if (parser.getInputStream().index() != bounds[i + 1] - from) {
+                throw new ParseCancellationException("declaration " + i + " does not end at its split point");
+            }
+        }
+    }
+
+    /**
+     * Fork/Join 任务：二分组区间，叶子节点解析一组声明
+     */
+    private final class GroupTask extends RecursiveAction {
+        private final Token[] tokens;
+        private final TokenSource source;
+        private final int[] bounds;
+        private final int[] groupStarts;
+        private final ASTNode[] declarations;
+        private final int from;
+        private final int to;
+
+        GroupTask(Token[] tokens, TokenSource source, int[] bounds, int[] groupStarts, ASTNode[] declarations,
+                  int from, int to) {
+            this.tokens = tokens;
+            this.source = source;
+            this.bounds = bounds;
+            this.groupStarts = groupStarts;
+            this.declarations = declarations;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                parseGroup(tokens, source, bounds, groupStarts[from], groupStarts[to], declarations);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new GroupTask(tokens, source, bounds, groupStarts, declarations, from, mid),
+                new GroupTask(tokens, source, bounds, groupStarts, declarations, mid, to));
+        }
+    }
+}
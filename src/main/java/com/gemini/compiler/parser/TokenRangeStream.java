@@ -0,0 +1,131 @@
+package com.gemini.compiler.parser;
+
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.RuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.misc.Interval;
+
+/**
+ * 已读取的词法单元中 [from, to) 一段的只读视图，末尾补一个 EOF，供 GeminiCParser 单独解析其中的声明
+ *
+ * 与把这一段放进 ListTokenSource 再交给 CommonTokenStream 不同，这里不复制也不修改词法单元
+ * （CommonTokenStream 会改写每个词法单元的下标），因此多个视图可以在不同线程中同时读取同一个数组。
+ * 视图内的下标从 0 开始。
+ */
+final class TokenRangeStream implements TokenStream {
+
+    private final Token[] tokens;
+    private final int from;
+    private final int size;
+    private final TokenSource tokenSource;
+    private final Token eof;
+    private int p;
+
+    TokenRangeStream(Token[] tokens, int from, int to, TokenSource tokenSource) {
+        this.tokens = tokens;
+        this.from = from;
+        this.size = to - from;
+        this.tokenSource = tokenSource;
+        Token last = to > from ? tokens[to - 1] : tokens[tokens.length - 1];
+        CommonToken eof = new CommonToken(Token.EOF, "<EOF>");
+        eof.setLine(last.getLine());
+        eof.setCharPositionInLine(last.getCharPositionInLine());
+        eof.setTokenIndex(to);
+        this.eof = eof;
+    }
+
+    @Override
+    public Token LT(int k) {
+        if (k == 0) {
+            return null;
+        }
+        int index = k > 0 ? p + k - 1 : p + k;
+        return index < 0 ? null : get(index);
+    }
+
+    @Override
+    public Token get(int index) {
+        return index < size ? tokens[from + index] : eof;
+    }
+
+    @Override
+    public int LA(int i) {
+        Token token = LT(i);
+        return token != null ? token.getType() : Token.INVALID_TYPE;
+    }
+
+    @Override
+    public void consume() {
+        if (p >= size) {
+            throw new IllegalStateException("cannot consume EOF");
+        }
+        p++;
+    }
+
+    @Override
+    public int mark() {
+        return -1;
+    }
+
+    @Override
+    public void release(int marker) {
+    }
+
+    @Override
+    public int index() {
+        return p;
+    }
+
+    @Override
+    public void seek(int index) {
+        p = Math.max(0, Math.min(index, size));
+    }
+
+    @Override
+    public int size() {
+        return size + 1;
+    }
+
+    @Override
+    public TokenSource getTokenSource() {
+        return tokenSource;
+    }
+
+    @Override
+    public String getSourceName() {
+        return tokenSource != null ? tokenSource.getSourceName() : IntStream.UNKNOWN_SOURCE_NAME;
+    }
+
+    @Override
+    public String getText(Interval interval) {
+        int start = Math.max(0, interval.a);
+        int stop = Math.min(size - 1, interval.b);
+        StringBuilder sb = new StringBuilder();
+        for (int i = start; i <= stop; i++) {
+            sb.append(tokens[from + i].getText());
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String getText() {
+        return getText(Interval.of(0, size - 1));
+    }
+
+    @Override
+    public String getText(RuleContext ctx) {
+        return ctx.getText();
+    }
+
+    @Override
+    public String getText(Token start, Token stop) {
+        if (start == null || stop == null) {
+            return "";
+        }
+        // 词法单元的下标是整个文件中的下标
+        return getText(Interval.of(start.getTokenIndex() - from, stop.getTokenIndex() - from));
+    }
+}
@@ -242,7 +242,8 @@ class ExpressionTypeAnalyzer implements ASTVisitor<DataType> {
     @Override
     public DataType visitCastExpression(CastExpressionNode node) {
         // 类型转换表达式，返回目标类型
-        return DataType.INT; // 简化处理 - 应该返回实际的目标类型
+        node.getExpression().accept(this);
+        return node.getTargetType().getDataType();
     }
     
     @Override
@@ -321,14 +322,34 @@ class ExpressionTypeAnalyzer implements ASTVisitor<DataType> {
             // 错误已在语义分析器中处理
         }
         
-        // 数组访问的结果类型是数组元素的类型
-        if (arrayType == DataType.ARRAY) {
-            // 这里需要从符号表中获取数组的元素类型
-            // 简化处理，返回 int
-            return DataType.INT;
+        if (arrayType != DataType.ARRAY) {
+            return DataType.VOID;
         }
         
-        return DataType.VOID;
+        // 下标个数少于数组维数时结果仍是数组，否则是数组元素的类型
+        SymbolEntry arrayEntry = baseEntry(node);
+        if (arrayEntry == null || arrayEntry.getArrayInfo() == null) {
+            return DataType.INT;
+        }
+        int indices = 0;
+        for (ExpressionNode array = node; array instanceof ArrayAccessNode; array = ((ArrayAccessNode) array).getArray()) {
+            indices++;
+        }
+        ArrayInfo arrayInfo = arrayEntry.getArrayInfo();
+        return indices < arrayInfo.getDimensionCount() ? DataType.ARRAY : arrayInfo.getElementType();
+    }
+    
+    /**
+     * 数组访问 a[i][j] 或标识符所指的变量；其他形式（如函数调用的结果）返回 null
+     */
+    private SymbolEntry baseEntry(ExpressionNode expression) {
+        while (expression instanceof ArrayAccessNode) {
+            expression = ((ArrayAccessNode) expression).getArray();
+        }
+        if (!(expression instanceof IdentifierNode)) {
+            return null;
+        }
+        return symbolTableManager.lookupSymbol(((IdentifierNode) expression).getName());
     }
     
     @Override
@@ -341,16 +362,12 @@ class ExpressionTypeAnalyzer implements ASTVisitor<DataType> {
             return DataType.VOID;
         }
         
-        // 查找结构体定义
-        SymbolEntry structEntry = symbolTableManager.lookupSymbol(node.getMemberName());
-        
-        if (structEntry == null || structEntry.getSymbolType() != SymbolType.STRUCT_DEFINITION) {
-            return DataType.VOID;
-        }
+        // 结构体变量（包括结构体数组）在声明时记录了所属结构体的信息，支持 变量.成员 和 数组[i].成员 的形式
+        SymbolEntry objectEntry = baseEntry(node.getObject());
         
         // 查找成员
-        if (structEntry.getStructInfo() != null) {
-            SymbolEntry memberEntry = structEntry.getStructInfo().getField(node.getMemberName());
+        if (objectEntry != null && objectEntry.getStructInfo() != null) {
+            SymbolEntry memberEntry = objectEntry.getStructInfo().getField(node.getMemberName());
             if (memberEntry != null) {
                 return memberEntry.getDataType();
             }
@@ -51,9 +51,9 @@ public class SemanticAnalyzer implements ASTVisitor<Void> {
         
         symbolTableManager.printErrors();
         
+        // 有错误时只报告，由调用者通过 hasErrors()/getErrors() 决定是否终止编译
         if (hasErrors()) {
             System.err.println("语义分析失败，发现 " + getErrorCount() + " 个错误");
-            System.exit(1);
         } else {
             System.out.println("语义分析通过");
         }
@@ -88,6 +88,13 @@ public class SemanticAnalyzer implements ASTVisitor<Void> {
         return errors.size() + symbolTableManager.getErrors().size();
     }
     
+    /**
+     * 获取分析过程中声明的符号总数
+     */
+    public int getSymbolCount() {
+        return symbolTableManager.getInsertedSymbolCount();
+    }
+    
     /**
      * 获取所有错误
      */
@@ -229,6 +236,10 @@ public class SemanticAnalyzer implements ASTVisitor<Void> {
         
         // 创建函数信息
         FunctionInfo functionInfo = new FunctionInfo(returnType);
+        functionEntry.setFunctionInfo(functionInfo);
+        
+        // 先插入函数定义，函数体中可以递归调用自身；参数在下面加入同一个 FunctionInfo
+        symbolTableManager.insertSymbol(functionEntry);
         
         // 进入函数作用域
         symbolTableManager.enterScope();
@@ -247,6 +258,12 @@ public class SemanticAnalyzer implements ASTVisitor<Void> {
                 SymbolKind.PARAMETER
             );
             
+            // 数组参数（int arr[]、int m[][]）的各维长度未知，记为 0
+            if (param.isArray()) {
+                paramEntry.setArrayInfo(new ArrayInfo(param.getType().getDataType(), new int[param.getArrayDimensions()]));
+                paramEntry.setDataType(DataType.ARRAY);
+            }
+            
             functionInfo.addParameter(paramEntry);
             symbolTableManager.insertSymbol(paramEntry);
         }
@@ -261,12 +278,6 @@ public class SemanticAnalyzer implements ASTVisitor<Void> {
         symbolTableManager.exitScope();
         currentFunctionReturnType = DataType.VOID;
         
-        // 设置函数信息
-        functionEntry.setFunctionInfo(functionInfo);
-        
-        // 插入函数定义
-        symbolTableManager.insertSymbol(functionEntry);
-        
         return null;
     }
     
@@ -314,6 +325,14 @@ public class SemanticAnalyzer implements ASTVisitor<Void> {
                 variableEntry.setDataType(DataType.ARRAY);
             }
             
+            // 结构体变量记录所属结构体的成员信息，供成员访问检查使用
+            if (variableType == DataType.STRUCT && node.getType().getStructName() != null) {
+                SymbolEntry structEntry = symbolTableManager.lookupSymbol(node.getType().getStructName());
+                if (structEntry != null && structEntry.getSymbolType() == SymbolType.STRUCT_DEFINITION) {
+                    variableEntry.setStructInfo(structEntry.getStructInfo());
+                }
+            }
+            
             // 处理初始化
             if (declarator.getInitializer() != null) {
                 // 分析初始化表达式
@@ -430,6 +449,9 @@ public class SemanticAnalyzer implements ASTVisitor<Void> {
     
     @Override
     public Void visitForStatement(ForStatementNode node) {
+        // 初始化中声明的变量只在 for 语句内可见，同一块中的多个 for 可以各自声明同名的循环变量
+        symbolTableManager.enterScope();
+        
         // 分析初始化
         if (node.getInitialization() != null) {
             node.getInitialization().accept(this);
@@ -467,6 +489,7 @@ public class SemanticAnalyzer implements ASTVisitor<Void> {
         // 恢复循环上下文
         inLoopContext = oldInLoopContext;
         
+        symbolTableManager.exitScope();
         return null;
     }
     
@@ -599,14 +622,15 @@ public class SemanticAnalyzer implements ASTVisitor<Void> {
             return DataType.VOID;
         }
         
-        return expression.accept(new ExpressionTypeAnalyzer());
+        return expression.accept(new ExpressionTypeAnalyzer(symbolTableManager));
     }
     
     /**
      * 检查 main 函数
      */
     private void checkMainFunction() {
-        SymbolEntry mainFunction = symbolTableManager.lookupSymbol("main");
+        // 此时只剩全局作用域；不用 lookupSymbol，缺少 main 时只报告一个错误
+        SymbolEntry mainFunction = symbolTableManager.lookupSymbolInCurrentScope("main");
         
         if (mainFunction == null) {
             addError(new SemanticError(
@@ -21,6 +21,9 @@ public class SymbolTableManager {
     // 错误收集器
     private List<SemanticError> errors;
     
+    // 成功插入过的符号总数（退出作用域不减少）
+    private int insertedSymbolCount;
+    
     public SymbolTableManager() {
         this.symbolTableStack = new Stack<>();
         this.currentScopeLevel = 0;
@@ -79,6 +82,7 @@ public class SymbolTableManager {
         }
         
         currentScope.put(name, entry);
+        insertedSymbolCount++;
         
         if (debugMode) {
             System.out.println("插入符号: " + entry);
@@ -224,6 +228,13 @@ public class SymbolTableManager {
         return !errors.isEmpty();
     }
     
+    /**
+     * 获取错误数量
+     */
+    public int getErrorCount() {
+        return errors.size();
+    }
+    
     /**
      * 打印所有错误
      */
@@ -262,6 +273,13 @@ public class SymbolTableManager {
         return 0;
     }
     
+    /**
+     * 获取分析过程中插入过的符号总数（包括已退出的作用域中的符号）
+     */
+    public int getInsertedSymbolCount() {
+        return insertedSymbolCount;
+    }
+    
     /**
      * 获取所有作用域的符号数量
      */
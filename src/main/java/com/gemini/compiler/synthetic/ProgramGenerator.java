@@ -0,0 +1,634 @@
+package com.gemini.compiler.synthetic;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 合成 Gemini-C 程序生成器
+ *
+ * 用固定种子生成语法和语义都合法的程序，覆盖 GeminiC.g4 的全部结构：
+ * 结构体、数组与初始化列表、嵌套的 while/for 循环、switch、break/continue、
+ * 三目/类型转换/复合赋值/自增自减等表达式、带参数的函数与调用、各类字面量和注释。
+ * 同一组参数和种子总是生成相同的程序，供基准测试和规模测试使用。
+ *
+ * 生成的程序保证：标识符先声明后使用、调用只指向之前定义的函数且参数个数一致、
+ * break/continue 只出现在循环或 switch 中、除数是非零常量、每个函数以 return 结束。
+ */
+public class ProgramGenerator {
+
+    private static final String[] BINARY_OPERATORS = {
+        "+", "-", "*", "/", "%", "==", "!=", "<", ">", "<=", ">=", "&&", "||"
+    };
+    private static final String[] COMPOUND_OPERATORS = {"+=", "-=", "*=", "/=", "%="};
+    private static final int ARRAY_LENGTH = 16;
+
+    // 规模与形状参数
+    private long seed = 1;
+    private int functions = 100;
+    private int statementsPerFunction = 6;
+    private int maxBlockDepth = 2;
+    private int maxExpressionDepth = 3;
+    private int structs = 3;
+    private int fieldsPerStruct = 3;
+    private int globals = 4;
+    private int maxParameters = 3;
+
+    // 生成过程中的状态
+    private Random random;
+    private Appendable out;
+    private int indent;
+    private int nameCounter;
+    private int lines;
+    private final List<Scope> scopes = new ArrayList<>();
+    private final List<Integer> functionArity = new ArrayList<>();
+    private final List<Integer> structFieldCounts = new ArrayList<>();
+    private int loopDepth;
+    private int switchDepth;
+
+    /**
+     * 生成程序文本
+     */
+    public String generate() {
+        StringBuilder sb = new StringBuilder(functions * statementsPerFunction * 48);
+        try {
+            generate(sb);
+        } catch (IOException e) {
+            // StringBuilder 不会抛出 IOException
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 把程序流式写入输出目标，返回写出的行数
+     */
+    public int generate(Appendable target) throws IOException {
+        random = new Random(seed);
+        out = target;
+        indent = 0;
+        nameCounter = 0;
+        lines = 0;
+        scopes.clear();
+        functionArity.clear();
+        structFieldCounts.clear();
+        loopDepth = 0;
+        switchDepth = 0;
+
+        line("// 合成程序：seed=" + seed + ", functions=" + functions);
+        blank();
+        for (int s = 0; s < structs; s++) {
+            generateStruct(s);
+        }
+
+        pushScope();
+        for (int g = 0; g < globals; g++) {
+            generateDeclaration(true);
+        }
+        blank();
+
+        for (int f = 0; f < functions; f++) {
+            generateFunction(f);
+        }
+        generateMain();
+        popScope();
+        return lines;
+    }
+
+    // ==================== 顶层声明 ====================
+
+    private void generateStruct(int index) throws IOException {
+        int fields = 1 + random.nextInt(Math.max(1, fieldsPerStruct));
+        structFieldCounts.add(fields);
+        line("struct S" + index + " {");
+        indent++;
+        for (int i = 0; i < fields; i++) {
+            line((i % 3 == 2 ? "float" : "int") + " m" + i + ";");
+        }
+        indent--;
+        line("};");
+        blank();
+    }
+
+    private void generateFunction(int index) throws IOException {
+        int arity = random.nextInt(maxParameters + 1);
+        StringBuilder header = new StringBuilder("int f").append(index).append('(');
+        pushScope();
+        for (int p = 0; p < arity; p++) {
+            String name = "p" + p;
+            if (p > 0) {
+                header.append(", ");
+            }
+            header.append("int ").append(name);
+            scope().ints.add(name);
+        }
+        header.append(") {");
+
+        if (random.nextInt(4) == 0) {
+            line("/* f" + index + ": " + arity + " 个参数 */");
+        }
+        line(header.toString());
+        indent++;
+        generateStatements(statementsPerFunction, 0);
+        line("return " + expression(maxExpressionDepth) + ";");
+        indent--;
+        line("}");
+        blank();
+        popScope();
+        functionArity.add(arity);
+    }
+
+    private void generateMain() throws IOException {
+        line("int main() {");
+        indent++;
+        pushScope();
+        generateStatements(Math.max(1, statementsPerFunction / 2), 0);
+        line("return 0;");
+        popScope();
+        indent--;
+        line("}");
+    }
+
+    // ==================== 语句 ====================
+
+    private void generateStatements(int count, int depth) throws IOException {
+        for (int i = 0; i < count; i++) {
+            generateStatement(depth);
+        }
+    }
+
+    private void generateStatement(int depth) throws IOException {
+        int choice = random.nextInt(depth < maxBlockDepth ? 14 : 8);
+        switch (choice) {
+            case 0:
+            case 1:
+                generateDeclaration(false);
+                break;
+            case 2:
+            case 3:
+            case 4:
+                generateAssignment();
+                break;
+            case 5:
+                generateUpdate();
+                break;
+            case 6:
+                generateJumpOrEmpty();
+                break;
+            case 7:
+                if (random.nextInt(3) == 0) {
+                    line("// 表达式语句");
+                }
+                line(expression(maxExpressionDepth) + ";");
+                break;
+            case 8:
+            case 9:
+                generateIf(depth);
+                break;
+            case 10:
+                generateWhile(depth);
+                break;
+            case 11:
+                generateFor(depth);
+                break;
+            case 12:
+                generateSwitch(depth);
+                break;
+            default:
+                line("{");
+                indent++;
+                pushScope();
+                generateStatements(1 + random.nextInt(3), depth + 1);
+                popScope();
+                indent--;
+                line("}");
+                break;
+        }
+    }
+
+    /**
+     * 变量声明：标量（可带初始化）、数组（可带初始化列表）、结构体变量、float/char/string 变量
+     */
+    private void generateDeclaration(boolean global) throws IOException {
+        String name = (global ? "g" : "v") + nameCounter++;
+        int kind = random.nextInt(10);
+        if (kind < 5) {
+            if (global) {
+                line("int " + name + " = " + random.nextInt(100) + ";");
+            } else if (random.nextInt(4) == 0) {
+                String second = "v" + nameCounter++;
+                line("int " + name + " = " + expression(2) + ", " + second + ";");
+                scope().ints.add(second);
+            } else {
+                line("int " + name + " = " + expression(maxExpressionDepth) + ";");
+            }
+            scope().ints.add(name);
+        } else if (kind < 7) {
+            if (random.nextBoolean()) {
+                StringBuilder init = new StringBuilder("{");
+                for (int i = 0; i < ARRAY_LENGTH; i++) {
+                    init.append(i > 0 ? ", " : "").append(random.nextInt(10));
+                }
+                line("int " + name + "[" + ARRAY_LENGTH + "] = " + init.append('}') + ";");
+            } else {
+                line("int " + name + "[" + ARRAY_LENGTH + "];");
+            }
+            scope().arrays.add(name);
+        } else if (kind < 8 && !structFieldCounts.isEmpty()) {
+            int struct = random.nextInt(structFieldCounts.size());
+            line("struct S" + struct + " " + name + ";");
+            scope().structs.add(name);
+            scope().structTypes.add(struct);
+        } else if (kind < 9) {
+            line("float " + name + " = " + random.nextInt(100) + "." + random.nextInt(10) + ";");
+            scope().floats.add(name);
+        } else if (random.nextBoolean()) {
+            line("char " + name + " = '" + (char) ('a' + random.nextInt(26)) + "';");
+            scope().chars.add(name);
+        } else {
+            line("string " + name + " = \"s" + random.nextInt(1000) + "\";");
+        }
+    }
+
+    private void generateAssignment() throws IOException {
+        String target = lvalue();
+        if (target == null) {
+            generateDeclaration(false);
+            return;
+        }
+        String operator = random.nextInt(3) == 0
+            ? COMPOUND_OPERATORS[random.nextInt(COMPOUND_OPERATORS.length)] : "=";
+        String value = operator.equals("/=") || operator.equals("%=")
+            ? Integer.toString(1 + random.nextInt(9)) : expression(maxExpressionDepth);
+        line(target + " " + operator + " " + value + ";");
+    }
+
+    private void generateUpdate() throws IOException {
+        String target = scalar();
+        if (target == null) {
+            generateDeclaration(false);
+            return;
+        }
+        switch (random.nextInt(4)) {
+            case 0: line(target + "++;"); break;
+            case 1: line(target + "--;"); break;
+            case 2: line("++" + target + ";"); break;
+            default: line("--" + target + ";"); break;
+        }
+    }
+
+    private void generateJumpOrEmpty() throws IOException {
+        if (loopDepth > 0 && random.nextBoolean()) {
+            line("if (" + expression(2) + ") " + (random.nextBoolean() ? "break;" : "continue;"));
+        } else if (switchDepth > 0 && random.nextBoolean()) {
+            line("if (" + expression(2) + ") break;");
+        } else {
+            line(";");
+        }
+    }
+
+    private void generateIf(int depth) throws IOException {
+        line("if (" + expression(maxExpressionDepth) + ") {");
+        nestedBlock(depth);
+        if (random.nextBoolean()) {
+            if (random.nextInt(3) == 0) {
+                line("} else if (" + expression(2) + ") {");
+                nestedBlock(depth);
+            }
+            line("} else {");
+            nestedBlock(depth);
+        }
+        line("}");
+    }
+
+    private void generateWhile(int depth) throws IOException {
+        String counter = "v" + nameCounter++;
+        line("int " + counter + " = 0;");
+        scope().ints.add(counter);
+        line("while (" + counter + " < " + (2 + random.nextInt(20)) + ") {");
+        loopDepth++;
+        indent++;
+        pushScope();
+        line(counter + " = " + counter + " + 1;");
+        generateStatements(1 + random.nextInt(3), depth + 1);
+        popScope();
+        indent--;
+        loopDepth--;
+        line("}");
+    }
+
+    private void generateFor(int depth) throws IOException {
+        String counter = "v" + nameCounter++;
+        int bound = 2 + random.nextInt(20);
+        pushScope();
+        if (random.nextBoolean()) {
+            line("for (int " + counter + " = 0; " + counter + " < " + bound + "; " + counter + "++) {");
+        } else {
+            line("int " + counter + ";");
+            line("for (" + counter + " = 0; " + counter + " < " + bound + "; " + counter + " += 1) {");
+        }
+        scope().ints.add(counter);
+        loopDepth++;
+        nestedBlock(depth);
+        loopDepth--;
+        line("}");
+        popScope();
+    }
+
+    private void generateSwitch(int depth) throws IOException {
+        line("switch (" + expression(2) + ") {");
+        indent++;
+        switchDepth++;
+        int cases = 1 + random.nextInt(4);
+        for (int c = 0; c < cases; c++) {
+            line("case " + c + ":");
+            indent++;
+            pushScope();
+            generateStatements(1 + random.nextInt(2), depth + 1);
+            popScope();
+            line("break;");
+            indent--;
+        }
+        if (random.nextBoolean()) {
+            line("default:");
+            indent++;
+            pushScope();
+            generateStatements(1, depth + 1);
+            popScope();
+            indent--;
+        }
+        switchDepth--;
+        indent--;
+        line("}");
+    }
+
+    private void nestedBlock(int depth) throws IOException {
+        indent++;
+        pushScope();
+        generateStatements(1 + random.nextInt(3), depth + 1);
+        popScope();
+        indent--;
+    }
+
+    // ==================== 表达式 ====================
+
+    /**
+     * 生成 int 类型的表达式，depth 为剩余嵌套层数
+     */
+    private String expression(int depth) {
+        if (depth <= 0) {
+            return operand();
+        }
+        int choice = random.nextInt(12);
+        if (choice < 6) {
+            String operator = BINARY_OPERATORS[random.nextInt(BINARY_OPERATORS.length)];
+            String right = operator.equals("/") || operator.equals("%")
+                ? Integer.toString(1 + random.nextInt(9)) : expression(depth - 1);
+            return "(" + expression(depth - 1) + " " + operator + " " + right + ")";
+        }
+        switch (choice) {
+            case 6:
+                return (random.nextBoolean() ? "-" : "!") + "(" + expression(depth - 1) + ")";
+            case 7:
+                return "(" + expression(depth - 1) + " ? " + expression(depth - 1) + " : " + expression(depth - 1) + ")";
+            case 8:
+                return call(depth - 1);
+            case 9: {
+                // float/char 只通过显式转换参与 int 运算
+                List<String> converted = visible(random.nextBoolean() ? Kind.FLOAT : Kind.CHAR);
+                if (!converted.isEmpty()) {
+                    return "(int)" + converted.get(random.nextInt(converted.size()));
+                }
+                return "(int)(" + expression(depth - 1) + ")";
+            }
+            default:
+                return operand();
+        }
+    }
+
+    private String operand() {
+        switch (random.nextInt(6)) {
+            case 0:
+                return Integer.toString(random.nextInt(100));
+            case 1: {
+                List<String> arrays = visible(Kind.ARRAY);
+                if (!arrays.isEmpty()) {
+                    return arrays.get(random.nextInt(arrays.size())) + "[" + random.nextInt(ARRAY_LENGTH) + "]";
+                }
+                break;
+            }
+            case 2: {
+                String member = member();
+                if (member != null) {
+                    return member;
+                }
+                break;
+            }
+            default:
+                break;
+        }
+        String scalar = scalar();
+        return scalar != null ? scalar : Integer.toString(random.nextInt(100));
+    }
+
+    private String call(int depth) {
+        if (functionArity.isEmpty()) {
+            return operand();
+        }
+        // 偏向最近定义的函数，形成较长的调用链
+        int callee = functionArity.size() - 1 - random.nextInt(Math.min(functionArity.size(), 8));
+        StringBuilder sb = new StringBuilder("f").append(callee).append('(');
+        for (int a = 0; a < functionArity.get(callee); a++) {
+            sb.append(a > 0 ? ", " : "").append(expression(Math.min(depth, 1)));
+        }
+        return sb.append(')').toString();
+    }
+
+    private String lvalue() {
+        switch (random.nextInt(4)) {
+            case 0: {
+                List<String> arrays = visible(Kind.ARRAY);
+                if (!arrays.isEmpty()) {
+                    return arrays.get(random.nextInt(arrays.size())) + "[" + random.nextInt(ARRAY_LENGTH) + "]";
+                }
+                break;
+            }
+            case 1: {
+                String member = member();
+                if (member != null) {
+                    return member;
+                }
+                break;
+            }
+            default:
+                break;
+        }
+        return scalar();
+    }
+
+    private String scalar() {
+        List<String> ints = visible(Kind.INT);
+        return ints.isEmpty() ? null : ints.get(random.nextInt(ints.size()));
+    }
+
+    private String member() {
+        List<Integer> types = new ArrayList<>();
+        List<String> structVariables = new ArrayList<>();
+        for (Scope scope : scopes) {
+            structVariables.addAll(scope.structs);
+            types.addAll(scope.structTypes);
+        }
+        if (structVariables.isEmpty()) {
+            return null;
+        }
+        int pick = random.nextInt(structVariables.size());
+        int fields = structFieldCounts.get(types.get(pick));
+        // 只访问 int 成员（下标不是 3k+2 的成员）
+        int field = random.nextInt(fields);
+        if (field % 3 == 2) {
+            field = 0;
+        }
+        return structVariables.get(pick) + ".m" + field;
+    }
+
+    // ==================== 作用域与输出 ====================
+
+    private enum Kind { INT, ARRAY, FLOAT, CHAR }
+
+    private List<String> visible(Kind kind) {
+        List<String> names = new ArrayList<>();
+        for (Scope scope : scopes) {
+            switch (kind) {
+                case INT: names.addAll(scope.ints); break;
+                case ARRAY: names.addAll(scope.arrays); break;
+                case FLOAT: names.addAll(scope.floats); break;
+                default: names.addAll(scope.chars); break;
+            }
+        }
+        return names;
+    }
+
+    private Scope scope() {
+        return scopes.get(scopes.size() - 1);
+    }
+
+    private void pushScope() {
+        scopes.add(new Scope());
+    }
+
+    private void popScope() {
+        scopes.remove(scopes.size() - 1);
+    }
+
+    private void line(String text) throws IOException {
+        for (int i = 0; i < indent; i++) {
+            out.append("    ");
+        }
+        out.append(text).append('\n');
+        lines++;
+    }
+
+    private void blank() throws IOException {
+        out.append('\n');
+        lines++;
+    }
+
+    private static final class Scope {
+        final List<String> ints = new ArrayList<>();
+        final List<String> arrays = new ArrayList<>();
+        final List<String> floats = new ArrayList<>();
+        final List<String> chars = new ArrayList<>();
+        final List<String> structs = new ArrayList<>();
+        final List<Integer> structTypes = new ArrayList<>();
+    }
+
+    /**
+     * 命令行入口：生成程序写入文件或标准输出
+     *
+     * 用法: ProgramGenerator [输出文件] [--seed=N] [--functions=N] [--statements=N]
+     *       [--block-depth=N] [--expression-depth=N] [--structs=N] [--globals=N] [--parameters=N]
+     */
+    public static void main(String[] args) throws IOException {
+        ProgramGenerator generator = new ProgramGenerator();
+        String outputFile = null;
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                outputFile = arg;
+                continue;
+            }
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("选项缺少取值: " + arg);
+            }
+            String name = arg.substring(2, eq);
+            long value = Long.parseLong(arg.substring(eq + 1));
+            switch (name) {
+                case "seed": generator.setSeed(value); break;
+                case "functions": generator.setFunctions((int) value); break;
+                case "statements": generator.setStatementsPerFunction((int) value); break;
+                case "block-depth": generator.setMaxBlockDepth((int) value); break;
+                case "expression-depth": generator.setMaxExpressionDepth((int) value); break;
+                case "structs": generator.setStructs((int) value); break;
+                case "globals": generator.setGlobals((int) value); break;
+                case "parameters": generator.setMaxParameters((int) value); break;
+                default: throw new IllegalArgumentException("未知选项: " + arg);
+            }
+        }
+
+        if (outputFile == null) {
+            generator.generate(System.out);
+            System.out.flush();
+        } else {
+            try (Writer writer = Files.newBufferedWriter(Paths.get(outputFile), StandardCharsets.UTF_8)) {
+                generator.generate(writer);
+            }
+        }
+    }
+
+    // ==================== 参数 ====================
+
+    public long getSeed() { return seed; }
+    public void setSeed(long seed) { this.seed = seed; }
+
+    /**
+     * 除 main 之外的函数个数（规模的主要参数）
+     */
+    public int getFunctions() { return functions; }
+    public void setFunctions(int functions) { this.functions = functions; }
+
+    /**
+     * 每个函数体顶层的语句数
+     */
+    public int getStatementsPerFunction() { return statementsPerFunction; }
+    public void setStatementsPerFunction(int statementsPerFunction) { this.statementsPerFunction = statementsPerFunction; }
+
+    /**
+     * if/while/for/switch/块 的最大嵌套层数
+     */
+    public int getMaxBlockDepth() { return maxBlockDepth; }
+    public void setMaxBlockDepth(int maxBlockDepth) { this.maxBlockDepth = maxBlockDepth; }
+
+    /**
+     * 表达式的最大嵌套层数
+     */
+    public int getMaxExpressionDepth() { return maxExpressionDepth; }
+    public void setMaxExpressionDepth(int maxExpressionDepth) { this.maxExpressionDepth = maxExpressionDepth; }
+
+    public int getStructs() { return structs; }
+    public void setStructs(int structs) { this.structs = structs; }
+
+    public int getFieldsPerStruct() { return fieldsPerStruct; }
+    public void setFieldsPerStruct(int fieldsPerStruct) { this.fieldsPerStruct = fieldsPerStruct; }
+
+    public int getGlobals() { return globals; }
+    public void setGlobals(int globals) { this.globals = globals; }
+
+    public int getMaxParameters() { return maxParameters; }
+    public void setMaxParameters(int maxParameters) { this.maxParameters = maxParameters; }
+}
@@ -0,0 +1,59 @@
+package com.gemini.compiler.test;
+
+import com.gemini.compiler.ast.ASTNode;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AST 比较工具：逐字段比较两棵树（包括行号和列号），用于验证不同前端得到的 AST 完全相同
+ */
+final class ASTAssertions {
+
+    private ASTAssertions() {
+    }
+
+    static void assertSameTree(ASTNode expected, ASTNode actual) {
+        compare(expected, actual, "program");
+    }
+
+    private static void compare(Object expected, Object actual, String path) {
+        if (expected == null || actual == null) {
+            assertSame(expected, actual, path);
+            return;
+        }
+        assertEquals(expected.getClass(), actual.getClass(), path);
+        if (expected instanceof List) {
+            List<?> expectedList = (List<?>) expected;
+            List<?> actualList = (List<?>) actual;
+            assertEquals(expectedList.size(), actualList.size(), path + " 的元素个数");
+            for (int i = 0; i < expectedList.size(); i++) {
+                compare(expectedList.get(i), actualList.get(i), path + "[" + i + "]");
+            }
+        } else if (expected.getClass().isArray()) {
+            assertEquals(Array.getLength(expected), Array.getLength(actual), path + " 的元素个数");
+            for (int i = 0; i < Array.getLength(expected); i++) {
+                compare(Array.get(expected, i), Array.get(actual, i), path + "[" + i + "]");
+            }
+        } else if (expected instanceof ASTNode) {
+            for (Class<?> type = expected.getClass(); type != Object.class; type = type.getSuperclass()) {
+                for (Field field : type.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers())) {
+                        continue;
+                    }
+                    field.setAccessible(true);
+                    try {
+                        compare(field.get(expected), field.get(actual),
+                            path + "/" + expected.getClass().getSimpleName() + "." + field.getName());
+                    } catch (IllegalAccessException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            }
+        } else {
+            assertEquals(expected, actual, path);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.gemini.compiler.test;
+
+import com.gemini.compiler.ast.*;
+import com.gemini.grammar.GeminiCLexer;
+import com.gemini.grammar.GeminiCParser;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AST 构建器测试：后缀表达式、强制类型转换、条件表达式、for 语句和声明的各个部分
+ */
+public class ASTBuilderTest {
+
+    @Test
+    public void testArrayAccess() {
+        // a[i][j + 1] 从左到右嵌套：外层的数组部分是 a[i]
+        ArrayAccessNode outer = (ArrayAccessNode) expression("a[i][j + 1]");
+        assertEquals(1, outer.getIndices().length);
+        assertTrue(outer.getIndex() instanceof AdditiveExpressionNode);
+        ArrayAccessNode inner = (ArrayAccessNode) outer.getArray();
+        assertEquals("a", ((IdentifierNode) inner.getArray()).getName());
+        assertEquals("i", ((IdentifierNode) inner.getIndex()).getName());
+    }
+
+    @Test
+    public void testMemberAccess() {
+        MemberAccessNode member = (MemberAccessNode) expression("p.x");
+        assertEquals("x", member.getMemberName());
+        assertEquals("p", ((IdentifierNode) member.getObject()).getName());
+
+        // 结构体数组元素的成员
+        MemberAccessNode element = (MemberAccessNode) expression("students[2].grade");
+        assertEquals("grade", element.getMemberName());
+        ArrayAccessNode array = (ArrayAccessNode) element.getObject();
+        assertEquals(2, ((IntLiteralNode) array.getIndex()).getValue());
+    }
+
+    @Test
+    public void testFunctionCall() {
+        FunctionCallNode call = (FunctionCallNode) expression("max(a[0], f(), 3)");
+        assertEquals("max", call.getFunctionName());
+        ExpressionNode[] arguments = call.getArguments();
+        assertEquals(3, arguments.length);
+        assertTrue(arguments[0] instanceof ArrayAccessNode);
+        FunctionCallNode nested = (FunctionCallNode) arguments[1];
+        assertEquals("f", nested.getFunctionName());
+        assertEquals(0, nested.getArguments().length);
+        assertEquals(3, ((IntLiteralNode) arguments[2]).getValue());
+    }
+
+    @Test
+    public void testCastAndConditional() {
+        CastExpressionNode cast = (CastExpressionNode) expression("(float) (char) n");
+        assertEquals(DataType.FLOAT, cast.getTargetType().getDataType());
+        CastExpressionNode inner = (CastExpressionNode) cast.getExpression();
+        assertEquals(DataType.CHAR, inner.getTargetType().getDataType());
+        assertEquals("n", ((IdentifierNode) inner.getExpression()).getName());
+
+        // 条件表达式的假分支右结合
+        ConditionalExpressionNode conditional = (ConditionalExpressionNode) expression("a ? 1 : b ? 2 : 3");
+        assertEquals(1, ((IntLiteralNode) conditional.getTrueExpression()).getValue());
+        ConditionalExpressionNode falseBranch = (ConditionalExpressionNode) conditional.getFalseExpression();
+        assertEquals(2, ((IntLiteralNode) falseBranch.getTrueExpression()).getValue());
+        assertEquals(3, ((IntLiteralNode) falseBranch.getFalseExpression()).getValue());
+    }
+
+    @Test
+    public void testForInitializationAndUpdate() {
+        // 声明形式的初始化：与普通声明相同，可以有多个声明符
+        ForStatementNode declared = (ForStatementNode) statement("for (int i = 0, j = 1; i < n; i++) { }");
+        VariableDeclarationNode declaration = (VariableDeclarationNode) declared.getInitialization();
+        assertEquals(DataType.INT, declaration.getType().getDataType());
+        assertEquals(2, declaration.getDeclarators().length);
+        assertEquals("j", declaration.getDeclarators()[1].getVariableName());
+        assertEquals(1, ((IntLiteralNode) declaration.getDeclarators()[1].getInitializer()).getValue());
+        assertTrue(declared.getCondition() instanceof RelationalExpressionNode);
+        PostfixExpressionNode update = (PostfixExpressionNode) declared.getUpdate();
+        assertEquals(PostfixOperator.INCREMENT, update.getOperator());
+
+        // 表达式形式的初始化包装为表达式语句；各部分都可以省略
+        ForStatementNode assigned = (ForStatementNode) statement("for (i = 0; ; i += 2) { }");
+        ExpressionStatementNode initialization = (ExpressionStatementNode) assigned.getInitialization();
+        assertTrue(initialization.getExpression() instanceof AssignmentExpressionNode);
+        assertNull(assigned.getCondition());
+        assertEquals(AssignmentOperator.PLUS_ASSIGN, ((AssignmentExpressionNode) assigned.getUpdate()).getOperator());
+
+        ForStatementNode empty = (ForStatementNode) statement("for (;;) { }");
+        assertNull(empty.getInitialization());
+        assertNull(empty.getCondition());
+        assertNull(empty.getUpdate());
+    }
+
+    @Test
+    public void testDeclaratorsAndParameters() {
+        // 数组维度与初始化表达式分开保存
+        VariableDeclarationNode table = (VariableDeclarationNode) statement("int table[3][4];");
+        VariableDeclaratorNode tableDeclarator = table.getDeclarators()[0];
+        assertArrayEquals(new int[]{3, 4}, tableDeclarator.getArrayDimensions());
+        assertNull(tableDeclarator.getInitializer());
+
+        VariableDeclarationNode list = (VariableDeclarationNode) statement("int m[2] = {1, 2 + 3};");
+        VariableDeclaratorNode listDeclarator = list.getDeclarators()[0];
+        assertArrayEquals(new int[]{2}, listDeclarator.getArrayDimensions());
+        assertEquals(2, listDeclarator.getArrayInitializers().length);
+        assertTrue(listDeclarator.getArrayInitializers()[1] instanceof AdditiveExpressionNode);
+
+        VariableDeclarationNode scalar = (VariableDeclarationNode) statement("int k = 7;");
+        assertEquals(0, scalar.getDeclarators()[0].getArrayDimensions().length);
+        assertEquals(7, ((IntLiteralNode) scalar.getDeclarators()[0].getInitializer()).getValue());
+
+        // 数组参数记录维数
+        ParameterNode[] parameters = function("int f(int a[], float m[][], int n) { return n; }").getParameters();
+        assertEquals(1, parameters[0].getArrayDimensions());
+        assertEquals(2, parameters[1].getArrayDimensions());
+        assertEquals(0, parameters[2].getArrayDimensions());
+    }
+
+    /**
+     * 以 return 语句中的表达式构建
+     */
+    private static ExpressionNode expression(String expression) {
+        return ((ReturnStatementNode) statement("return " + expression + ";")).getExpression();
+    }
+
+    /**
+     * main 函数体中的唯一一条语句
+     */
+    private static StatementNode statement(String statement) {
+        StatementNode[] statements = function("int main() { " + statement + " }").getBody().getStatements();
+        assertEquals(1, statements.length);
+        return statements[0];
+    }
+
+    private static FunctionDeclarationNode function(String source) {
+        GeminiCParser parser = new GeminiCParser(new CommonTokenStream(new GeminiCLexer(CharStreams.fromString(source))));
+        ASTNode ast = new ASTBuilder().build(parser.program());
+        assertEquals(0, parser.getNumberOfSyntaxErrors(), "测试程序应该没有语法错误: " + source);
+        ASTNode[] declarations = ((ProgramNode) ast).getDeclarations();
+        assertEquals(1, declarations.length);
+        return (FunctionDeclarationNode) declarations[0];
+    }
+}
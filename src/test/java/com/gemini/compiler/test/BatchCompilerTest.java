@@ -0,0 +1,153 @@
+package com.gemini.compiler.test;
+
+import com.gemini.compiler.BatchCompiler;
+import com.gemini.compiler.CompilationResult;
+import com.gemini.compiler.GeminiCompiler;
+import com.gemini.compiler.GeminiCompiler.CompilerConfig;
+import com.gemini.compiler.ir.Operand;
+import com.gemini.compiler.optimizer.OptimizationLevel;
+import com.gemini.compiler.synthetic.ProgramGenerator;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 批量编译测试
+ */
+public class BatchCompilerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private PrintStream stdout;
+
+    @BeforeEach
+    public void silenceStdout() {
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @AfterEach
+    public void restoreStdout() {
+        System.setOut(stdout);
+    }
+
+    @Test
+    public void testFilesAreCompiledIndependently() throws IOException {
+        List<BatchCompiler.Job> batch = new ArrayList<>();
+        for (int seed = 0; seed < 6; seed++) {
+            ProgramGenerator generator = new ProgramGenerator();
+            generator.setSeed(seed);
+            generator.setFunctions(5);
+            batch.add(job("p" + seed + ".gc", generator.generate()));
+        }
+        // 与其他文件的全局变量同名，但各文件的符号表互不影响
+        batch.add(job("broken.gc", "int g0 = 1;\nint main() {\n    b = 1;\n    return 0;\n}\n"));
+
+        CompilerConfig config = new CompilerConfig();
+        config.setOptimizationLevel(OptimizationLevel.O2);
+        List<CompilationResult> results = new BatchCompiler(config, 4).compile(batch);
+
+        assertEquals(batch.size(), results.size());
+        for (int i = 0; i < batch.size(); i++) {
+            CompilationResult result = results.get(i);
+            assertEquals(batch.get(i).getInputFile(), result.getInputFile(), "结果应该与输入顺序一致");
+            if (i < 6) {
+                assertTrue(result.isSuccess(), result.getInputFile() + ": " + result.getDiagnostics());
+                assertTrue(Files.readString(Path.of(result.getOutputFile())).contains("define i32 @main()"));
+            }
+        }
+
+        CompilationResult broken = results.get(6);
+        assertFalse(broken.isSuccess());
+        assertFalse(Files.exists(Path.of(broken.getOutputFile())));
+        assertTrue(broken.getDiagnostics().stream().anyMatch(line -> line.contains("'b'")), broken.getDiagnostics().toString());
+
+        String report = BatchCompiler.report(results, 0);
+        assertTrue(report.contains("成功: 6  失败: 1"), report);
+        assertTrue(report.contains("'b'"), report);
+        assertTrue(BatchCompiler.toJson(results, 0).contains("\"failed\": 1"));
+    }
+
+    @Test
+    public void testOperandTableDoesNotGrowWithCompiledFiles() throws Exception {
+        CompilerConfig config = new CompilerConfig();
+        config.setOptimizationLevel(OptimizationLevel.O2);
+        config.setColumnarIr(true);
+        compileDistinct(config, 0);
+        int baseline = settledInternedCount(0);
+        int range = Operand.idRange();
+
+        // 每个文件的变量名、函数名和常量都不同；回收之后驻留表和 id 范围保持不变
+        for (int k = 1; k <= 60; k++) {
+            compileDistinct(config, k);
+            settledInternedCount(baseline);
+        }
+        int interned = settledInternedCount(baseline);
+        assertTrue(interned <= baseline + 20, "驻留表不应随编译过的文件数增长: " + baseline + " -> " + interned);
+        assertTrue(Operand.idRange() <= range + 100, "id 应该被复用: " + range + " -> " + Operand.idRange());
+    }
+
+    /**
+     * 编译一个所有名字和常量都带编号 k 的程序
+     */
+    private void compileDistinct(CompilerConfig config, int k) throws IOException {
+        String source = "int g" + k + " = " + (1000 + k) + ";\n"
+            + "int f" + k + "(int a" + k + ") {\n"
+            + "    int b" + k + " = a" + k + " * " + (2000 + k) + ";\n"
+            + "    for (int i" + k + " = 0; i" + k + " < " + (3000 + k) + "; i" + k + "++) {\n"
+            + "        b" + k + " = b" + k + " + g" + k + ";\n"
+            + "    }\n"
+            + "    return b" + k + ";\n"
+            + "}\n"
+            + "int main() {\n"
+            + "    int r" + k + " = f" + k + "(" + (4000 + k) + ");\n"
+            + "    return r" + k + ";\n"
+            + "}\n";
+        Path input = Files.writeString(tempDir.resolve("d" + k + ".gc"), source);
+        new GeminiCompiler(config).compile(input.toString(), tempDir.resolve("d" + k + ".ll").toString());
+    }
+
+    /**
+     * 触发垃圾回收直到驻留的操作数不多于 expected（最多重试若干次），返回此时的个数
+     */
+    private static int settledInternedCount(int expected) throws InterruptedException {
+        int count = Integer.MAX_VALUE;
+        for (int i = 0; i < 10 && count > expected; i++) {
+            System.gc();
+            Thread.sleep(10);
+            count = Operand.internedCount();
+        }
+        return count;
+    }
+
+    @Test
+    public void testManifestAndOutputConflicts() throws IOException {
+        Files.writeString(tempDir.resolve("a.gc"), "int main() {\n    return 0;\n}\n");
+        Path manifest = tempDir.resolve("files.txt");
+        Files.writeString(manifest, "# 清单\n\na.gc\na.gc\tout/custom.ll\n");
+
+        List<BatchCompiler.Job> batch = BatchCompiler.readManifest(manifest, null);
+        assertEquals(2, batch.size());
+        assertEquals(tempDir.resolve("a.ll").toString(), batch.get(0).getOutputFile());
+        assertEquals(tempDir.resolve("out/custom.ll").toString(), batch.get(1).getOutputFile());
+
+        batch.add(new BatchCompiler.Job(tempDir.resolve("a.gc").toString(), tempDir.resolve("a.ll").toString()));
+        assertThrows(IllegalArgumentException.class, () -> new BatchCompiler(new CompilerConfig(), 2).compile(batch));
+    }
+
+    private BatchCompiler.Job job(String name, String source) throws IOException {
+        Path input = tempDir.resolve(name);
+        Files.writeString(input, source);
+        return new BatchCompiler.Job(input.toString(), BatchCompiler.defaultOutput(input.toString(), null));
+    }
+}
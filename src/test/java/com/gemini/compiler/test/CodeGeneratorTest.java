@@ -0,0 +1,85 @@
+package com.gemini.compiler.test;
+
+import com.gemini.compiler.codegen.CodeGenerator;
+import com.gemini.compiler.ir.*;
+import org.junit.jupiter.api.Test;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * LLVM IR 代码生成器测试类
+ */
+public class CodeGeneratorTest {
+
+    /**
+     * 构造包含多个函数、跨函数变量引用和全局代码的中间代码
+     */
+    private IRProgram createMultiFunctionProgram(int functionCount) {
+        IRProgram program = new IRProgram();
+        program.addInstruction(new TACInstruction(TACOpcode.ASSIGN, "1", null, "g"));
+
+        for (int f = 0; f < functionCount; f++) {
+            program.addInstruction(new TACInstruction(TACOpcode.LABEL, null, null, "func_f" + f));
+            program.addInstruction(new TACInstruction(TACOpcode.ALLOC, "4", null, "x"));
+            program.addInstruction(new TACInstruction(TACOpcode.ADD, "g", "x", "t1"));
+            program.addInstruction(new TACInstruction(TACOpcode.IF_ZERO, "t1", null, "else" + f));
+            program.addInstruction(new TACInstruction(TACOpcode.ARRAY_ASSIGN, "arr", "t1", "x"));
+            program.addInstruction(new TACInstruction(TACOpcode.LABEL, null, null, "else" + f));
+            program.addInstruction(new TACInstruction(TACOpcode.MUL, "t1", "y", "y"));
+            program.addInstruction(new TACInstruction(TACOpcode.RETURN, "y", null, null));
+        }
+        return program;
+    }
+
+    @Test
+    public void testFunctionDefinitions() {
+        // 测试每个函数都生成独立定义
+        CodeGenerator generator = new CodeGenerator();
+        String code = generator.generate(createMultiFunctionProgram(3));
+
+        assertTrue(code.contains("define i32 @f0()"), "应该包含f0函数定义");
+        assertTrue(code.contains("define i32 @f2()"), "应该包含f2函数定义");
+        assertTrue(code.contains("define i32 @main()"), "应该包含main函数定义");
+    }
+
+    @Test
+    public void testParallelOutputMatchesSerial() {
+        // 测试并行生成的输出与串行逐字节一致
+        IRProgram program = createMultiFunctionProgram(40);
+
+        String serial = new CodeGenerator().generate(program);
+
+        for (int workers : new int[] {2, 3, 8}) {
+            CodeGenerator parallel = new CodeGenerator();
+            parallel.setWorkerCount(workers);
+            assertEquals(serial, parallel.generate(program), "并行输出应该与串行一致 (workers=" + workers + ")");
+        }
+    }
+
+    @Test
+    public void testStreamingOutputMatchesString() throws Exception {
+        // 测试流式写入通道的输出与一次性生成的字符串一致
+        IRProgram program = createMultiFunctionProgram(20);
+        String expected = new CodeGenerator().generate(program);
+
+        for (int workers : new int[] {1, 4}) {
+            CodeGenerator generator = new CodeGenerator();
+            generator.setWorkerCount(workers);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            generator.generate(program, Channels.newChannel(bytes));
+            assertEquals(expected, bytes.toString(StandardCharsets.UTF_8), "流式输出应该与字符串输出一致 (workers=" + workers + ")");
+        }
+    }
+
+    @Test
+    public void testColumnarProgramMatches() {
+        // 测试列式存储的程序生成相同的代码
+        IRProgram program = createMultiFunctionProgram(10);
+        IRProgram columnar = IRProgram.columnar();
+        program.getInstructions().forEach(columnar::addInstruction);
+
+        assertEquals(new CodeGenerator().generate(program), new CodeGenerator().generate(columnar), "列式存储不应该影响输出");
+    }
+}
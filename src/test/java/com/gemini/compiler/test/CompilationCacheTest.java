@@ -0,0 +1,230 @@
+package com.gemini.compiler.test;
+
+import com.gemini.compiler.CompilationCache;
+import com.gemini.compiler.CompilationException;
+import com.gemini.compiler.GeminiCompiler;
+import com.gemini.compiler.GeminiCompiler.CompilerConfig;
+import com.gemini.compiler.optimizer.OptimizationLevel;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 编译缓存测试
+ */
+public class CompilationCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private PrintStream stdout;
+    private PrintStream stderr;
+
+    @BeforeEach
+    public void silenceOutput() {
+        stdout = System.out;
+        stderr = System.err;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @AfterEach
+    public void restoreOutput() {
+        System.setOut(stdout);
+        System.setErr(stderr);
+    }
+
+    @Test
+    public void testRepeatedCompileIsServedFromCache() throws IOException {
+        Path input = tempDir.resolve("a.gc");
+        Files.writeString(input, "int g = 2;\nint main() {\n    int a = g * 3;\n    return a;\n}\n");
+        Path cacheDir = tempDir.resolve("cache");
+
+        String first = compile(input, cacheDir, OptimizationLevel.O2, "a1.ll");
+        assertEquals(1, entryCount(cacheDir));
+
+        // 篡改缓存条目，确认第二次编译确实来自缓存
+        Path entry = onlyEntry(cacheDir);
+        Files.writeString(entry, Files.readString(entry).replace("define i32 @main()", "define i32 @main() ; cached"));
+        String second = compile(input, cacheDir, OptimizationLevel.O2, "a2.ll");
+        assertEquals(first.replace("define i32 @main()", "define i32 @main() ; cached"), second);
+
+        // 优化级别和源文件内容都是键的一部分
+        compile(input, cacheDir, OptimizationLevel.O0, "a3.ll");
+        assertEquals(2, entryCount(cacheDir));
+        Files.writeString(input, "int main() {\n    return 1;\n}\n");
+        assertFalse(compile(input, cacheDir, OptimizationLevel.O2, "a4.ll").contains("; cached"));
+        assertEquals(3, entryCount(cacheDir));
+    }
+
+    @Test
+    public void testFailuresAreCached() throws IOException {
+        Path input = tempDir.resolve("bad.gc");
+        Files.writeString(input, "int main() {\n    b = 1;\n    return 0;\n}\n");
+        Path cacheDir = tempDir.resolve("cache");
+
+        CompilationException first = assertThrows(CompilationException.class,
+            () -> compile(input, cacheDir, OptimizationLevel.O0, "bad.ll"));
+        CompilationException second = assertThrows(CompilationException.class,
+            () -> compile(input, cacheDir, OptimizationLevel.O0, "bad.ll"));
+        assertEquals(first.getMessage(), second.getMessage());
+        assertEquals(first.getDiagnostics(), second.getDiagnostics());
+        assertEquals(1, entryCount(cacheDir));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntriesAreEvicted() throws IOException {
+        Path cacheDir = tempDir.resolve("cache");
+        Path output = tempDir.resolve("out.ll");
+        Files.write(output, new byte[1000]);
+        CompilationCache cache = new CompilationCache(cacheDir, 2500);
+
+        String[] keys = new String[3];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = CompilationCache.key(("source " + i).getBytes(StandardCharsets.UTF_8), new CompilerConfig());
+        }
+        cache.storeSuccess(keys[0], output.toString());
+        cache.storeSuccess(keys[1], output.toString());
+        // 修改时间精度可能只有秒级，直接设置使顺序确定
+        Files.setLastModifiedTime(cacheDir.resolve(keys[0] + ".entry"), FileTime.fromMillis(2_000_000));
+        Files.setLastModifiedTime(cacheDir.resolve(keys[1] + ".entry"), FileTime.fromMillis(1_000_000));
+
+        cache.storeSuccess(keys[2], output.toString());
+        assertTrue(cache.size() <= 2500);
+        assertTrue(cache.restore(keys[0], tempDir.resolve("r0.ll").toString()));
+        assertFalse(cache.restore(keys[1], tempDir.resolve("r1.ll").toString()), "最久未使用的条目应该被淘汰");
+        assertTrue(cache.restore(keys[2], tempDir.resolve("r2.ll").toString()));
+    }
+
+    @Test
+    public void testDirectoryIsRescannedOnlyOverLimit() throws IOException {
+        Path cacheDir = tempDir.resolve("cache");
+        Path output = tempDir.resolve("out.ll");
+        Files.write(output, new byte[1000]);
+        CompilationCache cache = new CompilationCache(cacheDir, 2500);
+
+        // 创建之后由其他进程写入的条目不计入累计值，写入新条目时不会扫描目录淘汰它
+        Path foreign = cacheDir.resolve("foreign.entry");
+        Files.write(foreign, new byte[3000]);
+        Files.setLastModifiedTime(foreign, FileTime.fromMillis(1_000_000));
+        String first = CompilationCache.key("first".getBytes(StandardCharsets.UTF_8), new CompilerConfig());
+        cache.storeSuccess(first, output.toString());
+        assertTrue(Files.exists(foreign));
+
+        // 累计值超过上限时重新扫描，按实际总大小淘汰
+        String second = CompilationCache.key("second".getBytes(StandardCharsets.UTF_8), new CompilerConfig());
+        cache.storeSuccess(second, output.toString());
+        cache.storeSuccess(CompilationCache.key("third".getBytes(StandardCharsets.UTF_8), new CompilerConfig()), output.toString());
+        assertFalse(Files.exists(foreign));
+        assertTrue(cache.size() <= 2500);
+
+        // 同一目录的新实例沿用累计值，覆盖已有条目只计差值，不会再次淘汰
+        CompilationCache reopened = new CompilationCache(cacheDir, 2500);
+        long size = reopened.size();
+        reopened.storeSuccess(second, output.toString());
+        assertEquals(size, reopened.size());
+    }
+
+    @Test
+    public void testSourceChangedDuringCompileIsNotStoredUnderOldKey() throws IOException {
+        // 两个版本长度相同，原地改写时映射的长度不变
+        String before = "int main() {\n    return 1;\n}\n";
+        String after = "int main() {\n    return 2;\n}\n";
+        Path input = tempDir.resolve("edited.gc");
+        Path uncached = tempDir.resolve("uncached");
+        Files.writeString(input, before);
+        String expected = compile(input, uncached, OptimizationLevel.O0, "before.ll");
+        Files.writeString(input, after);
+        assertNotEquals(expected, compile(input, uncached, OptimizationLevel.O0, "after.ll"));
+
+        // 原地改写：编译读到的是新内容，不能写在按旧内容计算的键下
+        Path cacheDir = tempDir.resolve("cache");
+        Files.writeString(input, before);
+        compileEditingAtParse(input, cacheDir, () -> Files.writeString(input, after));
+        assertEquals(0, entryCount(cacheDir));
+        Files.writeString(input, before);
+        assertEquals(expected, compile(input, cacheDir, OptimizationLevel.O0, "restored.ll"));
+
+        // 重命名覆盖：映射仍是旧内容，键和编译结果都来自旧内容
+        Path replaced = tempDir.resolve("cache-replaced");
+        Path edited = tempDir.resolve("edited.tmp");
+        compileEditingAtParse(input, replaced, () -> {
+            Files.writeString(edited, after);
+            Files.move(edited, input, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        });
+        assertEquals(1, entryCount(replaced));
+        Files.writeString(input, before);
+        assertEquals(expected, compile(input, replaced, OptimizationLevel.O0, "replaced.ll"));
+    }
+
+    @Test
+    public void testKeyDependsOnBuildIdentity() {
+        // 构建标识是编译器代码的摘要，不是随机的回退值
+        String identity = CompilationCache.buildIdentity();
+        assertTrue(identity.matches("[0-9a-f]{64}"), identity);
+        assertEquals(identity, CompilationCache.buildIdentity());
+        byte[] source = "int main() { return 0; }".getBytes(StandardCharsets.UTF_8);
+        assertEquals(CompilationCache.key(source, new CompilerConfig()), CompilationCache.key(source, new CompilerConfig()));
+    }
+
+    private String compile(Path input, Path cacheDir, OptimizationLevel level, String outputName) throws IOException {
+        CompilerConfig config = new CompilerConfig();
+        config.setOptimizationLevel(level);
+        config.setCacheDir(cacheDir.toString());
+        Path output = tempDir.resolve(outputName);
+        new GeminiCompiler(config).compile(input.toString(), output.toString());
+        return Files.readString(output);
+    }
+
+    /**
+     * 计算缓存键之后、词法分析之前修改源文件：在编译线程输出阶段一的标题时执行 edit
+     */
+    private void compileEditingAtParse(Path input, Path cacheDir, SourceEdit edit) throws IOException {
+        PrintStream silent = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()) {
+            @Override
+            public void println(String line) {
+                if (line.contains("阶段一")) {
+                    try {
+                        edit.run();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            }
+        });
+        try {
+            compile(input, cacheDir, OptimizationLevel.O0, "edited.ll");
+        } finally {
+            System.setOut(silent);
+        }
+    }
+
+    private interface SourceEdit {
+        void run() throws IOException;
+    }
+
+    private static long entryCount(Path cacheDir) throws IOException {
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            return files.filter(file -> file.toString().endsWith(".entry")).count();
+        }
+    }
+
+    private static Path onlyEntry(Path cacheDir) throws IOException {
+        try (Stream<Path> files = Files.list(cacheDir)) {
+            return files.filter(file -> file.toString().endsWith(".entry")).findFirst().orElseThrow();
+        }
+    }
+}
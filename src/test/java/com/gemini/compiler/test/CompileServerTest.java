@@ -0,0 +1,225 @@
+package com.gemini.compiler.test;
+
+import com.gemini.compiler.CompileServer;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 常驻编译服务测试
+ */
+public class CompileServerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path root;
+    private CompileServer server;
+    private String token;
+    private PrintStream stdout;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        root = Files.createDirectory(tempDir.resolve("root"));
+        server = new CompileServer(0, 2, new String[]{"-O2"});
+        server.setTokenFile(tempDir.resolve("token/daemon.token"));
+        server.setRoot(root);
+        server.start();
+        token = Files.readString(server.getTokenFile()).trim();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop();
+        System.setOut(stdout);
+    }
+
+    @Test
+    public void testTokenFileIsPrivate() throws IOException {
+        assertEquals(64, token.length());
+        assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(server.getTokenFile())));
+        assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(server.getTokenFile().getParent())));
+
+        // 停止服务时删除令牌文件
+        server.stop();
+        assertFalse(Files.exists(server.getTokenFile()));
+    }
+
+    @Test
+    public void testRequestsWithoutTokenAreRejected() throws IOException {
+        for (String first : new String[]{"shutdown", "ping", token.substring(1), token + "0"}) {
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+                List<String> response = send(socket, first, "shutdown");
+                assertEquals("status error", response.get(0), "响应: " + response);
+                // 令牌错误后关闭连接
+                assertEquals(-1, socket.getInputStream().read());
+            }
+        }
+        assertTrue(server.isRunning());
+    }
+
+    @Test
+    public void testCompileRequestsOnOneConnection() throws IOException {
+        Path input = root.resolve("ok.gc");
+        Files.writeString(input, "int g = 2;\nint main() {\n    int a = g * 3;\n    return 0;\n}\n");
+        Path output = root.resolve("ok.ll");
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            List<String> ping = request(socket, "ping");
+            assertEquals("status ok", ping.get(0));
+
+            // 同一连接上的多次请求各自独立编译
+            for (int i = 0; i < 3; i++) {
+                Files.deleteIfExists(output);
+                List<String> response = request(socket, "compile", input.toString(), output.toString());
+                assertEquals("status ok", response.get(0), "响应: " + response);
+                assertTrue(response.contains("output " + output), "响应应该包含输出路径: " + response);
+                assertTrue(Files.readString(output).contains("define i32 @main()"));
+            }
+        }
+    }
+
+    @Test
+    public void testPathsMustBeAbsoluteAndInsideRoot() throws IOException {
+        Path input = root.resolve("ok.gc");
+        Files.writeString(input, "int main() {\n    return 0;\n}\n");
+        Path outside = Files.writeString(tempDir.resolve("outside.gc"), "int main() {\n    return 0;\n}\n");
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            assertRejected(request(socket, "compile", "ok.gc", root.resolve("a.ll").toString()));
+            assertRejected(request(socket, "compile", input.toString(), "a.ll"));
+            assertRejected(request(socket, "compile", outside.toString(), root.resolve("b.ll").toString()));
+            assertRejected(request(socket, "compile", input.toString(), tempDir.resolve("c.ll").toString()));
+            assertRejected(request(socket, "compile", root.resolve("../outside.gc").toString(), root.resolve("d.ll").toString()));
+            assertRejected(request(socket, "compile", input.toString(), root.resolve("../e.ll").toString()));
+            assertFalse(Files.exists(tempDir.resolve("c.ll")));
+            assertFalse(Files.exists(tempDir.resolve("e.ll")));
+
+            // 会写入其他文件的选项只能在启动时指定
+            for (String option : new String[]{"--cache-dir=" + tempDir, "--time-report=" + tempDir.resolve("r.json"),
+                    "--time-passes=" + tempDir.resolve("p.json")}) {
+                assertRejected(request(socket, "compile", input.toString(), root.resolve("f.ll").toString(), option));
+            }
+            assertFalse(Files.exists(root.resolve("f.ll")));
+        }
+    }
+
+    @Test
+    public void testSymbolicLinksOutOfRootAreRejected() throws IOException {
+        Path outside = Files.writeString(tempDir.resolve("outside.gc"), "int main() {\n    return 0;\n}\n");
+        Path link;
+        try {
+            link = Files.createSymbolicLink(root.resolve("link.gc"), outside);
+            Files.createSymbolicLink(root.resolve("link.ll"), tempDir.resolve("target.ll"));
+            Files.createSymbolicLink(root.resolve("dir"), tempDir);
+        } catch (UnsupportedOperationException | IOException e) {
+            assumeTrue(false, "不支持符号链接");
+            return;
+        }
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            assertRejected(request(socket, "compile", link.toString(), root.resolve("a.ll").toString()));
+            assertRejected(request(socket, "compile", root.resolve("dir/outside.gc").toString(), root.resolve("a.ll").toString()));
+            Path input = Files.writeString(root.resolve("ok.gc"), "int main() {\n    return 0;\n}\n");
+            assertRejected(request(socket, "compile", input.toString(), root.resolve("link.ll").toString()));
+            assertRejected(request(socket, "compile", input.toString(), root.resolve("dir/b.ll").toString()));
+        }
+        assertFalse(Files.exists(tempDir.resolve("target.ll")));
+        assertFalse(Files.exists(tempDir.resolve("b.ll")));
+    }
+
+    @Test
+    public void testDiagnosticsAreReturnedWithoutStoppingServer() throws IOException {
+        Path broken = root.resolve("broken.gc");
+        Files.writeString(broken, "int main() {\n    int a = ;\n    return 0;\n}\n");
+        Path undefined = root.resolve("undefined.gc");
+        Files.writeString(undefined, "int main() {\n    b = 1;\n    return 0;\n}\n");
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            List<String> syntax = request(socket, "compile", broken.toString(), root.resolve("a.ll").toString());
+            assertEquals("status error", syntax.get(0));
+            assertTrue(syntax.stream().anyMatch(line -> line.startsWith("diagnostic 语法错误 [2:")), "响应: " + syntax);
+
+            List<String> semantic = request(socket, "compile", undefined.toString(), root.resolve("b.ll").toString());
+            assertEquals("status error", semantic.get(0));
+            assertTrue(semantic.stream().anyMatch(line -> line.contains("'b'")), "响应: " + semantic);
+
+            List<String> badOption = request(socket, "compile", undefined.toString(), root.resolve("c.ll").toString(), "-O9");
+            assertEquals("status error", badOption.get(0));
+
+            // 出错后服务仍可继续处理请求
+            assertEquals("status ok", request(socket, "ping").get(0));
+        }
+    }
+
+    @Test
+    public void testShutdownRequest() throws Exception {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            assertEquals("status ok", request(socket, "shutdown").get(0));
+        }
+        server.awaitShutdown();
+        assertFalse(server.isRunning());
+    }
+
+    private static void assertRejected(List<String> response) {
+        assertEquals("status error", response.get(0), "响应: " + response);
+        assertTrue(response.stream().anyMatch(line -> line.startsWith("diagnostic ")), "响应: " + response);
+    }
+
+    /**
+     * 以令牌开头发送一个请求
+     */
+    private List<String> request(Socket socket, String... lines) throws IOException {
+        String[] authenticated = new String[lines.length + 1];
+        authenticated[0] = token;
+        System.arraycopy(lines, 0, authenticated, 1, lines.length);
+        return send(socket, authenticated);
+    }
+
+    /**
+     * 发送一个请求（每行一个参数，空行结束），读取以空行结束的响应
+     */
+    private static List<String> send(Socket socket, String... lines) throws IOException {
+        Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+        for (String line : lines) {
+            out.write(line);
+            out.write('\n');
+        }
+        out.write('\n');
+        out.flush();
+
+        // 逐字节读取，避免缓冲读入下一次响应
+        InputStream in = socket.getInputStream();
+        List<String> response = new ArrayList<>();
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b != '\n') {
+                line.write(b);
+                continue;
+            }
+            if (line.size() == 0) {
+                break;
+            }
+            response.add(line.toString(StandardCharsets.UTF_8));
+            line.reset();
+        }
+        return response;
+    }
+}
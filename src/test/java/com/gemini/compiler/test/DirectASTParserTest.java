@@ -0,0 +1,178 @@
+package com.gemini.compiler.test;
+
+import com.gemini.compiler.ast.ASTBuilder;
+import com.gemini.compiler.ast.ASTNode;
+import com.gemini.compiler.parser.DirectASTParser;
+import com.gemini.compiler.synthetic.ProgramGenerator;
+import com.gemini.grammar.GeminiCLexer;
+import com.gemini.grammar.GeminiCParser;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ListTokenSource;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 直接构建 AST 的解析器与 GeminiCParser + ASTBuilder 的一致性测试
+ */
+public class DirectASTParserTest {
+
+    /**
+     * 覆盖生成程序中没有的语法：强制类型转换、条件表达式、复合赋值、结构体、数组初始化、
+     * 带括号的赋值左边和被调用部分、悬空 else、for 中的多个声明
+     */
+    private static final String CONSTRUCTS = String.join("\n",
+        "struct Point { int x; float y; };",
+        "struct Point origin;",
+        "int table[3][4], n = 2, m[2] = {1, 2 + 3};",
+        "float f = .5;",
+        "int g(int a[], struct Point p, float b[][]) {",
+        "    int i, j = (int) 2.5 * (float) n, k[1] = {};",
+        "    string s = \"a\\\"b\";",
+        "    char c = 'x';",
+        "    for (int u = 0, v = 1; u < v; u = v++) { }",
+        "    for (i = 0; ; ) break;",
+        "    for (;;) { continue; }",
+        "    i = j ? k : n ? 1 : 2;",
+        "    i = a[0] += b[1] -= -(i) * !j % +k / ++i - --j;",
+        "    (i) = (j) = ((k));",
+        "    -i = 1;",
+        "    (g)(a, p, b);",
+        "    p.x = origin.y = table[i][j]++--;",
+        "    i = i || j && k == 1 != 2 < 3 > 4 <= 5 >= 6;",
+        "    if (i) if (j) i = 1; else j = 2;",
+        "    switch (i) { case 1: case 2: i++; break; default: ; }",
+        "    switch (i) { }",
+        "    while (i) i--;",
+        "    ;",
+        "    return;",
+        "}",
+        "void main() { return g(table[0], origin, m); }",
+        "");
+
+    /**
+     * 随机删改词法单元时可以插入的内容
+     */
+    private static final int[] MUTATIONS = {
+        GeminiCLexer.SEMICOLON, GeminiCLexer.LPAREN, GeminiCLexer.RPAREN, GeminiCLexer.LBRACE, GeminiCLexer.RBRACE,
+        GeminiCLexer.ASSIGN, GeminiCLexer.PLUS, GeminiCLexer.INT, GeminiCLexer.ID, GeminiCLexer.INT_LITERAL,
+        GeminiCLexer.QUESTION, GeminiCLexer.COLON, GeminiCLexer.COMMA, GeminiCLexer.ELSE, GeminiCLexer.CASE,
+        GeminiCLexer.LBRACKET, GeminiCLexer.RBRACKET, GeminiCLexer.DOT, GeminiCLexer.INCREMENT, GeminiCLexer.STRUCT,
+    };
+
+    @Test
+    public void testGeneratedProgramsAndExamples() throws IOException {
+        for (long seed = 0; seed < 10; seed++) {
+            ProgramGenerator generator = new ProgramGenerator();
+            generator.setSeed(seed);
+            generator.setFunctions(10);
+            generator.setMaxExpressionDepth((int) (seed % 6));
+            assertSameAst(lex(generator.generate()));
+        }
+        for (String name : new String[]{"example1.gc", "example2.gc", "example3.gc", "example4.gc",
+                "optimization_test.gc", "simple_test.gc", "error_test.gc"}) {
+            assertSameAst(lex(Files.readString(Paths.get("src/test/examples", name))));
+        }
+    }
+
+    @Test
+    public void testConstructsOutsideGeneratedPrograms() {
+        List<Token> tokens = lex(CONSTRUCTS);
+        assertTrue(antlrErrors(tokens).isEmpty(), antlrErrors(tokens).toString());
+        assertSameAst(tokens);
+        assertSameAst(lex(""));
+    }
+
+    @Test
+    public void testRejectsExactlyWhatTheGrammarRejects() {
+        for (String source : new String[]{"int main() { int a = ; }", "int f();", "int a = 1", "x = 1;",
+                "int main() { a + b = 1; }", "int main() { (int) a = 1; }", "int main() { -(int) a; }",
+                "int main() { a ? b : c = d; }", "struct S { int x; }", "int main() { switch (a) { default: case 1: } }",
+                "int main() { return 99999999999; }", "int main() {"}) {
+            List<Token> tokens = lex(source);
+            assertSameAst(tokens);
+        }
+
+        // 随机删除、替换或插入一个词法单元，包括合法与不合法的结果
+        Random random = new Random(7);
+        List<Token> original = lex(CONSTRUCTS);
+        for (int i = 0; i < 2000; i++) {
+            List<Token> mutated = new ArrayList<>(original);
+            int position = random.nextInt(mutated.size() - 1);
+            int kind = random.nextInt(3);
+            if (kind != 1) {
+                mutated.remove(position);
+            }
+            if (kind != 0) {
+                int type = MUTATIONS[random.nextInt(MUTATIONS.length)];
+                // 复制相邻的词法单元以保留其来源，错误恢复时 GeminiCParser 需要它
+                CommonToken token = new CommonToken(original.get(position));
+                token.setType(type);
+                token.setText(type == GeminiCLexer.ID ? "q" : type == GeminiCLexer.INT_LITERAL ? "7"
+                    : GeminiCLexer.VOCABULARY.getLiteralName(type).replace("'", ""));
+                mutated.add(position, token);
+            }
+            assertSameAst(mutated);
+        }
+    }
+
+    /**
+     * 语法正确时两者得到的 AST 逐字段相同；GeminiCParser 报告语法错误时 DirectASTParser 必须放弃
+     */
+    private static void assertSameAst(List<Token> tokens) {
+        List<String> errors = antlrErrors(tokens);
+        ASTNode expected = null;
+        RuntimeException expectedFailure = null;
+        if (errors.isEmpty()) {
+            try {
+                expected = new ASTBuilder().build(newParser(tokens, new ArrayList<>()).program());
+            } catch (NumberFormatException e) {
+                expectedFailure = e;
+            }
+        }
+        if (expected == null) {
+            String reason = expectedFailure != null ? expectedFailure.toString() : errors.toString();
+            assertThrows(ParseCancellationException.class, () -> new DirectASTParser(tokens).parseProgram(),
+                "GeminiCParser 拒绝了输入: " + reason);
+        } else {
+            ASTAssertions.assertSameTree(expected, new DirectASTParser(tokens).parseProgram());
+        }
+    }
+
+    private static List<String> antlrErrors(List<Token> tokens) {
+        List<String> errors = new ArrayList<>();
+        newParser(tokens, errors).program();
+        return errors;
+    }
+
+    private static GeminiCParser newParser(List<Token> tokens, List<String> errors) {
+        GeminiCParser parser = new GeminiCParser(new CommonTokenStream(new ListTokenSource(tokens)));
+        parser.removeErrorListeners();
+        parser.addErrorListener(new BaseErrorListener() {
+            @Override
+            public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+                                    int charPositionInLine, String msg, RecognitionException e) {
+                errors.add(line + ":" + charPositionInLine + " " + msg);
+            }
+        });
+        return parser;
+    }
+
+    private static List<Token> lex(String source) {
+        CommonTokenStream tokens = new CommonTokenStream(new GeminiCLexer(CharStreams.fromString(source)));
+        tokens.fill();
+        return new ArrayList<>(tokens.getTokens());
+    }
+}
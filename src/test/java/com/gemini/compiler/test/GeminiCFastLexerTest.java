@@ -0,0 +1,112 @@
+package com.gemini.compiler.test;
+
+import com.gemini.compiler.lexer.GeminiCFastLexer;
+import com.gemini.compiler.synthetic.ProgramGenerator;
+import com.gemini.grammar.GeminiCLexer;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 手写词法分析器与 GeminiCLexer 的逐词法单元对比测试
+ */
+public class GeminiCFastLexerTest {
+
+    /**
+     * 随机拼接的片段：覆盖每类词法单元的边界，以及 ANTLR 词法错误恢复的各种情况
+     */
+    private static final String[] FRAGMENTS = {
+        "int", "intx", "if", "for", "float", "struct", "default", "continue", "_a1", "Z", " ", "\t", "\n", "\r\n",
+        "0", "42", "1.", ".5", "3.14", ".", "..", "+", "++", "+=", "-", "--", "-=", "*", "*=", "/", "/=", "%", "%=",
+        "=", "==", "!", "!=", "<", "<=", ">", ">=", "&", "&&", "|", "||", ";", ",", ":", "?", "(", ")", "{", "}",
+        "[", "]", "'", "'a'", "'\\n'", "\"", "\"s\"", "\"a\\\"b\"", "\\", "//", "// 注释", "/*", "*/", "/* x */",
+        "@", "#", "$", "中", "😀", "'中'",
+    };
+
+    @Test
+    public void testExamplesAndGeneratedPrograms() throws IOException {
+        for (String name : new String[]{"example1.gc", "example2.gc", "example3.gc", "example4.gc",
+                "optimization_test.gc", "simple_test.gc", "error_test.gc"}) {
+            assertSameTokens(Files.readString(Paths.get("src/test/examples", name)));
+        }
+        for (long seed = 0; seed < 5; seed++) {
+            ProgramGenerator generator = new ProgramGenerator();
+            generator.setSeed(seed);
+            generator.setFunctions(20);
+            assertSameTokens(generator.generate());
+        }
+    }
+
+    @Test
+    public void testRandomInputIncludingLexicalErrors() {
+        Random random = new Random(2024);
+        for (int i = 0; i < 5000; i++) {
+            StringBuilder source = new StringBuilder();
+            int fragments = random.nextInt(12);
+            for (int j = 0; j < fragments; j++) {
+                source.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            }
+            assertSameTokens(source.toString());
+        }
+    }
+
+    @Test
+    public void testUnterminatedConstructs() {
+        for (String source : new String[]{"a /* b", "\"abc", "\"abc\nint", "\"a\\", "'", "'a", "'ab'", "&", "&x", "|\n|", ""}) {
+            assertSameTokens(source);
+        }
+    }
+
+    private static void assertSameTokens(String source) {
+        List<String> expectedErrors = new ArrayList<>();
+        GeminiCLexer expected = new GeminiCLexer(CharStreams.fromString(source));
+        expected.removeErrorListeners();
+        expected.addErrorListener(collector(expectedErrors));
+
+        List<String> actualErrors = new ArrayList<>();
+        GeminiCFastLexer actual = new GeminiCFastLexer(CharStreams.fromString(source));
+        actual.removeErrorListeners();
+        actual.addErrorListener(collector(actualErrors));
+
+        List<String> expectedTokens = describe(expected);
+        List<String> actualTokens = describe(actual);
+        assertEquals(expectedTokens, actualTokens, "输入: " + escape(source));
+        assertEquals(expectedErrors, actualErrors, "输入: " + escape(source));
+    }
+
+    private static List<String> describe(TokenSource lexer) {
+        List<String> tokens = new ArrayList<>();
+        Token token;
+        do {
+            token = lexer.nextToken();
+            tokens.add(token.getType() + " " + token.getStartIndex() + ":" + token.getStopIndex() + " @"
+                + token.getLine() + ":" + token.getCharPositionInLine() + " '" + escape(token.getText()) + "'");
+        } while (token.getType() != Token.EOF);
+        return tokens;
+    }
+
+    private static BaseErrorListener collector(List<String> errors) {
+        return new BaseErrorListener() {
+            @Override
+            public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+                                    int charPositionInLine, String msg, RecognitionException e) {
+                errors.add(line + ":" + charPositionInLine + " " + msg);
+            }
+        };
+    }
+
+    private static String escape(String text) {
+        return text.replace("\n", "\\n").replace("\r", "\\r").replace("\t", "\\t");
+    }
+}
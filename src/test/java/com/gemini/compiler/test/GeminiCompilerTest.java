@@ -1,5 +1,6 @@
 package com.gemini.compiler.test;
 
+import com.gemini.compiler.CompilationException;
 import com.gemini.compiler.GeminiCompiler;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
@@ -164,11 +165,13 @@ public class GeminiCompilerTest {
         Files.write(Paths.get(inputFile), "".getBytes());
         
         try {
-            // 测试空文件编译
-            compiler.compile(inputFile, outputFile);
-            
-            // 验证输出文件存在
-            assertTrue(Files.exists(Paths.get(outputFile)), "输出文件应该存在");
+            // 空文件没有 main 函数，语义分析只报告这一个错误，不生成输出文件
+            CompilationException e = assertThrows(CompilationException.class, () -> {
+                compiler.compile(inputFile, outputFile);
+            }, "空文件应该因缺少main函数而编译失败");
+            assertEquals(1, e.getDiagnostics().size(), e.getDiagnostics().toString());
+            assertTrue(e.getDiagnostics().get(0).contains("缺少main函数"), e.getDiagnostics().toString());
+            assertFalse(Files.exists(Paths.get(outputFile)), "编译失败时不应该生成输出文件");
             
         } finally {
             // 清理空文件
@@ -181,4 +181,70 @@ public class IRGeneratorTest {
         instruction.setLine(20);
         assertEquals(20, instruction.getLine(), "行号应该更新");
     }
+    
+    @Test
+    public void testFunctionIndex() {
+        // 测试函数索引的区间划分
+        irProgram.addInstruction(new TACInstruction(TACOpcode.ASSIGN, "1", null, "g"));
+        irProgram.addInstruction(new TACInstruction(TACOpcode.LABEL, null, null, "func_add1"));
+        irProgram.addInstruction(new TACInstruction(TACOpcode.ADD, "a", "b", "t1"));
+        irProgram.addInstruction(new TACInstruction(TACOpcode.LABEL, null, null, "L2"));
+        irProgram.addInstruction(new TACInstruction(TACOpcode.RETURN, "t1", null, null));
+        irProgram.addInstruction(new TACInstruction(TACOpcode.LABEL, null, null, "func_main3"));
+        irProgram.addInstruction(new TACInstruction(TACOpcode.RETURN, "0", null, null));
+        
+        FunctionIndex index = irProgram.buildFunctionIndex();
+        
+        assertEquals(1, index.getPrologueEnd(), "全局代码应该只有一条指令");
+        assertEquals(2, index.getFunctionCount(), "应该有两个函数");
+        assertEquals("add1", index.getFunction(0).getFunctionName(), "函数名应该去掉前缀");
+        assertEquals(1, index.getFunction(0).getStart(), "第一个函数起始位置应该匹配");
+        assertEquals(5, index.getFunction(0).getEnd(), "第一个函数结束位置应该匹配");
+        assertEquals(5, index.getFunction(1).getStart(), "第二个函数起始位置应该匹配");
+        assertEquals(7, index.getFunction(1).getEnd(), "第二个函数应该延伸到末尾");
+    }
+    
+    @Test
+    public void testOperandInterning() {
+        // 测试操作数分类与驻留
+        TACInstruction add = new TACInstruction(TACOpcode.ADD, "x", "42", "t1");
+        TACInstruction use = new TACInstruction(TACOpcode.MUL, "t1", "x", "t2");
+        TACInstruction jump = new TACInstruction(TACOpcode.GOTO, null, null, "x");
+        
+        assertSame(add.getArg1Operand(), use.getArg2Operand(), "同名变量应该是同一个操作数");
+        assertSame(add.getResultOperand(), use.getArg1Operand(), "临时变量应该被驻留");
+        assertTrue(add.getArg2Operand().isImmediate(), "整数应该是立即数");
+        assertEquals(42, add.getArg2Operand().getValue(), "立即数应该保存整数值");
+        assertTrue(jump.getResultOperand().isLabel(), "跳转目标应该是标签");
+        assertNotSame(add.getArg1Operand(), jump.getResultOperand(), "标签与变量应该处于不同命名空间");
+        assertEquals("x", jump.getResult(), "字符串视图应该保持不变");
+        assertFalse(Operand.of("3.14").isImmediate(), "浮点数不是整数立即数");
+        assertTrue(Operand.of("2147483648").isNumeric(), "超出范围的整数仍是数字文本");
+    }
+    
+    @Test
+    public void testColumnarInstructionList() {
+        // 测试列式存储的读写与插入删除
+        ColumnarInstructionList columns = new ColumnarInstructionList(1);
+        TACInstruction add = new TACInstruction(TACOpcode.ADD, "a", "1", "t1", 7);
+        add.setResultType("int");
+        columns.add(add);
+        columns.add(new TACInstruction(TACOpcode.GOTO, null, null, "L1"));
+        columns.add(1, new TACInstruction(TACOpcode.LABEL, null, null, "L0"));
+        
+        assertEquals(3, columns.size(), "应该有三条指令");
+        assertEquals(TACOpcode.LABEL, columns.opcodeAt(1), "插入位置应该正确");
+        assertEquals(add.toString(), columns.get(0).toString(), "指令内容应该保持不变");
+        assertEquals(7, columns.lineAt(0), "行号应该保留");
+        assertEquals("int", columns.get(0).getResultType(), "结果类型应该保留");
+        assertSame(add.getArg2Operand(), columns.arg2At(0), "操作数应该按 id 取回同一对象");
+        assertTrue(columns.resultAt(2).isLabel(), "跳转目标应该保持标签类型");
+        
+        columns.remove(1);
+        assertEquals(TACOpcode.GOTO, columns.opcodeAt(1), "删除后应该前移");
+        
+        IRProgram program = IRProgram.columnar();
+        program.addInstruction(add);
+        assertTrue(program.isColumnar() && program.createEmpty().isColumnar(), "空程序应该沿用列式存储");
+    }
 }
@@ -0,0 +1,207 @@
+package com.gemini.compiler.test;
+
+import com.gemini.compiler.ast.ASTBuilder;
+import com.gemini.compiler.ast.ASTNode;
+import com.gemini.compiler.parser.IncrementalParser;
+import com.gemini.compiler.parser.ParallelDeclarationParser;
+import com.gemini.compiler.synthetic.ProgramGenerator;
+import com.gemini.grammar.GeminiCLexer;
+import com.gemini.grammar.GeminiCParser;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 增量解析与整体解析的一致性测试：每次修改之后的 AST 与重新整体解析的结果逐字段相同
+ */
+public class IncrementalParserTest {
+
+    /**
+     * 随机插入的片段，多数会造成语法错误
+     */
+    private static final String[] FRAGMENTS = {
+        ";", "{", "}", "(", ")", "x", "1", "\n", " ", "/*", "*/", "//", "\"", "int ", "+", "=",
+    };
+
+    @Test
+    public void testEditInsideFunctionReparsesOneDeclaration() {
+        String source = "int a = 1;\n"
+            + "int f(int n) {\n    return n + 1;\n}\n"
+            + "struct P { int x; };\n"
+            + "int main() {\n    return f(a);\n}\n";
+        IncrementalParser parser = new IncrementalParser(1, true);
+        assertUpdate(parser, source);
+        assertEquals(4, parser.getReparsedDeclarations());
+
+        // 函数体内的修改只重新解析这个函数，之后的声明平移行号
+        String edited = source.replace("return n + 1;", "int m = n;\n    return m + 2;");
+        assertUpdate(parser, edited);
+        assertEquals(1, parser.getReparsedDeclarations());
+
+        // 声明之间的空白和注释不属于任何声明
+        String comment = edited.replace("struct P", "/* 注释 */\n\nstruct P");
+        assertUpdate(parser, comment);
+        assertEquals(0, parser.getReparsedDeclarations());
+
+        // 同一行中修改之后的声明列号改变，需要重新解析
+        assertUpdate(parser, comment.replace("int a = 1;\n", "int a = 12; int b;\n"));
+        assertEquals(2, parser.getReparsedDeclarations());
+
+        // 有语法错误时保留上一次的结果，之后的修改仍与它比较
+        assertThrows(ParseCancellationException.class, () -> parser.update(source.replace("return f(a);", "return f(a;")));
+        assertUpdate(parser, source);
+        assertUpdate(parser, "");
+        assertUpdate(parser, "  // 只有注释\n");
+        assertUpdate(parser, source);
+    }
+
+    @Test
+    public void testRandomEditsMatchFullParse() throws IOException {
+        List<String> sources = new ArrayList<>();
+        for (long seed = 0; seed < 3; seed++) {
+            ProgramGenerator generator = new ProgramGenerator();
+            generator.setSeed(seed);
+            generator.setFunctions(15);
+            generator.setMaxExpressionDepth((int) (seed % 6));
+            sources.add(generator.generate());
+        }
+        sources.add(Files.readString(Paths.get("src/test/examples", "example3.gc")));
+        // 码点下标与 UTF-16 下标不同的源文件
+        sources.add("// 😀😀\nint s = 1; /* 😀 */ int t;\nint main() { string u = \"😀\"; return s; }\n");
+
+        Random random = new Random(11);
+        for (String original : sources) {
+            for (boolean direct : new boolean[]{false, true}) {
+                IncrementalParser parser = new IncrementalParser(direct ? 1 : 2, direct);
+                String source = original;
+                assertUpdate(parser, source);
+                for (int i = 0; i < 150; i++) {
+                    String edited = edit(source, random);
+                    if (assertUpdate(parser, edited)) {
+                        source = edited;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 随机修改：改写整数字面量、在声明前插入换行、注释或新函数、删除一个声明，或在任意位置插入片段
+     */
+    private static String edit(String source, Random random) {
+        List<Token> tokens = lex(source);
+        int[] bounds = ParallelDeclarationParser.splitDeclarations(tokens);
+        switch (random.nextInt(5)) {
+            case 0: {
+                List<Token> literals = new ArrayList<>();
+                for (Token token : tokens) {
+                    if (token.getType() == GeminiCLexer.INT_LITERAL) {
+                        literals.add(token);
+                    }
+                }
+                if (literals.isEmpty()) {
+                    break;
+                }
+                Token literal = literals.get(random.nextInt(literals.size()));
+                return replace(source, literal, String.valueOf(random.nextInt(1000)));
+            }
+            case 1:
+            case 2: {
+                Token declaration = tokens.get(bounds[random.nextInt(bounds.length)]);
+                String[] inserts = {"\n", "\n\n", "/* c */", "// c\n",
+                    "int extra" + random.nextInt(100) + "(int a) {\n    return a;\n}\n"};
+                return insert(source, declaration, inserts[random.nextInt(inserts.length)]);
+            }
+            case 3: {
+                if (bounds.length < 3) {
+                    break;
+                }
+                int index = random.nextInt(bounds.length - 2);
+                int from = offset(source, tokens.get(bounds[index]).getStartIndex());
+                int to = offset(source, tokens.get(bounds[index + 1]).getStartIndex());
+                return source.substring(0, from) + source.substring(to);
+            }
+            default:
+                break;
+        }
+        int position = offset(source, random.nextInt(tokens.get(tokens.size() - 1).getStartIndex() + 1));
+        return source.substring(0, position) + FRAGMENTS[random.nextInt(FRAGMENTS.length)] + source.substring(position);
+    }
+
+    /**
+     * 整体解析成功时增量解析的结果必须与之相同，否则增量解析必须放弃；返回整体解析是否成功
+     */
+    private static boolean assertUpdate(IncrementalParser parser, String source) {
+        ASTNode expected = parseAll(source);
+        if (expected == null) {
+            assertThrows(ParseCancellationException.class, () -> parser.update(source));
+            return false;
+        }
+        ASTAssertions.assertSameTree(expected, parser.update(source));
+        return true;
+    }
+
+    private static ASTNode parseAll(String source) {
+        List<String> errors = new ArrayList<>();
+        BaseErrorListener listener = new BaseErrorListener() {
+            @Override
+            public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+                                    int charPositionInLine, String msg, RecognitionException e) {
+                errors.add(msg);
+            }
+        };
+        GeminiCLexer lexer = new GeminiCLexer(CharStreams.fromString(source));
+        lexer.removeErrorListeners();
+        lexer.addErrorListener(listener);
+        GeminiCParser parser = new GeminiCParser(new CommonTokenStream(lexer));
+        parser.removeErrorListeners();
+        parser.addErrorListener(listener);
+        GeminiCParser.ProgramContext program = parser.program();
+        if (!errors.isEmpty()) {
+            return null;
+        }
+        try {
+            return new ASTBuilder().build(program);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String replace(String source, Token token, String text) {
+        int from = offset(source, token.getStartIndex());
+        int to = offset(source, token.getStopIndex() + 1);
+        return source.substring(0, from) + text + source.substring(to);
+    }
+
+    private static String insert(String source, Token token, String text) {
+        int position = offset(source, token.getStartIndex());
+        return source.substring(0, position) + text + source.substring(position);
+    }
+
+    /**
+     * 码点下标转为 String 下标
+     */
+    private static int offset(String source, int codePoints) {
+        return source.offsetByCodePoints(0, codePoints);
+    }
+
+    private static List<Token> lex(String source) {
+        GeminiCLexer lexer = new GeminiCLexer(CharStreams.fromString(source));
+        lexer.removeErrorListeners();
+        CommonTokenStream tokens = new CommonTokenStream(lexer);
+        tokens.fill();
+        return tokens.getTokens();
+    }
+}
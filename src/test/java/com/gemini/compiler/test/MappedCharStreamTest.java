@@ -0,0 +1,96 @@
+package com.gemini.compiler.test;
+
+import com.gemini.compiler.lexer.MappedCharStream;
+import com.gemini.grammar.GeminiCLexer;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Random;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.misc.Interval;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 内存映射字符流与 CharStreams.fromString 的一致性测试
+ */
+public class MappedCharStreamTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testExamplesLexIdentically() throws IOException {
+        for (String name : new String[]{"example1.gc", "example2.gc", "example3.gc", "example4.gc",
+                "optimization_test.gc", "simple_test.gc", "error_test.gc"}) {
+            Path file = Paths.get("src/test/examples", name);
+            assertSameTokens(CharStreams.fromString(Files.readString(file)), MappedCharStream.open(file));
+        }
+    }
+
+    @Test
+    public void testMultiByteCharacters() throws IOException {
+        // 两字节、三字节和四字节字符，位于开头、中间和结尾
+        String source = "é// 注释：计算和 😀\nint main() {\n    char c = 'a'; /* ✓ 多行\n 注释 */\n    return 0;\n}\n// 结尾😀";
+        Path file = tempDir.resolve("utf8.gc");
+        Files.writeString(file, source);
+
+        CharStream expected = CharStreams.fromString(source);
+        MappedCharStream actual = MappedCharStream.open(file);
+        assertEquals(expected.size(), actual.size());
+        assertEquals(source, actual.toString());
+
+        Random random = new Random(1);
+        for (int i = 0; i < 500; i++) {
+            int a = random.nextInt(expected.size() + 2);
+            int b = a + random.nextInt(20) - 1;
+            assertEquals(expected.getText(Interval.of(a, b)), actual.getText(Interval.of(a, b)), a + ".." + b);
+
+            int index = random.nextInt(expected.size() + 1);
+            expected.seek(index);
+            actual.seek(index);
+            for (int k : new int[]{-2, -1, 0, 1, 2, 3}) {
+                assertEquals(expected.LA(k), actual.LA(k), "LA(" + k + ") @" + index);
+            }
+        }
+        assertSameTokens(CharStreams.fromString(source), MappedCharStream.open(file));
+    }
+
+    @Test
+    public void testEmptyAndInvalidFiles() throws IOException {
+        Path empty = tempDir.resolve("empty.gc");
+        Files.write(empty, new byte[0]);
+        MappedCharStream stream = MappedCharStream.open(empty);
+        assertEquals(0, stream.size());
+        assertEquals(IntStream.EOF, stream.LA(1));
+        assertEquals("", stream.toString());
+
+        Path invalid = tempDir.resolve("invalid.gc");
+        Files.write(invalid, "int a; // é".getBytes(StandardCharsets.ISO_8859_1));
+        assertThrows(IOException.class, () -> MappedCharStream.open(invalid));
+    }
+
+    private static void assertSameTokens(CharStream expected, CharStream actual) {
+        List<? extends Token> expectedTokens = new GeminiCLexer(expected).getAllTokens();
+        List<? extends Token> actualTokens = new GeminiCLexer(actual).getAllTokens();
+        assertEquals(expectedTokens.size(), actualTokens.size());
+        for (int i = 0; i < expectedTokens.size(); i++) {
+            Token e = expectedTokens.get(i);
+            Token a = actualTokens.get(i);
+            String where = "词法单元 " + i + ": " + e;
+            assertEquals(e.getType(), a.getType(), where);
+            assertEquals(e.getText(), a.getText(), where);
+            assertEquals(e.getLine(), a.getLine(), where);
+            assertEquals(e.getCharPositionInLine(), a.getCharPositionInLine(), where);
+            assertEquals(e.getStartIndex(), a.getStartIndex(), where);
+            assertEquals(e.getStopIndex(), a.getStopIndex(), where);
+        }
+    }
+}
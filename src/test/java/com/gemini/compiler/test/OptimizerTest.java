@@ -1,7 +1,14 @@
 package com.gemini.compiler.test;
 
+import com.gemini.compiler.codegen.CodeGenerator;
 import com.gemini.compiler.ir.*;
+import com.gemini.compiler.optimizer.GlobalValueNumberingPass;
 import com.gemini.compiler.optimizer.IROptimizer;
+import com.gemini.compiler.optimizer.LoopInvariantHoistPass;
+import com.gemini.compiler.optimizer.Mem2RegPass;
+import com.gemini.compiler.optimizer.OptimizationLevel;
+import com.gemini.compiler.optimizer.PassTimingReport;
+import java.util.List;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -114,5 +121,295 @@ public class OptimizerTest {
         // 如果优化被禁用，应该返回原始程序
         assertEquals(program.getInstructions().size(), optimized.getInstructions().size());
     }
-}
+    
+    @Test
+    public void testParallelOptimizationMatchesSerial() {
+        // 测试按函数并行优化的结果与串行一致
+        IRProgram program = new IRProgram();
+        program.addInstruction(new TACInstruction(TACOpcode.ASSIGN, "1", null, "g"));
+        for (int f = 0; f < 20; f++) {
+            program.addInstruction(new TACInstruction(TACOpcode.LABEL, null, null, "func_f" + f));
+            program.addInstruction(new TACInstruction(TACOpcode.ADD, "2", "3", "t1"));
+            program.addInstruction(new TACInstruction(TACOpcode.MUL, "x", "y", "t2"));
+            program.addInstruction(new TACInstruction(TACOpcode.MUL, "x", "y", "t3"));
+            program.addInstruction(new TACInstruction(TACOpcode.ADD, "t2", "t3", "g"));
+            program.addInstruction(new TACInstruction(TACOpcode.RETURN, "t1", null, null));
+        }
+        
+        IRProgram serial = new IROptimizer(true).optimize(program);
+        
+        IROptimizer parallelOptimizer = new IROptimizer(true);
+        parallelOptimizer.setParallelism(4);
+        IRProgram parallel = parallelOptimizer.optimize(program);
+        
+        assertEquals(serial.toString(), parallel.toString(), "并行优化结果应该与串行一致");
+        
+        // 函数内对全局变量的写入不能被当作死代码删除
+        long globalWrites = parallel.getInstructions().stream()
+            .filter(instr -> "g".equals(instr.getResult()))
+            .count();
+        assertEquals(21, globalWrites, "全局变量的赋值应该全部保留");
+    }
+    
+    @Test
+    public void testLoopCarriedValuesSurvive() {
+        // 测试跨回边活跃的变量不会被死代码消除，且循环变量不会被当作常量
+        IRProgram program = new IRProgram();
+        program.addInstruction(new TACInstruction(TACOpcode.LABEL, null, null, "func_loop1"));
+        program.addInstruction(new TACInstruction(TACOpcode.ASSIGN, "0", null, "i"));
+        program.addInstruction(new TACInstruction(TACOpcode.LABEL, null, null, "L1"));
+        program.addInstruction(new TACInstruction(TACOpcode.LT, "i", "10", "t1"));
+        program.addInstruction(new TACInstruction(TACOpcode.IF_ZERO, "t1", null, "L2"));
+        program.addInstruction(new TACInstruction(TACOpcode.ADD, "i", "1", "t2"));
+        program.addInstruction(new TACInstruction(TACOpcode.ASSIGN, "t2", null, "i"));
+        program.addInstruction(new TACInstruction(TACOpcode.GOTO, null, null, "L1"));
+        program.addInstruction(new TACInstruction(TACOpcode.LABEL, null, null, "L2"));
+        program.addInstruction(new TACInstruction(TACOpcode.RETURN, "0", null, null));
+        
+        IRProgram optimized = new IROptimizer(true).optimize(program);
+        
+        boolean incrementKept = optimized.getInstructions().stream()
+            .anyMatch(instr -> instr.getOpcode() == TACOpcode.ADD && "i".equals(instr.getArg1()));
+        boolean conditionKept = optimized.getInstructions().stream()
+            .anyMatch(instr -> instr.getOpcode() == TACOpcode.LT && "i".equals(instr.getArg1()));
+        assertTrue(incrementKept, "循环中的自增在回边上活跃，不应该被删除");
+        assertTrue(conditionKept, "循环条件不应该被折叠为常量");
+        assertFalse(optimized.getBasicBlocks().isEmpty(), "优化后应该建立基本块");
+        assertTrue(optimized.getBasicBlocks().get("L1").getPredecessors().contains("func_loop1_bb2"),
+            "循环头应该以回边块为前驱");
+    }
+    
+    @Test
+    public void testConstantPropagationAcrossBlocks() {
+        // 测试常量沿所有前驱一致到达时跨基本块传播
+        IRProgram program = new IRProgram();
+        program.addInstruction(new TACInstruction(TACOpcode.LABEL, null, null, "func_f1"));
+        program.addInstruction(new TACInstruction(TACOpcode.ASSIGN, "4", null, "k"));
+        program.addInstruction(new TACInstruction(TACOpcode.IF_ZERO, "p", null, "L1"));
+        program.addInstruction(new TACInstruction(TACOpcode.ASSIGN, "1", null, "q"));
+        program.addInstruction(new TACInstruction(TACOpcode.LABEL, null, null, "L1"));
+        program.addInstruction(new TACInstruction(TACOpcode.MUL, "k", "2", "t1"));
+        program.addInstruction(new TACInstruction(TACOpcode.RETURN, "t1", null, null));
+        
+        IRProgram optimized = new IROptimizer(true).optimize(program);
+        
+        boolean folded = optimized.getInstructions().stream()
+            .anyMatch(instr -> instr.getOpcode() == TACOpcode.ASSIGN && "8".equals(instr.getArg1()));
+        assertTrue(folded, "合流点之后的 k * 2 应该折叠为 8");
+    }
+    
+    @Test
+    public void testConditionalConstantPropagationPrunesBranches() {
+        // 测试条件常量传播：不可执行块中的赋值不影响汇合点，恒定分支被删除
+        IRProgram program = new IRProgram();
+        program.addInstruction(new TACInstruction(TACOpcode.LABEL, null, null, "func_f1"));
+        program.addInstruction(new TACInstruction(TACOpcode.ASSIGN, "0", null, "flag"));
+        program.addInstruction(new TACInstruction(TACOpcode.ASSIGN, "0", null, "i"));
+        program.addInstruction(new TACInstruction(TACOpcode.LABEL, null, null, "L1"));
+        program.addInstruction(new TACInstruction(TACOpcode.LT, "i", "10", "t1"));
+        program.addInstruction(new TACInstruction(TACOpcode.IF_ZERO, "t1", null, "L3"));
+        program.addInstruction(new TACInstruction(TACOpcode.IF_NONZERO, "flag", null, "L2"));
+        program.addInstruction(new TACInstruction(TACOpcode.ADD, "i", "1", "t2"));
+        program.addInstruction(new TACInstruction(TACOpcode.ASSIGN, "t2", null, "i"));
+        program.addInstruction(new TACInstruction(TACOpcode.GOTO, null, null, "L1"));
+        program.addInstruction(new TACInstruction(TACOpcode.LABEL, null, null, "L2"));
+        program.addInstruction(new TACInstruction(TACOpcode.CALL, "abort", "0", "t3"));
+        program.addInstruction(new TACInstruction(TACOpcode.ASSIGN, "1", null, "flag"));
+        program.addInstruction(new TACInstruction(TACOpcode.GOTO, null, null, "L1"));
+        program.addInstruction(new TACInstruction(TACOpcode.LABEL, null, null, "L3"));
+        program.addInstruction(new TACInstruction(TACOpcode.RETURN, "i", null, null));
+        
+        IRProgram basic = new IROptimizer(true).optimize(program);
+        IROptimizer sccp = new IROptimizer(true);
+        sccp.setOptimizationLevel(OptimizationLevel.O3);
+        IRProgram pruned = sccp.optimize(program);
+        
+        assertTrue(basic.getInstructions().stream().anyMatch(instr -> instr.getOpcode() == TACOpcode.CALL),
+            "普通常量传播无法证明 flag 恒为 0");
+        assertFalse(pruned.getInstructions().stream().anyMatch(instr -> instr.getOpcode() == TACOpcode.CALL),
+            "条件常量传播应该删除不可执行的分支");
+        assertTrue(pruned.getInstructions().stream().anyMatch(instr -> instr.getOpcode() == TACOpcode.LT),
+            "循环条件不是常量，应该保留");
+    }
+
+    @Test
+    public void testSsaPromotesMultiBlockLocals() {
+        // 测试 SSA：跨越循环和分支的局部变量被提升，退出 SSA 后恢复原名且不留 φ
+        IRProgram program = new IRProgram();
+        program.addInstruction(new TACInstruction(TACOpcode.LABEL, null, null, "func_f1"));
+        program.addInstruction(new TACInstruction(TACOpcode.ALLOC, "4", null, "x"));
+        program.addInstruction(new TACInstruction(TACOpcode.STORE, "0", null, "x"));
+        program.addInstruction(new TACInstruction(TACOpcode.ALLOC, "4", null, "i"));
+        program.addInstruction(new TACInstruction(TACOpcode.STORE, "0", null, "i"));
+        program.addInstruction(new TACInstruction(TACOpcode.LABEL, null, null, "L1"));
+        program.addInstruction(new TACInstruction(TACOpcode.LOAD, "i", null, "t0"));
+        program.addInstruction(new TACInstruction(TACOpcode.LT, "t0", "n", "t1"));
+        program.addInstruction(new TACInstruction(TACOpcode.IF_ZERO, "t1", null, "L3"));
+        program.addInstruction(new TACInstruction(TACOpcode.IF_ZERO, "c", null, "L2"));
+        program.addInstruction(new TACInstruction(TACOpcode.ADD, "x", "i", "t2"));
+        program.addInstruction(new TACInstruction(TACOpcode.STORE, "t2", null, "x"));
+        program.addInstruction(new TACInstruction(TACOpcode.LABEL, null, null, "L2"));
+        program.addInstruction(new TACInstruction(TACOpcode.INCREMENT, "i", null, "i"));
+        program.addInstruction(new TACInstruction(TACOpcode.GOTO, null, null, "L1"));
+        program.addInstruction(new TACInstruction(TACOpcode.LABEL, null, null, "L3"));
+        program.addInstruction(new TACInstruction(TACOpcode.RETURN, "x", null, null));
+        
+        List<TACInstruction> ssa = new Mem2RegPass().run(program.getInstructions());
+        assertTrue(ssa.stream().anyMatch(instr -> instr.getOpcode() == TACOpcode.PHI),
+            "循环头和分支汇合点应该插入 φ 指令");
+        assertFalse(ssa.stream().anyMatch(instr -> instr.getOpcode() == TACOpcode.ALLOC
+                || instr.getOpcode() == TACOpcode.LOAD || instr.getOpcode() == TACOpcode.STORE),
+            "标量局部变量应该全部提升为寄存器");
+        
+        IRProgram optimized = new IROptimizer(true).optimize(program);
+        for (TACInstruction instr : optimized.getInstructions()) {
+            assertNotEquals(TACOpcode.PHI, instr.getOpcode(), "代码生成前不应残留 φ 指令");
+            assertNotEquals(TACOpcode.ALLOC, instr.getOpcode(), "提升后的变量不需要分配栈空间");
+        }
+        TACInstruction ret = optimized.getInstructions().get(optimized.getInstructions().size() - 1);
+        assertEquals(TACOpcode.RETURN, ret.getOpcode());
+        assertEquals("x", ret.getArg1(), "合并版本后应该恢复原变量名");
+    }
 
+    @Test
+    public void testLoopInvariantCodeMotion() {
+        // 测试循环不变式外提：不变的算术和成员读取移到循环之前，随迭代变化的计算留在循环内
+        IRProgram program = new IRProgram();
+        program.addInstruction(new TACInstruction(TACOpcode.LABEL, null, null, "func_f1"));
+        program.addInstruction(new TACInstruction(TACOpcode.ASSIGN, "0", null, "s"));
+        program.addInstruction(new TACInstruction(TACOpcode.ASSIGN, "0", null, "i"));
+        program.addInstruction(new TACInstruction(TACOpcode.LABEL, null, null, "L1"));
+        program.addInstruction(new TACInstruction(TACOpcode.LT, "i", "n", "t1"));
+        program.addInstruction(new TACInstruction(TACOpcode.IF_ZERO, "t1", null, "L2"));
+        program.addInstruction(new TACInstruction(TACOpcode.MUL, "a", "b", "t2"));
+        program.addInstruction(new TACInstruction(TACOpcode.ADD, "t2", "1", "t3"));
+        program.addInstruction(new TACInstruction(TACOpcode.MEMBER_ACCESS, "p", "x", "t4"));
+        program.addInstruction(new TACInstruction(TACOpcode.ADD, "s", "t3", "t5"));
+        program.addInstruction(new TACInstruction(TACOpcode.ADD, "t5", "t4", "s"));
+        program.addInstruction(new TACInstruction(TACOpcode.INCREMENT, null, null, "i"));
+        program.addInstruction(new TACInstruction(TACOpcode.GOTO, null, null, "L1"));
+        program.addInstruction(new TACInstruction(TACOpcode.LABEL, null, null, "L2"));
+        program.addInstruction(new TACInstruction(TACOpcode.RETURN, "s", null, null));
+        
+        LoopInvariantHoistPass pass = new LoopInvariantHoistPass();
+        List<TACInstruction> hoisted = pass.run(program.getInstructions());
+        
+        int header = -1;
+        for (int i = 0; i < hoisted.size(); i++) {
+            if (hoisted.get(i).getOpcode() == TACOpcode.LABEL && "L1".equals(hoisted.get(i).getResult())) {
+                header = i;
+            }
+        }
+        assertTrue(header > 0, "循环头应该保留");
+        for (String invariant : new String[] {"t2", "t3", "t4"}) {
+            int position = indexOfResult(hoisted, invariant);
+            assertTrue(position >= 0 && position < header, invariant + " 应该外提到循环之前");
+        }
+        assertTrue(indexOfResult(hoisted, "t5") > header, "依赖 s 的加法随迭代变化，不能外提");
+        assertEquals(Integer.valueOf(3), pass.getHoistedCounts().get("L1"), "应该报告循环 L1 外提的指令数");
+    }
+    
+    private static int indexOfResult(List<TACInstruction> instructions, String result) {
+        for (int i = 0; i < instructions.size(); i++) {
+            if (result.equals(instructions.get(i).getResult())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Test
+    public void testGlobalValueNumberingAcrossBlocks() {
+        // 测试全局值编号：支配块中的 a + b 可供 b + a 复用，读取在没有写入时可复用，写入之后必须重新读取
+        IRProgram program = new IRProgram();
+        program.addInstruction(new TACInstruction(TACOpcode.LABEL, null, null, "func_f1"));
+        program.addInstruction(new TACInstruction(TACOpcode.ADD, "a", "b", "t1"));
+        program.addInstruction(new TACInstruction(TACOpcode.ARRAY_ACCESS, "arr", "i", "t2"));
+        program.addInstruction(new TACInstruction(TACOpcode.IF_ZERO, "c", null, "L1"));
+        program.addInstruction(new TACInstruction(TACOpcode.ASSIGN, "b", null, "d"));
+        program.addInstruction(new TACInstruction(TACOpcode.ADD, "d", "a", "t3"));
+        program.addInstruction(new TACInstruction(TACOpcode.ARRAY_ACCESS, "arr", "i", "t4"));
+        program.addInstruction(new TACInstruction(TACOpcode.ARRAY_ASSIGN, "arr", "j", "t3"));
+        program.addInstruction(new TACInstruction(TACOpcode.ARRAY_ACCESS, "arr", "i", "t5"));
+        program.addInstruction(new TACInstruction(TACOpcode.LABEL, null, null, "L1"));
+        program.addInstruction(new TACInstruction(TACOpcode.GT, "b", "a", "t6"));
+        program.addInstruction(new TACInstruction(TACOpcode.LT, "a", "b", "t7"));
+        program.addInstruction(new TACInstruction(TACOpcode.RETURN, "t7", null, null));
+        
+        List<TACInstruction> numbered = new GlobalValueNumberingPass().run(program.getInstructions());
+        
+        assertCopyOf(numbered, "t3", "t1");
+        assertCopyOf(numbered, "t4", "t2");
+        assertCopyOf(numbered, "t7", "t6");
+        assertEquals(TACOpcode.ARRAY_ACCESS, numbered.get(indexOfResult(numbered, "t5")).getOpcode(),
+            "数组写入之后的读取不能复用之前的值");
+    }
+    
+    @Test
+    public void testOptimizationLevels() {
+        // 测试优化级别：-O0 原样返回，-O1 只折叠常量不进入 SSA，生成的头部注明实际运行的级别
+        IRProgram program = new IRProgram();
+        program.addInstruction(new TACInstruction(TACOpcode.LABEL, null, null, "func_f1"));
+        program.addInstruction(new TACInstruction(TACOpcode.ALLOC, "4", null, "x"));
+        program.addInstruction(new TACInstruction(TACOpcode.STORE, "2", null, "x"));
+        program.addInstruction(new TACInstruction(TACOpcode.MUL, "3", "4", "t1"));
+        program.addInstruction(new TACInstruction(TACOpcode.ADD, "t1", "x", "t2"));
+        program.addInstruction(new TACInstruction(TACOpcode.RETURN, "t2", null, null));
+        
+        IROptimizer none = new IROptimizer(true);
+        none.setOptimizationLevel(OptimizationLevel.O0);
+        assertSame(program, none.optimize(program), "-O0 不应该运行任何 Pass");
+        
+        IROptimizer cheap = new IROptimizer(true);
+        cheap.setOptimizationLevel(OptimizationLevel.O1);
+        IRProgram folded = cheap.optimize(program);
+        TACInstruction product = folded.getInstructions().get(indexOfResult(folded.getInstructions(), "t1"));
+        assertEquals(TACOpcode.ASSIGN, product.getOpcode());
+        assertEquals("12", product.getArg1());
+        assertTrue(folded.getInstructions().stream().anyMatch(instr -> instr.getOpcode() == TACOpcode.ALLOC),
+            "-O1 不做 SSA 提升，局部变量的分配应该保留");
+        
+        IROptimizer aggressive = new IROptimizer(true);
+        aggressive.setOptimizationLevel(OptimizationLevel.parse("-O3"));
+        IRProgram optimized = aggressive.optimize(program);
+        assertFalse(optimized.getInstructions().stream().anyMatch(instr -> instr.getOpcode() == TACOpcode.PHI));
+        
+        assertTrue(new CodeGenerator().generate(program).contains("; 优化级别: -O0"));
+        assertTrue(new CodeGenerator().generate(folded).contains("; 优化级别: -O1"));
+        assertTrue(new CodeGenerator().generate(optimized).contains("; 优化级别: -O3"));
+    }
+    
+    @Test
+    public void testPassTimingReport() {
+        // 测试 --time-passes：每个 Pass 一行，记录运行次数与进出指令数，可导出 JSON
+        IRProgram program = new IRProgram();
+        program.addInstruction(new TACInstruction(TACOpcode.LABEL, null, null, "func_f1"));
+        program.addInstruction(new TACInstruction(TACOpcode.MUL, "a", "b", "t1"));
+        program.addInstruction(new TACInstruction(TACOpcode.ADD, "a", "b", "t2"));
+        program.addInstruction(new TACInstruction(TACOpcode.RETURN, "t2", null, null));
+        
+        IROptimizer optimizer = new IROptimizer(true);
+        optimizer.setOptimizationLevel(OptimizationLevel.O1);
+        optimizer.setTimePasses(true);
+        optimizer.optimize(program);
+        
+        PassTimingReport report = optimizer.getPassTimingReport();
+        List<PassTimingReport.Entry> entries = report.getEntries();
+        assertEquals(2, entries.size());
+        assertEquals("ConstantPropagationPass", entries.get(0).getName());
+        assertEquals(1, entries.get(0).getRuns());
+        assertEquals(4, entries.get(0).getInstructionsIn());
+        PassTimingReport.Entry dce = entries.get(1);
+        assertEquals("DeadCodeEliminationPass", dce.getName());
+        assertTrue(dce.getInstructionsOut() < dce.getInstructionsIn(), "t1 未被使用，应该被删除");
+        assertEquals(2, report.getTotal().getRuns());
+        assertTrue(report.toTable().contains("DeadCodeEliminationPass"));
+        assertTrue(report.toJson().contains("\"name\": \"ConstantPropagationPass\""));
+    }
+    
+    private static void assertCopyOf(List<TACInstruction> instructions, String result, String source) {
+        TACInstruction instruction = instructions.get(indexOfResult(instructions, result));
+        assertEquals(TACOpcode.ASSIGN, instruction.getOpcode(), result + " 应该改写为复制");
+        assertEquals(source, instruction.getArg1(), result + " 应该复用 " + source);
+    }
+}
@@ -0,0 +1,95 @@
+package com.gemini.compiler.test;
+
+import com.gemini.compiler.ast.ASTBuilder;
+import com.gemini.compiler.ast.ASTNode;
+import com.gemini.compiler.parser.ParallelDeclarationParser;
+import com.gemini.compiler.synthetic.ProgramGenerator;
+import com.gemini.grammar.GeminiCLexer;
+import com.gemini.grammar.GeminiCParser;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 按顶层声明并行解析与整体解析的一致性测试
+ */
+public class ParallelDeclarationParserTest {
+
+    @Test
+    public void testSplitAtTopLevelBoundaries() {
+        List<Token> tokens = lex("struct P { int x; };\n"
+            + "int a[2] = {1, 2}, b;\n"
+            + "int f(int n) { if (n) { return 1; } return 0; }\n"
+            + "float g;");
+        int[] bounds = ParallelDeclarationParser.splitDeclarations(tokens);
+        assertEquals(5, bounds.length);
+        assertEquals("struct", tokens.get(bounds[0]).getText());
+        assertEquals("int", tokens.get(bounds[1]).getText());
+        assertEquals("f", tokens.get(bounds[2] + 1).getText());
+        assertEquals("float", tokens.get(bounds[3]).getText());
+        assertEquals(Token.EOF, tokens.get(bounds[4]).getType());
+
+        // 末尾不完整的声明单独成为一项
+        assertArrayEquals(new int[]{0, 2}, ParallelDeclarationParser.splitDeclarations(lex("int a")));
+        assertArrayEquals(new int[]{0}, ParallelDeclarationParser.splitDeclarations(lex("")));
+    }
+
+    @Test
+    public void testGeneratedProgramsAndExamples() throws IOException {
+        for (long seed = 0; seed < 4; seed++) {
+            ProgramGenerator generator = new ProgramGenerator();
+            generator.setSeed(seed);
+            generator.setFunctions(30);
+            generator.setMaxExpressionDepth((int) (seed % 6));
+            assertSameAst(generator.generate());
+        }
+        for (String name : new String[]{"example1.gc", "example2.gc", "example3.gc", "example4.gc",
+                "optimization_test.gc", "simple_test.gc"}) {
+            assertSameAst(Files.readString(Paths.get("src/test/examples", name)));
+        }
+        assertSameAst("");
+    }
+
+    @Test
+    public void testSyntaxErrorsCancelParsing() throws IOException {
+        ProgramGenerator generator = new ProgramGenerator();
+        generator.setFunctions(20);
+        String valid = generator.generate();
+        int middle = valid.indexOf("int ", valid.length() / 2);
+        for (String source : new String[]{
+                valid.substring(0, middle) + "int broken( {}\n" + valid.substring(middle),
+                valid.substring(0, middle) + "}\n" + valid.substring(middle),
+                valid + "int trailing = 1",
+                valid + "int main() { return 99999999999; }",
+                Files.readString(Paths.get("src/test/examples", "error_test.gc"))}) {
+            for (boolean direct : new boolean[]{false, true}) {
+                List<Token> tokens = lex(source);
+                assertThrows(ParseCancellationException.class,
+                    () -> new ParallelDeclarationParser(4, direct).parse(tokens));
+            }
+        }
+    }
+
+    private static void assertSameAst(String source) {
+        ASTNode expected = new ASTBuilder().build(
+            new GeminiCParser(new CommonTokenStream(new GeminiCLexer(CharStreams.fromString(source)))).program());
+        for (boolean direct : new boolean[]{false, true}) {
+            for (int workers : new int[]{1, 4}) {
+                ASTAssertions.assertSameTree(expected, new ParallelDeclarationParser(workers, direct).parse(lex(source)));
+            }
+        }
+    }
+
+    private static List<Token> lex(String source) {
+        CommonTokenStream tokens = new CommonTokenStream(new GeminiCLexer(CharStreams.fromString(source)));
+        tokens.fill();
+        return tokens.getTokens();
+    }
+}
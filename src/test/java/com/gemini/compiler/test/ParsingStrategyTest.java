@@ -0,0 +1,91 @@
+package com.gemini.compiler.test;
+
+import com.gemini.compiler.GeminiCompiler;
+import com.gemini.compiler.ast.ASTBuilder;
+import com.gemini.compiler.ast.ASTNode;
+import com.gemini.compiler.synthetic.ProgramGenerator;
+import com.gemini.grammar.GeminiCLexer;
+import com.gemini.grammar.GeminiCParser;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 两阶段解析（SLL 失败时再用 LL）与直接使用 LL 解析的一致性测试
+ */
+public class ParsingStrategyTest {
+
+    private static final String EXAMPLES = "src/test/examples/";
+
+    @Test
+    public void testGeneratedProgramsProduceIdenticalAst() {
+        for (long seed = 0; seed < 10; seed++) {
+            ProgramGenerator generator = new ProgramGenerator();
+            generator.setSeed(seed);
+            generator.setFunctions(10);
+            generator.setMaxExpressionDepth((int) (seed % 6));
+            String source = generator.generate();
+
+            ASTNode expected = new ASTBuilder().build(newParser(source).program());
+            ASTAssertions.assertSameTree(expected, new ASTBuilder().build(parseTwoStage(source, new ArrayList<>())));
+        }
+    }
+
+    @Test
+    public void testExamplesProduceIdenticalResults() throws IOException {
+        for (String name : new String[]{"example1.gc", "example2.gc", "example3.gc", "example4.gc",
+                "optimization_test.gc", "simple_test.gc", "error_test.gc"}) {
+            String source = Files.readString(Paths.get(EXAMPLES, name));
+
+            List<String> expectedErrors = new ArrayList<>();
+            GeminiCParser parser = newParser(source);
+            parser.removeErrorListeners();
+            parser.addErrorListener(collector(expectedErrors));
+            ParseTree expected = parser.program();
+
+            List<String> actualErrors = new ArrayList<>();
+            ParseTree actual = parseTwoStage(source, actualErrors);
+            // 有语法错误时两种方式都走 LL 的错误恢复，诊断信息应该相同
+            assertEquals(expectedErrors, actualErrors, name);
+            if (expectedErrors.isEmpty()) {
+                ASTAssertions.assertSameTree(new ASTBuilder().build(expected), new ASTBuilder().build(actual));
+            }
+        }
+    }
+
+    @Test
+    public void testSyntaxErrorFallsBackToLl() {
+        List<String> errors = new ArrayList<>();
+        parseTwoStage("int main() {\n    int a = ;\n    return 0;\n}\n", errors);
+        assertEquals(1, errors.size(), errors.toString());
+        assertTrue(errors.get(0).startsWith("2:"), errors.toString());
+    }
+
+    private static ParseTree parseTwoStage(String source, List<String> errors) {
+        return GeminiCompiler.parseProgram(newParser(source), collector(errors));
+    }
+
+    private static GeminiCParser newParser(String source) {
+        return new GeminiCParser(new CommonTokenStream(new GeminiCLexer(CharStreams.fromString(source))));
+    }
+
+    private static BaseErrorListener collector(List<String> errors) {
+        return new BaseErrorListener() {
+            @Override
+            public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+                                    int charPositionInLine, String msg, RecognitionException e) {
+                errors.add(line + ":" + charPositionInLine + " " + msg);
+            }
+        };
+    }
+}
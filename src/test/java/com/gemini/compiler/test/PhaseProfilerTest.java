@@ -0,0 +1,253 @@
+package com.gemini.compiler.test;
+
+import com.gemini.compiler.GeminiCompiler;
+import com.gemini.compiler.GeminiCompiler.CompilerConfig;
+import com.gemini.compiler.PhaseProfiler;
+import com.gemini.compiler.optimizer.OptimizationLevel;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 编译阶段计时器测试（--time-report）
+ */
+public class PhaseProfilerTest {
+
+    private static final String SOURCE = "int g = 2;\nint main() {\n    int a = g * 3;\n    return a;\n}\n";
+
+    @TempDir
+    Path tempDir;
+
+    private PrintStream stdout;
+
+    @BeforeEach
+    public void silenceStdout() {
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @AfterEach
+    public void restoreStdout() {
+        System.setOut(stdout);
+    }
+
+    @Test
+    public void testDisabledProfilerRecordsNothing() {
+        PhaseProfiler profiler = new PhaseProfiler(false);
+        assertFalse(profiler.isEnabled());
+        PhaseProfiler.Phase phase = profiler.begin("lex");
+        // 未启用时计数不会被求值
+        profiler.end(phase, "tokens", () -> fail("未启用时不应该计算计数"));
+        profiler.end(profiler.begin("parse"));
+
+        assertTrue(profiler.getPhases().isEmpty());
+        assertEquals(0, profiler.getTotalNanos());
+        assertEquals(0, phase.getNanos());
+        assertTrue(phase.getCounts().isEmpty());
+    }
+
+    @Test
+    public void testPhasesAreRecordedInOrder() {
+        PhaseProfiler profiler = new PhaseProfiler(true);
+        profiler.end(profiler.begin("lex"), "tokens", () -> 12);
+        profiler.end(profiler.begin("parse"));
+        profiler.end(profiler.begin("ast"), "ast-nodes", () -> 7);
+
+        List<PhaseProfiler.Phase> phases = profiler.getPhases();
+        assertEquals(List.of("lex", "parse", "ast"), names(phases));
+        assertEquals(Map.of("tokens", 12L), phases.get(0).getCounts());
+        assertTrue(phases.get(1).getCounts().isEmpty());
+        assertEquals(Map.of("ast-nodes", 7L), phases.get(2).getCounts());
+        long total = 0;
+        for (PhaseProfiler.Phase phase : phases) {
+            assertTrue(phase.getNanos() >= 0);
+            total += phase.getNanos();
+        }
+        assertEquals(total, profiler.getTotalNanos());
+
+        String table = profiler.toTable();
+        assertTrue(table.contains("tokens=12"), table);
+        assertTrue(table.contains("ast-nodes=7"), table);
+        assertTrue(table.indexOf("lex") < table.indexOf("parse") && table.indexOf("parse") < table.indexOf("ast"), table);
+    }
+
+    @Test
+    public void testToJsonIsWellFormed() {
+        PhaseProfiler empty = new PhaseProfiler(true);
+        Map<?, ?> json = (Map<?, ?>) Json.parse(empty.toJson());
+        assertEquals(List.of(), json.get("phases"));
+        assertEquals(0L, json.get("totalNanos"));
+        assertEquals(json, Json.parse(new PhaseProfiler(false).toJson()));
+
+        PhaseProfiler profiler = new PhaseProfiler(true);
+        profiler.end(profiler.begin("semantic"), "symbols", () -> 3);
+        profiler.end(profiler.begin("codegen"));
+        json = (Map<?, ?>) Json.parse(profiler.toJson());
+        List<?> phases = (List<?>) json.get("phases");
+        assertEquals(2, phases.size());
+        Map<?, ?> semantic = (Map<?, ?>) phases.get(0);
+        assertEquals("semantic", semantic.get("name"));
+        assertEquals(Map.of("symbols", 3L), semantic.get("counts"));
+        assertEquals(profiler.getPhases().get(0).getNanos(), semantic.get("nanos"));
+        assertTrue(semantic.containsKey("heapDeltaBytes"));
+        assertEquals(Map.of(), ((Map<?, ?>) phases.get(1)).get("counts"));
+        assertEquals(profiler.getTotalNanos(), json.get("totalNanos"));
+    }
+
+    @Test
+    public void testTimeReportFileIsWritten() throws IOException {
+        Path input = Files.writeString(tempDir.resolve("a.gc"), SOURCE);
+
+        Map<?, ?> report = compile(input, OptimizationLevel.O2, false);
+        List<?> phases = (List<?>) report.get("phases");
+        assertEquals(List.of("lex", "parse", "ast", "semantic", "irgen", "optimize", "codegen"), jsonNames(phases));
+        // int g = 2 ; int main ( ) { int a = g * 3 ; return a ; } 以及 EOF
+        assertEquals(Map.of("tokens", 22L), counts(phases, 0));
+        assertTrue(counts(phases, 1).isEmpty());
+        long astNodes = counts(phases, 2).get("ast-nodes");
+        assertTrue(astNodes > 0);
+        assertTrue(counts(phases, 3).get("symbols") >= 3, "g、main、a 都是符号");
+        assertTrue(counts(phases, 4).get("tac") > 0);
+        assertTrue(counts(phases, 5).get("tac") <= counts(phases, 4).get("tac"));
+        assertTrue(counts(phases, 6).get("llvm-lines") > 0);
+
+        // --direct-ast 没有单独的 ast 阶段，-O0 没有 optimize 阶段；同一程序的计数相同
+        Map<?, ?> direct = compile(input, OptimizationLevel.O0, true);
+        List<?> directPhases = (List<?>) direct.get("phases");
+        assertEquals(List.of("lex", "parse", "semantic", "irgen", "codegen"), jsonNames(directPhases));
+        assertEquals(astNodes, counts(directPhases, 1).get("ast-nodes"));
+        assertEquals(counts(phases, 3), counts(directPhases, 2));
+    }
+
+    private Map<?, ?> compile(Path input, OptimizationLevel level, boolean directAst) throws IOException {
+        Path report = tempDir.resolve("report-" + level + directAst + ".json");
+        CompilerConfig config = new CompilerConfig();
+        config.setOptimizationLevel(level);
+        config.setDirectAst(directAst);
+        config.setTimeReport(true);
+        config.setTimeReportOutput(report.toString());
+        new GeminiCompiler(config).compile(input.toString(), tempDir.resolve("a.ll").toString());
+        assertTrue(Files.exists(report), "--time-report=<文件> 应该写入 JSON");
+        return (Map<?, ?>) Json.parse(Files.readString(report));
+    }
+
+    private static List<String> names(List<PhaseProfiler.Phase> phases) {
+        List<String> names = new ArrayList<>();
+        for (PhaseProfiler.Phase phase : phases) {
+            names.add(phase.getName());
+        }
+        return names;
+    }
+
+    private static List<Object> jsonNames(List<?> phases) {
+        List<Object> names = new ArrayList<>();
+        for (Object phase : phases) {
+            names.add(((Map<?, ?>) phase).get("name"));
+        }
+        return names;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Long> counts(List<?> phases, int index) {
+        return (Map<String, Long>) ((Map<?, ?>) phases.get(index)).get("counts");
+    }
+
+    /**
+     * 只支持对象、数组、字符串（不含转义）和整数的严格 JSON 解析，格式错误时断言失败
+     */
+    private static final class Json {
+        private final String text;
+        private int position;
+
+        private Json(String text) {
+            this.text = text;
+        }
+
+        static Object parse(String text) {
+            Json json = new Json(text);
+            Object value = json.value();
+            json.skipWhitespace();
+            assertEquals(text.length(), json.position, "JSON 之后不应该有多余内容: " + text);
+            return value;
+        }
+
+        private Object value() {
+            skipWhitespace();
+            assertTrue(position < text.length(), "JSON 意外结束");
+            char c = text.charAt(position);
+            if (c == '{') {
+                Map<String, Object> object = new LinkedHashMap<>();
+                position++;
+                if (!consume('}')) {
+                    do {
+                        skipWhitespace();
+                        String key = string();
+                        assertTrue(consume(':'), "缺少 ':' @" + position);
+                        assertNull(object.put(key, value()), "重复的键: " + key);
+                    } while (consume(','));
+                    assertTrue(consume('}'), "缺少 '}' @" + position);
+                }
+                return object;
+            }
+            if (c == '[') {
+                List<Object> array = new ArrayList<>();
+                position++;
+                if (!consume(']')) {
+                    do {
+                        array.add(value());
+                    } while (consume(','));
+                    assertTrue(consume(']'), "缺少 ']' @" + position);
+                }
+                return array;
+            }
+            if (c == '"') {
+                return string();
+            }
+            int start = position;
+            if (c == '-') {
+                position++;
+            }
+            while (position < text.length() && Character.isDigit(text.charAt(position))) {
+                position++;
+            }
+            assertTrue(position > start && Character.isDigit(text.charAt(position - 1)), "非法的值 @" + start);
+            return Long.parseLong(text.substring(start, position));
+        }
+
+        private String string() {
+            assertEquals('"', text.charAt(position), "应该是字符串 @" + position);
+            int end = text.indexOf('"', position + 1);
+            assertTrue(end > 0, "字符串没有结束");
+            String value = text.substring(position + 1, end);
+            assertFalse(value.contains("\\"), "不应该需要转义: " + value);
+            position = end + 1;
+            return value;
+        }
+
+        private boolean consume(char c) {
+            skipWhitespace();
+            if (position < text.length() && text.charAt(position) == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+    }
+}
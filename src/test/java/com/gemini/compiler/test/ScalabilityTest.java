@@ -0,0 +1,167 @@
+package com.gemini.compiler.test;
+
+import com.gemini.compiler.ast.ASTBuilder;
+import com.gemini.compiler.ast.ASTNode;
+import com.gemini.compiler.codegen.CodeGenerator;
+import com.gemini.compiler.ir.IRGenerator;
+import com.gemini.compiler.ir.IRProgram;
+import com.gemini.compiler.optimizer.IROptimizer;
+import com.gemini.compiler.optimizer.OptimizationLevel;
+import com.gemini.compiler.semantic.SemanticAnalyzer;
+import com.gemini.compiler.synthetic.ProgramGenerator;
+import com.gemini.grammar.GeminiCLexer;
+import com.gemini.grammar.GeminiCParser;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ListTokenSource;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 合成程序生成器与各编译阶段的规模测试
+ */
+public class ScalabilityTest {
+
+    private static final int BASE_FUNCTIONS = 15;
+    private static final int SCALE = 4;
+    private static final int RUNS = 3;
+
+    /**
+     * 规模扩大 SCALE 倍时，允许的耗时增长倍数（线性为 SCALE，平方为 SCALE 的平方）
+     */
+    private static final double MAX_GROWTH = SCALE * 2.5;
+
+    /**
+     * 基准规模下耗时低于该值的阶段不做比例检查，避免计时噪声造成误报
+     */
+    private static final long MIN_MEASURABLE_NANOS = 2_000_000L;
+
+    private PrintStream stdout;
+
+    @BeforeEach
+    public void silenceStdout() {
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @AfterEach
+    public void restoreStdout() {
+        System.setOut(stdout);
+    }
+
+    @Test
+    public void testGeneratorIsDeterministic() {
+        assertEquals(newGenerator(42, 20).generate(), newGenerator(42, 20).generate());
+        assertNotEquals(newGenerator(42, 20).generate(), newGenerator(43, 20).generate());
+    }
+
+    @Test
+    public void testGeneratedProgramsAreValid() {
+        for (long seed = 0; seed < 20; seed++) {
+            ProgramGenerator generator = newGenerator(seed, 5);
+            generator.setMaxBlockDepth((int) (seed % 5));
+            generator.setMaxExpressionDepth((int) (seed % 6));
+            generator.setStructs((int) (seed % 4));
+            String source = generator.generate();
+
+            GeminiCParser parser = new GeminiCParser(new CommonTokenStream(new GeminiCLexer(CharStreams.fromString(source))));
+            ParseTree tree = parser.program();
+            assertEquals(0, parser.getNumberOfSyntaxErrors(), "seed " + seed + " 生成了语法错误的程序");
+
+            ASTNode ast = new ASTBuilder().build(tree);
+            SemanticAnalyzer analyzer = new SemanticAnalyzer();
+            ast.accept(analyzer);
+            assertTrue(analyzer.getErrors().isEmpty(), "seed " + seed + " 生成了语义错误: " + analyzer.getErrors());
+
+            IROptimizer optimizer = new IROptimizer(true);
+            optimizer.setOptimizationLevel(OptimizationLevel.O3);
+            String llvm = new CodeGenerator().generate(optimizer.optimize(new IRGenerator().generate(ast)));
+            assertTrue(llvm.contains("define i32 @main"), "seed " + seed + " 缺少 main 函数");
+        }
+    }
+
+    /**
+     * 比较挂钟时间，在负载较高的机器上可能误报，因此不在默认的 mvn test 中运行（mvn -P scaling test）
+     */
+    @Test
+    @Tag("scaling")
+    public void testEachPhaseScalesLinearly() {
+        Map<String, Long> small = measurePhases(BASE_FUNCTIONS);
+        Map<String, Long> large = measurePhases(BASE_FUNCTIONS * SCALE);
+
+        StringBuilder report = new StringBuilder();
+        for (Map.Entry<String, Long> phase : small.entrySet()) {
+            long base = Math.max(phase.getValue(), MIN_MEASURABLE_NANOS);
+            double growth = (double) large.get(phase.getKey()) / base;
+            report.append(String.format("%s x%.1f; ", phase.getKey(), growth));
+            assertTrue(growth <= MAX_GROWTH,
+                "阶段 " + phase.getKey() + " 在规模扩大 " + SCALE + " 倍时耗时增长 " + String.format("%.1f", growth) + " 倍: " + report);
+        }
+    }
+
+    /**
+     * 对给定规模的程序逐阶段计时，每个阶段取 RUNS 次中的最小值
+     */
+    private Map<String, Long> measurePhases(int functions) {
+        String source = newGenerator(7, functions).generate();
+        Map<String, Long> timings = new LinkedHashMap<>();
+
+        List<? extends Token> tokens = time(timings, "lex",
+            () -> new GeminiCLexer(CharStreams.fromString(source)).getAllTokens());
+        ParseTree tree = time(timings, "parse",
+            () -> new GeminiCParser(new CommonTokenStream(new ListTokenSource(tokens))).program());
+        ASTNode ast = time(timings, "ast", () -> new ASTBuilder().build(tree));
+        time(timings, "semantic", () -> {
+            SemanticAnalyzer analyzer = new SemanticAnalyzer();
+            ast.accept(analyzer);
+            return analyzer;
+        });
+        IRProgram ir = time(timings, "irgen", () -> new IRGenerator().generate(ast));
+        IRProgram optimized = time(timings, "optimize", () -> {
+            IROptimizer optimizer = new IROptimizer(true);
+            optimizer.setOptimizationLevel(OptimizationLevel.O2);
+            return optimizer.optimize(ir);
+        });
+        time(timings, "codegen", () -> {
+            try {
+                new CodeGenerator().generate(optimized, Writer.nullWriter());
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return optimized;
+        });
+        return timings;
+    }
+
+    private static <T> T time(Map<String, Long> timings, String phase, Supplier<T> action) {
+        T result = null;
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            result = action.get();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        timings.put(phase, best);
+        return result;
+    }
+
+    private static ProgramGenerator newGenerator(long seed, int functions) {
+        ProgramGenerator generator = new ProgramGenerator();
+        generator.setSeed(seed);
+        generator.setFunctions(functions);
+        return generator;
+    }
+}
@@ -0,0 +1,198 @@
+package com.gemini.compiler.test;
+
+import com.gemini.compiler.ast.ASTBuilder;
+import com.gemini.compiler.ast.ASTNode;
+import com.gemini.compiler.semantic.SemanticAnalyzer;
+import com.gemini.compiler.semantic.SemanticError;
+import com.gemini.compiler.semantic.SemanticErrorType;
+import com.gemini.grammar.GeminiCLexer;
+import com.gemini.grammar.GeminiCParser;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 语义分析器测试类
+ */
+public class SemanticAnalyzerTest {
+
+    @Test
+    public void testRecursiveCall() {
+        // 函数体中调用自身时函数已经声明
+        assertNoErrors(
+            "int factorial(int n) {\n" +
+            "    if (n <= 1) { return 1; }\n" +
+            "    int rest = factorial(n - 1);\n" +
+            "    return n * rest;\n" +
+            "}\n" +
+            "int main() { return factorial(5); }\n");
+    }
+
+    @Test
+    public void testArrayParameters() {
+        // 数组参数是数组类型：下标访问得到元素类型，实参可以是数组变量
+        assertNoErrors(
+            "int findMax(int arr[], int size) {\n" +
+            "    int max = arr[0];\n" +
+            "    return max;\n" +
+            "}\n" +
+            "float corner(float m[][]) {\n" +
+            "    float x = m[0][1];\n" +
+            "    return x;\n" +
+            "}\n" +
+            "int main() {\n" +
+            "    int scores[3] = {1, 2, 3};\n" +
+            "    float grid[2][2];\n" +
+            "    int best = findMax(scores, 3);\n" +
+            "    float c = corner(grid);\n" +
+            "    return best;\n" +
+            "}\n");
+    }
+
+    @Test
+    public void testStructArrayElements() {
+        // 结构体数组的元素是结构体，可以整体赋值和访问成员
+        assertNoErrors(
+            "struct Student { int id; float grade; };\n" +
+            "int main() {\n" +
+            "    struct Student students[2];\n" +
+            "    struct Student temp = students[0];\n" +
+            "    float g = students[1].grade;\n" +
+            "    int id = temp.id;\n" +
+            "    return id;\n" +
+            "}\n");
+    }
+
+    @Test
+    public void testForInitializationScope() {
+        // 同一块中的两个 for 可以各自声明循环变量
+        assertNoErrors(
+            "int main() {\n" +
+            "    int sum = 0;\n" +
+            "    for (int i = 0; i < 3; i++) { sum += i; }\n" +
+            "    for (int i = 0; i < 3; i++) { sum += i; }\n" +
+            "    return sum;\n" +
+            "}\n");
+
+        // 循环变量在 for 之后不可见
+        List<SemanticError> errors = analyze(
+            "int main() {\n" +
+            "    for (int i = 0; i < 3; i++) { }\n" +
+            "    return i;\n" +
+            "}\n");
+        assertTrue(errors.stream().anyMatch(error -> error.getErrorType() == SemanticErrorType.UNDEFINED_IDENTIFIER
+            && "i".equals(error.getIdentifier())), errors.toString());
+    }
+
+    @Test
+    public void testExpressionsAreTypedAgainstDeclarations() {
+        // 局部变量、调用结果和强制类型转换都按声明的类型检查
+        assertNoErrors(
+            "float half(int v) {\n" +
+            "    float r = 0.5;\n" +
+            "    return r;\n" +
+            "}\n" +
+            "int main() {\n" +
+            "    int n = 3;\n" +
+            "    float x = 1.5;\n" +
+            "    float y = x;\n" +
+            "    float h = half(n);\n" +
+            "    float f = (float) n;\n" +
+            "    char c = (char) n;\n" +
+            "    if (n) { n = 0; }\n" +
+            "    return n;\n" +
+            "}\n");
+
+        // 强制类型转换的结果是目标类型，float 不能作为条件
+        assertErrors(SemanticErrorType.CONTROL_EXPRESSION_TYPE_ERROR,
+            "int main() {\n" +
+            "    int n = 3;\n" +
+            "    if ((float) n) { n = 0; }\n" +
+            "    return n;\n" +
+            "}\n");
+        assertErrors(SemanticErrorType.CONTROL_EXPRESSION_TYPE_ERROR,
+            "float half(int v) { float r = 0.5; return r; }\n" +
+            "int main() {\n" +
+            "    while (half(1)) { }\n" +
+            "    return 0;\n" +
+            "}\n");
+    }
+
+    @Test
+    public void testMemberAccessTypes() {
+        // 成员的类型取自变量所属结构体的定义
+        String declarations =
+            "struct Point { int x; float y; };\n" +
+            "int main() {\n" +
+            "    struct Point p;\n" +
+            "    struct Point ps[2];\n";
+        assertNoErrors(declarations +
+            "    int a = p.x;\n" +
+            "    float b = p.y;\n" +
+            "    float c = ps[1].y;\n" +
+            "    return a;\n" +
+            "}\n");
+        assertErrors(SemanticErrorType.INCOMPATIBLE_ASSIGNMENT, declarations +
+            "    char d = p.y;\n" +
+            "    return 0;\n" +
+            "}\n");
+        // 没有的成员不会被当作任何类型
+        assertErrors(SemanticErrorType.INCOMPATIBLE_ASSIGNMENT, declarations +
+            "    int e = p.z;\n" +
+            "    return 0;\n" +
+            "}\n");
+    }
+
+    @Test
+    public void testArrayAccessTypes() {
+        // 下标个数少于维数时仍是数组，对非数组取下标没有类型
+        String declarations =
+            "int main() {\n" +
+            "    float grid[2][3];\n" +
+            "    int n = 1;\n";
+        assertNoErrors(declarations +
+            "    float a = grid[1][2];\n" +
+            "    return n;\n" +
+            "}\n");
+        assertErrors(SemanticErrorType.INCOMPATIBLE_ASSIGNMENT, declarations +
+            "    float b = grid[1];\n" +
+            "    return n;\n" +
+            "}\n");
+        assertErrors(SemanticErrorType.INCOMPATIBLE_ASSIGNMENT, declarations +
+            "    int c = n[0];\n" +
+            "    return n;\n" +
+            "}\n");
+    }
+
+    @Test
+    public void testMissingMainReportedOnce() {
+        List<SemanticError> errors = analyze("");
+        assertEquals(1, errors.size(), errors.toString());
+        assertEquals(SemanticErrorType.MAIN_FUNCTION_MISSING, errors.get(0).getErrorType());
+    }
+
+    private static void assertNoErrors(String source) {
+        List<SemanticError> errors = analyze(source);
+        assertTrue(errors.isEmpty(), errors.toString());
+    }
+
+    /**
+     * 只报告 expected 类型的错误（至少一个）
+     */
+    private static void assertErrors(SemanticErrorType expected, String source) {
+        List<SemanticError> errors = analyze(source);
+        assertFalse(errors.isEmpty(), "应该报告 " + expected);
+        assertTrue(errors.stream().allMatch(error -> error.getErrorType() == expected), errors.toString());
+    }
+
+    private static List<SemanticError> analyze(String source) {
+        GeminiCParser parser = new GeminiCParser(new CommonTokenStream(new GeminiCLexer(CharStreams.fromString(source))));
+        ASTNode ast = new ASTBuilder().build(parser.program());
+        assertEquals(0, parser.getNumberOfSyntaxErrors(), "测试程序应该没有语法错误");
+        SemanticAnalyzer analyzer = new SemanticAnalyzer();
+        analyzer.analyze(ast);
+        return analyzer.getErrors();
+    }
+}
@@ -1,7 +1,9 @@
 package com.gemini.compiler.test;
 
+import com.gemini.compiler.ast.DataType;
 import com.gemini.compiler.semantic.*;
 import org.junit.jupiter.api.Test;
+import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -168,4 +170,17 @@ public class SymbolTableManagerTest {
         SemanticError error = errors.get(0);
         assertEquals(SemanticErrorType.UNDEFINED_IDENTIFIER, error.getErrorType(), "错误类型应该匹配");
     }
+    
+    @Test
+    public void testInsertedSymbolCount() {
+        // 测试插入计数：退出作用域后仍然计入，重定义不计入
+        symbolTableManager.insertSymbol(new SymbolEntry("g", SymbolType.VARIABLE, DataType.INT, 1, SymbolKind.GLOBAL));
+        symbolTableManager.enterScope();
+        symbolTableManager.insertSymbol(new SymbolEntry("x", SymbolType.VARIABLE, DataType.INT, 2, SymbolKind.LOCAL));
+        symbolTableManager.insertSymbol(new SymbolEntry("x", SymbolType.VARIABLE, DataType.INT, 3, SymbolKind.LOCAL));
+        symbolTableManager.exitScope();
+        
+        assertEquals(2, symbolTableManager.getInsertedSymbolCount(), "应该计入两个成功插入的符号");
+        assertEquals(1, symbolTableManager.getTotalSymbolCount(), "局部作用域退出后只剩全局符号");
+    }
 }